@@ -0,0 +1,247 @@
+/* *********************************************************************** *
+ * project: org.matsim.*
+ * CompactAgentsBenchmark.java
+ *                                                                         *
+ * *********************************************************************** *
+ *                                                                         *
+ * copyright       : (C) 2019 by the members listed in the COPYING,        *
+ *                   LICENSE and WARRANTY file.                            *
+ * email           : info at matsim dot org                                *
+ *                                                                         *
+ * *********************************************************************** *
+ *                                                                         *
+ *   This program is free software; you can redistribute it and/or modify  *
+ *   it under the terms of the GNU General Public License as published by  *
+ *   the Free Software Foundation; either version 2 of the License, or     *
+ *   (at your option) any later version.                                   *
+ *   See also COPYING, LICENSE and WARRANTY file                           *
+ *                                                                         *
+ * *********************************************************************** */
+
+package org.matsim.benchmark;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+
+import org.matsim.api.core.v01.Coord;
+import org.matsim.api.core.v01.Id;
+import org.matsim.api.core.v01.Scenario;
+import org.matsim.api.core.v01.network.Link;
+import org.matsim.api.core.v01.network.Network;
+import org.matsim.api.core.v01.network.NetworkFactory;
+import org.matsim.api.core.v01.network.Node;
+import org.matsim.api.core.v01.population.Activity;
+import org.matsim.api.core.v01.population.Leg;
+import org.matsim.api.core.v01.population.Person;
+import org.matsim.api.core.v01.population.Plan;
+import org.matsim.api.core.v01.population.PopulationFactory;
+import org.matsim.core.config.Config;
+import org.matsim.core.config.ConfigUtils;
+import org.matsim.core.events.EventsUtils;
+import org.matsim.core.mobsim.framework.MobsimDriverAgent;
+import org.matsim.core.mobsim.qsim.QSim;
+import org.matsim.core.mobsim.qsim.QSimBuilder;
+import org.matsim.core.mobsim.qsim.agents.AgentFactory;
+import org.matsim.core.mobsim.qsim.agents.CompactAgentFactory;
+import org.matsim.core.mobsim.qsim.agents.DefaultAgentFactory;
+import org.matsim.core.mobsim.qsim.qnetsimengine.CompactQVehicle;
+import org.matsim.core.mobsim.qsim.qnetsimengine.QVehicle;
+import org.matsim.core.mobsim.qsim.qnetsimengine.QVehicleFactory;
+import org.matsim.core.mobsim.qsim.qnetsimengine.QVehicleImpl;
+import org.matsim.core.population.routes.RouteUtils;
+import org.matsim.core.scenario.ScenarioUtils;
+import org.matsim.vehicles.Vehicle;
+import org.matsim.vehicles.VehicleType;
+import org.matsim.vehicles.VehicleUtils;
+
+/**
+ * Compares the memory footprint of the default agents and vehicles ({@link DefaultAgentFactory}, {@link QVehicleImpl})
+ * with the compact ones ({@link CompactAgentFactory}, {@link CompactQVehicle}) on a synthetic population: every person
+ * drives from home to work and back, on routes of 20 links along the rows of a grid network.  For each variant, all
+ * agents and their vehicles are created, driven over their first route and made to start the work activity, which is
+ * where the default agents copy their plans.  Reported are the heap which the agents and vehicles retain after that,
+ * and the time needed for driving.
+ * <p></p>
+ * Usage: <code>CompactAgentsBenchmark [numberOfAgents]</code>, by default 5 million agents, which needs a heap of
+ * about 32 GB (<code>-Xmx32g</code>).
+ */
+public class CompactAgentsBenchmark {
+
+	private static final int ROWS = 100;
+	private static final int COLUMNS = 100;
+	private static final int LINKS_PER_ROUTE = 20;
+
+	public static void main(String[] args) {
+		int numberOfAgents = args.length > 0 ? Integer.parseInt(args[0]) : 5_000_000;
+
+		Config config = ConfigUtils.createConfig();
+		Scenario scenario = ScenarioUtils.createScenario(config);
+		Id<Link>[][] eastLinks = createNetwork(scenario.getNetwork());
+		List<Person> persons = createPopulation(scenario, eastLinks, numberOfAgents);
+		List<Vehicle> vehicles = createVehicles(scenario, persons);
+
+		// the factories only need the scenario, the events and the timer of the qsim; it is not run
+		QSim qsim = new QSimBuilder(config) //
+				.useDefaults() //
+				.build(scenario, EventsUtils.createEventsManager());
+
+		run("default", new DefaultAgentFactory(qsim), QVehicleImpl::new, persons, vehicles);
+		run("compact", new CompactAgentFactory(qsim), CompactQVehicle::new, persons, vehicles);
+	}
+
+	private static void run(String name, AgentFactory agentFactory, QVehicleFactory vehicleFactory,
+			List<Person> persons, List<Vehicle> vehicles) {
+		long before = usedMemory();
+
+		int n = persons.size();
+		MobsimDriverAgent[] agents = new MobsimDriverAgent[n];
+		QVehicle[] qVehicles = new QVehicle[n];
+		for (int i = 0; i < n; i++) {
+			agents[i] = (MobsimDriverAgent) agentFactory.createMobsimAgentFromPerson(persons.get(i));
+			qVehicles[i] = vehicleFactory.createQVehicle(vehicles.get(i));
+		}
+
+		long start = System.nanoTime();
+		long checksum = 0;
+		for (int i = 0; i < n; i++) {
+			checksum += driveToWork(agents[i], qVehicles[i]);
+		}
+		long nanos = System.nanoTime() - start;
+
+		long bytes = usedMemory() - before;
+		System.out.println(String.format("%-8s %10d agents %8.1f bytes/agent %8.3f s driving %12.0f links/s (checksum %d)",
+				name, n, (double) bytes / n, nanos / 1e9, checksum / (nanos / 1e9), checksum));
+
+		// keep the agents reachable until the memory is measured
+		if (agents[n - 1].getState() == null || qVehicles[n - 1].getId() == null) {
+			throw new IllegalStateException();
+		}
+	}
+
+	/**
+	 * Does what the mobsim does with a driver from the end of its first activity to the start of the next one.
+	 *
+	 * @return the number of links driven
+	 */
+	private static long driveToWork(MobsimDriverAgent agent, QVehicle vehicle) {
+		double now = agent.getActivityEndTime();
+		agent.endActivityAndComputeNextState(now);
+		vehicle.setDriver(agent);
+		agent.setVehicle(vehicle);
+		long links = 0;
+		while (!agent.isWantingToArriveOnCurrentLink()) {
+			agent.notifyMoveOverNode(agent.chooseNextLinkId());
+			links++;
+		}
+		vehicle.setDriver(null);
+		agent.endLegAndComputeNextState(now + links);
+		return links;
+	}
+
+	/**
+	 * Creates the rows of the grid, with links in both directions.
+	 *
+	 * @return the ids of the links towards increasing column, by row and column of their from node
+	 */
+	@SuppressWarnings("unchecked")
+	private static Id<Link>[][] createNetwork(Network network) {
+		NetworkFactory factory = network.getFactory();
+		Node[][] nodes = new Node[ROWS][COLUMNS];
+		for (int r = 0; r < ROWS; r++) {
+			for (int c = 0; c < COLUMNS; c++) {
+				nodes[r][c] = factory.createNode(Id.createNodeId(r * COLUMNS + c), new Coord(c * 500.0, r * 500.0));
+				network.addNode(nodes[r][c]);
+			}
+		}
+		Id<Link>[][] eastLinks = new Id[ROWS][COLUMNS - 1];
+		for (int r = 0; r < ROWS; r++) {
+			for (int c = 0; c < COLUMNS - 1; c++) {
+				eastLinks[r][c] = Id.createLinkId(r + "_" + c + "_e");
+				addLink(network, eastLinks[r][c], nodes[r][c], nodes[r][c + 1]);
+				addLink(network, Id.createLinkId(r + "_" + c + "_w"), nodes[r][c + 1], nodes[r][c]);
+			}
+		}
+		return eastLinks;
+	}
+
+	private static void addLink(Network network, Id<Link> id, Node fromNode, Node toNode) {
+		Link link = network.getFactory().createLink(id, fromNode, toNode);
+		link.setLength(500.0);
+		link.setFreespeed(13.9);
+		link.setCapacity(1800.0);
+		link.setNumberOfLanes(1.0);
+		network.addLink(link);
+	}
+
+	private static List<Person> createPopulation(Scenario scenario, Id<Link>[][] eastLinks, int numberOfAgents) {
+		PopulationFactory factory = scenario.getPopulation().getFactory();
+		Random random = new Random(4711);
+		List<Person> persons = new ArrayList<>(numberOfAgents);
+		for (int i = 0; i < numberOfAgents; i++) {
+			int row = random.nextInt(ROWS);
+			int homeColumn = random.nextInt(COLUMNS - 2 - LINKS_PER_ROUTE);
+			int workColumn = homeColumn + LINKS_PER_ROUTE + 1;
+
+			Id<Link> homeLinkId = eastLinks[row][homeColumn];
+			Id<Link> workLinkId = eastLinks[row][workColumn];
+			List<Id<Link>> toWork = new ArrayList<>(LINKS_PER_ROUTE);
+			for (int c = homeColumn + 1; c < workColumn; c++) {
+				toWork.add(eastLinks[row][c]);
+			}
+			List<Id<Link>> toHome = new ArrayList<>(LINKS_PER_ROUTE + 1);
+			for (int c = workColumn; c > homeColumn; c--) {
+				toHome.add(Id.createLinkId(row + "_" + c + "_w"));
+			}
+			Id<Link> homeReturnLinkId = Id.createLinkId(row + "_" + homeColumn + "_w");
+
+			Person person = factory.createPerson(Id.createPersonId(i));
+			Plan plan = factory.createPlan();
+			Activity home = factory.createActivityFromLinkId("home", homeLinkId);
+			home.setEndTime(6 * 3600.0 + random.nextInt(3 * 3600));
+			plan.addActivity(home);
+			Leg leg = factory.createLeg("car");
+			leg.setRoute(RouteUtils.createLinkNetworkRouteImpl(homeLinkId, toWork, workLinkId));
+			plan.addLeg(leg);
+			Activity work = factory.createActivityFromLinkId("work", workLinkId);
+			work.setMaximumDuration(8 * 3600.0);
+			plan.addActivity(work);
+			leg = factory.createLeg("car");
+			leg.setRoute(RouteUtils.createLinkNetworkRouteImpl(workLinkId, toHome, homeReturnLinkId));
+			plan.addLeg(leg);
+			plan.addActivity(factory.createActivityFromLinkId("home", homeReturnLinkId));
+			person.addPlan(plan);
+			person.setSelectedPlan(plan);
+
+			scenario.getPopulation().addPerson(person);
+			persons.add(person);
+		}
+		return persons;
+	}
+
+	private static List<Vehicle> createVehicles(Scenario scenario, List<Person> persons) {
+		VehicleType type = VehicleUtils.getDefaultVehicleType();
+		scenario.getVehicles().addVehicleType(type);
+		List<Vehicle> vehicles = new ArrayList<>(persons.size());
+		for (Person person : persons) {
+			Vehicle vehicle = VehicleUtils.getFactory().createVehicle(Id.create(person.getId(), Vehicle.class), type);
+			scenario.getVehicles().addVehicle(vehicle);
+			vehicles.add(vehicle);
+		}
+		return vehicles;
+	}
+
+	private static long usedMemory() {
+		Runtime runtime = Runtime.getRuntime();
+		for (int i = 0; i < 3; i++) {
+			System.gc();
+			try {
+				Thread.sleep(200);
+			} catch (InterruptedException e) {
+				throw new RuntimeException(e);
+			}
+		}
+		return runtime.totalMemory() - runtime.freeMemory();
+	}
+
+}
@@ -0,0 +1,128 @@
+/* *********************************************************************** *
+ * project: org.matsim.*
+ * CountsComparisonBenchmark.java
+ *                                                                         *
+ * *********************************************************************** *
+ *                                                                         *
+ * copyright       : (C) 2019 by the members listed in the COPYING,        *
+ *                   LICENSE and WARRANTY file.                            *
+ * email           : info at matsim dot org                                *
+ *                                                                         *
+ * *********************************************************************** *
+ *                                                                         *
+ *   This program is free software; you can redistribute it and/or modify  *
+ *   it under the terms of the GNU General Public License as published by  *
+ *   the Free Software Foundation; either version 2 of the License, or     *
+ *   (at your option) any later version.                                   *
+ *   See also COPYING, LICENSE and WARRANTY file                           *
+ *                                                                         *
+ * *********************************************************************** */
+
+package org.matsim.benchmark;
+
+import java.io.File;
+import java.util.List;
+import java.util.Random;
+
+import org.matsim.api.core.v01.Coord;
+import org.matsim.api.core.v01.Id;
+import org.matsim.api.core.v01.network.Link;
+import org.matsim.api.core.v01.network.Network;
+import org.matsim.api.core.v01.network.NetworkFactory;
+import org.matsim.api.core.v01.network.Node;
+import org.matsim.core.network.NetworkUtils;
+import org.matsim.core.utils.geometry.transformations.IdentityTransformation;
+import org.matsim.counts.Count;
+import org.matsim.counts.CountSimComparison;
+import org.matsim.counts.Counts;
+import org.matsim.counts.algorithms.CountSimComparisonKMLStreamWriter;
+import org.matsim.counts.algorithms.CountSimComparisonKMLWriter;
+import org.matsim.counts.algorithms.CountsComparisonAlgorithm;
+
+/**
+ * Measures the comparison of simulated volumes with counts on a synthetic network, with one and with several
+ * threads, and the kmz output with the {@link CountSimComparisonKMLWriter} and the
+ * {@link CountSimComparisonKMLStreamWriter}.
+ * <p></p>
+ * Usage: <code>CountsComparisonBenchmark numberOfCountStations numberOfThreads outputDirectory [repetitions]</code>.
+ * The (slow) kml writer with graphs per count station is only run for up to 2000 count stations.
+ */
+public class CountsComparisonBenchmark {
+
+	public static void main(String[] args) {
+		if (args.length < 3) {
+			System.err.println("usage: CountsComparisonBenchmark numberOfCountStations numberOfThreads outputDirectory [repetitions]");
+			System.exit(1);
+		}
+		int stations = Integer.parseInt(args[0]);
+		int threads = Integer.parseInt(args[1]);
+		String outputDirectory = args[2];
+		int repetitions = args.length > 3 ? Integer.parseInt(args[3]) : 3;
+		new File(outputDirectory).mkdirs();
+
+		Network network = NetworkUtils.createNetwork();
+		Counts<Link> counts = new Counts<>();
+		double[][] volumes = new double[stations][24];
+		createScenario(stations, network, counts, volumes);
+		CountsComparisonAlgorithm.VolumesForId volumesForId = locationId -> volumes[Integer.parseInt(locationId.toString())];
+
+		List<CountSimComparison> comparison = null;
+		for (int numberOfThreads : new int[] {1, threads}) {
+			long best = Long.MAX_VALUE;
+			for (int i = 0; i < repetitions; i++) {
+				long start = System.nanoTime();
+				CountsComparisonAlgorithm cca = new CountsComparisonAlgorithm(volumesForId, counts, network, 1.0);
+				cca.setNumberOfThreads(numberOfThreads);
+				cca.run();
+				best = Math.min(best, System.nanoTime() - start);
+				comparison = cca.getComparison();
+			}
+			print("compare", numberOfThreads + " threads", comparison.size(), best);
+		}
+
+		long best = Long.MAX_VALUE;
+		for (int i = 0; i < repetitions; i++) {
+			long start = System.nanoTime();
+			CountSimComparisonKMLStreamWriter writer = new CountSimComparisonKMLStreamWriter(comparison, network, new IdentityTransformation());
+			writer.writeFile(outputDirectory + "/countscompare_stream.kmz");
+			best = Math.min(best, System.nanoTime() - start);
+		}
+		print("kmz", "stream", comparison.size(), best);
+
+		if (stations <= 2000) {
+			best = Long.MAX_VALUE;
+			for (int i = 0; i < repetitions; i++) {
+				long start = System.nanoTime();
+				CountSimComparisonKMLWriter<Link> writer = new CountSimComparisonKMLWriter<>(comparison, network, new IdentityTransformation());
+				writer.writeFile(outputDirectory + "/countscompare.kmz");
+				best = Math.min(best, System.nanoTime() - start);
+			}
+			print("kmz", "graphs", comparison.size(), best);
+		}
+	}
+
+	private static void createScenario(int stations, Network network, Counts<Link> counts, double[][] volumes) {
+		Random random = new Random(4711);
+		NetworkFactory factory = network.getFactory();
+		for (int i = 0; i < stations; i++) {
+			Node from = factory.createNode(Id.createNodeId("f" + i), new Coord(i * 100.0, 0.0));
+			Node to = factory.createNode(Id.createNodeId("t" + i), new Coord(i * 100.0, 500.0));
+			network.addNode(from);
+			network.addNode(to);
+			Link link = factory.createLink(Id.createLinkId(i), from, to);
+			link.setLength(500.0);
+			network.addLink(link);
+			Count<Link> count = counts.createAndAddCount(link.getId(), "station " + i);
+			for (int h = 1; h <= 24; h++) {
+				count.createVolume(h, 100 + random.nextInt(1000));
+				volumes[i][h - 1] = 100 + random.nextInt(1000);
+			}
+		}
+	}
+
+	private static void print(String name, String variant, int comparisons, long nanos) {
+		double seconds = nanos / 1e9;
+		System.out.println(String.format("%-8s %-10s %10d comparisons %8.3f s %12.0f comparisons/s", name, variant, comparisons, seconds, comparisons / seconds));
+	}
+
+}
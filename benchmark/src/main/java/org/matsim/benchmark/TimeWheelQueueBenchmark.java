@@ -0,0 +1,120 @@
+/* *********************************************************************** *
+ * project: org.matsim.*
+ * TimeWheelQueueBenchmark.java
+ *                                                                         *
+ * *********************************************************************** *
+ *                                                                         *
+ * copyright       : (C) 2019 by the members listed in the COPYING,        *
+ *                   LICENSE and WARRANTY file.                            *
+ * email           : info at matsim dot org                                *
+ *                                                                         *
+ * *********************************************************************** *
+ *                                                                         *
+ *   This program is free software; you can redistribute it and/or modify  *
+ *   it under the terms of the GNU General Public License as published by  *
+ *   the Free Software Foundation; either version 2 of the License, or     *
+ *   (at your option) any later version.                                   *
+ *   See also COPYING, LICENSE and WARRANTY file                           *
+ *                                                                         *
+ * *********************************************************************** */
+
+package org.matsim.benchmark;
+
+import java.util.PriorityQueue;
+import java.util.Random;
+
+import org.matsim.core.utils.collections.TimeWheelQueue;
+import org.matsim.core.utils.collections.Tuple;
+
+/**
+ * Compares the {@link TimeWheelQueue} with a {@link PriorityQueue} of {@link Tuple}s, as formerly used by the
+ * teleportation engine, on a simulation-like load: all entries are added with random times within one day (a quarter
+ * of them at full seconds), then the queue is drained second by second, and every tenth polled entry is added again
+ * a few minutes later.
+ * <p></p>
+ * Usage: <code>TimeWheelQueueBenchmark [numberOfEntries] [repetitions]</code>, by default 10 million entries.
+ */
+public class TimeWheelQueueBenchmark {
+
+	private static final double END_TIME = 24 * 3600.0;
+
+	public static void main(String[] args) {
+		int entries = args.length > 0 ? Integer.parseInt(args[0]) : 10_000_000;
+		int repetitions = args.length > 1 ? Integer.parseInt(args[1]) : 3;
+
+		Random random = new Random(4711);
+		double[] times = new double[entries];
+		Integer[] elements = new Integer[entries];
+		for (int i = 0; i < entries; i++) {
+			times[i] = random.nextInt(4) == 0 ? random.nextInt((int) END_TIME) : random.nextDouble() * END_TIME;
+			elements[i] = i;
+		}
+
+		long checksum = 0;
+		long best = Long.MAX_VALUE;
+		for (int r = 0; r < repetitions; r++) {
+			long start = System.nanoTime();
+			checksum = runPriorityQueue(times, elements);
+			best = Math.min(best, System.nanoTime() - start);
+		}
+		print("PriorityQueue<Tuple>", entries, best, checksum);
+
+		best = Long.MAX_VALUE;
+		for (int r = 0; r < repetitions; r++) {
+			long start = System.nanoTime();
+			checksum = runTimeWheelQueue(times, elements);
+			best = Math.min(best, System.nanoTime() - start);
+		}
+		print("TimeWheelQueue", entries, best, checksum);
+	}
+
+	private static long runPriorityQueue(double[] times, Integer[] elements) {
+		PriorityQueue<Tuple<Double, Integer>> queue = new PriorityQueue<>(30, (o1, o2) -> {
+			int ret = o1.getFirst().compareTo(o2.getFirst());
+			if (ret == 0) {
+				ret = o2.getSecond().compareTo(o1.getSecond());
+			}
+			return ret;
+		});
+		for (int i = 0; i < times.length; i++) {
+			queue.add(new Tuple<>(times[i], elements[i]));
+		}
+		long checksum = 0;
+		long polled = 0;
+		for (double now = 0; !queue.isEmpty(); now++) {
+			while (!queue.isEmpty() && queue.peek().getFirst() <= now) {
+				Tuple<Double, Integer> entry = queue.poll();
+				checksum = 31 * checksum + entry.getSecond();
+				if (++polled % 10 == 0) {
+					queue.add(new Tuple<>(now + 300.0, entry.getSecond()));
+				}
+			}
+		}
+		return checksum;
+	}
+
+	private static long runTimeWheelQueue(double[] times, Integer[] elements) {
+		TimeWheelQueue<Integer> queue = new TimeWheelQueue<>(1.0, (o1, o2) -> o2.compareTo(o1));
+		for (int i = 0; i < times.length; i++) {
+			queue.add(times[i], elements[i]);
+		}
+		long checksum = 0;
+		long polled = 0;
+		for (double now = 0; !queue.isEmpty(); now++) {
+			Integer element;
+			while ((element = queue.poll(now)) != null) {
+				checksum = 31 * checksum + element;
+				if (++polled % 10 == 0) {
+					queue.add(now + 300.0, element);
+				}
+			}
+		}
+		return checksum;
+	}
+
+	private static void print(String name, int entries, long nanos, long checksum) {
+		double seconds = nanos / 1e9;
+		System.out.println(String.format("%-22s %10d entries %8.3f s %12.0f entries/s (checksum %d)", name, entries, seconds, entries / seconds, checksum));
+	}
+
+}
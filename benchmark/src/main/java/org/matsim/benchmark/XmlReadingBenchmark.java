@@ -0,0 +1,124 @@
+/* *********************************************************************** *
+ * project: org.matsim.*
+ * XmlReadingBenchmark.java
+ *                                                                         *
+ * *********************************************************************** *
+ *                                                                         *
+ * copyright       : (C) 2019 by the members listed in the COPYING,        *
+ *                   LICENSE and WARRANTY file.                            *
+ * email           : info at matsim dot org                                *
+ *                                                                         *
+ * *********************************************************************** *
+ *                                                                         *
+ *   This program is free software; you can redistribute it and/or modify  *
+ *   it under the terms of the GNU General Public License as published by  *
+ *   the Free Software Foundation; either version 2 of the License, or     *
+ *   (at your option) any later version.                                   *
+ *   See also COPYING, LICENSE and WARRANTY file                           *
+ *                                                                         *
+ * *********************************************************************** */
+
+package org.matsim.benchmark;
+
+import org.matsim.api.core.v01.Scenario;
+import org.matsim.api.core.v01.events.Event;
+import org.matsim.core.api.experimental.events.EventsManager;
+import org.matsim.core.config.ConfigUtils;
+import org.matsim.core.events.EventsUtils;
+import org.matsim.core.events.MatsimEventsReader;
+import org.matsim.core.events.handler.BasicEventHandler;
+import org.matsim.core.network.io.MatsimNetworkReader;
+import org.matsim.core.population.io.PopulationReader;
+import org.matsim.core.scenario.ScenarioUtils;
+import org.matsim.pt.transitSchedule.api.TransitScheduleReader;
+
+import java.io.File;
+
+/**
+ * Measures the reading throughput of the network, population, events and transit schedule readers, once with the
+ * default (SAX) parser and once with the StAX based fast path of {@link org.matsim.core.utils.io.MatsimXmlParser}.
+ * <p></p>
+ * Usage: <code>XmlReadingBenchmark network.xml.gz plans.xml.gz events.xml.gz transitSchedule.xml.gz [repetitions]</code>.
+ * Use "-" to skip a file.  Local dtds are used, so the measurement does not depend on the network connection.
+ */
+public class XmlReadingBenchmark {
+
+	private interface ReadTask {
+		/** @return the number of read objects */
+		long read(String filename, boolean fast);
+	}
+
+	public static void main(String[] args) {
+		if (args.length < 4) {
+			System.err.println("usage: XmlReadingBenchmark network plans events transitSchedule [repetitions]");
+			System.exit(1);
+		}
+		int repetitions = args.length > 4 ? Integer.parseInt(args[4]) : 3;
+		System.setProperty("matsim.preferLocalDtds", "true");
+
+		run("network", args[0], repetitions, (filename, fast) -> {
+			Scenario scenario = ScenarioUtils.createScenario(ConfigUtils.createConfig());
+			MatsimNetworkReader reader = new MatsimNetworkReader(scenario.getNetwork());
+			reader.setUsingFastParser(fast);
+			reader.readFile(filename);
+			return scenario.getNetwork().getLinks().size();
+		});
+		run("population", args[1], repetitions, (filename, fast) -> {
+			Scenario scenario = ScenarioUtils.createScenario(ConfigUtils.createConfig());
+			PopulationReader reader = new PopulationReader(scenario);
+			reader.setUsingFastParser(fast);
+			reader.readFile(filename);
+			return scenario.getPopulation().getPersons().size();
+		});
+		run("events", args[2], repetitions, (filename, fast) -> {
+			EventsManager events = EventsUtils.createEventsManager();
+			EventCounter counter = new EventCounter();
+			events.addHandler(counter);
+			MatsimEventsReader reader = new MatsimEventsReader(events);
+			reader.setUsingFastParser(fast);
+			reader.readFile(filename);
+			return counter.count;
+		});
+		run("transitSchedule", args[3], repetitions, (filename, fast) -> {
+			Scenario scenario = ScenarioUtils.createScenario(ConfigUtils.createConfig());
+			TransitScheduleReader reader = new TransitScheduleReader(scenario);
+			reader.setUsingFastParser(fast);
+			reader.readFile(filename);
+			return scenario.getTransitSchedule().getTransitLines().size();
+		});
+	}
+
+	private static void run(String name, String filename, int repetitions, ReadTask task) {
+		if ("-".equals(filename)) {
+			return;
+		}
+		double megabytes = new File(filename).length() / 1024.0 / 1024.0;
+		for (boolean fast : new boolean[] {false, true}) {
+			long best = Long.MAX_VALUE;
+			long count = 0;
+			for (int i = 0; i < repetitions; i++) {
+				long start = System.nanoTime();
+				count = task.read(filename, fast);
+				best = Math.min(best, System.nanoTime() - start);
+			}
+			double seconds = best / 1e9;
+			System.out.println(String.format("%-16s %-5s %10d objects %8.2f s %10.0f objects/s %8.2f MB/s (file size)",
+					name, fast ? "stax" : "sax", count, seconds, count / seconds, megabytes / seconds));
+		}
+	}
+
+	private static class EventCounter implements BasicEventHandler {
+		long count = 0;
+
+		@Override
+		public void handleEvent(Event event) {
+			this.count++;
+		}
+
+		@Override
+		public void reset(int iteration) {
+			this.count = 0;
+		}
+	}
+
+}
@@ -23,13 +23,14 @@ package org.matsim.analysis;
 import java.io.BufferedReader;
 import java.io.BufferedWriter;
 import java.io.IOException;
-import java.util.Map;
-import java.util.TreeMap;
+import java.util.Arrays;
 
 import org.apache.log4j.Logger;
 import org.matsim.api.core.v01.Id;
 import org.matsim.api.core.v01.network.Link;
 import org.matsim.api.core.v01.network.Network;
+import org.matsim.core.network.NetworkArrays;
+import org.matsim.core.network.NetworkUtils;
 import org.matsim.core.router.util.TravelTime;
 import org.matsim.core.utils.io.IOUtils;
 import org.matsim.core.utils.misc.StringUtils;
@@ -38,6 +39,7 @@ import javax.inject.Inject;
 
 /**
  * Calculates the average link volumes and travel times over any number of iterations.
+ * The statistics of all links are kept in flat arrays, indexed by the link indices of {@link NetworkArrays}.
  *
  * @author mrieser
  */
@@ -45,22 +47,19 @@ public class CalcLinkStats {
 
 	private final static Logger log = Logger.getLogger(CalcLinkStats.class);
 
-	private static class LinkData {
-		public final double[][] volumes;
-		public final double[][] ttimes;
-
-		public LinkData(final double[][] linksVolumes, final double[][] linksTTimes) {
-			this.volumes = linksVolumes.clone();
-			this.ttimes = linksTTimes.clone();
-		}
-	}
-
 	private double volScaleFactor = 1.0;
 
 	private int count = 0;
-	private final Map<Id<Link>, LinkData> linkData;
 	private final int nofHours;
 	private final Network network;
+	private NetworkArrays networkArrays;
+	/** the link indices, sorted by link id (the order in which the links are written) */
+	private int[] sortedLinkIndices;
+
+	// the statistics of all links, flattened: volumes[stat][linkIndex * (nofHours + 1) + hour], ttimes[stat][linkIndex * nofHours + hour]
+	private double[][] volumes;
+	private double[][] ttimes;
+	private final double[] hourlyVolumes;
 
 	private static final int MIN = 0;
 	private static final int MAX = 1;
@@ -70,8 +69,8 @@ public class CalcLinkStats {
 	@Inject
 	public CalcLinkStats(final Network network) {
 		this.network = network;
-		this.linkData = new TreeMap<>();
 		this.nofHours = 24;
+		this.hourlyVolumes = new double[this.nofHours];
 		reset();
 	}
 
@@ -90,17 +89,22 @@ public class CalcLinkStats {
 		this.count++;
 		// TODO verify ttimes has hourly timeBin-Settings
 
+		double[][] dataVolumes = this.volumes;
+		double[][] dataTTimes = this.ttimes;
+		double[] volumes = this.hourlyVolumes;
+
 		// go through all links
-		for (Id<Link> linkId : this.linkData.keySet()) {
+		for (int linkIndex = 0; linkIndex < this.networkArrays.getLinkCount(); linkIndex++) {
 			
-			// retrieve link from link ID
-			Link link = this.network.getLinks().get(linkId);
+			// retrieve link from link index
+			Link link = this.networkArrays.getLink(linkIndex);
 			
-			// get the volumes for the link ID from the analyzier
-			double[] volumes = analyzer.getVolumesPerHourForLink(linkId);
+			// get the volumes for the link from the analyzer
+			Arrays.fill(volumes, 0.0);
+			analyzer.addVolumesPerHourForLink(link.getId(), volumes, 0);
 			
-			// get the destination container for the data from link data (could have gotten this through iterator right away)
-			LinkData data = this.linkData.get(linkId);
+			int volumesOffset = linkIndex * (this.nofHours + 1);
+			int ttimesOffset = linkIndex * this.nofHours;
 			
 			// prepare the sum variables (for volumes);
 			long sumVolumes = 0; // daily (0-24) sum
@@ -114,49 +118,66 @@ public class CalcLinkStats {
 				// add for daily sum:
 				sumVolumes += volumes[hour];
 
+				int v = volumesOffset + hour;
+				int t = ttimesOffset + hour;
 				// the following has something to do with the fact that we are doing this for multiple iterations.  So there are variations.
 				// this collects min and max.  There is, however, no good control over how many iterations this is collected.
 				if (this.count == 1) {
-					data.volumes[MIN][hour] = volumes[hour];
-					data.volumes[MAX][hour] = volumes[hour];
-					data.ttimes[MIN][hour] = ttime;
-					data.ttimes[MAX][hour] = ttime;
+					dataVolumes[MIN][v] = volumes[hour];
+					dataVolumes[MAX][v] = volumes[hour];
+					dataTTimes[MIN][t] = ttime;
+					dataTTimes[MAX][t] = ttime;
 				} else {
-					if (volumes[hour] < data.volumes[MIN][hour]) data.volumes[MIN][hour] = volumes[hour];
-					if (volumes[hour] > data.volumes[MAX][hour]) data.volumes[MAX][hour] = volumes[hour];
-					if (ttime < data.ttimes[MIN][hour]) data.ttimes[MIN][hour] = ttime;
-					if (ttime > data.ttimes[MAX][hour]) data.ttimes[MAX][hour] = ttime;
+					if (volumes[hour] < dataVolumes[MIN][v]) dataVolumes[MIN][v] = volumes[hour];
+					if (volumes[hour] > dataVolumes[MAX][v]) dataVolumes[MAX][v] = volumes[hour];
+					if (ttime < dataTTimes[MIN][t]) dataTTimes[MIN][t] = ttime;
+					if (ttime > dataTTimes[MAX][t]) dataTTimes[MAX][t] = ttime;
 				}
 				
 				// this is the regular summing up for each hour
-				data.volumes[SUM][hour] += volumes[hour];
-				data.ttimes[SUM][hour] += volumes[hour] * ttime;
+				dataVolumes[SUM][v] += volumes[hour];
+				dataTTimes[SUM][t] += volumes[hour] * ttime;
 			}
 			// dataVolumes[.][nofHours] are daily (0-24) values
+			int d = volumesOffset + this.nofHours;
 			if (this.count == 1) {
-				data.volumes[MIN][this.nofHours] = sumVolumes;
-				data.volumes[SUM][this.nofHours] = sumVolumes;
-				data.volumes[MAX][this.nofHours] = sumVolumes;
+				dataVolumes[MIN][d] = sumVolumes;
+				dataVolumes[SUM][d] = sumVolumes;
+				dataVolumes[MAX][d] = sumVolumes;
 			} else {
-				if (sumVolumes < data.volumes[MIN][this.nofHours]) data.volumes[MIN][this.nofHours] = sumVolumes;
-				data.volumes[SUM][this.nofHours] += sumVolumes;
-				if (sumVolumes > data.volumes[MAX][this.nofHours]) data.volumes[MAX][this.nofHours] = sumVolumes;
+				if (sumVolumes < dataVolumes[MIN][d]) dataVolumes[MIN][d] = sumVolumes;
+				dataVolumes[SUM][d] += sumVolumes;
+				if (sumVolumes > dataVolumes[MAX][d]) dataVolumes[MAX][d] = sumVolumes;
 			}
 		}
 	}
 
 	public void reset() {
-		this.linkData.clear();
 		this.count = 0;
 		log.info( " resetting `count' to zero.  This info is here since we want to check when this" +
 				" is happening during normal simulation runs.  kai, jan'11") ;
 
 		// initialize our data-table
-		for (Link link : this.network.getLinks().values()) {
-			LinkData data = new LinkData(new double[NOF_STATS][this.nofHours + 1], new double[NOF_STATS][this.nofHours]);
-			this.linkData.put(link.getId(), data);
+		this.networkArrays = NetworkUtils.getNetworkArrays(this.network);
+		int nofLinks = this.networkArrays.getLinkCount();
+		if (this.volumes == null || this.volumes[0].length != nofLinks * (this.nofHours + 1)) {
+			this.volumes = new double[NOF_STATS][nofLinks * (this.nofHours + 1)];
+			this.ttimes = new double[NOF_STATS][nofLinks * this.nofHours];
+		} else {
+			for (int stat = 0; stat < NOF_STATS; stat++) {
+				Arrays.fill(this.volumes[stat], 0.0);
+				Arrays.fill(this.ttimes[stat], 0.0);
+			}
+		}
+		Integer[] sorted = new Integer[nofLinks];
+		for (int i = 0; i < nofLinks; i++) {
+			sorted[i] = i;
+		}
+		Arrays.sort(sorted, (a, b) -> this.networkArrays.getLink(a).getId().compareTo(this.networkArrays.getLink(b).getId()));
+		this.sortedLinkIndices = new int[nofLinks];
+		for (int i = 0; i < nofLinks; i++) {
+			this.sortedLinkIndices[i] = sorted[i];
 		}
-
 	}
 
 	public void writeFile(final String filename) {
@@ -182,10 +203,11 @@ public class CalcLinkStats {
 			out.write("\n");
 
 			// write data
-			for (Map.Entry<Id<Link>, LinkData> entry : this.linkData.entrySet()) {
-				Id<Link> linkId = entry.getKey();
-				LinkData data = entry.getValue();
-				Link link = this.network.getLinks().get(linkId);
+			for (int linkIndex : this.sortedLinkIndices) {
+				Link link = this.networkArrays.getLink(linkIndex);
+				Id<Link> linkId = link.getId();
+				int v = linkIndex * (this.nofHours + 1);
+				int t = linkIndex * this.nofHours;
 
 				out.write(linkId.toString());
 				out.write("\t"); // origId, no longer supported
@@ -198,41 +220,41 @@ public class CalcLinkStats {
 				// HRS0-1, HRS1-2, ... HRS23-24
 //				int[] sum = {0, 0, 0};
 				for (int i = 0; i < this.nofHours; i++) {
-					out.write("\t" + Double.toString(data.volumes[MIN][i]));
-//					sum[MIN] = sum[MIN] + data.volumes[MIN][i];
-					out.write("\t" + Double.toString((data.volumes[SUM][i]) / this.count));
-//					sum[SUM] = sum[SUM] + data.volumes[SUM][i];
-					out.write("\t" + Double.toString(data.volumes[MAX][i]));
-//					sum[MAX] = sum[MAX] + data.volumes[MAX][i];
+					out.write("\t" + Double.toString(this.volumes[MIN][v + i]));
+//					sum[MIN] = sum[MIN] + this.volumes[MIN][v + i];
+					out.write("\t" + Double.toString((this.volumes[SUM][v + i]) / this.count));
+//					sum[SUM] = sum[SUM] + this.volumes[SUM][v + i];
+					out.write("\t" + Double.toString(this.volumes[MAX][v + i]));
+//					sum[MAX] = sum[MAX] + this.volumes[MAX][v + i];
 				}
 
 				// HRS0-nofHours
-				out.write("\t" + Double.toString(data.volumes[MIN][this.nofHours]));
-				out.write("\t" + Double.toString((data.volumes[SUM][this.nofHours]) / this.count));
-				out.write("\t" + Double.toString(data.volumes[MAX][this.nofHours]));
+				out.write("\t" + Double.toString(this.volumes[MIN][v + this.nofHours]));
+				out.write("\t" + Double.toString((this.volumes[SUM][v + this.nofHours]) / this.count));
+				out.write("\t" + Double.toString(this.volumes[MAX][v + this.nofHours]));
 
 				// TRAVELTIME0-1, TRAVELTIME1-2, ... TRAVELTIME23-24
 				for (int i = 0; i < this.nofHours; i++) {
-					String ttimesMin = Double.toString(data.ttimes[MIN][i]);
+					String ttimesMin = Double.toString(this.ttimes[MIN][t + i]);
 					out.write("\t" + ttimesMin);
-					if (data.volumes[SUM][i] == 0) {
+					if (this.volumes[SUM][v + i] == 0) {
 						// nobody traveled along the link in this hour, so we cannot calculate an average
 						// use the value available or the minimum instead (min and max should be the same, =freespeed)
-						double ttsum = data.ttimes[SUM][i];
+						double ttsum = this.ttimes[SUM][t + i];
 						if (ttsum != 0.0) {
 							out.write("\t" + Double.toString(ttsum));
 						} else {
 							out.write("\t" + ttimesMin);
 						}
 					} else {
-						double ttsum = data.ttimes[SUM][i];
+						double ttsum = this.ttimes[SUM][t + i];
 						if (ttsum == 0) {
 							out.write("\t" + ttimesMin);
 						} else {
-							out.write("\t" + Double.toString(ttsum / data.volumes[SUM][i]));
+							out.write("\t" + Double.toString(ttsum / this.volumes[SUM][v + i]));
 						}
 					}
-					out.write("\t" + Double.toString(data.ttimes[MAX][i]));
+					out.write("\t" + Double.toString(this.ttimes[MAX][t + i]));
 				}
 				out.write("\n");
 			}
@@ -274,64 +296,68 @@ public class CalcLinkStats {
 				String[] parts = StringUtils.explode(line, '\t');
 				if (parts.length == 154) {
 					Id<Link> linkId = Id.create(parts[0], Link.class);
-					LinkData data = this.linkData.get(linkId);
-					if (data == null) {
+					int linkIndex = this.networkArrays.getLinkIndex(linkId);
+					if (linkIndex < 0) {
 						System.err.println("CalcLinkStats.readFile(); unknown link: " + linkId.toString());
 					} else {
+						int v = linkIndex * (this.nofHours + 1);
+						int t = linkIndex * this.nofHours;
 						int baseTTimes;
 						for (int i = 0; i < this.nofHours; i++) {
-							data.volumes[MIN][i] = Double.parseDouble(parts[7 + i*3]);
-							data.volumes[MIN][i] *= this.volScaleFactor;
-							data.volumes[SUM][i] = Double.parseDouble(parts[8 + i*3]);
-							data.volumes[SUM][i] *= this.volScaleFactor;
-							data.volumes[MAX][i] = Double.parseDouble(parts[9 + i*3]);
-							data.volumes[MAX][i] *= this.volScaleFactor;
+							this.volumes[MIN][v + i] = Double.parseDouble(parts[7 + i*3]);
+							this.volumes[MIN][v + i] *= this.volScaleFactor;
+							this.volumes[SUM][v + i] = Double.parseDouble(parts[8 + i*3]);
+							this.volumes[SUM][v + i] *= this.volScaleFactor;
+							this.volumes[MAX][v + i] = Double.parseDouble(parts[9 + i*3]);
+							this.volumes[MAX][v + i] *= this.volScaleFactor;
 							baseTTimes = 7 + (this.nofHours+1)*3;
-							data.ttimes[MIN][i] = Double.parseDouble(parts[baseTTimes + i*3]);
-							if (data.volumes[SUM][i] == 0) {
-								data.ttimes[SUM][i] = Double.parseDouble(parts[baseTTimes + i*3 + 1]);
+							this.ttimes[MIN][t + i] = Double.parseDouble(parts[baseTTimes + i*3]);
+							if (this.volumes[SUM][v + i] == 0) {
+								this.ttimes[SUM][t + i] = Double.parseDouble(parts[baseTTimes + i*3 + 1]);
 							} else {
-								data.ttimes[SUM][i] = Double.parseDouble(parts[baseTTimes + i*3 + 1]) * data.volumes[SUM][i];
+								this.ttimes[SUM][t + i] = Double.parseDouble(parts[baseTTimes + i*3 + 1]) * this.volumes[SUM][v + i];
 							}
-							data.ttimes[MAX][i] = Double.parseDouble(parts[baseTTimes + i*3 + 2]);
+							this.ttimes[MAX][t + i] = Double.parseDouble(parts[baseTTimes + i*3 + 2]);
 						}
-						data.volumes[MIN][this.nofHours] = Double.parseDouble(parts[7 + this.nofHours*3]);
-						data.volumes[MIN][this.nofHours] *= this.volScaleFactor;
-						data.volumes[SUM][this.nofHours] = Double.parseDouble(parts[8 + this.nofHours*3]);
-						data.volumes[SUM][this.nofHours] *= this.volScaleFactor;
-						data.volumes[MAX][this.nofHours] = Double.parseDouble(parts[9 + this.nofHours*3]);
-						data.volumes[MAX][this.nofHours] *= this.volScaleFactor;
+						this.volumes[MIN][v + this.nofHours] = Double.parseDouble(parts[7 + this.nofHours*3]);
+						this.volumes[MIN][v + this.nofHours] *= this.volScaleFactor;
+						this.volumes[SUM][v + this.nofHours] = Double.parseDouble(parts[8 + this.nofHours*3]);
+						this.volumes[SUM][v + this.nofHours] *= this.volScaleFactor;
+						this.volumes[MAX][v + this.nofHours] = Double.parseDouble(parts[9 + this.nofHours*3]);
+						this.volumes[MAX][v + this.nofHours] *= this.volScaleFactor;
 					}
 				}
 				else if (parts.length == 153) {
 					String linkId = parts[0];
-					LinkData data = this.linkData.get(Id.create(linkId, Link.class));
-					if (data == null) {
+					int linkIndex = this.networkArrays.getLinkIndex(Id.create(linkId, Link.class));
+					if (linkIndex < 0) {
 						System.err.println("CalcLinkStats.readFile(); unknown link: " + linkId);
 					} else {
+						int v = linkIndex * (this.nofHours + 1);
+						int t = linkIndex * this.nofHours;
 						int baseTTimes;
 						for (int i = 0; i < this.nofHours; i++) {
-							data.volumes[MIN][i] = Double.parseDouble(parts[6 + i*3]);
-							data.volumes[MIN][i] *= this.volScaleFactor;
-							data.volumes[SUM][i] = Integer.parseInt(parts[7 + i*3]);
-							data.volumes[SUM][i] *= this.volScaleFactor;
-							data.volumes[MAX][i] = Double.parseDouble(parts[8 + i*3]);
-							data.volumes[MAX][i] *= this.volScaleFactor;
+							this.volumes[MIN][v + i] = Double.parseDouble(parts[6 + i*3]);
+							this.volumes[MIN][v + i] *= this.volScaleFactor;
+							this.volumes[SUM][v + i] = Integer.parseInt(parts[7 + i*3]);
+							this.volumes[SUM][v + i] *= this.volScaleFactor;
+							this.volumes[MAX][v + i] = Double.parseDouble(parts[8 + i*3]);
+							this.volumes[MAX][v + i] *= this.volScaleFactor;
 							baseTTimes = 6 + (this.nofHours+1)*3;
-							data.ttimes[MIN][i] = Double.parseDouble(parts[baseTTimes + i*3]);
-							if (data.volumes[SUM][i] == 0) {
-								data.ttimes[SUM][i] = Double.parseDouble(parts[baseTTimes + i*3 + 1]);
+							this.ttimes[MIN][t + i] = Double.parseDouble(parts[baseTTimes + i*3]);
+							if (this.volumes[SUM][v + i] == 0) {
+								this.ttimes[SUM][t + i] = Double.parseDouble(parts[baseTTimes + i*3 + 1]);
 							} else {
-								data.ttimes[SUM][i] = Double.parseDouble(parts[baseTTimes + i*3 + 1]) * data.volumes[SUM][i];
+								this.ttimes[SUM][t + i] = Double.parseDouble(parts[baseTTimes + i*3 + 1]) * this.volumes[SUM][v + i];
 							}
-							data.ttimes[MAX][i] = Double.parseDouble(parts[baseTTimes + i*3 + 2]);
+							this.ttimes[MAX][t + i] = Double.parseDouble(parts[baseTTimes + i*3 + 2]);
 						}
-						data.volumes[MIN][this.nofHours] = Double.parseDouble(parts[6 + this.nofHours*3]);
-						data.volumes[MIN][this.nofHours] *= this.volScaleFactor;
-						data.volumes[SUM][this.nofHours] = Double.parseDouble(parts[7 + this.nofHours*3]);
-						data.volumes[SUM][this.nofHours] *= this.volScaleFactor;
-						data.volumes[MAX][this.nofHours] = Double.parseDouble(parts[8 + this.nofHours*3]);
-						data.volumes[MAX][this.nofHours] *= this.volScaleFactor;
+						this.volumes[MIN][v + this.nofHours] = Double.parseDouble(parts[6 + this.nofHours*3]);
+						this.volumes[MIN][v + this.nofHours] *= this.volScaleFactor;
+						this.volumes[SUM][v + this.nofHours] = Double.parseDouble(parts[7 + this.nofHours*3]);
+						this.volumes[SUM][v + this.nofHours] *= this.volScaleFactor;
+						this.volumes[MAX][v + this.nofHours] = Double.parseDouble(parts[8 + this.nofHours*3]);
+						this.volumes[MAX][v + this.nofHours] *= this.volScaleFactor;
 					}
 				}
 				else {
@@ -358,16 +384,17 @@ public class CalcLinkStats {
 	 * @return if no data is available, an array with length 0 is returned.
 	 */
 	public double[] getAvgLinkVolumes(final Id<Link> linkId) {
-		LinkData data = this.linkData.get(linkId);
-		if (data == null) {
+		int linkIndex = this.networkArrays.getLinkIndex(linkId);
+		if (linkIndex < 0) {
 			return new double[0];
 		}
 		if (this.count == 0) {
 			return new double[0];
 		}
+		int v = linkIndex * (this.nofHours + 1);
 		double[] volumes = new double[this.nofHours];
 		for (int i = 0; i < this.nofHours; i++) {
-			volumes[i] = (data.volumes[SUM][i]) / (this.count);
+			volumes[i] = (this.volumes[SUM][v + i]) / (this.count);
 		}
 		return volumes;
 	}
@@ -381,13 +408,15 @@ public class CalcLinkStats {
 	 */
 	@Deprecated
 	protected double[] getAvgTravelTimes(final Id<Link> linkId) {
-		LinkData data = this.linkData.get(linkId);
-		if (data == null) {
+		int linkIndex = this.networkArrays.getLinkIndex(linkId);
+		if (linkIndex < 0) {
 			return new double[0];
 		}
 		if (this.count == 0) {
 			return new double[0];
 		}
+		int v = linkIndex * (this.nofHours + 1);
+		int t = linkIndex * this.nofHours;
 		double[] ttimesMin = new double[this.nofHours];
 		double[] ttimesSum = new double[this.nofHours];
 		double[] volumes = new double[this.nofHours];
@@ -395,9 +424,9 @@ public class CalcLinkStats {
 		double[] avgTTimes = new double[this.nofHours];
 		
 		for (int i = 0; i < this.nofHours; i++) {
-			volumes[i] = (data.volumes[SUM][i]) / (this.count);
-			ttimesMin[i] = (data.ttimes[MIN][i]) / (this.count);
-			ttimesSum[i] = (data.ttimes[SUM][i]) / (this.count);
+			volumes[i] = (this.volumes[SUM][v + i]) / (this.count);
+			ttimesMin[i] = (this.ttimes[MIN][t + i]) / (this.count);
+			ttimesSum[i] = (this.ttimes[SUM][t + i]) / (this.count);
 
 			if (volumes[i] == 0.) {
 				avgTTimes[i] = ttimesMin[i];
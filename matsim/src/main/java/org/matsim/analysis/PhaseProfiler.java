@@ -0,0 +1,259 @@
+/* *********************************************************************** *
+ * project: org.matsim.*
+ * PhaseProfiler.java
+ *                                                                         *
+ * *********************************************************************** *
+ *                                                                         *
+ * copyright       : (C) 2019 by the members listed in the COPYING,        *
+ *                   LICENSE and WARRANTY file.                            *
+ * email           : info at matsim dot org                                *
+ *                                                                         *
+ * *********************************************************************** *
+ *                                                                         *
+ *   This program is free software; you can redistribute it and/or modify  *
+ *   it under the terms of the GNU General Public License as published by  *
+ *   the Free Software Foundation; either version 2 of the License, or     *
+ *   (at your option) any later version.                                   *
+ *   See also COPYING, LICENSE and WARRANTY file                           *
+ *                                                                         *
+ * *********************************************************************** */
+
+package org.matsim.analysis;
+
+import java.io.BufferedWriter;
+import java.io.IOException;
+import java.lang.management.ManagementFactory;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.atomic.LongAccumulator;
+import java.util.concurrent.atomic.LongAdder;
+
+import org.apache.log4j.Logger;
+import org.matsim.core.utils.io.IOUtils;
+
+/**
+ * Measures how much time (and, where the JVM supports it, how much memory allocation) the single parts of an
+ * iteration take: the phases of the controler, each {@link org.matsim.core.controler.listener.ControlerListener},
+ * each {@link org.matsim.core.events.handler.EventHandler} and each
+ * {@link org.matsim.core.replanning.modules.AbstractMultithreadedModule}.
+ * <p></p>
+ * The profiler is disabled by default and then costs only a volatile read per measured call.  When enabled (see
+ * {@link org.matsim.core.config.groups.ControlerConfigGroup#isPhaseProfiling()}), the controler writes a breakdown per
+ * iteration, and every measured phase, listener and module call is additionally emitted as a Java Flight Recorder
+ * event (<code>org.matsim.Phase</code>) if JFR is available; the event handlers, which are called far too often for
+ * one JFR event per call, are emitted as one <code>org.matsim.PhaseSummary</code> event per handler and iteration.
+ * <p></p>
+ * Allocations are measured per thread, i.e. allocations in other threads started by a measured call are not counted.
+ * Event handler calls are only timed.
+ *
+ * @see IterationStopWatch
+ */
+public final class PhaseProfiler {
+
+	private static final Logger log = Logger.getLogger(PhaseProfiler.class);
+
+	public static final String CATEGORY_PHASE = "phase";
+	public static final String CATEGORY_CONTROLER_LISTENER = "controlerListener";
+	public static final String CATEGORY_EVENT_HANDLER = "eventHandler";
+	public static final String CATEGORY_STRATEGY_MODULE = "strategyModule";
+
+	private static final PhaseProfiler INSTANCE = new PhaseProfiler();
+
+	private static final com.sun.management.ThreadMXBean ALLOCATION_BEAN = getAllocationBean();
+
+	private volatile boolean enabled = false;
+	private volatile int iteration = -1;
+	private final ConcurrentMap<String, Timer> timers = new ConcurrentHashMap<>();
+
+	private PhaseProfiler() {
+	}
+
+	public static PhaseProfiler getInstance() {
+		return INSTANCE;
+	}
+
+	public boolean isEnabled() {
+		return this.enabled;
+	}
+
+	public void setEnabled(final boolean enabled) {
+		this.enabled = enabled;
+	}
+
+	/**
+	 * Starts a new iteration: all measurements collected so far are discarded.
+	 */
+	public void beginIteration(final int iteration) {
+		this.iteration = iteration;
+		for (Timer timer : this.timers.values()) {
+			timer.reset();
+		}
+	}
+
+	/**
+	 * @return the timer for the given category and name; callers in hot code paths should keep a reference to it.
+	 */
+	public Timer getTimer(final String category, final String name) {
+		return this.timers.computeIfAbsent(category + '\t' + name, k -> new Timer(category, name));
+	}
+
+	/**
+	 * @return a started measurement, or <code>null</code> if the profiler is disabled
+	 */
+	public static Measurement start(final String category, final String name) {
+		if (!INSTANCE.enabled) {
+			return null;
+		}
+		return new Measurement(INSTANCE.getTimer(category, name), INSTANCE.iteration);
+	}
+
+	/**
+	 * Stops the measurement; does nothing if <code>measurement</code> is <code>null</code>.
+	 */
+	public static void stop(final Measurement measurement) {
+		if (measurement != null) {
+			measurement.stop();
+		}
+	}
+
+	/**
+	 * Ends the current iteration: emits the summary JFR events and, if <code>filename</code> is not <code>null</code>,
+	 * writes the breakdown of the iteration as comma-separated file, sorted by the total time.
+	 */
+	public void endIteration(final String filename) {
+		List<Timer> measured = new ArrayList<>();
+		for (Timer timer : this.timers.values()) {
+			if (timer.count.sum() > 0) {
+				measured.add(timer);
+			}
+		}
+		measured.sort(Comparator.comparingLong((Timer timer) -> timer.nanos.sum()).reversed());
+
+		for (Timer timer : measured) {
+			PhaseProfilerJfrEvents.commitSummary(timer.category, timer.name, this.iteration, timer.count.sum(), timer.nanos.sum(),
+					timer.getAllocatedBytes());
+		}
+		if (filename == null) {
+			return;
+		}
+		try (BufferedWriter writer = IOUtils.getBufferedWriter(filename)) {
+			writer.write("iteration,category,name,count,totalMillis,maxMillis,allocatedBytes");
+			writer.newLine();
+			for (Timer timer : measured) {
+				long allocatedBytes = timer.getAllocatedBytes();
+				writer.write(this.iteration + "," + timer.category + "," + timer.name + "," + timer.count.sum() + ","
+						+ timer.nanos.sum() / 1e6 + "," + timer.maxNanos.get() / 1e6 + "," + (allocatedBytes < 0 ? "" : Long.toString(allocatedBytes)));
+				writer.newLine();
+			}
+		} catch (IOException e) {
+			log.warn("could not write phase profile to " + filename, e);
+		}
+	}
+
+	private static long getCurrentThreadAllocatedBytes() {
+		return ALLOCATION_BEAN == null ? -1 : ALLOCATION_BEAN.getThreadAllocatedBytes(Thread.currentThread().getId());
+	}
+
+	private static com.sun.management.ThreadMXBean getAllocationBean() {
+		try {
+			java.lang.management.ThreadMXBean bean = ManagementFactory.getThreadMXBean();
+			if (bean instanceof com.sun.management.ThreadMXBean) {
+				com.sun.management.ThreadMXBean allocationBean = (com.sun.management.ThreadMXBean) bean;
+				if (allocationBean.isThreadAllocatedMemorySupported()) {
+					allocationBean.setThreadAllocatedMemoryEnabled(true);
+					return allocationBean;
+				}
+			}
+		} catch (UnsupportedOperationException | LinkageError e) {
+			// fall through, allocations are not measured
+		}
+		return null;
+	}
+
+	/**
+	 * Accumulates the measurements of one category and name within an iteration.  Thread-safe.
+	 */
+	public static final class Timer {
+
+		private final String category;
+		private final String name;
+		private final LongAdder count = new LongAdder();
+		private final LongAdder nanos = new LongAdder();
+		private final LongAccumulator maxNanos = new LongAccumulator(Long::max, 0);
+		private final LongAdder allocatedBytes = new LongAdder();
+		private volatile boolean measuresAllocations = false;
+
+		private Timer(final String category, final String name) {
+			this.category = category;
+			this.name = name;
+		}
+
+		public void add(final long nanos) {
+			this.count.increment();
+			this.nanos.add(nanos);
+			this.maxNanos.accumulate(nanos);
+		}
+
+		void add(final long nanos, final long allocatedBytes) {
+			add(nanos);
+			if (allocatedBytes >= 0) {
+				this.measuresAllocations = true;
+				this.allocatedBytes.add(allocatedBytes);
+			}
+		}
+
+		long getAllocatedBytes() {
+			return this.measuresAllocations ? this.allocatedBytes.sum() : -1;
+		}
+
+		public long getCount() {
+			return this.count.sum();
+		}
+
+		public long getNanos() {
+			return this.nanos.sum();
+		}
+
+		void reset() {
+			this.count.reset();
+			this.nanos.reset();
+			this.maxNanos.reset();
+			this.allocatedBytes.reset();
+		}
+
+	}
+
+	/**
+	 * One running measurement, see {@link PhaseProfiler#start(String, String)}.
+	 */
+	public static final class Measurement {
+
+		private final Timer timer;
+		private final int iteration;
+		private final long startAllocatedBytes;
+		private final Object jfrEvent;
+		private final long startNanos;
+
+		private Measurement(final Timer timer, final int iteration) {
+			this.timer = timer;
+			this.iteration = iteration;
+			this.jfrEvent = PhaseProfilerJfrEvents.begin();
+			this.startAllocatedBytes = getCurrentThreadAllocatedBytes();
+			this.startNanos = System.nanoTime();
+		}
+
+		private void stop() {
+			long nanos = System.nanoTime() - this.startNanos;
+			long allocatedBytes = this.startAllocatedBytes < 0 ? -1 : getCurrentThreadAllocatedBytes() - this.startAllocatedBytes;
+			this.timer.add(nanos, allocatedBytes);
+			if (this.jfrEvent != null) {
+				PhaseProfilerJfrEvents.commit(this.jfrEvent, this.timer.category, this.timer.name, this.iteration, allocatedBytes);
+			}
+		}
+
+	}
+
+}
@@ -0,0 +1,203 @@
+/* *********************************************************************** *
+ * project: org.matsim.*
+ * PhaseProfilerJfrEvents.java
+ *                                                                         *
+ * *********************************************************************** *
+ *                                                                         *
+ * copyright       : (C) 2019 by the members listed in the COPYING,        *
+ *                   LICENSE and WARRANTY file.                            *
+ * email           : info at matsim dot org                                *
+ *                                                                         *
+ * *********************************************************************** *
+ *                                                                         *
+ *   This program is free software; you can redistribute it and/or modify  *
+ *   it under the terms of the GNU General Public License as published by  *
+ *   the Free Software Foundation; either version 2 of the License, or     *
+ *   (at your option) any later version.                                   *
+ *   See also COPYING, LICENSE and WARRANTY file                           *
+ *                                                                         *
+ * *********************************************************************** */
+
+package org.matsim.analysis;
+
+import java.lang.reflect.Constructor;
+import java.lang.reflect.InvocationTargetException;
+import java.lang.reflect.Method;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+import org.apache.log4j.Logger;
+
+/**
+ * The Java Flight Recorder events of the {@link PhaseProfiler}: <code>org.matsim.Phase</code> for every measured call
+ * of a controler phase, controler listener or strategy module, and <code>org.matsim.PhaseSummary</code> for all calls
+ * of one measured part (e.g. an event handler) within an iteration.
+ * <p></p>
+ * The events are defined at runtime with <code>jdk.jfr.EventFactory</code>, which is only accessed by reflection, so
+ * that the code compiles for Java 8 and the profiler still works on JVMs without JFR; then no events are emitted.
+ */
+final class PhaseProfilerJfrEvents {
+
+	private static final Logger log = Logger.getLogger(PhaseProfilerJfrEvents.class);
+
+	// the indices of the fields, in the order in which they are defined
+	private static final int CATEGORY = 0;
+	private static final int NAME = 1;
+	private static final int ITERATION = 2;
+	private static final int ALLOCATED_BYTES = 3;
+	private static final int COUNT = 4;
+	private static final int TOTAL_TIME = 5;
+
+	private static final PhaseProfilerJfrEvents INSTANCE = create();
+
+	private final Object phaseFactory;
+	private final Object summaryFactory;
+	private final Method newEvent;
+	private final Method isEnabled;
+	private final Method begin;
+	private final Method end;
+	private final Method shouldCommit;
+	private final Method set;
+	private final Method commit;
+
+	private PhaseProfilerJfrEvents(final Object phaseFactory, final Object summaryFactory, final Class<?> eventFactoryClass,
+			final Class<?> eventClass) throws NoSuchMethodException {
+		this.phaseFactory = phaseFactory;
+		this.summaryFactory = summaryFactory;
+		this.newEvent = eventFactoryClass.getMethod("newEvent");
+		this.isEnabled = eventClass.getMethod("isEnabled");
+		this.begin = eventClass.getMethod("begin");
+		this.end = eventClass.getMethod("end");
+		this.shouldCommit = eventClass.getMethod("shouldCommit");
+		this.set = eventClass.getMethod("set", int.class, Object.class);
+		this.commit = eventClass.getMethod("commit");
+	}
+
+	/**
+	 * @return a started phase event, or <code>null</code> if JFR is not available or the event is not recorded
+	 */
+	static Object begin() {
+		if (INSTANCE == null) {
+			return null;
+		}
+		try {
+			Object event = INSTANCE.newEvent.invoke(INSTANCE.phaseFactory);
+			if (!(Boolean) INSTANCE.isEnabled.invoke(event)) {
+				return null;
+			}
+			INSTANCE.begin.invoke(event);
+			return event;
+		} catch (IllegalAccessException | InvocationTargetException e) {
+			throw new RuntimeException(e);
+		}
+	}
+
+	static void commit(final Object event, final String category, final String name, final int iteration, final long allocatedBytes) {
+		try {
+			INSTANCE.end.invoke(event);
+			if ((Boolean) INSTANCE.shouldCommit.invoke(event)) {
+				INSTANCE.set.invoke(event, CATEGORY, category);
+				INSTANCE.set.invoke(event, NAME, name);
+				INSTANCE.set.invoke(event, ITERATION, iteration);
+				INSTANCE.set.invoke(event, ALLOCATED_BYTES, allocatedBytes);
+				INSTANCE.commit.invoke(event);
+			}
+		} catch (IllegalAccessException | InvocationTargetException e) {
+			throw new RuntimeException(e);
+		}
+	}
+
+	static void commitSummary(final String category, final String name, final int iteration, final long count, final long totalNanos,
+			final long allocatedBytes) {
+		if (INSTANCE == null) {
+			return;
+		}
+		try {
+			Object event = INSTANCE.newEvent.invoke(INSTANCE.summaryFactory);
+			if ((Boolean) INSTANCE.isEnabled.invoke(event)) {
+				INSTANCE.set.invoke(event, CATEGORY, category);
+				INSTANCE.set.invoke(event, NAME, name);
+				INSTANCE.set.invoke(event, ITERATION, iteration);
+				INSTANCE.set.invoke(event, ALLOCATED_BYTES, allocatedBytes);
+				INSTANCE.set.invoke(event, COUNT, count);
+				INSTANCE.set.invoke(event, TOTAL_TIME, totalNanos);
+				INSTANCE.commit.invoke(event);
+			}
+		} catch (IllegalAccessException | InvocationTargetException e) {
+			throw new RuntimeException(e);
+		}
+	}
+
+	private static PhaseProfilerJfrEvents create() {
+		try {
+			Class<?> eventFactoryClass = Class.forName("jdk.jfr.EventFactory");
+			Definitions definitions = new Definitions();
+
+			List<Object> phaseFields = definitions.commonFields();
+			Object phaseFactory = definitions.createFactory(eventFactoryClass, "org.matsim.Phase", "MATSim Phase",
+					"One call of a controler phase, controler listener or strategy module", phaseFields);
+
+			List<Object> summaryFields = definitions.commonFields();
+			summaryFields.add(definitions.field(long.class, "count", "Count", null, null));
+			summaryFields.add(definitions.field(long.class, "totalTime", "Total Time", "jdk.jfr.Timespan", "NANOSECONDS"));
+			Object summaryFactory = definitions.createFactory(eventFactoryClass, "org.matsim.PhaseSummary", "MATSim Phase Summary",
+					"All calls of one event handler (or other measured part) within one iteration", summaryFields);
+
+			return new PhaseProfilerJfrEvents(phaseFactory, summaryFactory, eventFactoryClass, Class.forName("jdk.jfr.Event"));
+		} catch (ReflectiveOperationException | LinkageError | RuntimeException e) {
+			log.info("Java Flight Recorder is not available, the phase profiler does not emit JFR events: " + e);
+			return null;
+		}
+	}
+
+	/**
+	 * Builds the annotations and fields of the event types.
+	 */
+	private static final class Definitions {
+
+		private final Constructor<?> annotationElement;
+		private final Constructor<?> valueDescriptor;
+
+		Definitions() throws ClassNotFoundException, NoSuchMethodException {
+			this.annotationElement = Class.forName("jdk.jfr.AnnotationElement").getConstructor(Class.class, Object.class);
+			this.valueDescriptor = Class.forName("jdk.jfr.ValueDescriptor").getConstructor(Class.class, String.class, List.class);
+		}
+
+		List<Object> commonFields() throws ReflectiveOperationException {
+			List<Object> fields = new ArrayList<>();
+			fields.add(field(String.class, "category", "Category", null, null));
+			fields.add(field(String.class, "name", "Name", null, null));
+			fields.add(field(int.class, "iteration", "Iteration", null, null));
+			fields.add(field(long.class, "allocatedBytes", "Allocated", "jdk.jfr.DataAmount", "BYTES"));
+			return fields;
+		}
+
+		Object field(final Class<?> type, final String name, final String label, final String contentType, final String contentValue)
+				throws ReflectiveOperationException {
+			List<Object> annotations = new ArrayList<>();
+			annotations.add(annotation("jdk.jfr.Label", label));
+			if (contentType != null) {
+				annotations.add(annotation(contentType, contentValue));
+			}
+			return this.valueDescriptor.newInstance(type, name, annotations);
+		}
+
+		Object createFactory(final Class<?> eventFactoryClass, final String name, final String label, final String description,
+				final List<Object> fields) throws ReflectiveOperationException {
+			List<Object> annotations = new ArrayList<>();
+			annotations.add(annotation("jdk.jfr.Name", name));
+			annotations.add(annotation("jdk.jfr.Label", label));
+			annotations.add(annotation("jdk.jfr.Category", new String[] { "MATSim" }));
+			annotations.add(annotation("jdk.jfr.Description", description));
+			return eventFactoryClass.getMethod("create", List.class, List.class).invoke(null, annotations,
+					Collections.unmodifiableList(fields));
+		}
+
+		private Object annotation(final String type, final Object value) throws ReflectiveOperationException {
+			return this.annotationElement.newInstance(Class.forName(type), value);
+		}
+
+	}
+
+}
@@ -158,6 +158,16 @@ public class TravelDistanceStats {
 		this.statsCalculators = null;
 		this.threads = null;
 
+		addIteration(iteration, sumAvgPlanLegTravelDistanceExecuted, nofLegTravelDistanceExecuted);
+	}
+
+	/**
+	 * Adds an iteration for which the average leg distances of the executed plans have already been calculated.
+	 *
+	 * @param sumAvgPlanLegTravelDistanceExecuted the sum of the average leg distance per plan over all executed plans
+	 * @param nofLegTravelDistanceExecuted the number of executed plans
+	 */
+	void addIteration(int iteration, double sumAvgPlanLegTravelDistanceExecuted, int nofLegTravelDistanceExecuted) {
 		log.info("-- average of the average leg distance per plan (executed plans only): " + (sumAvgPlanLegTravelDistanceExecuted / nofLegTravelDistanceExecuted));
 		log.info("(TravelDistanceStats takes an average over all legs where the simulation reports travelled distances. These are car legs, pt legs,");
 		log.info("(and teleported legs whose route contains a distance.)");
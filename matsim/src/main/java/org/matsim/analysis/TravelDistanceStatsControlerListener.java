@@ -1,15 +1,28 @@
 package org.matsim.analysis;
 
 
+import org.matsim.api.core.v01.Id;
+import org.matsim.api.core.v01.population.Person;
+import org.matsim.api.core.v01.population.Population;
+import org.matsim.core.config.groups.PlanCalcScoreConfigGroup;
 import org.matsim.core.controler.events.IterationEndsEvent;
+import org.matsim.core.controler.events.IterationStartsEvent;
 import org.matsim.core.controler.events.ShutdownEvent;
+import org.matsim.core.controler.events.StartupEvent;
 import org.matsim.core.controler.listener.IterationEndsListener;
+import org.matsim.core.controler.listener.IterationStartsListener;
 import org.matsim.core.controler.listener.ShutdownListener;
+import org.matsim.core.controler.listener.StartupListener;
+import org.matsim.core.scoring.EventsToLegs;
 import org.matsim.core.scoring.ExperiencedPlansService;
+import org.matsim.core.scoring.PersonExperiencedLeg;
 
 import javax.inject.Inject;
+import java.util.HashMap;
+import java.util.Map;
 
-class TravelDistanceStatsControlerListener implements IterationEndsListener, ShutdownListener {
+class TravelDistanceStatsControlerListener implements StartupListener, IterationStartsListener, IterationEndsListener, ShutdownListener,
+		EventsToLegs.LegHandler {
 
 	@Inject
 	private ExperiencedPlansService experiencedPlansService;
@@ -17,9 +30,56 @@ class TravelDistanceStatsControlerListener implements IterationEndsListener, Shu
 	@Inject
 	private TravelDistanceStats travelDistanceStats;
 
+	@Inject
+	private PlanCalcScoreConfigGroup planCalcScoreConfigGroup;
+
+	@Inject
+	private Population population;
+
+	@Inject
+	private EventsToLegs eventsToLegs;
+
+	// with streaming scoring, the experienced plans are not recorded, so only the distance and the number of legs are summed up per person
+	private boolean streaming = false;
+	private final Map<Id<Person>, double[]> legDistances = new HashMap<>();
+
+	@Override
+	public void notifyStartup(StartupEvent event) {
+		this.streaming = planCalcScoreConfigGroup.isStreamingScoring();
+		if (this.streaming) {
+			eventsToLegs.addLegHandler(this);
+		}
+	}
+
+	@Override
+	public void notifyIterationStarts(IterationStartsEvent event) {
+		legDistances.clear();
+	}
+
+	@Override
+	synchronized public void handleLeg(PersonExperiencedLeg leg) {
+		double distance = leg.getLeg().getRoute().getDistance();
+		if (!Double.isNaN(distance)) {
+			double[] sumAndCount = legDistances.computeIfAbsent(leg.getAgentId(), k -> new double[2]);
+			sumAndCount[0] += distance;
+			sumAndCount[1]++;
+		}
+	}
+
 	@Override
 	public void notifyIterationEnds(IterationEndsEvent event) {
-		travelDistanceStats.addIteration(event.getIteration(), experiencedPlansService.getExperiencedPlans());
+		if (!streaming) {
+			travelDistanceStats.addIteration(event.getIteration(), experiencedPlansService.getExperiencedPlans());
+			return;
+		}
+		double sumAvgPlanLegTravelDistance = 0.0;
+		synchronized (this) {
+			for (double[] sumAndCount : legDistances.values()) {
+				sumAvgPlanLegTravelDistance += sumAndCount[0] / sumAndCount[1];
+			}
+		}
+		// persons without legs count with an average of 0, as with the experienced plans
+		travelDistanceStats.addIteration(event.getIteration(), sumAvgPlanLegTravelDistance, population.getPersons().size());
 	}
 
 	@Override
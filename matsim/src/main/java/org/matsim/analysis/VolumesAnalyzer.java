@@ -20,10 +20,15 @@
 
 package org.matsim.analysis;
 
+import java.util.ArrayList;
 import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
 import java.util.Map;
 import java.util.Set;
 import java.util.TreeSet;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicIntegerArray;
 
 import org.apache.log4j.Logger;
 import org.matsim.api.core.v01.Id;
@@ -33,6 +38,8 @@ import org.matsim.api.core.v01.events.handler.LinkLeaveEventHandler;
 import org.matsim.api.core.v01.events.handler.VehicleEntersTrafficEventHandler;
 import org.matsim.api.core.v01.network.Link;
 import org.matsim.api.core.v01.network.Network;
+import org.matsim.core.network.NetworkArrays;
+import org.matsim.core.network.NetworkUtils;
 import org.matsim.vehicles.Vehicle;
 import org.matsim.core.api.experimental.events.EventsManager;
 
@@ -40,6 +47,11 @@ import javax.inject.Inject;
 
 /**
  * Counts the number of vehicles leaving a link, aggregated into time bins of a specified size.
+ * <p></p>
+ * The volumes of all links of the network are stored in one flat array (link index &times; time bin, using the link
+ * indices of {@link NetworkArrays}), plus one such array per observed mode.  The counters are incremented atomically,
+ * so the analyzer may be fed from several threads at the same time.  Links that are not part of the network are
+ * counted separately.
  *
  * @author mrieser
  */
@@ -49,12 +61,18 @@ public class VolumesAnalyzer implements LinkLeaveEventHandler, VehicleEntersTraf
 	private final int timeBinSize;
 	private final int maxTime;
 	private final int maxSlotIndex;
-	private final Map<Id<Link>, int[]> links;
-	
+	private final int numberOfBins;
+	private final NetworkArrays networkArrays;
+	private final AtomicIntegerArray volumes;
+	private final Map<Id<Link>, int[]> otherLinks = new HashMap<>();
+
 	// for multi-modal support
 	private final boolean observeModes;
-	private final Map<Id<Vehicle>, String> enRouteModes;
-	private final Map<Id<Link>, Map<String, int[]>> linksPerMode;
+	private final Map<Id<Vehicle>, Integer> enRouteModes;
+	private final Map<String, Integer> modeIndices;
+	private final List<String> modes = new ArrayList<>();
+	private volatile AtomicIntegerArray[] volumesPerMode = new AtomicIntegerArray[0];
+	private final Map<Id<Link>, Map<String, int[]>> otherLinksPerMode = new HashMap<>();
 
 	@Inject
 	VolumesAnalyzer(Network network, EventsManager eventsManager) {
@@ -70,49 +88,73 @@ public class VolumesAnalyzer implements LinkLeaveEventHandler, VehicleEntersTraf
 		this.timeBinSize = timeBinSize;
 		this.maxTime = maxTime;
 		this.maxSlotIndex = (this.maxTime/this.timeBinSize) + 1;
-		this.links = new HashMap<>((int) (network.getLinks().size() * 1.1), 0.95f);
+		this.numberOfBins = this.maxSlotIndex + 1;
+		this.networkArrays = NetworkUtils.getNetworkArrays(network);
+		this.volumes = new AtomicIntegerArray(this.networkArrays.getLinkCount() * this.numberOfBins);
 		
 		this.observeModes = observeModes;
 		if (this.observeModes) {
-			this.enRouteModes = new HashMap<>();
-			this.linksPerMode = new HashMap<>((int) (network.getLinks().size() * 1.1), 0.95f);
+			this.enRouteModes = new ConcurrentHashMap<>();
+			this.modeIndices = new ConcurrentHashMap<>();
 		} else {
 			this.enRouteModes = null;
-			this.linksPerMode = null;
+			this.modeIndices = null;
 		}
 	}
 	
 	@Override
 	public void handleEvent(VehicleEntersTrafficEvent event) {
 		if (observeModes) {
-			enRouteModes.put(event.getVehicleId(), event.getNetworkMode());
+			enRouteModes.put(event.getVehicleId(), getModeIndex(event.getNetworkMode()));
 		}
 	}
 	
 	@Override
 	public void handleEvent(final LinkLeaveEvent event) {
-		int[] volumes = this.links.get(event.getLinkId());
-		if (volumes == null) {
-			volumes = new int[this.maxSlotIndex + 1]; // initialized to 0 by default, according to JVM specs
-			this.links.put(event.getLinkId(), volumes);
-		}
 		int timeslot = getTimeSlotIndex(event.getTime());
-		volumes[timeslot]++;
-		
-		if (observeModes) {
-			Map<String, int[]> modeVolumes = this.linksPerMode.get(event.getLinkId());
-			if (modeVolumes == null) {
-				modeVolumes = new HashMap<>();
-				this.linksPerMode.put(event.getLinkId(), modeVolumes);
-			}
-			String mode = enRouteModes.get(event.getVehicleId());
-			volumes = modeVolumes.get(mode);
-			if (volumes == null) {
-				volumes = new int[this.maxSlotIndex + 1]; // initialized to 0 by default, according to JVM specs
-				modeVolumes.put(mode, volumes);
+		Integer modeIndex = observeModes ? enRouteModes.get(event.getVehicleId()) : null;
+		int linkIndex = this.networkArrays.getLinkIndex(event.getLinkId());
+		if (linkIndex < 0) {
+			handleLinkLeaveOnOtherLink(event.getLinkId(), timeslot, modeIndex);
+			return;
+		}
+		int index = linkIndex * this.numberOfBins + timeslot;
+		this.volumes.incrementAndGet(index);
+		if (modeIndex != null) {
+			getVolumesOfMode(modeIndex).incrementAndGet(index);
+		}
+	}
+
+	private synchronized void handleLinkLeaveOnOtherLink(final Id<Link> linkId, final int timeslot, final Integer modeIndex) {
+		this.otherLinks.computeIfAbsent(linkId, k -> new int[this.numberOfBins])[timeslot]++;
+		if (modeIndex != null) {
+			String mode = this.modes.get(modeIndex);
+			this.otherLinksPerMode.computeIfAbsent(linkId, k -> new HashMap<>())
+					.computeIfAbsent(mode, k -> new int[this.numberOfBins])[timeslot]++;
+		}
+	}
+
+	private int getModeIndex(final String mode) {
+		Integer index = this.modeIndices.get(mode);
+		if (index == null) {
+			synchronized (this) {
+				index = this.modeIndices.get(mode);
+				if (index == null) {
+					index = this.modes.size();
+					this.modes.add(mode);
+					AtomicIntegerArray[] perMode = new AtomicIntegerArray[index + 1];
+					System.arraycopy(this.volumesPerMode, 0, perMode, 0, index);
+					perMode[index] = new AtomicIntegerArray(this.volumes.length());
+					this.volumesPerMode = perMode;
+					this.modeIndices.put(mode, index);
+				}
 			}
-			volumes[timeslot]++;
 		}
+		return index;
+	}
+
+	private AtomicIntegerArray getVolumesOfMode(final int modeIndex) {
+		return this.volumesPerMode[modeIndex];
 	}
 
 	private int getTimeSlotIndex(final double time) {
@@ -128,7 +170,14 @@ public class VolumesAnalyzer implements LinkLeaveEventHandler, VehicleEntersTraf
 	 * 		starting with time bin 0 from 0 seconds to (timeBinSize-1)seconds.
 	 */
 	public int[] getVolumesForLink(final Id<Link> linkId) {
-		return this.links.get(linkId);
+		int linkIndex = this.networkArrays.getLinkIndex(linkId);
+		if (linkIndex < 0) {
+			synchronized (this) {
+				int[] volumes = this.otherLinks.get(linkId);
+				return volumes == null ? null : volumes.clone();
+			}
+		}
+		return copyVolumes(this.volumes, linkIndex);
 	}
 	
 	/**
@@ -139,19 +188,45 @@ public class VolumesAnalyzer implements LinkLeaveEventHandler, VehicleEntersTraf
 	 */
 	public int[] getVolumesForLink(final Id<Link> linkId, String mode) {
 		if (observeModes) {
-			Map<String, int[]> modeVolumes = this.linksPerMode.get(linkId);
-			if (modeVolumes != null) return modeVolumes.get(mode);
+			int linkIndex = this.networkArrays.getLinkIndex(linkId);
+			if (linkIndex < 0) {
+				synchronized (this) {
+					Map<String, int[]> modeVolumes = this.otherLinksPerMode.get(linkId);
+					int[] volumes = modeVolumes == null ? null : modeVolumes.get(mode);
+					return volumes == null ? null : volumes.clone();
+				}
+			}
+			Integer modeIndex = this.modeIndices.get(mode);
+			if (modeIndex != null) return copyVolumes(getVolumesOfMode(modeIndex), linkIndex);
 		} 
 		return null;
 	}
 
+	/**
+	 * @return the volumes of the link, or <code>null</code> if no vehicle left the link
+	 */
+	private int[] copyVolumes(final AtomicIntegerArray allVolumes, final int linkIndex) {
+		int offset = linkIndex * this.numberOfBins;
+		int[] volumes = null;
+		for (int i = 0; i < this.numberOfBins; i++) {
+			int volume = allVolumes.get(offset + i);
+			if (volume != 0) {
+				if (volumes == null) {
+					volumes = new int[this.numberOfBins];
+				}
+				volumes[i] = volume;
+			}
+		}
+		return volumes;
+	}
+
 	/**
 	 *
 	 * @return The size of the arrays returned by calls to the {@link #getVolumesForLink(Id)} and the {@link #getVolumesForLink(Id, String)}
 	 * methods.
 	 */
 	public int getVolumesArraySize() {
-		return this.maxSlotIndex + 1;
+		return this.numberOfBins;
 	}
 	
 	/*
@@ -178,19 +253,66 @@ public class VolumesAnalyzer implements LinkLeaveEventHandler, VehicleEntersTraf
 		if (3600.0 % this.timeBinSize != 0) log.error("Volumes per hour and per link probably not correct!");
 		
 		double[] volumes = new double[24];
-		
-		int[] volumesForLink = this.getVolumesForLink(linkId);
-		if (volumesForLink == null) return volumes;
+		addVolumesPerHourForLink(linkId, volumes, 0);
+		return volumes;
+	}
 
+	/**
+	 * Adds the hourly volumes of the link to <code>volumes[offset]</code> .. <code>volumes[offset + 23]</code>, without
+	 * creating intermediate arrays.
+	 */
+	public void addVolumesPerHourForLink(final Id<Link> linkId, final double[] volumes, final int offset) {
+		int linkIndex = this.networkArrays.getLinkIndex(linkId);
+		if (linkIndex < 0) {
+			int[] volumesForLink = getVolumesForLink(linkId);
+			if (volumesForLink != null) {
+				addVolumesPerHour(volumesForLink, 0, volumes, offset);
+			}
+			return;
+		}
+		addVolumesPerHour(this.volumes, linkIndex * this.numberOfBins, volumes, offset);
+	}
+
+	/**
+	 * Same as {@link #addVolumesPerHourForLink(Id, double[], int)}, but only for the given mode.  Does nothing if the
+	 * modes are not observed.
+	 */
+	public void addVolumesPerHourForLink(final Id<Link> linkId, final String mode, final double[] volumes, final int offset) {
+		if (!observeModes) {
+			return;
+		}
+		int linkIndex = this.networkArrays.getLinkIndex(linkId);
+		Integer modeIndex = this.modeIndices.get(mode);
+		if (linkIndex < 0 || modeIndex == null) {
+			int[] volumesForLink = this.getVolumesForLink(linkId, mode);
+			if (volumesForLink != null) {
+				addVolumesPerHour(volumesForLink, 0, volumes, offset);
+			}
+		} else {
+			addVolumesPerHour(getVolumesOfMode(modeIndex), linkIndex * this.numberOfBins, volumes, offset);
+		}
+	}
+
+	private void addVolumesPerHour(final int[] volumesForLink, final int offset, final double[] volumes, final int volumesOffset) {
 		int slotsPerHour = (int)(3600.0 / this.timeBinSize);
 		for (int hour = 0; hour < 24; hour++) {
 			double time = hour * 3600.0;
 			for (int i = 0; i < slotsPerHour; i++) {
-				volumes[hour] += volumesForLink[this.getTimeSlotIndex(time)];
+				volumes[volumesOffset + hour] += volumesForLink[offset + this.getTimeSlotIndex(time)];
+				time += this.timeBinSize;
+			}
+		}
+	}
+
+	private void addVolumesPerHour(final AtomicIntegerArray volumesForLink, final int offset, final double[] volumes, final int volumesOffset) {
+		int slotsPerHour = (int)(3600.0 / this.timeBinSize);
+		for (int hour = 0; hour < 24; hour++) {
+			double time = hour * 3600.0;
+			for (int i = 0; i < slotsPerHour; i++) {
+				volumes[volumesOffset + hour] += volumesForLink.get(offset + this.getTimeSlotIndex(time));
 				time += this.timeBinSize;
 			}
 		}
-		return volumes;
 	}
 
 	public double[] getVolumesPerHourForLink(final Id<Link> linkId, String mode) {
@@ -198,21 +320,7 @@ public class VolumesAnalyzer implements LinkLeaveEventHandler, VehicleEntersTraf
 			if (3600.0 % this.timeBinSize != 0) log.error("Volumes per hour and per link probably not correct!");
 			
 			double [] volumes = new double[24];
-			for (int hour = 0; hour < 24; hour++) {
-				volumes[hour] = 0.0;
-			}
-			
-			int[] volumesForLink = this.getVolumesForLink(linkId, mode);
-			if (volumesForLink == null) return volumes;
-	
-			int slotsPerHour = (int)(3600.0 / this.timeBinSize);
-			for (int hour = 0; hour < 24; hour++) {
-				double time = hour * 3600.0;
-				for (int i = 0; i < slotsPerHour; i++) {
-					volumes[hour] += volumesForLink[this.getTimeSlotIndex(time)];
-					time += this.timeBinSize;
-				}
-			}
+			addVolumesPerHourForLink(linkId, mode, volumes, 0);
 			return volumes;
 		}
 		return null;
@@ -223,27 +331,66 @@ public class VolumesAnalyzer implements LinkLeaveEventHandler, VehicleEntersTraf
 	 */
 	public Set<String> getModes() {
 		Set<String> modes = new TreeSet<>();
-		
-		for (Map<String, int[]> map : this.linksPerMode.values()) {
-			modes.addAll(map.keySet());
+		synchronized (this) {
+			for (int m = 0; m < this.modes.size(); m++) {
+				if (hasVolumes(this.volumesPerMode[m])) {
+					modes.add(this.modes.get(m));
+				}
+			}
+			for (Map<String, int[]> map : this.otherLinksPerMode.values()) {
+				modes.addAll(map.keySet());
+			}
 		}
-		
 		return modes;
 	}
+
+	private static boolean hasVolumes(final AtomicIntegerArray volumes) {
+		for (int i = 0; i < volumes.length(); i++) {
+			if (volumes.get(i) != 0) {
+				return true;
+			}
+		}
+		return false;
+	}
 	
 	/**
 	 * @return Set of Strings containing all link ids for which counting-values are available.
 	 */
 	public Set<Id<Link>> getLinkIds() {
-		return this.links.keySet();
+		Set<Id<Link>> linkIds = new HashSet<>();
+		for (int l = 0; l < this.networkArrays.getLinkCount(); l++) {
+			int offset = l * this.numberOfBins;
+			for (int i = 0; i < this.numberOfBins; i++) {
+				if (this.volumes.get(offset + i) != 0) {
+					linkIds.add(this.networkArrays.getLink(l).getId());
+					break;
+				}
+			}
+		}
+		synchronized (this) {
+			linkIds.addAll(this.otherLinks.keySet());
+		}
+		return linkIds;
 	}
 
 	@Override
 	public void reset(final int iteration) {
-		this.links.clear();
-		if (observeModes) {
-			this.linksPerMode.clear();
-			this.enRouteModes.clear();
+		clear(this.volumes);
+		synchronized (this) {
+			this.otherLinks.clear();
+			if (observeModes) {
+				for (AtomicIntegerArray modeVolumes : this.volumesPerMode) {
+					clear(modeVolumes);
+				}
+				this.otherLinksPerMode.clear();
+				this.enRouteModes.clear();
+			}
+		}
+	}
+
+	private static void clear(final AtomicIntegerArray volumes) {
+		for (int i = 0; i < volumes.length(); i++) {
+			volumes.lazySet(i, 0);
 		}
 	}
 }
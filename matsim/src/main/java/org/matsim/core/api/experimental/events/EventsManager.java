@@ -19,6 +19,8 @@
 
 package org.matsim.core.api.experimental.events;
 
+import java.util.List;
+
 import org.matsim.api.core.v01.events.Event;
 import org.matsim.core.events.handler.EventHandler;
 import org.matsim.core.mobsim.framework.Steppable;
@@ -31,6 +33,17 @@ public interface EventsManager {
 
 	public void processEvent(final Event event);
 
+	/**
+	 * Processes the events in the order of the list, as if {@link #processEvent(Event)} was called for each of them.
+	 * Lets producers which collect events, e.g. per thread, hand them over with one synchronization instead of one per
+	 * event.  The list may be re-used by the caller after the call, so implementations must not keep it.
+	 */
+	public default void processEvents(final List<Event> events) {
+		for (Event event : events) {
+			processEvent(event);
+		}
+	}
+
 	public void addHandler(final EventHandler handler);
 	
 	public void removeHandler(final EventHandler handler);
@@ -56,11 +56,15 @@ public final class ControlerConfigGroup extends ReflectiveConfigGroup {
 	private static final String OVERWRITE_FILE = "overwriteFiles";
 	private static final String CREATE_GRAPHS = "createGraphs";
 	private static final String DUMP_DATA_AT_END = "dumpDataAtEnd";
+	private static final String WRITE_SCENARIO_SNAPSHOT_AT_END = "writeScenarioSnapshotAtEnd";
+	private static final String INPUT_SCENARIO_SNAPSHOT_FILE = "inputScenarioSnapshotFile";
 
 	/*package*/ static final String MOBSIM = "mobsim";
 	public enum MobsimType {qsim, JDEQSim}
 
 	private static final String WRITE_SNAPSHOTS_INTERVAL = "writeSnapshotsInterval";
+	private static final String PSEUDO_ITERATIONS_PER_MOBSIM_ITERATION = "pseudoIterationsPerMobsimIteration";
+	private static final String PHASE_PROFILING = "phaseProfiling";
 
 
 	private String outputDirectory = "./output";
@@ -79,8 +83,12 @@ public final class ControlerConfigGroup extends ReflectiveConfigGroup {
 	private Set<String> snapshotFormat = Collections.emptySet();
 	private String mobsim = MobsimType.qsim.toString();
 	private int writeSnapshotsInterval = 1;
+	private int pseudoIterationsPerMobsimIteration = 0;
+	private boolean phaseProfiling = false;
 	private boolean createGraphs = true;
 	private boolean dumpDataAtEnd = true;
+	private boolean writeScenarioSnapshotAtEnd = false;
+	private String inputScenarioSnapshotFile = null;
 	private OverwriteFileSetting overwriteFileSetting = OverwriteFileSetting.failIfDirectoryExists;
 
 	public ControlerConfigGroup() {
@@ -116,10 +124,23 @@ public final class ControlerConfigGroup extends ReflectiveConfigGroup {
 				"Depending on the chosen mobsim, you'll have to add additional config modules to configure the corresponding mobsim." + IOUtils.NATIVE_NEWLINE + "\t\t" +
 				"For 'qsim', add a module 'qsim' to the config.");
 		
-		map.put(SNAPSHOT_FORMAT, "Comma-separated list of visualizer output file formats. `transims', `googleearth', and `otfvis'.");
+		map.put(SNAPSHOT_FORMAT, "Comma-separated list of visualizer output file formats. `transims', `googleearth', `binary' (compact, see BinarySnapshotWriter), and `otfvis'.");
 		map.put(WRITE_SNAPSHOTS_INTERVAL, "iterationNumber % " + WRITE_SNAPSHOTS_INTERVAL + " == 0 defines in which iterations snapshots are written " +
 				"to a file. `0' disables snapshots writing completely");
 		map.put(DUMP_DATA_AT_END, "true if at the end of a run, plans, network, config etc should be dumped to a file");
+		map.put(WRITE_SCENARIO_SNAPSHOT_AT_END, "Default=false; if true (and " + DUMP_DATA_AT_END + " is true), network and plans are additionally " +
+				"dumped into a binary scenario snapshot, which can be used as " + INPUT_SCENARIO_SNAPSHOT_FILE + " of a subsequent run.  " +
+				"Facilities, transit schedule, vehicles, households and lanes are not part of the snapshot; no snapshot is written " +
+				"if some attribute cannot be converted.");
+		map.put(INPUT_SCENARIO_SNAPSHOT_FILE, "Default=null; a binary scenario snapshot (local file) from which network, plans and person attributes " +
+				"are loaded instead of the corresponding xml files.  All other scenario elements are still loaded from their files.");
+		map.put(PSEUDO_ITERATIONS_PER_MOBSIM_ITERATION, "Default=0; if larger than 0, every iteration with the qsim is followed by this number of " +
+				"pseudo-iterations, in which the mobsim is replaced by a pseudo-simulation that only scores plans without a score (i.e. the " +
+				"new or mutated ones), using the travel times (and transit stop-to-stop times) learned in the last qsim iteration. " +
+				"The first and the last iteration always use the qsim.");
+		map.put(PHASE_PROFILING, "Default=false; if true, the time spent in every controler phase, controler listener, event handler and " +
+				"strategy module is measured and written per iteration to phase_profile.csv (and emitted as Java Flight Recorder events " +
+				"if available).");
 		return map;
 	}
 
@@ -303,6 +324,26 @@ public final class ControlerConfigGroup extends ReflectiveConfigGroup {
 		this.writeSnapshotsInterval = writeSnapshotsInterval;
 	}
 
+	@StringGetter( PSEUDO_ITERATIONS_PER_MOBSIM_ITERATION )
+	public int getPseudoIterationsPerMobsimIteration() {
+		return pseudoIterationsPerMobsimIteration;
+	}
+
+	@StringSetter( PSEUDO_ITERATIONS_PER_MOBSIM_ITERATION )
+	public void setPseudoIterationsPerMobsimIteration(int pseudoIterationsPerMobsimIteration) {
+		this.pseudoIterationsPerMobsimIteration = pseudoIterationsPerMobsimIteration;
+	}
+
+	@StringGetter( PHASE_PROFILING )
+	public boolean isPhaseProfiling() {
+		return phaseProfiling;
+	}
+
+	@StringSetter( PHASE_PROFILING )
+	public void setPhaseProfiling(boolean phaseProfiling) {
+		this.phaseProfiling = phaseProfiling;
+	}
+
 	@StringGetter( CREATE_GRAPHS )
 	public boolean isCreateGraphs() {
 		return createGraphs;
@@ -342,6 +383,26 @@ public final class ControlerConfigGroup extends ReflectiveConfigGroup {
 	public void setDumpDataAtEnd(boolean dumpDataAtEnd) {
 		this.dumpDataAtEnd = dumpDataAtEnd;
 	}
+
+	@StringGetter(WRITE_SCENARIO_SNAPSHOT_AT_END)
+	public boolean isWriteScenarioSnapshotAtEnd() {
+		return writeScenarioSnapshotAtEnd;
+	}
+
+	@StringSetter(WRITE_SCENARIO_SNAPSHOT_AT_END)
+	public void setWriteScenarioSnapshotAtEnd(boolean writeScenarioSnapshotAtEnd) {
+		this.writeScenarioSnapshotAtEnd = writeScenarioSnapshotAtEnd;
+	}
+
+	@StringGetter(INPUT_SCENARIO_SNAPSHOT_FILE)
+	public String getInputScenarioSnapshotFile() {
+		return inputScenarioSnapshotFile;
+	}
+
+	@StringSetter(INPUT_SCENARIO_SNAPSHOT_FILE)
+	public void setInputScenarioSnapshotFile(String inputScenarioSnapshotFile) {
+		this.inputScenarioSnapshotFile = inputScenarioSnapshotFile;
+	}
 	// ---
 	int writePlansUntilIteration = 1 ;
 	public int getWritePlansUntilIteration() {
@@ -365,5 +426,8 @@ public final class ControlerConfigGroup extends ReflectiveConfigGroup {
 			log.warn( "this is not recommended, as it might result in a directory containing output from several model runs" );
 			log.warn( "prefer the options "+OverwriteFileSetting.deleteDirectoryIfExists+" or "+OverwriteFileSetting.failIfDirectoryExists );
 		}
+		if ( this.pseudoIterationsPerMobsimIteration > 0 && !MobsimType.qsim.toString().equals( this.mobsim ) ) {
+			throw new RuntimeException( PSEUDO_ITERATIONS_PER_MOBSIM_ITERATION + " can only be used together with the qsim." );
+		}
 	}
 }
@@ -92,7 +92,10 @@ public final class CountsConfigGroup extends ReflectiveConfigGroup {
 	@Override
 	public Map<String, String> getComments() {
 		Map<String, String> comments = super.getComments();
-		comments.put(OUTPUTFORMAT, COUNTS_OUTPUTFORMAT_COMMENT ) ;
+		comments.put(OUTPUTFORMAT, COUNTS_OUTPUTFORMAT_COMMENT + ", `kmlStream', `csv'. `kmlStream' streams the placemarks of `kml' "
+				+ "into the kmz instead of `kml' (also together with `all'), which is much faster for many count stations; the graphs "
+				+ "per count station are left out, use `html' for them. `csv' streams the table of `txt' and the daily sums per count "
+				+ "station into countscompare.csv.gz and countscompareAWTV.csv.gz; it is not included in `all'" ) ;
 		comments.put(DISTANCEFILTER,  COUNTS_DISTANCEFILTER_COMMENT ) ;
 		comments.put(DISTANCEFILTERCENTERNODE, COUNTS_DISTANCEFILTERCENTERNODE_COMMENT ) ;
 		comments.put(COUNTSINPUTFILENAME, COUNTSINPUTFILENAME_COMMENT ) ;
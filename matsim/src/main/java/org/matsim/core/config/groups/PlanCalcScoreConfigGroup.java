@@ -65,6 +65,10 @@ public final class PlanCalcScoreConfigGroup extends ConfigGroup {
 
 	private static final String WRITE_EXPERIENCED_PLANS = "writeExperiencedPlans";
 
+	private static final String NUMBER_OF_SCORING_SHARDS = "numberOfScoringShards";
+
+	private static final String STREAMING_SCORING = "streamingScoring";
+
 	private static final String MARGINAL_UTL_OF_MONEY = "marginalUtilityOfMoney";
 
 	private static final String UTL_OF_LINE_SWITCH = "utilityOfLineSwitch";
@@ -396,6 +400,13 @@ public final class PlanCalcScoreConfigGroup extends ConfigGroup {
 				"[utils/unit_of_money] conversion of money (e.g. toll, distance cost) into utils. Normall positive (i.e. toll/cost/fare are processed as negative amounts of money).");
 		map.put(WRITE_EXPERIENCED_PLANS,
 				"write a plans file in each iteration directory which contains what each agent actually did, and the score it received.");
+		map.put(NUMBER_OF_SCORING_SHARDS,
+				"number of independent event handlers the persons are distributed over (by id) for scoring.  Only helps if "
+						+ "the events are processed in parallel (parallelEventHandling.numberOfThreads > 1).  Default: 1");
+		map.put(STREAMING_SCORING,
+				"if true, the state kept per agent during the mobsim is reduced to what is needed for the legs and activities in progress: "
+						+ "experienced network routes only contain start and end link (but the correct distance), and experienced plans and "
+						+ "partial scores are only kept if they are written or memorized.  Default: false");
 
 		return map;
 	}
@@ -748,6 +759,22 @@ public final class PlanCalcScoreConfigGroup extends ConfigGroup {
 		delegate.setWriteExperiencedPlans(writeExperiencedPlans);
 	}
 
+	public boolean isStreamingScoring() {
+		return delegate.isStreamingScoring();
+	}
+
+	public void setStreamingScoring(boolean streamingScoring) {
+		delegate.setStreamingScoring(streamingScoring);
+	}
+
+	public int getNumberOfScoringShards() {
+		return delegate.getNumberOfScoringShards();
+	}
+
+	public void setNumberOfScoringShards(int numberOfScoringShards) {
+		delegate.setNumberOfScoringShards(numberOfScoringShards);
+	}
+
 	public double getMarginalUtlOfWaiting_utils_hr() {
 		if (getScoringParameters(null) != null)
 			return getScoringParameters(null).getMarginalUtlOfWaiting_utils_hr();
@@ -1518,6 +1545,10 @@ public final class PlanCalcScoreConfigGroup extends ConfigGroup {
 
 		private boolean writeExperiencedPlans = false;
 
+		private int numberOfScoringShards = 1;
+
+		private boolean streamingScoring = false;
+
 		private Double fractionOfIterationsToStartScoreMSA = null;
 
 		private boolean usingOldScoringBelowZeroUtilityDuration = false;
@@ -1591,5 +1622,30 @@ public final class PlanCalcScoreConfigGroup extends ConfigGroup {
 			this.writeExperiencedPlans = writeExperiencedPlans;
 		}
 
+		@StringGetter(NUMBER_OF_SCORING_SHARDS)
+		public int getNumberOfScoringShards() {
+			return numberOfScoringShards;
+		}
+
+		@StringSetter(NUMBER_OF_SCORING_SHARDS)
+		public void setNumberOfScoringShards(int numberOfScoringShards) {
+			testForLocked();
+			if (numberOfScoringShards < 1) {
+				throw new IllegalArgumentException(NUMBER_OF_SCORING_SHARDS + " must be at least 1, but was " + numberOfScoringShards);
+			}
+			this.numberOfScoringShards = numberOfScoringShards;
+		}
+
+		@StringGetter(STREAMING_SCORING)
+		public boolean isStreamingScoring() {
+			return streamingScoring;
+		}
+
+		@StringSetter(STREAMING_SCORING)
+		public void setStreamingScoring(boolean streamingScoring) {
+			testForLocked();
+			this.streamingScoring = streamingScoring;
+		}
+
 	}
 }
@@ -87,6 +87,9 @@ public final class PlansConfigGroup extends ReflectiveConfigGroup {
 		comments.put(REMOVING_UNNECESSARY_PLAN_ATTRIBUTES, "(not tested) will remove plan attributes that are presumably not used, such as " +
                 "activityStartTime. default=false. Use with Caution!");
 
+		comments.put(USING_COLUMNAR_PERSON_ATTRIBUTES, "If true, the person attributes are stored column-wise with typed columns, " +
+				"which needs much less memory for large populations with few distinct attributes. default=false.");
+
 		comments.put( INPUT_CRS , "The Coordinates Reference System in which the coordinates are expressed in the input file." +
 				" At import, the coordinates will be converted to the coordinate system defined in \"global\", and will" +
 				"be converted back at export. If not specified, no conversion happens." );
@@ -169,6 +172,19 @@ public final class PlansConfigGroup extends ReflectiveConfigGroup {
 
 	// ---
 	
+	private static final String USING_COLUMNAR_PERSON_ATTRIBUTES = "usingColumnarPersonAttributes";
+	private boolean usingColumnarPersonAttributes = false;
+	@StringGetter(USING_COLUMNAR_PERSON_ATTRIBUTES)
+	public boolean isUsingColumnarPersonAttributes() {
+		return this.usingColumnarPersonAttributes;
+	}
+	@StringSetter(USING_COLUMNAR_PERSON_ATTRIBUTES)
+	public void setUsingColumnarPersonAttributes(final boolean usingColumnarPersonAttributes) {
+		this.usingColumnarPersonAttributes = usingColumnarPersonAttributes;
+	}
+
+	// ---
+
 	private static final String REMOVING_UNNECESSARY_PLAN_ATTRIBUTES = "removingUnnecessaryPlanAttributes";
 	private boolean removingUnneccessaryPlanAttributes = false;
 	@StringGetter(REMOVING_UNNECESSARY_PLAN_ATTRIBUTES)
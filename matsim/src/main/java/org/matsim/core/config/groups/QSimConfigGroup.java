@@ -276,6 +276,19 @@ public final class QSimConfigGroup extends ReflectiveConfigGroup {
 		map.put(SEEP_MODE, "If link dynamics is set as "+ LinkDynamics.SeepageQ+", set a seep mode. Default is bike.");
 		map.put(IS_SEEP_MODE_STORAGE_FREE, "If link dynamics is set as "+ LinkDynamics.SeepageQ+", set to true if seep mode do not consumes any space on the link. Default is false.");
 		map.put(IS_RESTRICTING_SEEPAGE, "If link dynamics is set as "+ LinkDynamics.SeepageQ+", set to false if all seep modes should perform seepage. Default is true (better option).");
+		map.put(METRICS_INTERVAL, "Interval (in seconds of simulated time) in which the mobsim reports its throughput (simulated seconds per wall-clock second, "
+				+ "events per second, active links/nodes/vehicles, step time per engine) to ITERS/it.N/N.qsim_metrics.csv and to a bound "
+				+ "QSimMetricsRegistry. 0 (the default) disables the metrics.");
+		map.put(DETERMINISTIC_PARALLELISM, "If true, the results of the qnetsimengine do not depend on the number of threads: the nodes draw "
+				+ "their random numbers from streams derived from the global random seed, the node and the time step, and the events of "
+				+ "the links and nodes are buffered (see " + BUFFERING_EVENTS + ") and passed on in a fixed order.  Gives different "
+				+ "results than the default (false), also with one thread.");
+		map.put(BUFFERING_EVENTS, "If true, the events of the links and nodes, including those of transit drivers and passengers at stops, "
+				+ "are collected per thread and passed on at the end of the time step, so that the events manager is not called "
+				+ "concurrently, and agents that arrive on a link continue their plans only then, after the other engines have done "
+				+ "their step.  Default is false.");
+		map.put(USING_COMPACT_AGENTS, "If true, the agents of the population and their vehicles are created with a smaller memory footprint.  "
+				+ "Cannot be used together with within-day replanning, and has no effect on the agents if transit is used.");
 //		map.put(CREATING_VEHICLES_FOR_ALL_NETWORK_MODES, "If set to true, creates a vehicle for each person corresponding to every network mode. However, " +
 //				"this will be overridden if vehicle source is "+ VehiclesSource.fromVehiclesData+".");
 		
@@ -576,6 +589,50 @@ public final class QSimConfigGroup extends ReflectiveConfigGroup {
 		this.isRestrictingSeepage = isRestrictingSeepage;
 	}
 	// ---
+	private static final String METRICS_INTERVAL = "metricsInterval";
+	private double metricsInterval = 0.0;
+	@StringGetter(METRICS_INTERVAL)
+	public double getMetricsInterval() {
+		return this.metricsInterval;
+	}
+	@StringSetter(METRICS_INTERVAL)
+	public void setMetricsInterval(final double metricsInterval) {
+		this.metricsInterval = metricsInterval;
+	}
+	// ---
+	private static final String DETERMINISTIC_PARALLELISM = "deterministicParallelism";
+	private boolean deterministicParallelism = false;
+	@StringGetter(DETERMINISTIC_PARALLELISM)
+	public boolean isDeterministicParallelism() {
+		return this.deterministicParallelism;
+	}
+	@StringSetter(DETERMINISTIC_PARALLELISM)
+	public void setDeterministicParallelism(final boolean deterministicParallelism) {
+		this.deterministicParallelism = deterministicParallelism;
+	}
+	// ---
+	private static final String BUFFERING_EVENTS = "bufferingEvents";
+	private boolean bufferingEvents = false;
+	@StringGetter(BUFFERING_EVENTS)
+	public boolean isBufferingEvents() {
+		return this.bufferingEvents;
+	}
+	@StringSetter(BUFFERING_EVENTS)
+	public void setBufferingEvents(final boolean bufferingEvents) {
+		this.bufferingEvents = bufferingEvents;
+	}
+	// ---
+	private static final String USING_COMPACT_AGENTS = "usingCompactAgents";
+	private boolean usingCompactAgents = false;
+	@StringGetter(USING_COMPACT_AGENTS)
+	public boolean isUsingCompactAgents() {
+		return this.usingCompactAgents;
+	}
+	@StringSetter(USING_COMPACT_AGENTS)
+	public void setUsingCompactAgents(final boolean usingCompactAgents) {
+		this.usingCompactAgents = usingCompactAgents;
+	}
+	// ---
 	private boolean usingTravelTimeCheckInTeleportation = false ;
 	public boolean isUsingTravelTimeCheckInTeleportation() {
 		// yyyyyy this should better become a threshold number!  kai, aug'16
@@ -277,6 +277,10 @@ public final class StrategyConfigGroup extends ConfigGroup {
 		map.put(ReflectiveDelegate.EXTERNAL_EXE_TMP_FILE_ROOT_DIR, "root directory for temporary files generated by the external executable. Provided as a service; "
 				+ "I don't think this is used by MATSim.") ;
 		map.put(ReflectiveDelegate.EXTERNAL_EXE_TIME_OUT, "time out value (in seconds) after which matsim will consider the external strategy as failed") ;
+		map.put(ReflectiveDelegate.NUMBER_OF_THREADS_FOR_STRATEGY_SELECTION, "number of threads used to choose the strategy of each agent and to remove "
+				+ "surplus plans.  ``0'' (default) does this on the main thread with the global random number generator.  Any value >= 1 uses a "
+				+ "random stream per agent derived from the random seed, the iteration and the person id, so the results do not depend on the "
+				+ "number of threads (but differ from the ``0'' setting).") ;
 		return map ;
 	}
 
@@ -389,6 +393,14 @@ public final class StrategyConfigGroup extends ConfigGroup {
 		delegate.setFractionOfIterationsToDisableInnovation(fraction);
 	}
 
+	public int getNumberOfThreadsForStrategySelection() {
+		return delegate.getNumberOfThreadsForStrategySelection();
+	}
+
+	public void setNumberOfThreadsForStrategySelection(int numberOfThreads) {
+		delegate.setNumberOfThreadsForStrategySelection(numberOfThreads);
+	}
+
 	@Override
 	public final Map<String, String> getParams() {
 		return delegate.getParams();
@@ -401,6 +413,7 @@ public final class StrategyConfigGroup extends ConfigGroup {
 		 static final String EXTERNAL_EXE_TIME_OUT = "ExternalExeTimeOut";
 		 static final String ITERATION_FRACTION_TO_DISABLE_INNOVATION = "fractionOfIterationsToDisableInnovation" ;
 		 static final String PLAN_SELECTOR_FOR_REMOVAL = "planSelectorForRemoval" ;
+		 static final String NUMBER_OF_THREADS_FOR_STRATEGY_SELECTION = "numberOfThreadsForStrategySelection" ;
 
 		private int maxAgentPlanMemorySize = 5;
 		private String externalExeConfigTemplate = null;
@@ -412,6 +425,8 @@ public final class StrategyConfigGroup extends ConfigGroup {
 		//---
 		private double fraction = Double.POSITIVE_INFINITY ;
 		//---
+		private int numberOfThreadsForStrategySelection = 0 ;
+		//---
 
 		public ReflectiveDelegate() {
 			super( StrategyConfigGroup.GROUP_NAME );
@@ -477,6 +492,16 @@ public final class StrategyConfigGroup extends ConfigGroup {
 		public void setFractionOfIterationsToDisableInnovation(double fraction) {
 			this.fraction = fraction;
 		}
+
+		@StringGetter( NUMBER_OF_THREADS_FOR_STRATEGY_SELECTION )
+		public int getNumberOfThreadsForStrategySelection() {
+			return numberOfThreadsForStrategySelection;
+		}
+
+		@StringSetter( NUMBER_OF_THREADS_FOR_STRATEGY_SELECTION )
+		public void setNumberOfThreadsForStrategySelection(int numberOfThreads) {
+			this.numberOfThreadsForStrategySelection = numberOfThreads;
+		}
 	}
 }
 
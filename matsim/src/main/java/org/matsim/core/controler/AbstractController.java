@@ -21,6 +21,7 @@ package org.matsim.core.controler;
 
 import org.apache.log4j.Logger;
 import org.matsim.analysis.IterationStopWatch;
+import org.matsim.analysis.PhaseProfiler;
 import org.matsim.core.config.Config;
 import org.matsim.core.controler.listener.ControlerListener;
 import org.matsim.core.gbl.MatsimRandom;
@@ -85,7 +86,12 @@ import org.matsim.core.gbl.MatsimRandom;
                 controlerListenerManagerImpl.fireControlerShutdownEvent(unexpected);
             }
         };
-        MatsimRuntimeModifications.run(runnable);
+        PhaseProfiler.getInstance().setEnabled(config.controler().isPhaseProfiling());
+        try {
+            MatsimRuntimeModifications.run(runnable);
+        } finally {
+            PhaseProfiler.getInstance().setEnabled(false);
+        }
         OutputDirectoryLogging.closeOutputDirLogging();
     }
 
@@ -119,6 +125,7 @@ import org.matsim.core.gbl.MatsimRandom;
     private void iteration(final Config config, final int iteration) throws MatsimRuntimeModifications.UnexpectedShutdownException {
         this.thisIteration = iteration;
         this.getStopwatch().beginIteration(iteration);
+        PhaseProfiler.getInstance().beginIteration(iteration);
 
         log.info(Controler.DIVIDER);
         log.info(MARKER + "ITERATION " + iteration + " BEGINS");
@@ -164,6 +171,9 @@ import org.matsim.core.gbl.MatsimRandom;
         if (config.controler().isCreateGraphs()) {
             this.getStopwatch().writeGraphFile(this.getControlerIO().getOutputFilename("stopwatch"));
         }
+        if (PhaseProfiler.getInstance().isEnabled()) {
+            PhaseProfiler.getInstance().endIteration(this.getControlerIO().getIterationFilename(iteration, "phase_profile.csv"));
+        }
         log.info(MARKER + "ITERATION " + iteration + " ENDS");
         log.info(Controler.DIVIDER);
     }
@@ -226,7 +236,12 @@ import org.matsim.core.gbl.MatsimRandom;
 
     private void iterationStep(String iterationStepName, Runnable iterationStep) throws MatsimRuntimeModifications.UnexpectedShutdownException {
         this.getStopwatch().beginOperation(iterationStepName);
-        iterationStep.run();
+        PhaseProfiler.Measurement measurement = PhaseProfiler.start(PhaseProfiler.CATEGORY_PHASE, iterationStepName);
+        try {
+            iterationStep.run();
+        } finally {
+            PhaseProfiler.stop(measurement);
+        }
         this.getStopwatch().endOperation(iterationStepName);
         if (Thread.interrupted()) {
             throw new MatsimRuntimeModifications.UnexpectedShutdownException();
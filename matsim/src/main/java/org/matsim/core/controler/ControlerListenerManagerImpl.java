@@ -21,6 +21,7 @@
 package org.matsim.core.controler;
 
 import org.apache.log4j.Logger;
+import org.matsim.analysis.PhaseProfiler;
 import org.matsim.core.controler.events.*;
 import org.matsim.core.controler.listener.*;
 import org.matsim.core.utils.misc.ClassUtils;
@@ -100,12 +101,12 @@ public final class ControlerListenerManagerImpl implements ControlerListenerMana
 		StartupListener[] listener = this.coreListenerList.getListeners(StartupListener.class);
         for (StartupListener aListener : listener) {
             log.info("calling notifyStartup on " + aListener.getClass().getName());
-            aListener.notifyStartup(event);
+            notifyMeasured(aListener, "notifyStartup", () -> aListener.notifyStartup(event));
         }
 		listener = this.listenerList.getListeners(StartupListener.class);
         for (StartupListener aListener : listener) {
             log.info("calling notifyStartup on " + aListener.getClass().getName());
-            aListener.notifyStartup(event);
+            notifyMeasured(aListener, "notifyStartup", () -> aListener.notifyStartup(event));
         }
 		log.info("all ControlerStartupListeners called." );
 	}
@@ -119,12 +120,12 @@ public final class ControlerListenerManagerImpl implements ControlerListenerMana
         ShutdownListener[] listener = this.coreListenerList.getListeners(ShutdownListener.class);
         for (ShutdownListener aListener : listener) {
             log.info("calling notifyShutdown on " + aListener.getClass().getName());
-            aListener.notifyShutdown(event);
+            notifyMeasured(aListener, "notifyShutdown", () -> aListener.notifyShutdown(event));
         }
         listener = this.listenerList.getListeners(ShutdownListener.class);
         for (ShutdownListener aListener : listener) {
             log.info("calling notifyShutdown on " + aListener.getClass().getName());
-            aListener.notifyShutdown(event);
+            notifyMeasured(aListener, "notifyShutdown", () -> aListener.notifyShutdown(event));
         }
         log.info("all ControlerShutdownListeners called.");
 	}
@@ -138,12 +139,12 @@ public final class ControlerListenerManagerImpl implements ControlerListenerMana
 		IterationStartsListener[] listener = this.coreListenerList.getListeners(IterationStartsListener.class);
         for (IterationStartsListener aListener : listener) {
             log.info("calling notifyIterationStarts on " + aListener.getClass().getName());
-            aListener.notifyIterationStarts(event);
+            notifyMeasured(aListener, "notifyIterationStarts", () -> aListener.notifyIterationStarts(event));
         }
 		listener = this.listenerList.getListeners(IterationStartsListener.class);
         for (IterationStartsListener aListener : listener) {
             log.info("calling notifyIterationStarts on " + aListener.getClass().getName());
-            aListener.notifyIterationStarts(event);
+            notifyMeasured(aListener, "notifyIterationStarts", () -> aListener.notifyIterationStarts(event));
         }
 		log.info("[it." + iteration + "] all ControlerIterationStartsListeners called.");
 	}
@@ -158,14 +159,14 @@ public final class ControlerListenerManagerImpl implements ControlerListenerMana
 			IterationEndsListener[] listener = this.coreListenerList.getListeners(IterationEndsListener.class);
             for (IterationEndsListener aListener : listener) {
                 log.info("calling notifyIterationEnds on " + aListener.getClass().getName());
-                aListener.notifyIterationEnds(event);
+                notifyMeasured(aListener, "notifyIterationEnds", () -> aListener.notifyIterationEnds(event));
             }
 		}
 		{
 			IterationEndsListener[] listener = this.listenerList.getListeners(IterationEndsListener.class);
             for (IterationEndsListener aListener : listener) {
                 log.info("calling notifyIterationEnds on " + aListener.getClass().getName());
-                aListener.notifyIterationEnds(event);
+                notifyMeasured(aListener, "notifyIterationEnds", () -> aListener.notifyIterationEnds(event));
             }
 		}
 		log.info("[it." + iteration + "] all ControlerIterationEndsListeners called.");
@@ -181,14 +182,14 @@ public final class ControlerListenerManagerImpl implements ControlerListenerMana
 			ScoringListener[] listener = this.coreListenerList.getListeners(ScoringListener.class);
             for (ScoringListener aListener : listener) {
                 log.info("calling notifyScoring on " + aListener.getClass().getName());
-                aListener.notifyScoring(event);
+                notifyMeasured(aListener, "notifyScoring", () -> aListener.notifyScoring(event));
             }
 		}
 		{
 			ScoringListener[] listener = this.listenerList.getListeners(ScoringListener.class);
             for (ScoringListener aListener : listener) {
                 log.info("calling notifyScoring on " + aListener.getClass().getName());
-                aListener.notifyScoring(event);
+                notifyMeasured(aListener, "notifyScoring", () -> aListener.notifyScoring(event));
             }
 		}
 		log.info("[it." + iteration + "] all ControlerScoringListeners called.");
@@ -203,12 +204,12 @@ public final class ControlerListenerManagerImpl implements ControlerListenerMana
 		ReplanningListener[] listener = this.coreListenerList.getListeners(ReplanningListener.class);
         for (ReplanningListener aListener : listener) {
             log.info("calling notifyReplanning on " + aListener.getClass().getName());
-            aListener.notifyReplanning(event);
+            notifyMeasured(aListener, "notifyReplanning", () -> aListener.notifyReplanning(event));
         }
 		listener = this.listenerList.getListeners(ReplanningListener.class);
         for (ReplanningListener aListener : listener) {
             log.info("calling notifyReplanning on " + aListener.getClass().getName());
-            aListener.notifyReplanning(event);
+            notifyMeasured(aListener, "notifyReplanning", () -> aListener.notifyReplanning(event));
         }
 		log.info("[it." + iteration + "] all ControlerReplanningListeners called.");
 	}
@@ -222,12 +223,12 @@ public final class ControlerListenerManagerImpl implements ControlerListenerMana
 		BeforeMobsimListener[] listener = this.coreListenerList.getListeners(BeforeMobsimListener.class);
         for (BeforeMobsimListener aListener : listener) {
             log.info("calling notifyBeforeMobsim on " + aListener.getClass().getName());
-            aListener.notifyBeforeMobsim(event);
+            notifyMeasured(aListener, "notifyBeforeMobsim", () -> aListener.notifyBeforeMobsim(event));
         }
 		listener = this.listenerList.getListeners(BeforeMobsimListener.class);
         for (BeforeMobsimListener aListener : listener) {
             log.info("calling notifyBeforeMobsim on " + aListener.getClass().getName());
-            aListener.notifyBeforeMobsim(event);
+            notifyMeasured(aListener, "notifyBeforeMobsim", () -> aListener.notifyBeforeMobsim(event));
         }
 		log.info("[it." + iteration + "] all ControlerBeforeMobsimListeners called.");
 	}
@@ -241,14 +242,31 @@ public final class ControlerListenerManagerImpl implements ControlerListenerMana
 		AfterMobsimListener[] listener = this.coreListenerList.getListeners(AfterMobsimListener.class);
         for (AfterMobsimListener aListener : listener) {
             log.info("calling notifyAfterMobsim on " + aListener.getClass().getName());
-            aListener.notifyAfterMobsim(event);
+            notifyMeasured(aListener, "notifyAfterMobsim", () -> aListener.notifyAfterMobsim(event));
         }
 		listener = this.listenerList.getListeners(AfterMobsimListener.class);
         for (AfterMobsimListener aListener : listener) {
             log.info("calling notifyAfterMobsim on " + aListener.getClass().getName());
-            aListener.notifyAfterMobsim(event);
+            notifyMeasured(aListener, "notifyAfterMobsim", () -> aListener.notifyAfterMobsim(event));
         }
 		log.info("[it." + iteration + "] all ControlerAfterMobsimListeners called.");
 	}
 
+	/*
+	 * Calls the listener, measured by the profiler if it is enabled; the name of the measurement is only built then.
+	 */
+	private static void notifyMeasured(final ControlerListener listener, final String method, final Runnable notification) {
+		if (!PhaseProfiler.getInstance().isEnabled()) {
+			notification.run();
+			return;
+		}
+		PhaseProfiler.Measurement measurement = PhaseProfiler.start(PhaseProfiler.CATEGORY_CONTROLER_LISTENER,
+				listener.getClass().getName() + "." + method);
+		try {
+			notification.run();
+		} finally {
+			PhaseProfiler.stop(measurement);
+		}
+	}
+
 }
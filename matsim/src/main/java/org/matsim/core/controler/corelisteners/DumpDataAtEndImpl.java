@@ -23,6 +23,7 @@ import com.google.inject.Inject;
 import com.google.inject.Singleton;
 
 import org.apache.log4j.Logger;
+import org.matsim.api.core.v01.Scenario;
 import org.matsim.api.core.v01.network.Link;
 import org.matsim.api.core.v01.network.Network;
 import org.matsim.api.core.v01.population.Population;
@@ -38,6 +39,7 @@ import org.matsim.core.controler.listener.ShutdownListener;
 import org.matsim.core.network.NetworkUtils;
 import org.matsim.core.network.io.NetworkChangeEventsWriter;
 import org.matsim.core.network.io.NetworkWriter;
+import org.matsim.core.scenario.ScenarioUtils;
 import org.matsim.core.utils.geometry.CoordUtils;
 import org.matsim.core.utils.geometry.CoordinateTransformation;
 import org.matsim.core.utils.geometry.transformations.TransformationFactory;
@@ -79,6 +81,9 @@ final class DumpDataAtEndImpl implements DumpDataAtEnd, ShutdownListener {
 	@Inject
 	private VspExperimentalConfigGroup vspConfig;
 
+	@Inject
+	private Scenario scenario;
+
 	@Inject
 	private Network network;
 
@@ -130,6 +135,7 @@ final class DumpDataAtEndImpl implements DumpDataAtEnd, ShutdownListener {
 		dumpHouseholds();
 		dumpLanes();
 		dumpCounts();
+		dumpScenarioSnapshot();
 
 		if (!event.isUnexpected() && vspConfig.isWritingOutputEvents() && (controlerConfigGroup.getWriteEventsInterval()!=0)) {
 			dumpOutputEvents();
@@ -195,6 +201,16 @@ final class DumpDataAtEndImpl implements DumpDataAtEnd, ShutdownListener {
 		}
 	}
 
+	private void dumpScenarioSnapshot() {
+		if ( controlerConfigGroup.isWriteScenarioSnapshotAtEnd() ) {
+			try {
+				ScenarioUtils.writeScenarioSnapshot(scenario, controlerIO.getOutputFilename(Controler.OUTPUT_PREFIX + Controler.FILENAME_SCENARIO_SNAPSHOT), attributeConverters);
+			} catch ( Exception ee ) {
+				log.error("Exception writing scenario snapshot.", ee);
+			}
+		}
+	}
+
 	private void dumpLanes() {
 		try {
 			new LanesWriter(lanes).write(controlerIO.getOutputFilename(Controler.OUTPUT_PREFIX + Controler.FILENAME_LANES));
@@ -38,6 +38,7 @@ import org.matsim.core.controler.listener.IterationEndsListener;
 import org.matsim.core.controler.listener.ShutdownListener;
 import org.matsim.core.events.algorithms.EventWriter;
 import org.matsim.core.events.algorithms.EventWriterXML;
+import org.matsim.core.mobsim.psim.PSim;
 
 import com.google.inject.Inject;
 import com.google.inject.Singleton;
@@ -49,6 +50,7 @@ final class EventsHandlingImpl implements EventsHandling, BeforeMobsimListener,
 	final static private Logger log = Logger.getLogger(EventsHandlingImpl.class);
 	
 	private final EventsManager eventsManager;
+	private final ControlerConfigGroup controlerConfig;
 	private final int lastIteration;
 	private List<EventWriter> eventWriters = new LinkedList<>();
 
@@ -66,6 +68,7 @@ final class EventsHandlingImpl implements EventsHandling, BeforeMobsimListener,
 			final ControlerConfigGroup config,
 			final OutputDirectoryHierarchy controlerIO) {
 		this.eventsManager = eventsManager;
+		this.controlerConfig = config;
 		this.writeEventsInterval = config.getWriteEventsInterval();
 		this.lastIteration = config.getLastIteration() ;
 		this.eventsFileFormats = config.getEventsFileFormats();
@@ -75,6 +78,11 @@ final class EventsHandlingImpl implements EventsHandling, BeforeMobsimListener,
 
 	@Override
 	public void notifyBeforeMobsim(BeforeMobsimEvent event) {
+		if (PSim.isPseudoIteration(this.controlerConfig, event.getIteration())) {
+			// no events in pseudo-iterations; the handlers (in particular the travel time calculator) keep what they
+			// learned in the last iteration with the qsim
+			return;
+		}
 		eventsManager.resetHandlers(event.getIteration());
 		final boolean writingEventsAtAll = this.writeEventsInterval > 0;
 		final boolean regularWriteEvents = writingEventsAtAll && ( event.getIteration()>0 && event.getIteration() % writeEventsInterval == 0 ) ;
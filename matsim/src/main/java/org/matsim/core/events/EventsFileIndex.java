@@ -0,0 +1,252 @@
+/* *********************************************************************** *
+ * project: org.matsim.*
+ * EventsFileIndex.java
+ *                                                                         *
+ * *********************************************************************** *
+ *                                                                         *
+ * copyright       : (C) 2019 by the members listed in the COPYING,        *
+ *                   LICENSE and WARRANTY file.                            *
+ * email           : info at matsim dot org                                *
+ *                                                                         *
+ * *********************************************************************** *
+ *                                                                         *
+ *   This program is free software; you can redistribute it and/or modify  *
+ *   it under the terms of the GNU General Public License as published by  *
+ *   the Free Software Foundation; either version 2 of the License, or     *
+ *   (at your option) any later version.                                   *
+ *   See also COPYING, LICENSE and WARRANTY file                           *
+ *                                                                         *
+ * *********************************************************************** */
+
+package org.matsim.core.events;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.BitSet;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Index of an events file: the events are grouped into blocks of consecutive events that lie in the same time
+ * bucket, and for every block the byte range (in the uncompressed file), the time range and the contained event
+ * types are stored.  The index is stored in a small binary sidecar file next to the events file.
+ *
+ * @see IndexedEventsReader
+ */
+final class EventsFileIndex {
+
+	private static final int MAGIC = 0x4d534549;
+	private static final int VERSION = 1;
+
+	private static final byte[] EVENT_TAG = "<event".getBytes(StandardCharsets.US_ASCII);
+
+	final long fileLength;
+	final long lastModified;
+	final double bucketSize;
+	final List<String> eventTypes = new ArrayList<>();
+	final List<Block> blocks = new ArrayList<>();
+
+	static final class Block {
+		final long start;
+		long end;
+		double minTime = Double.POSITIVE_INFINITY;
+		double maxTime = Double.NEGATIVE_INFINITY;
+		final BitSet types = new BitSet();
+
+		Block(final long start) {
+			this.start = start;
+		}
+	}
+
+	private EventsFileIndex(final long fileLength, final long lastModified, final double bucketSize) {
+		this.fileLength = fileLength;
+		this.lastModified = lastModified;
+		this.bucketSize = bucketSize;
+	}
+
+	boolean isIndexOf(final File eventsFile) {
+		return eventsFile.length() == this.fileLength && eventsFile.lastModified() == this.lastModified;
+	}
+
+	/**
+	 * Scans the (uncompressed) events in <code>in</code> and groups them into blocks.
+	 */
+	static EventsFileIndex build(final File eventsFile, final InputStream in, final double bucketSize, final int maxBlockBytes) throws IOException {
+		EventsFileIndex index = new EventsFileIndex(eventsFile.length(), eventsFile.lastModified(), bucketSize);
+		Map<String, Integer> typeIndices = new HashMap<>();
+		byte[] buffer = new byte[1 << 16];
+		StringBuilder tag = new StringBuilder(256);
+		Block block = null;
+		long currentBucket = Long.MIN_VALUE;
+
+		long bufferOffset = 0; // file offset of buffer[0]
+		int length = 0;
+		int pos = 0;
+		int matched = 0; // number of matched bytes of EVENT_TAG
+		long tagStart = -1;
+		boolean inTag = false;
+		while (true) {
+			if (pos == length) {
+				bufferOffset += length;
+				length = in.read(buffer);
+				pos = 0;
+				if (length < 0) {
+					break;
+				}
+				continue;
+			}
+			byte b = buffer[pos++];
+			if (inTag) {
+				if (b == '>') {
+					inTag = false;
+					long tagEnd = bufferOffset + pos;
+					String atts = tag.toString();
+					double time = Double.parseDouble(getAttribute(atts, "time"));
+					String type = getAttribute(atts, "type");
+					long bucket = (long) Math.floor(time / bucketSize);
+					if (block == null || bucket != currentBucket || tagStart - block.start >= maxBlockBytes) {
+						block = new Block(tagStart);
+						index.blocks.add(block);
+						currentBucket = bucket;
+					}
+					Integer typeIndex = typeIndices.get(type);
+					if (typeIndex == null) {
+						typeIndex = index.eventTypes.size();
+						index.eventTypes.add(type);
+						typeIndices.put(type, typeIndex);
+					}
+					block.types.set(typeIndex);
+					block.minTime = Math.min(block.minTime, time);
+					block.maxTime = Math.max(block.maxTime, time);
+					block.end = tagEnd;
+				} else {
+					tag.append((char) (b & 0xff));
+				}
+			} else if (matched == EVENT_TAG.length) {
+				matched = 0;
+				if (b == ' ' || b == '\t' || b == '\n' || b == '\r') {
+					inTag = true;
+					tag.setLength(0);
+					tag.append(' ');
+				}
+			} else if (b == EVENT_TAG[matched]) {
+				if (matched == 0) {
+					tagStart = bufferOffset + pos - 1;
+				}
+				matched++;
+			} else {
+				matched = b == EVENT_TAG[0] ? 1 : 0;
+				if (matched == 1) {
+					tagStart = bufferOffset + pos - 1;
+				}
+			}
+		}
+		return index;
+	}
+
+	/**
+	 * @return the value of the attribute in the given tag text, which must start with a whitespace
+	 */
+	private static String getAttribute(final String atts, final String name) {
+		int i = -1;
+		while (true) {
+			i = atts.indexOf(name, i + 1);
+			if (i < 0) {
+				throw new IllegalArgumentException("event without attribute " + name + ": " + atts);
+			}
+			int eq = i + name.length();
+			if (Character.isWhitespace(atts.charAt(i - 1)) && eq < atts.length() && atts.charAt(eq) == '=') {
+				char quote = atts.charAt(eq + 1);
+				int end = atts.indexOf(quote, eq + 2);
+				return atts.substring(eq + 2, end);
+			}
+		}
+	}
+
+	void write(final File indexFile) throws IOException {
+		try (DataOutputStream out = new DataOutputStream(new BufferedOutputStream(new FileOutputStream(indexFile)))) {
+			out.writeInt(MAGIC);
+			out.writeInt(VERSION);
+			out.writeLong(this.fileLength);
+			out.writeLong(this.lastModified);
+			out.writeDouble(this.bucketSize);
+			out.writeInt(this.eventTypes.size());
+			for (String type : this.eventTypes) {
+				out.writeUTF(type);
+			}
+			out.writeInt(this.blocks.size());
+			for (Block block : this.blocks) {
+				out.writeLong(block.start);
+				out.writeLong(block.end);
+				out.writeDouble(block.minTime);
+				out.writeDouble(block.maxTime);
+				long[] words = block.types.toLongArray();
+				out.writeShort(words.length);
+				for (long word : words) {
+					out.writeLong(word);
+				}
+			}
+		}
+	}
+
+	/**
+	 * @return the index stored in the file, or <code>null</code> if the file is not a valid index
+	 */
+	static EventsFileIndex read(final File indexFile) {
+		try (DataInputStream in = new DataInputStream(new BufferedInputStream(new FileInputStream(indexFile)))) {
+			if (in.readInt() != MAGIC || in.readInt() != VERSION) {
+				return null;
+			}
+			EventsFileIndex index = new EventsFileIndex(in.readLong(), in.readLong(), in.readDouble());
+			int typeCount = in.readInt();
+			for (int i = 0; i < typeCount; i++) {
+				index.eventTypes.add(in.readUTF());
+			}
+			int blockCount = in.readInt();
+			for (int i = 0; i < blockCount; i++) {
+				Block block = new Block(in.readLong());
+				block.end = in.readLong();
+				block.minTime = in.readDouble();
+				block.maxTime = in.readDouble();
+				long[] words = new long[in.readShort()];
+				for (int w = 0; w < words.length; w++) {
+					words[w] = in.readLong();
+				}
+				block.types.or(BitSet.valueOf(words));
+				index.blocks.add(block);
+			}
+			return index;
+		} catch (IOException e) {
+			return null;
+		}
+	}
+
+	/**
+	 * @return the indices of the given event types as bit set, or <code>null</code> (meaning all types) if
+	 * <code>types</code> is <code>null</code>
+	 */
+	BitSet getTypeMask(final Iterable<String> types) {
+		if (types == null) {
+			return null;
+		}
+		BitSet mask = new BitSet();
+		for (String type : types) {
+			int i = this.eventTypes.indexOf(type);
+			if (i >= 0) {
+				mask.set(i);
+			}
+		}
+		return mask;
+	}
+
+}
@@ -30,6 +30,7 @@ import java.util.Set;
 import java.util.concurrent.ConcurrentHashMap;
 
 import org.apache.log4j.Logger;
+import org.matsim.analysis.PhaseProfiler;
 import org.matsim.api.core.v01.events.ActivityEndEvent;
 import org.matsim.api.core.v01.events.ActivityStartEvent;
 import org.matsim.api.core.v01.events.Event;
@@ -108,6 +109,15 @@ public final class EventsManagerImpl implements EventsManager {
 			this.eventHandler = eventHandler;
 			this.method = method;
 		}
+
+		private PhaseProfiler.Timer timer = null;
+
+		protected PhaseProfiler.Timer getTimer() {
+			if (this.timer == null) {
+				this.timer = PhaseProfiler.getInstance().getTimer(PhaseProfiler.CATEGORY_EVENT_HANDLER, this.eventHandler.getClass().getName());
+			}
+			return this.timer;
+		}
 	}
 
 	private final List<HandlerData> handlerData = new ArrayList<HandlerData>();
@@ -217,22 +227,33 @@ public final class EventsManagerImpl implements EventsManager {
 	}
 
 	private void computeEvent(final Event event) {
+		final boolean profiling = PhaseProfiler.getInstance().isEnabled();
 		for (HandlerInfo info : getHandlersForClass(event.getClass())) {
 			synchronized(info.eventHandler) {
-				if (callHandlerFast(info.eventClass, event, info.eventHandler)) {
-					continue;
-				}
-				try {
-					info.method.invoke(info.eventHandler, event);
-				} catch (IllegalArgumentException | IllegalAccessException e) {
-					throw new RuntimeException("problem invoking EventHandler " + info.eventHandler.getClass().getCanonicalName() + " for event-class " + info.eventClass.getCanonicalName(), e);
-				} catch (InvocationTargetException e) {
-					throw new RuntimeException("problem invoking EventHandler " + info.eventHandler.getClass().getCanonicalName() + " for event-class " + info.eventClass.getCanonicalName(), e.getCause());
+				if (profiling) {
+					long start = System.nanoTime();
+					callHandler(info, event);
+					info.getTimer().add(System.nanoTime() - start);
+				} else {
+					callHandler(info, event);
 				}
 			}
 		}
 	}
 
+	private void callHandler(final HandlerInfo info, final Event event) {
+		if (callHandlerFast(info.eventClass, event, info.eventHandler)) {
+			return;
+		}
+		try {
+			info.method.invoke(info.eventHandler, event);
+		} catch (IllegalArgumentException | IllegalAccessException e) {
+			throw new RuntimeException("problem invoking EventHandler " + info.eventHandler.getClass().getCanonicalName() + " for event-class " + info.eventClass.getCanonicalName(), e);
+		} catch (InvocationTargetException e) {
+			throw new RuntimeException("problem invoking EventHandler " + info.eventHandler.getClass().getCanonicalName() + " for event-class " + info.eventClass.getCanonicalName(), e.getCause());
+		}
+	}
+
 	private HandlerInfo[] getHandlersForClass(final Class<?> eventClass) {
 		Class<?> klass = eventClass;
 		HandlerInfo[] cache = this.cacheHandlers.get(eventClass);
@@ -0,0 +1,362 @@
+/* *********************************************************************** *
+ * project: org.matsim.*
+ * IndexedEventsReader.java
+ *                                                                         *
+ * *********************************************************************** *
+ *                                                                         *
+ * copyright       : (C) 2019 by the members listed in the COPYING,        *
+ *                   LICENSE and WARRANTY file.                            *
+ * email           : info at matsim dot org                                *
+ *                                                                         *
+ * *********************************************************************** *
+ *                                                                         *
+ *   This program is free software; you can redistribute it and/or modify  *
+ *   it under the terms of the GNU General Public License as published by  *
+ *   the Free Software Foundation; either version 2 of the License, or     *
+ *   (at your option) any later version.                                   *
+ *   See also COPYING, LICENSE and WARRANTY file                           *
+ *                                                                         *
+ * *********************************************************************** */
+
+package org.matsim.core.events;
+
+import java.io.ByteArrayInputStream;
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.SequenceInputStream;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.BitSet;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.Deque;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+import org.apache.log4j.Logger;
+import org.matsim.api.core.v01.events.Event;
+import org.matsim.core.api.experimental.events.EventsManager;
+import org.matsim.core.events.EventsReaderXMLv1.CustomEventMapper;
+import org.matsim.core.events.handler.EventHandler;
+import org.matsim.core.utils.io.IOUtils;
+
+/**
+ * Reads only a part of an events file, selected by a time window and/or by event types.
+ * <p></p>
+ * On the first use, the events file is scanned once and an index (see {@link EventsFileIndex}) is written next to
+ * it (<code>events.xml.gz</code> &rarr; <code>events.xml.gz.idx</code>).  The index groups the events into blocks
+ * per time bucket and remembers which event types each block contains, so later calls only need to parse the blocks
+ * that can contain requested events.  The selected blocks are parsed in parallel, and the events are passed to the
+ * events manager in file order.
+ * <p></p>
+ * Uncompressed files are accessed with memory-mapped I/O, so unselected parts of the file are not read at all.
+ * A gzip stream does not support random access; for compressed files the file is decompressed sequentially up to
+ * the last selected block, but unselected blocks are skipped without parsing them.
+ * <p></p>
+ * Example:
+ * <pre>
+ * new IndexedEventsReader(events).readFile("output_events.xml.gz", 7*3600, 9*3600, Collections.singleton(LinkEnterEvent.EVENT_TYPE));
+ * </pre>
+ */
+public final class IndexedEventsReader {
+
+	private static final Logger log = Logger.getLogger(IndexedEventsReader.class);
+
+	/** the suffix of the index file that is stored next to the events file */
+	public static final String INDEX_SUFFIX = ".idx";
+
+	private static final byte[] PREFIX = "<?xml version=\"1.0\" encoding=\"utf-8\"?>\n<events version=\"1.0\">\n".getBytes(StandardCharsets.UTF_8);
+	private static final byte[] SUFFIX = "\n</events>\n".getBytes(StandardCharsets.UTF_8);
+
+	private final EventsManager events;
+	private final Map<String, CustomEventMapper> customEventMappers = new LinkedHashMap<>();
+	private int numberOfThreads = Runtime.getRuntime().availableProcessors();
+	private double bucketSize = 900.0;
+	private int maxBlockBytes = 4 * 1024 * 1024;
+
+	public IndexedEventsReader(final EventsManager events) {
+		this.events = events;
+	}
+
+	public void addCustomEventMapper(final String eventType, final CustomEventMapper mapper) {
+		this.customEventMappers.put(eventType, mapper);
+	}
+
+	public void setNumberOfThreads(final int numberOfThreads) {
+		this.numberOfThreads = Math.max(1, numberOfThreads);
+	}
+
+	/**
+	 * Sets the time bucket size (in seconds) used when a new index is built. Default: 900.
+	 */
+	public void setBucketSize(final double bucketSize) {
+		this.bucketSize = bucketSize;
+	}
+
+	/**
+	 * Sets the maximum size of a block (in bytes of the uncompressed file) used when a new index is built. Large
+	 * time buckets are split into several blocks, so they can be parsed in parallel. Default: 4 MB.
+	 */
+	public void setMaxBlockBytes(final int maxBlockBytes) {
+		this.maxBlockBytes = maxBlockBytes;
+	}
+
+	/**
+	 * Reads all events with <code>fromTime &lt;= time &lt; toTime</code>.
+	 */
+	public void readFile(final String filename, final double fromTime, final double toTime) {
+		readFile(filename, fromTime, toTime, null);
+	}
+
+	/**
+	 * Reads all events with <code>fromTime &lt;= time &lt; toTime</code> whose type is contained in
+	 * <code>eventTypes</code>.
+	 *
+	 * @param eventTypes the types of the events to read (see {@link Event#getEventType()}), or <code>null</code> for all types
+	 */
+	public void readFile(final String filename, final double fromTime, final double toTime, final Collection<String> eventTypes) {
+		File file = new File(filename);
+		EventsFileIndex index = getIndex(file);
+		Set<String> types = eventTypes == null ? null : new HashSet<>(eventTypes);
+		BitSet typeMask = index.getTypeMask(types);
+
+		List<EventsFileIndex.Block> selected = new ArrayList<>();
+		for (EventsFileIndex.Block block : index.blocks) {
+			if (block.maxTime >= fromTime && block.minTime < toTime && (typeMask == null || block.types.intersects(typeMask))) {
+				selected.add(block);
+			}
+		}
+		log.info("reading " + selected.size() + " of " + index.blocks.size() + " blocks of " + filename);
+		if (selected.isEmpty()) {
+			return;
+		}
+
+		boolean compressed = !filename.toLowerCase(Locale.ROOT).endsWith(".xml");
+		ExecutorService executor = Executors.newFixedThreadPool(this.numberOfThreads);
+		try (BlockSource source = compressed ? new StreamBlockSource(filename) : new MappedBlockSource(file)) {
+			Deque<Future<List<Event>>> pending = new ArrayDeque<>();
+			int window = 2 * this.numberOfThreads;
+			int next = 0;
+			while (next < selected.size() || !pending.isEmpty()) {
+				while (next < selected.size() && pending.size() < window) {
+					InputStream blockStream = source.getBlock(selected.get(next));
+					next++;
+					pending.add(executor.submit(() -> parseBlock(blockStream, fromTime, toTime, types)));
+				}
+				for (Event event : pending.poll().get()) {
+					this.events.processEvent(event);
+				}
+			}
+		} catch (IOException e) {
+			throw new UncheckedIOException(e);
+		} catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+			throw new RuntimeException(e);
+		} catch (ExecutionException e) {
+			throw new RuntimeException(e.getCause());
+		} finally {
+			executor.shutdownNow();
+		}
+	}
+
+	/**
+	 * Loads the index of the given events file from the sidecar file, or builds (and, if possible, stores) it.
+	 */
+	private EventsFileIndex getIndex(final File file) {
+		File indexFile = new File(file.getPath() + INDEX_SUFFIX);
+		if (indexFile.exists()) {
+			EventsFileIndex index = EventsFileIndex.read(indexFile);
+			if (index != null && index.isIndexOf(file)) {
+				return index;
+			}
+			log.info("index " + indexFile + " is outdated, will rebuild it.");
+		}
+		log.info("building index for events file " + file + " ...");
+		EventsFileIndex index;
+		try (InputStream in = IOUtils.getInputStream(file.getPath())) {
+			index = EventsFileIndex.build(file, in, this.bucketSize, this.maxBlockBytes);
+		} catch (IOException e) {
+			throw new UncheckedIOException(e);
+		}
+		try {
+			index.write(indexFile);
+		} catch (IOException e) {
+			log.warn("could not write index file " + indexFile + ", the index will be rebuilt the next time.", e);
+		}
+		log.info("building index done: " + index.blocks.size() + " blocks, " + index.eventTypes.size() + " event types.");
+		return index;
+	}
+
+	private List<Event> parseBlock(final InputStream blockStream, final double fromTime, final double toTime, final Set<String> types) {
+		EventCollector collector = new EventCollector(this.events, fromTime, toTime, types);
+		EventsReaderXMLv1 reader = new EventsReaderXMLv1(collector);
+		reader.setUsingFastParser(true);
+		for (Map.Entry<String, CustomEventMapper> e : this.customEventMappers.entrySet()) {
+			reader.addCustomEventMapper(e.getKey(), e.getValue());
+		}
+		reader.parse(new SequenceInputStream(Collections.enumeration(Arrays.asList(
+				new ByteArrayInputStream(PREFIX), blockStream, new ByteArrayInputStream(SUFFIX)))));
+		return collector.events;
+	}
+
+	private interface BlockSource extends AutoCloseable {
+		/** blocks are requested in file order */
+		InputStream getBlock(EventsFileIndex.Block block) throws IOException;
+
+		@Override
+		void close() throws IOException;
+	}
+
+	private static final class MappedBlockSource implements BlockSource {
+		private final FileChannel channel;
+
+		MappedBlockSource(final File file) throws IOException {
+			this.channel = FileChannel.open(file.toPath(), StandardOpenOption.READ);
+		}
+
+		@Override
+		public InputStream getBlock(final EventsFileIndex.Block block) throws IOException {
+			MappedByteBuffer buffer = this.channel.map(FileChannel.MapMode.READ_ONLY, block.start, block.end - block.start);
+			return new ByteBufferInputStream(buffer);
+		}
+
+		@Override
+		public void close() throws IOException {
+			this.channel.close();
+		}
+	}
+
+	private static final class StreamBlockSource implements BlockSource {
+		private final InputStream in;
+		private long position = 0;
+
+		StreamBlockSource(final String filename) {
+			this.in = IOUtils.getInputStream(filename);
+		}
+
+		@Override
+		public InputStream getBlock(final EventsFileIndex.Block block) throws IOException {
+			while (this.position < block.start) {
+				long skipped = this.in.skip(block.start - this.position);
+				if (skipped <= 0) {
+					throw new IOException("unexpected end of file at position " + this.position);
+				}
+				this.position += skipped;
+			}
+			byte[] data = new byte[(int) (block.end - block.start)];
+			int read = 0;
+			while (read < data.length) {
+				int r = this.in.read(data, read, data.length - read);
+				if (r < 0) {
+					throw new IOException("unexpected end of file at position " + (this.position + read));
+				}
+				read += r;
+			}
+			this.position += data.length;
+			return new ByteArrayInputStream(data);
+		}
+
+		@Override
+		public void close() throws IOException {
+			this.in.close();
+		}
+	}
+
+	private static final class ByteBufferInputStream extends InputStream {
+		private final ByteBuffer buffer;
+
+		ByteBufferInputStream(final ByteBuffer buffer) {
+			this.buffer = buffer;
+		}
+
+		@Override
+		public int read() {
+			return this.buffer.hasRemaining() ? this.buffer.get() & 0xff : -1;
+		}
+
+		@Override
+		public int read(final byte[] b, final int off, final int len) {
+			if (!this.buffer.hasRemaining()) {
+				return -1;
+			}
+			int n = Math.min(len, this.buffer.remaining());
+			this.buffer.get(b, off, n);
+			return n;
+		}
+	}
+
+	/**
+	 * Collects the events of one block that match the requested time window and types.  The collected events are
+	 * passed on to the reader's events manager in file order, so handlers are registered there.
+	 */
+	private static final class EventCollector implements EventsManager {
+		final List<Event> events = new ArrayList<>();
+		private final EventsManager delegate;
+		private final double fromTime;
+		private final double toTime;
+		private final Set<String> types;
+
+		EventCollector(final EventsManager delegate, final double fromTime, final double toTime, final Set<String> types) {
+			this.delegate = delegate;
+			this.fromTime = fromTime;
+			this.toTime = toTime;
+			this.types = types;
+		}
+
+		@Override
+		public void processEvent(final Event event) {
+			if (event.getTime() >= this.fromTime && event.getTime() < this.toTime
+					&& (this.types == null || this.types.contains(event.getEventType()))) {
+				this.events.add(event);
+			}
+		}
+
+		@Override
+		public void addHandler(final EventHandler handler) {
+			this.delegate.addHandler(handler);
+		}
+
+		@Override
+		public void removeHandler(final EventHandler handler) {
+			this.delegate.removeHandler(handler);
+		}
+
+		/*
+		 * Resetting and processing are up to the owner of the reader's events manager, reading a file does not
+		 * start or finish them.
+		 */
+
+		@Override
+		public void resetHandlers(final int iteration) {
+		}
+
+		@Override
+		public void initProcessing() {
+		}
+
+		@Override
+		public void afterSimStep(final double time) {
+		}
+
+		@Override
+		public void finishProcessing() {
+		}
+	}
+
+}
@@ -48,6 +48,8 @@ public final class MatsimEventsReader implements MatsimReader {
 
 	private final Map<String, CustomEventMapper> map = new LinkedHashMap<>(  ) ;
 
+	private boolean usingFastParser = false;
+
 	public void addCustomEventMapper( String eventType, CustomEventMapper mapper ) {
 		map.put( eventType, mapper ) ;
 	}
@@ -61,6 +63,13 @@ public final class MatsimEventsReader implements MatsimReader {
 		this.events = events;
 	}
 
+	/**
+	 * @see MatsimXmlParser#setUsingFastParser(boolean)
+	 */
+	public void setUsingFastParser(final boolean usingFastParser) {
+		this.usingFastParser = usingFastParser;
+	}
+
 	/**
 	 * Parses the specified events file.
 	 *
@@ -70,7 +79,7 @@ public final class MatsimEventsReader implements MatsimReader {
 	public void readFile(final String filename) {
 		String lcFilename = filename.toLowerCase(Locale.ROOT);
 		if (lcFilename.endsWith(".xml") || lcFilename.endsWith(".xml.gz")) {
-			new XmlEventsReader(this.events, map ).readFile(filename );
+			createXmlEventsReader().readFile(filename );
 		} else if (lcFilename.endsWith(".txt") || lcFilename.endsWith(".txt.gz")) {
 			throw new RuntimeException("text events are no longer supported. Please use MATSim 0.6.1 or earlier to read text events.");
 		} else {
@@ -79,12 +88,18 @@ public final class MatsimEventsReader implements MatsimReader {
 	}
 
 	public void readStream(final InputStream stream) {
-		new XmlEventsReader(this.events, map ).parse(stream );
+		createXmlEventsReader().parse(stream );
 	}
 
 	@Override
 	public void readURL( final URL url ) {
-		new XmlEventsReader( this.events, map ).readURL( url );
+		createXmlEventsReader().readURL( url );
+	}
+
+	private XmlEventsReader createXmlEventsReader() {
+		XmlEventsReader reader = new XmlEventsReader( this.events, map );
+		reader.setUsingFastParser(this.usingFastParser);
+		return reader;
 	}
 
 	private static class XmlEventsReader extends MatsimXmlParser {
@@ -21,6 +21,7 @@
 package org.matsim.core.events;
 
 import java.lang.Thread.UncaughtExceptionHandler;
+import java.util.List;
 import java.util.concurrent.atomic.AtomicBoolean;
 
 import org.apache.log4j.Logger;
@@ -122,6 +123,19 @@ public final class ParallelEventsManagerImpl implements EventsManager {
 		}
 	}
 
+	@Override
+	public void processEvents(final List<Event> events) {
+		if (parallelMode) {
+			for (int i = 0; i < eventsProcessThread.length; i++) {
+				eventsProcessThread[i].processEvents(events);
+			}
+		} else {
+			for (int i = 0; i < eventsProcessThread.length; i++) {
+				eventsProcessThread[i].getEvents().processEvents(events);
+			}
+		}
+	}
+
 	@Override
 	public void addHandler(final EventHandler handler) {
 		synchronized (this) {
@@ -62,6 +62,13 @@ import org.matsim.core.gbl.Gbl;
 		}
 	}
 
+	public synchronized void processEvents(final List<Event> events) {
+		preInputBuffer.addAll(events);
+		if (preInputBuffer.size() > preInputBufferMaxLength) {
+			emptyPreBuffer();
+		}
+	}
+
 	private void emptyPreBuffer() {
 		eventQueue.addAll( preInputBuffer );
 		preInputBuffer.clear();
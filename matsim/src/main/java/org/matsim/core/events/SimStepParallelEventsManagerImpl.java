@@ -30,6 +30,7 @@ import org.matsim.core.gbl.Gbl;
 import javax.inject.Inject;
 import java.lang.Thread.UncaughtExceptionHandler;
 import java.util.ArrayList;
+import java.util.Collections;
 import java.util.List;
 import java.util.Queue;
 import java.util.concurrent.BrokenBarrierException;
@@ -101,6 +102,15 @@ class SimStepParallelEventsManagerImpl implements EventsManager {
 		} else delegate.processEvent(event);
 	}
 
+	@Override
+	public void processEvents(final List<Event> events) {
+		this.counter.addAndGet(events.size());
+
+		if (parallelMode) {
+			runnables[0].processEvents(events);
+		} else delegate.processEvents(events);
+	}
+
 	@Override
 	public void addHandler(final EventHandler handler) {
 		delegate.addHandler(handler);
@@ -127,10 +137,10 @@ class SimStepParallelEventsManagerImpl implements EventsManager {
 		delegate.initProcessing();
 		for (EventsManager eventsManager : this.eventsManagers) eventsManager.initProcessing();
 
-		Queue<Event>[] eventsQueuesArray = new Queue[this.numOfThreads];
-		List<Queue<Event>> eventsQueues = new ArrayList<Queue<Event>>();
+		Queue<List<Event>>[] eventsQueuesArray = new Queue[this.numOfThreads];
+		List<Queue<List<Event>>> eventsQueues = new ArrayList<Queue<List<Event>>>();
 		for (int i = 0; i < numOfThreads; i++) {
-			Queue<Event> eventsQueue = new LinkedBlockingQueue<>();
+			Queue<List<Event>> eventsQueue = new LinkedBlockingQueue<>();
 			eventsQueues.add(eventsQueue);
 			eventsQueuesArray[i] = eventsQueue;
 		}
@@ -242,13 +252,14 @@ class SimStepParallelEventsManagerImpl implements EventsManager {
 		private final CyclicBarrier waitForEmptyQueuesBarrier;
 		private final CyclicBarrier simStepEndBarrier;
 		private final CyclicBarrier iterationEndBarrier;
-		private final Queue<Event> eventsQueue;
-		private final Queue<Event> nextEventsQueue;
+		// the queues hold batches of events, so that a batch costs only one queue operation
+		private final Queue<List<Event>> eventsQueue;
+		private final Queue<List<Event>> nextEventsQueue;
 		private double lastEventTime = 0.0;
 
 		public ProcessEventsRunnable(EventsManager eventsManager, ProcessedEventsChecker processedEventsChecker, 
 				CyclicBarrier waitForEmptyQueuesBarrier,CyclicBarrier simStepEndBarrier,
-				CyclicBarrier iterationEndBarrier, Queue<Event> eventsQueue, Queue<Event> nextEventsQueue) {
+				CyclicBarrier iterationEndBarrier, Queue<List<Event>> eventsQueue, Queue<List<Event>> nextEventsQueue) {
 			this.eventsManager = eventsManager;
 			this.processedEventsChecker = processedEventsChecker;
 			this.waitForEmptyQueuesBarrier = waitForEmptyQueuesBarrier;
@@ -270,64 +281,61 @@ class SimStepParallelEventsManagerImpl implements EventsManager {
 				 * event is found.
 				 */
 				lastEventTime = 0.0;
-				while (true) {
-					Event event = ((LinkedBlockingQueue<Event>) eventsQueue).take();
-					
+				boolean lastEventOfIteration = false;
+				while (!lastEventOfIteration) {
+					List<Event> events = ((LinkedBlockingQueue<List<Event>>) eventsQueue).take();
+
 					/*
-					 * Check whether the events are ordered chronologically.
+					 * Handing the events over to the next events processing thread.
+					 *
+					 * This could be added to the next EventHandlers queue here or in
+					 * the processEvent(...) method. Doing it here might be a bit faster
+					 * since it is not done in the main thread.  The batches are not
+					 * changed after they have been queued, so they can be passed on as they are.
 					 */
-					if (event.getTime() < this.lastEventTime) {
-						throw new RuntimeException("Events in the queue are not ordered chronologically. " +
-								"This should never happen. Is the SimTimeStepParallelEventsManager registered " +
-								"as a MobsimAfterSimStepListener?");
-					} else this.lastEventTime = event.getTime();
-					
-					if (event instanceof LastEventOfSimStep) {
-						/*
-						 * Send the event to the next events processing thread, if this is not the last thread.
-						 */
-						if (nextEventsQueue != null) {
-							nextEventsQueue.add(event);
-						}
-						
-						/*
-						 * At the moment, this thread's queue is empty. However, one of the other threads
-						 * could create additional events for this time step. Therefore we have to wait
-						 * until all threads reach this barrier. Afterwards we can check whether still
-						 * all queues are empty. If this is true, the threads reach the sim step end barrier.
-						 */
-						waitForEmptyQueuesBarrier.await();
-						if (!processedEventsChecker.allEventsProcessed()) continue;
-						
-						/*
-						 * All event queues are empty, therefore finish current time step by
-						 * reaching the sim step end barrier.
-						 */
-						simStepEndBarrier.await();
-						continue;
-					} 
-					else {
+					if (nextEventsQueue != null) {
+						nextEventsQueue.add(events);
+					}
+
+					for (Event event : events) {
 						/*
-						 * Handing the event over to the next events processing thread.
-						 * 
-						 * This could be added to the next EventHandlers queue here or in 
-						 * the processEvent(...) method. Doing it here might be a bit faster
-						 * since it is not done in the main thread.
+						 * Check whether the events are ordered chronologically.
 						 */
-						if (nextEventsQueue != null) {
-							nextEventsQueue.add(event);
+						if (event.getTime() < this.lastEventTime) {
+							throw new RuntimeException("Events in the queue are not ordered chronologically. " +
+									"This should never happen. Is the SimTimeStepParallelEventsManager registered " +
+									"as a MobsimAfterSimStepListener?");
+						} else this.lastEventTime = event.getTime();
+
+						if (event instanceof LastEventOfSimStep) {
+							/*
+							 * At the moment, this thread's queue is empty. However, one of the other threads
+							 * could create additional events for this time step. Therefore we have to wait
+							 * until all threads reach this barrier. Afterwards we can check whether still
+							 * all queues are empty. If this is true, the threads reach the sim step end barrier.
+							 */
+							waitForEmptyQueuesBarrier.await();
+							if (!processedEventsChecker.allEventsProcessed()) continue;
+
+							/*
+							 * All event queues are empty, therefore finish current time step by
+							 * reaching the sim step end barrier.
+							 */
+							simStepEndBarrier.await();
+							continue;
 						}
-						
+
 						/*
 						 * If it is the last Event of the iteration, break the while loop
 						 * and end the parallel events processing.
 						 * TODO: Check whether still some events could be left in the queues...
 						 */
 						if (event instanceof LastEventOfIteration) {
+							lastEventOfIteration = true;
 							break;
 						}
+						eventsManager.processEvent(event);
 					}
-					eventsManager.processEvent(event);
 				}
 				iterationEndBarrier.await();
 			} catch (InterruptedException | BrokenBarrierException e) {
@@ -337,7 +345,12 @@ class SimStepParallelEventsManagerImpl implements EventsManager {
 		}
 
 		public void processEvent(Event event) {
-			this.eventsQueue.add(event);
+			this.eventsQueue.add(Collections.singletonList(event));
+		}
+
+		public void processEvents(List<Event> events) {
+			// the caller may reuse its list, so the batch is copied; the copy is queued with a single lock
+			this.eventsQueue.add(new ArrayList<>(events));
 		}
 		
 	}	// ProcessEventsRunnable
@@ -345,11 +358,11 @@ class SimStepParallelEventsManagerImpl implements EventsManager {
 	private static class ProcessedEventsChecker implements Runnable {
 
 		private final EventsManager evenentsManger;
-		private final Queue<Event>[] eventQueues;
+		private final Queue<List<Event>>[] eventQueues;
 		private boolean allEventsProcessed;
 		private double time;
 		
-		public ProcessedEventsChecker(EventsManager evenentsManger, Queue<Event>[] eventQueues) {
+		public ProcessedEventsChecker(EventsManager evenentsManger, Queue<List<Event>>[] eventQueues) {
 			this.evenentsManger = evenentsManger;
 			this.eventQueues = eventQueues;
 			
@@ -366,7 +379,7 @@ class SimStepParallelEventsManagerImpl implements EventsManager {
 		
 		@Override
 		public void run() {
-			for (Queue<Event> eventsQueue : eventQueues) {
+			for (Queue<List<Event>> eventsQueue : eventQueues) {
 				/*
 				 * Some EventHandlers might have created additional Events [1] which 
 				 * could be located in the list AFTER the LastEventOfSimStep, meaning 
@@ -28,6 +28,7 @@ import java.util.Map;
 import java.util.Set;
 
 import org.apache.log4j.Logger;
+import org.matsim.analysis.PhaseProfiler;
 import org.matsim.api.core.v01.events.ActivityEndEvent;
 import org.matsim.api.core.v01.events.ActivityStartEvent;
 import org.matsim.api.core.v01.events.Event;
@@ -112,6 +113,8 @@ public final class SingleHandlerEventsManager implements EventsManager {
 	private long nextCounterMsg = 1;
 
 	private boolean isActive = true;
+
+	private PhaseProfiler.Timer timer = null;
 	
 	public SingleHandlerEventsManager(EventHandler eventHandler) {
 		this.eventHandler = eventHandler;
@@ -211,7 +214,20 @@ public final class SingleHandlerEventsManager implements EventsManager {
 			this.nextCounterMsg *= 2;
 			log.info(" event # " + this.counter);
 		}
-		computeEvent(event);
+		if (PhaseProfiler.getInstance().isEnabled()) {
+			long start = System.nanoTime();
+			computeEvent(event);
+			getTimer().add(System.nanoTime() - start);
+		} else {
+			computeEvent(event);
+		}
+	}
+
+	private PhaseProfiler.Timer getTimer() {
+		if (this.timer == null) {
+			this.timer = PhaseProfiler.getInstance().getTimer(PhaseProfiler.CATEGORY_EVENT_HANDLER, this.eventHandler.getClass().getName());
+		}
+		return this.timer;
 	}
 
 	@Override
@@ -20,6 +20,8 @@
 
 package org.matsim.core.events;
 
+import java.util.List;
+
 import org.matsim.api.core.v01.events.Event;
 import org.matsim.core.api.experimental.events.EventsManager;
 import org.matsim.core.events.handler.EventHandler;
@@ -54,6 +56,11 @@ class SynchronizedEventsManagerImpl implements EventsManager {
 	public synchronized void processEvent(Event event) {
 		this.delegate.processEvent(event);
 	}
+
+	@Override
+	public synchronized void processEvents(List<Event> events) {
+		this.delegate.processEvents(events);
+	}
 	
 	@Override
 	public void removeHandler(EventHandler handler) {
@@ -77,6 +77,11 @@ public abstract class MatsimRandom {
 		return random;
 	}
 
+	/** Returns the seed of the last reset, e.g. to derive random streams which do not depend on the number of draws so far. */
+	public static long getLastUsedSeed() {
+		return lastUsedSeed;
+	}
+
 	/** Returns an instance of a random number generator, which can be used
 	 * locally, e.g. in threads.
 	 *
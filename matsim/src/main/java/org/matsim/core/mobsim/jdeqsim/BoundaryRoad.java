@@ -0,0 +1,126 @@
+/* *********************************************************************** *
+ * project: org.matsim.*
+ * BoundaryRoad.java
+ *                                                                         *
+ * *********************************************************************** *
+ *                                                                         *
+ * copyright       : (C) 2019 by the members listed in the COPYING,        *
+ *                   LICENSE and WARRANTY file.                            *
+ * email           : info at matsim dot org                                *
+ *                                                                         *
+ * *********************************************************************** *
+ *                                                                         *
+ *   This program is free software; you can redistribute it and/or modify  *
+ *   it under the terms of the GNU General Public License as published by  *
+ *   the Free Software Foundation; either version 2 of the License, or     *
+ *   (at your option) any later version.                                   *
+ *   See also COPYING, LICENSE and WARRANTY file                           *
+ *                                                                         *
+ * *********************************************************************** */
+
+package org.matsim.core.mobsim.jdeqsim;
+
+import org.matsim.api.core.v01.network.Link;
+
+/**
+ * A road between two partitions of the {@link PartitionedScheduler}.
+ * <p></p>
+ * The entry of the road (admission of vehicles, the waiting vehicles and the gaps) is simulated by the partition of
+ * the from node, the exit (the queue of the cars on the road) by the partition of the to node.  The two sides only
+ * talk to each other by messages which are at least the free speed travel time resp. the gap travel time of the road
+ * in the future, which gives the partitions the lookahead to run in parallel:
+ * <ul>
+ * <li> an entering vehicle is added to the queue at the exit when it reaches the end of the road;
+ * <li> a leaving vehicle frees its space at the entry when the gap reaches the back of the road.
+ * </ul>
+ * The second point is the only difference to a {@link Road}, which counts the space as free as soon as the vehicle
+ * leaves, but does not let a vehicle enter before the gap arrives, as long as the road has been full recently.
+ */
+final class BoundaryRoad extends Road {
+
+	// the number of cars on the road, as seen from the entry: the cars which entered and whose gap did not arrive yet
+	private int numberOfCarsOnTheRoad = 0;
+
+	// the cars must reach the end of the road in the order they entered it
+	private double lastArrivalAtEndOfRoad = Double.NEGATIVE_INFINITY;
+
+	BoundaryRoad(Scheduler scheduler, Link link) {
+		super(scheduler, link);
+	}
+
+	@Override
+	public void enterRoad(Vehicle vehicle, double simTime) {
+		// calculate time, when the car reaches the end of the road
+		double nextAvailableTimeForLeavingStreet = simTime + this.link.getLength()
+				/ this.link.getFreespeed(simTime);
+
+		this.noOfCarsPromisedToEnterRoad--;
+		this.numberOfCarsOnTheRoad++;
+
+		this.lastArrivalAtEndOfRoad = Math.max(this.lastArrivalAtEndOfRoad, nextAvailableTimeForLeavingStreet);
+		sendMessage(new ExitArrivalMessage(this.scheduler, vehicle), this, this.lastArrivalAtEndOfRoad);
+	}
+
+	@Override
+	public void leaveRoad(Vehicle vehicle, double simTime) {
+		assert (this.carsOnTheRoad.getFirst() == vehicle);
+
+		this.carsOnTheRoad.removeFirst();
+		this.earliestDepartureTimeOfCar.removeFirst();
+		this.timeOfLastLeavingVehicle = simTime;
+
+		sendMessage(new GapMessage(), this, simTime + this.gapTravelTime);
+
+		scheduleEndRoadMessageOfFirstCar();
+	}
+
+	@Override
+	int getNumberOfCarsOnTheRoad() {
+		return this.numberOfCarsOnTheRoad;
+	}
+
+	/**
+	 * The vehicle reaches the end of the road; handled by the partition of the to node.
+	 */
+	static final class ExitArrivalMessage extends EventMessage {
+
+		ExitArrivalMessage(Scheduler scheduler, Vehicle vehicle) {
+			super(scheduler, vehicle);
+			this.priority = JDEQSimConfigGroup.PRIORITY_LEAVE_ROAD_MESSAGE;
+		}
+
+		@Override
+		public void handleMessage() {
+			BoundaryRoad road = (BoundaryRoad) this.getReceivingUnit();
+			road.arriveAtEndOfRoad(this.vehicle, getMessageArrivalTime());
+		}
+
+		@Override
+		public void processEvent() {
+			// the link enter event was already created when entering the road
+		}
+	}
+
+	/**
+	 * The gap of a leaving vehicle reaches the back of the road; handled by the partition of the from node.
+	 */
+	static final class GapMessage extends Message {
+
+		GapMessage() {
+			this.priority = JDEQSimConfigGroup.PRIORITY_LEAVE_ROAD_MESSAGE;
+		}
+
+		@Override
+		public void handleMessage() {
+			BoundaryRoad road = (BoundaryRoad) this.getReceivingUnit();
+			road.numberOfCarsOnTheRoad--;
+			road.gapArrives(getMessageArrivalTime());
+		}
+
+		@Override
+		public void processEvent() {
+			// don't need to output any event
+		}
+	}
+
+}
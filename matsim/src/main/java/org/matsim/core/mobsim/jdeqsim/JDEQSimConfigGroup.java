@@ -19,6 +19,8 @@
 
 package org.matsim.core.mobsim.jdeqsim;
 
+import java.util.Map;
+
 import org.matsim.core.config.ReflectiveConfigGroup;
 import org.matsim.core.utils.misc.Time;
 
@@ -57,6 +59,7 @@ public class JDEQSimConfigGroup extends ReflectiveConfigGroup {
 	public final static String CAR_SIZE = "carSize";
 	public final static String GAP_TRAVEL_SPEED = "gapTravelSpeed";
 	public final static String END_TIME = "endTime";
+	public final static String NUMBER_OF_THREADS = "numberOfThreads";
 
 	// INPUT
 	private double simulationEndTime = Double.MAX_VALUE; // in s
@@ -71,6 +74,7 @@ public class JDEQSimConfigGroup extends ReflectiveConfigGroup {
 	 * 'stuckTime' for entering next road, it will enter the next. in seconds
 	 */
 	private double squeezeTime = 1800;
+	private int numberOfThreads = 1;
 
 	public JDEQSimConfigGroup() {
 		super(NAME);
@@ -87,6 +91,17 @@ public class JDEQSimConfigGroup extends ReflectiveConfigGroup {
 		GC_MESSAGES = gc_messages;
 	}
 
+	@Override
+	public Map<String, String> getComments() {
+		Map<String, String> map = super.getComments();
+		map.put(NUMBER_OF_THREADS, "Number of threads used for the JDEQSim.  With more than one thread, the network is cut into "
+				+ "as many regions, which are simulated in parallel and synchronized after time windows of the shortest travel time "
+				+ "from one region to another, over a link or by a teleported leg; if it is zero, one thread is used.  Vehicles "
+				+ "on a link between two regions see space becoming free only when the gap has travelled back to the entry of the "
+				+ "link, otherwise the events are the same as with one thread.");
+		return map;
+	}
+
 	@StringGetter(END_TIME)
 	public String getSimulationEndTimeAsString() {
 		if (simulationEndTime != Double.MAX_VALUE) {
@@ -169,4 +184,17 @@ public class JDEQSimConfigGroup extends ReflectiveConfigGroup {
 		this.squeezeTime = squeezeTime;
 	}
 
+	@StringGetter(NUMBER_OF_THREADS)
+	public int getNumberOfThreads() {
+		return numberOfThreads;
+	}
+
+	@StringSetter(NUMBER_OF_THREADS)
+	public void setNumberOfThreads(int numberOfThreads) {
+		if (numberOfThreads < 1) {
+			throw new IllegalArgumentException("Number of threads must be strictly positive, got " + numberOfThreads);
+		}
+		this.numberOfThreads = numberOfThreads;
+	}
+
 }
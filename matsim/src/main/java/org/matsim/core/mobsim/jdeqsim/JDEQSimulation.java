@@ -66,13 +66,28 @@ public class JDEQSimulation implements Mobsim {
 		Timer t = new Timer();
 		t.startTimer();
 
-		Scheduler scheduler = new Scheduler(new MessageQueue(), config.getSimulationEndTime());
+		Scheduler scheduler;
+		PartitionedScheduler partitionedScheduler = null;
+		if (config.getNumberOfThreads() > 1) {
+			partitionedScheduler = new PartitionedScheduler(this.scenario.getNetwork(), this.scenario.getPopulation(),
+					config.getNumberOfThreads(), config.getSimulationEndTime());
+			if (!(partitionedScheduler.getLookahead() > 0)) {
+				log.warn("There is no travel time between two parts of the network (e.g. a teleported leg without travel "
+						+ "time), simulating with one thread.");
+				partitionedScheduler = null;
+			}
+		}
+		if (partitionedScheduler != null) {
+			scheduler = partitionedScheduler;
+		} else {
+			scheduler = new Scheduler(new MessageQueue(), config.getSimulationEndTime());
+		}
 		Road.setAllRoads(new HashMap<Id<Link>, Road>());
 
 		// initialize network
 		Road road;
 		for (Link link : this.scenario.getNetwork().getLinks().values()) {
-			road = new Road(scheduler, link);
+			road = partitionedScheduler == null ? new Road(scheduler, link) : partitionedScheduler.createRoad(link);
 			Road.getAllRoads().put(link.getId(), road);
 		}
 
@@ -19,15 +19,19 @@
 
 package org.matsim.core.mobsim.jdeqsim;
 
-import java.util.PriorityQueue;
+import org.matsim.core.utils.collections.TimeWheelQueue;
 
 /**
  * The message queue of the micro-simulation.
+ * <p></p>
+ * Messages are ordered by their arrival time; messages with the same arrival time by their priority (the higher
+ * priority first) and then in the order they were put into the queue.  The arrival time of a message must not be
+ * changed while it is in the queue.
  *
  * @author rashid_waraich
  */
 public class MessageQueue {
-	private PriorityQueue<Message> queue1 = new PriorityQueue<Message>();
+	private final TimeWheelQueue<Message> queue1 = new TimeWheelQueue<>(1.0, (m1, m2) -> m2.priority - m1.priority);
 	private int queueSize = 0;
 
 	/**
@@ -37,7 +41,7 @@ public class MessageQueue {
 	 * @param m
 	 */
 	public void putMessage(Message m) {
-		queue1.add(m);
+		queue1.add(m.getMessageArrivalTime(), m);
 		queueSize++;
 	}
 
@@ -80,6 +84,33 @@ public class MessageQueue {
 		return m;
 	}
 
+	/**
+	 * 
+	 * get the first message in the queue, if its time stamp is at or before <code>time</code>
+	 *
+	 * @return the message, or <code>null</code> if there is no message until <code>time</code>
+	 */
+	public Message getNextMessage(double time) {
+		Message m;
+		// skip over dead messages
+		while ((m = queue1.poll(time)) != null && !m.isAlive()) {
+
+		}
+		if (m != null) {
+			queueSize--;
+		}
+		return m;
+	}
+
+	/**
+	 * 
+	 * @return the time stamp of the first message in the queue (which might be a dead one), or
+	 *         <code>Double.POSITIVE_INFINITY</code> if the queue is empty
+	 */
+	public double getNextMessageTime() {
+		return queue1.peekTime();
+	}
+
 	public boolean isEmpty() {
 		return queue1.size() == 0;
 	}
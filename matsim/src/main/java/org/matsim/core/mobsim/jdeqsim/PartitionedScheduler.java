@@ -0,0 +1,459 @@
+/* *********************************************************************** *
+ * project: org.matsim.*
+ * PartitionedScheduler.java
+ *                                                                         *
+ * *********************************************************************** *
+ *                                                                         *
+ * copyright       : (C) 2019 by the members listed in the COPYING,        *
+ *                   LICENSE and WARRANTY file.                            *
+ * email           : info at matsim dot org                                *
+ *                                                                         *
+ * *********************************************************************** *
+ *                                                                         *
+ *   This program is free software; you can redistribute it and/or modify  *
+ *   it under the terms of the GNU General Public License as published by  *
+ *   the Free Software Foundation; either version 2 of the License, or     *
+ *   (at your option) any later version.                                   *
+ *   See also COPYING, LICENSE and WARRANTY file                           *
+ *                                                                         *
+ * *********************************************************************** */
+
+package org.matsim.core.mobsim.jdeqsim;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.function.Consumer;
+import java.util.function.Function;
+
+import org.apache.log4j.Logger;
+import org.matsim.api.core.v01.Id;
+import org.matsim.api.core.v01.TransportMode;
+import org.matsim.api.core.v01.events.Event;
+import org.matsim.api.core.v01.network.Link;
+import org.matsim.api.core.v01.network.Network;
+import org.matsim.api.core.v01.network.Node;
+import org.matsim.api.core.v01.population.Activity;
+import org.matsim.api.core.v01.population.Leg;
+import org.matsim.api.core.v01.population.Person;
+import org.matsim.api.core.v01.population.PlanElement;
+import org.matsim.api.core.v01.population.Population;
+import org.matsim.core.api.experimental.events.EventsManager;
+import org.matsim.core.events.handler.EventHandler;
+import org.matsim.core.gbl.Gbl;
+import org.matsim.core.network.NetworkChangeEvent;
+import org.matsim.core.network.TimeDependentNetwork;
+import org.matsim.core.population.routes.NetworkRoute;
+
+/**
+ * A scheduler which simulates the network in several partitions in parallel (conservative parallel discrete event
+ * simulation).
+ * <p></p>
+ * The nodes are cut into strips along the x axis, one partition per strip, each with its own message queue.  Everything
+ * a vehicle does at a node (leaving the previous road, waiting for and entering the next road, ending and starting legs)
+ * is simulated by the partition of the node; roads between two partitions are {@link BoundaryRoad}s.  Messages between
+ * partitions are at least the <em>lookahead</em> in the future, which is the shortest travel time from one partition to
+ * another: the free speed resp. gap travel time over a boundary road (with the highest free speed the road ever has),
+ * and the travel time of a teleported leg (or of a car leg without links) that ends in another partition.  So all
+ * partitions can process their messages of the time window [t, t + lookahead) in parallel, where t is the time of the
+ * first message in any queue, without missing a message from another partition.  After each window the messages sent
+ * to other partitions are delivered and the events are passed on to the events manager.  If the lookahead is zero,
+ * e.g. because of a teleported leg without travel time, the network cannot be simulated in parallel.
+ * <p></p>
+ * The messages sent to other partitions are put into their queues, and the events are passed on, ordered by the time
+ * and the priority of the message which created them, as in the sequential simulation; only messages resp. events of
+ * messages with the same time and priority in different partitions are ordered by partition.  Within a partition, the
+ * order is the same as in the sequential simulation.  As long as no road between two partitions is full (see
+ * {@link BoundaryRoad}), the results are the same as the ones of the sequential simulation.
+ */
+final class PartitionedScheduler extends Scheduler {
+
+	private static final Logger log = Logger.getLogger(PartitionedScheduler.class);
+
+	private final Partition[] partitions;
+	private final Map<Id<Node>, Integer> partitionOfNode = new HashMap<>();
+	private final double simulationEndTime;
+	private final double lookahead;
+	private double windowStart = 0;
+	private double hourlyLogTime = 3600;
+
+	// the partition processed by the current thread; not set while initializing the simulation
+	private final ThreadLocal<Partition> currentPartition = new ThreadLocal<>();
+
+	PartitionedScheduler(Network network, Population population, int numberOfPartitions, double simulationEndTime) {
+		super(new MessageQueue(), simulationEndTime);
+		this.simulationEndTime = simulationEndTime;
+		this.partitions = new Partition[numberOfPartitions];
+		this.partitions[0] = new Partition(0, this.queue);
+		for (int i = 1; i < numberOfPartitions; i++) {
+			this.partitions[i] = new Partition(i, new MessageQueue());
+		}
+
+		List<Node> nodes = new ArrayList<>(network.getNodes().values());
+		nodes.sort(Comparator.comparingDouble((Node node) -> node.getCoord().getX()).thenComparing(Node::getId));
+		for (int i = 0; i < nodes.size(); i++) {
+			this.partitionOfNode.put(nodes.get(i).getId(), (int) ((long) i * numberOfPartitions / nodes.size()));
+		}
+
+		this.lookahead = Math.min(getShortestTravelTimeOverBoundaryRoads(network), getShortestTravelTimeOfLegsToOtherPartitions(network, population));
+	}
+
+	/**
+	 * @return the shortest time in which a vehicle, or a gap, gets over a road between two partitions
+	 */
+	private double getShortestTravelTimeOverBoundaryRoads(Network network) {
+		Map<Id<Link>, Double> maximumFreespeeds = new HashMap<>();
+		if (network instanceof TimeDependentNetwork && ((TimeDependentNetwork) network).getNetworkChangeEvents() != null) {
+			for (NetworkChangeEvent changeEvent : ((TimeDependentNetwork) network).getNetworkChangeEvents()) {
+				if (changeEvent.getFreespeedChange() != null) {
+					for (Link link : changeEvent.getLinks()) {
+						maximumFreespeeds.merge(link.getId(), link.getFreespeed(changeEvent.getStartTime()), Math::max);
+					}
+				}
+			}
+		}
+
+		double travelTime = Double.POSITIVE_INFINITY;
+		for (Link link : network.getLinks().values()) {
+			if (getEntryPartition(link) != getExitPartition(link)) {
+				double maximumFreespeed = Math.max(link.getFreespeed(), maximumFreespeeds.getOrDefault(link.getId(), 0.0));
+				travelTime = Math.min(travelTime, link.getLength() / maximumFreespeed);
+				travelTime = Math.min(travelTime, link.getLength() / Road.config.getGapTravelSpeed());
+			}
+		}
+		return travelTime;
+	}
+
+	/**
+	 * @return the shortest travel time of the legs in the selected plans which do not move over the roads, i.e.
+	 *         teleported legs and car legs without links, and which end in another partition than they start
+	 */
+	private double getShortestTravelTimeOfLegsToOtherPartitions(Network network, Population population) {
+		double travelTime = Double.POSITIVE_INFINITY;
+		for (Person person : population.getPersons().values()) {
+			if (person.getSelectedPlan() == null) {
+				continue;
+			}
+			List<PlanElement> planElements = person.getSelectedPlan().getPlanElements();
+			for (int i = 1; i < planElements.size() - 1; i += 2) {
+				Leg leg = (Leg) planElements.get(i);
+				boolean carLeg = leg.getMode().equals(TransportMode.car);
+				if (carLeg && ((NetworkRoute) leg.getRoute()).getLinkIds().size() > 0) {
+					continue;
+				}
+				// the start and the end of the leg are simulated by the partitions of the entries of the activity links
+				Link startLink = network.getLinks().get(((Activity) planElements.get(i - 1)).getLinkId());
+				Link endLink = network.getLinks().get(((Activity) planElements.get(i + 1)).getLinkId());
+				if (getEntryPartition(startLink) != getEntryPartition(endLink)) {
+					travelTime = Math.min(travelTime, carLeg ? 0 : leg.getTravelTime());
+				}
+			}
+		}
+		return travelTime;
+	}
+
+	private int getEntryPartition(Link link) {
+		return this.partitionOfNode.get(link.getFromNode().getId());
+	}
+
+	private int getExitPartition(Link link) {
+		return this.partitionOfNode.get(link.getToNode().getId());
+	}
+
+	/**
+	 * @return the shortest time in which a message can get from one partition to another; if it is not positive, the
+	 *         partitions cannot be simulated in parallel
+	 */
+	double getLookahead() {
+		return this.lookahead;
+	}
+
+	/**
+	 * Creates the road for the link, which is a {@link BoundaryRoad} if its from and to node are in different
+	 * partitions.
+	 */
+	Road createRoad(Link link) {
+		int entryPartition = getEntryPartition(link);
+		int exitPartition = getExitPartition(link);
+		Road road;
+		if (entryPartition == exitPartition) {
+			road = new Road(this, link);
+		} else {
+			road = new BoundaryRoad(this, link);
+		}
+		road.entryPartition = entryPartition;
+		road.exitPartition = exitPartition;
+		return road;
+	}
+
+	@Override
+	public void schedule(Message m) {
+		int target = getPartitionIndex(m);
+		Partition partition = this.currentPartition.get();
+		if (partition == null) {
+			this.partitions[target].queue.putMessage(m);
+		} else if (partition.index == target) {
+			partition.queue.putMessage(m);
+		} else {
+			partition.outbox.add(m, partition.currentTime, partition.currentPriority);
+		}
+	}
+
+	@Override
+	public void unschedule(Message m) {
+		this.partitions[getPartitionIndex(m)].queue.removeMessage(m);
+	}
+
+	/**
+	 * @return the partition which simulates the part of the receiving road the message is about
+	 */
+	private int getPartitionIndex(Message m) {
+		Road road = (Road) m.getReceivingUnit();
+		if (m instanceof LeaveRoadMessage || m instanceof EndRoadMessage || m instanceof BoundaryRoad.ExitArrivalMessage) {
+			return road.exitPartition;
+		}
+		return road.entryPartition;
+	}
+
+	@Override
+	public void startSimulation() {
+		log.info("simulating " + this.partitions.length + " partitions in parallel with a lookahead of " + this.lookahead + " s");
+		if (!(this.lookahead > 0)) {
+			throw new RuntimeException("There is no travel time between two partitions, cannot simulate in parallel.");
+		}
+
+		// the message factory is not thread safe, so make sure it does not hand out disposed messages
+		MessageFactory.GC_ALL_MESSAGES();
+
+		EventsManager events = Message.eventsManager;
+		Message.setEventsManager(new BufferingEventsManager(events));
+
+		ExecutorService executor = Executors.newFixedThreadPool(this.partitions.length);
+		try {
+			List<Callable<Void>> tasks = new ArrayList<>();
+			for (Partition partition : this.partitions) {
+				tasks.add(() -> {
+					this.currentPartition.set(partition);
+					try {
+						partition.processMessages();
+					} finally {
+						this.currentPartition.remove();
+					}
+					return null;
+				});
+			}
+
+			while ((this.windowStart = getNextMessageTime()) < this.simulationEndTime) {
+				double windowEnd = Math.min(Math.max(this.windowStart + this.lookahead, Math.nextUp(this.windowStart)),
+						this.simulationEndTime);
+				for (Partition partition : this.partitions) {
+					partition.windowEnd = windowEnd;
+				}
+
+				for (Future<Void> future : executor.invokeAll(tasks)) {
+					future.get();
+				}
+
+				flushEvents(events);
+				deliverMessages(windowEnd);
+				printLog();
+			}
+		} catch (InterruptedException e) {
+			throw new RuntimeException(e);
+		} catch (ExecutionException e) {
+			throw new RuntimeException(e.getCause());
+		} finally {
+			executor.shutdown();
+			Message.setEventsManager(events);
+		}
+	}
+
+	@Override
+	public double getSimTime() {
+		return this.windowStart;
+	}
+
+	private double getNextMessageTime() {
+		double time = Double.POSITIVE_INFINITY;
+		for (Partition partition : this.partitions) {
+			time = Math.min(time, partition.queue.getNextMessageTime());
+		}
+		return time;
+	}
+
+	/**
+	 * Passes the events of the last window on, ordered by the time and the priority of the messages which created them.
+	 */
+	private void flushEvents(EventsManager events) {
+		MessageOrderBuffer.merge(this.partitions, partition -> partition.events, events::processEvent);
+	}
+
+	/**
+	 * Puts the messages sent to other partitions during the last window into their queues, in the order in which the
+	 * sequential simulation would have sent them.
+	 */
+	private void deliverMessages(double windowEnd) {
+		MessageOrderBuffer.merge(this.partitions, partition -> partition.outbox, m -> {
+			if (m.getMessageArrivalTime() < windowEnd) {
+				throw new RuntimeException("A message between two partitions arrives earlier than the lookahead allows: " + m);
+			}
+			this.partitions[getPartitionIndex(m)].queue.putMessage(m);
+		});
+	}
+
+	private void printLog() {
+		// print output each hour
+		if (this.windowStart / this.hourlyLogTime > 1) {
+			this.hourlyLogTime = this.windowStart + 3600;
+			log.info("Simulation at " + this.windowStart / 3600 + "[h]");
+			Gbl.printMemoryUsage();
+		}
+	}
+
+	private static final class Partition {
+		final int index;
+		final MessageQueue queue;
+		double windowEnd;
+
+		// the events and the messages to other partitions of the current window
+		final MessageOrderBuffer<Event> events = new MessageOrderBuffer<>();
+		final MessageOrderBuffer<Message> outbox = new MessageOrderBuffer<>();
+		double currentTime;
+		int currentPriority;
+
+		Partition(int index, MessageQueue queue) {
+			this.index = index;
+			this.queue = queue;
+		}
+
+		void processMessages() {
+			Message m;
+			double lastTime = Math.nextDown(this.windowEnd);
+			while ((m = this.queue.getNextMessage(lastTime)) != null) {
+				this.currentTime = m.getMessageArrivalTime();
+				this.currentPriority = m.priority;
+				m.processEvent();
+				m.handleMessage();
+			}
+		}
+	}
+
+	/**
+	 * Collects items together with the time and the priority of the message which created them.
+	 */
+	private static final class MessageOrderBuffer<T> {
+		Object[] items = new Object[1024];
+		double[] times = new double[1024];
+		int[] priorities = new int[1024];
+		int size = 0;
+
+		void add(T item, double time, int priority) {
+			if (this.size == this.items.length) {
+				this.items = Arrays.copyOf(this.items, this.size * 2);
+				this.times = Arrays.copyOf(this.times, this.size * 2);
+				this.priorities = Arrays.copyOf(this.priorities, this.size * 2);
+			}
+			this.items[this.size] = item;
+			this.times[this.size] = time;
+			this.priorities[this.size] = priority;
+			this.size++;
+		}
+
+		/**
+		 * Passes the items of the buffers of all partitions on ordered by time, then by priority (the higher priority
+		 * first) and then by partition, and clears the buffers.  The buffer of every partition is ordered already.
+		 */
+		@SuppressWarnings("unchecked")
+		static <T> void merge(Partition[] partitions, Function<Partition, MessageOrderBuffer<T>> buffer,
+				Consumer<T> consumer) {
+			int[] next = new int[partitions.length];
+			while (true) {
+				MessageOrderBuffer<T> first = null;
+				int firstIndex = -1;
+				for (Partition partition : partitions) {
+					MessageOrderBuffer<T> candidate = buffer.apply(partition);
+					int i = next[partition.index];
+					if (i < candidate.size && (first == null || candidate.isBefore(i, first, next[firstIndex]))) {
+						first = candidate;
+						firstIndex = partition.index;
+					}
+				}
+				if (first == null) {
+					break;
+				}
+				int i = next[firstIndex]++;
+				T item = (T) first.items[i];
+				first.items[i] = null;
+				consumer.accept(item);
+			}
+			for (Partition partition : partitions) {
+				buffer.apply(partition).size = 0;
+			}
+		}
+
+		private boolean isBefore(int i, MessageOrderBuffer<?> other, int j) {
+			return this.times[i] < other.times[j] || (this.times[i] == other.times[j] && this.priorities[i] > other.priorities[j]);
+		}
+	}
+
+	/**
+	 * Collects the events of the messages in the partition of the current thread.
+	 */
+	private final class BufferingEventsManager implements EventsManager {
+
+		private final EventsManager delegate;
+
+		BufferingEventsManager(EventsManager delegate) {
+			this.delegate = delegate;
+		}
+
+		@Override
+		public void processEvent(Event event) {
+			Partition partition = currentPartition.get();
+			if (partition == null) {
+				this.delegate.processEvent(event);
+			} else {
+				partition.events.add(event, partition.currentTime, partition.currentPriority);
+			}
+		}
+
+		@Override
+		public void addHandler(EventHandler handler) {
+			this.delegate.addHandler(handler);
+		}
+
+		@Override
+		public void removeHandler(EventHandler handler) {
+			this.delegate.removeHandler(handler);
+		}
+
+		@Override
+		public void resetHandlers(int iteration) {
+			this.delegate.resetHandlers(iteration);
+		}
+
+		@Override
+		public void initProcessing() {
+			this.delegate.initProcessing();
+		}
+
+		@Override
+		public void afterSimStep(double time) {
+			this.delegate.afterSimStep(time);
+		}
+
+		@Override
+		public void finishProcessing() {
+			this.delegate.finishProcessing();
+		}
+	}
+
+}
@@ -87,7 +87,7 @@ public class Road extends SimUnit {
 	private long maxNumberOfCarsOnRoad = 0;
 
 	// the time it takes for a gap to get to the back of the road
-	private double gapTravelTime = 0;
+	protected double gapTravelTime = 0;
 
 	// the cars, which are currently on the road
 	protected LinkedList<Vehicle> carsOnTheRoad = new LinkedList<>();
@@ -102,6 +102,13 @@ public class Road extends SimUnit {
 	 */
 	private LinkedList<DeadlockPreventionMessage> deadlockPreventionMessages = new LinkedList<>();
 
+	/**
+	 * the partitions of the {@link PartitionedScheduler} simulating the entry (from node) and the exit (to node) of the
+	 * road; they differ only for a {@link BoundaryRoad}
+	 */
+	int entryPartition = 0;
+	int exitPartition = 0;
+
 	public Road(Scheduler scheduler, Link link) {
 		super(scheduler);
 		this.link = link;
@@ -147,6 +154,15 @@ public class Road extends SimUnit {
 		this.earliestDepartureTimeOfCar.removeFirst();
 		this.timeOfLastLeavingVehicle = simTime;
 
+		gapArrives(simTime + this.gapTravelTime);
+
+		scheduleEndRoadMessageOfFirstCar();
+	}
+
+	/**
+	 * Handles the gap left by a leaving vehicle, when it arrives at the back of the road.
+	 */
+	void gapArrives(double gapArrivalTime) {
 		/*
 		 * the next car waiting for entering the road should now be alloted a
 		 * time for entering the road
@@ -158,7 +174,7 @@ public class Road extends SimUnit {
 			this.scheduler.unschedule(m);
 
 			double nextAvailableTimeForEnteringStreet = Math.max(this.timeOfLastEnteringVehicle
-					+ this.inverseInFlowCapacity, simTime + this.gapTravelTime);
+					+ this.inverseInFlowCapacity, gapArrivalTime);
 
 			this.noOfCarsPromisedToEnterRoad++;
 
@@ -170,30 +186,31 @@ public class Road extends SimUnit {
 				 * as long as the road is not full once, there is no need to
 				 * keep track of the gaps
 				 */
-				this.gap.add(simTime + this.gapTravelTime);
+				this.gap.add(gapArrivalTime);
 
 				/*
 				 * if no one is interested in entering this road (precondition)
 				 * and there are no cars on the road, then reset gap (this is
 				 * required, for enterRequest to function properly)
 				 */
-				if (this.carsOnTheRoad.size() == 0) {
+				if (getNumberOfCarsOnTheRoad() == 0) {
 					this.gap = null;
 				}
 			}
 		}
+	}
 
-		/*
-		 * tell the car behind the fist car (which is the first car now), when
-		 * it reaches the end of the read
-		 */
+	/**
+	 * tell the car behind the fist car (which is the first car now), when
+	 * it reaches the end of the read
+	 */
+	void scheduleEndRoadMessageOfFirstCar() {
 		if (this.carsOnTheRoad.size() > 0) {
 			Vehicle nextVehicle = this.carsOnTheRoad.getFirst();
 			double nextAvailableTimeForLeavingStreet = Math.max(this.earliestDepartureTimeOfCar.getFirst(),
 					this.timeOfLastLeavingVehicle + this.inverseOutFlowCapacity);
 			nextVehicle.scheduleEndRoadMessage(nextAvailableTimeForLeavingStreet, this);
 		}
-
 	}
 
 	public void enterRoad(Vehicle vehicle, double simTime) {
@@ -202,6 +219,15 @@ public class Road extends SimUnit {
 				/ this.link.getFreespeed(simTime);
 
 		this.noOfCarsPromisedToEnterRoad--;
+		arriveAtEndOfRoad(vehicle, nextAvailableTimeForLeavingStreet);
+	}
+
+	/**
+	 * Adds the vehicle to the cars on the road, which will leave the road not before
+	 * <code>earliestDepartureTime</code>.
+	 */
+	void arriveAtEndOfRoad(Vehicle vehicle, double earliestDepartureTime) {
+		double nextAvailableTimeForLeavingStreet = earliestDepartureTime;
 		this.carsOnTheRoad.add(vehicle);
 
 		/*
@@ -231,6 +257,13 @@ public class Road extends SimUnit {
 
 	}
 
+	/**
+	 * @return the number of cars on the road, as seen from the back of the road
+	 */
+	int getNumberOfCarsOnTheRoad() {
+		return this.carsOnTheRoad.size();
+	}
+
 	public void enterRequest(Vehicle vehicle, double simTime) {
 		assert (this.interestedInEnteringRoad.size()==this.deadlockPreventionMessages.size());
 		/*
@@ -244,7 +277,7 @@ public class Road extends SimUnit {
 		 */
 
 		// is there any space on the road (including promised entries?)
-		if (this.carsOnTheRoad.size() + this.noOfCarsPromisedToEnterRoad < this.maxNumberOfCarsOnRoad) {
+		if (getNumberOfCarsOnTheRoad() + this.noOfCarsPromisedToEnterRoad < this.maxNumberOfCarsOnRoad) {
 			/*
 			 * - check, if the gap needs to be considered for entering the road -
 			 * we can find out, the time since when we have a free road for
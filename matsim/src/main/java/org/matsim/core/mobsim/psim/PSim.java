@@ -0,0 +1,337 @@
+/* *********************************************************************** *
+ * project: org.matsim.*
+ * PSim.java
+ *                                                                         *
+ * *********************************************************************** *
+ *                                                                         *
+ * copyright       : (C) 2019 by the members listed in the COPYING,        *
+ *                   LICENSE and WARRANTY file.                            *
+ * email           : info at matsim dot org                                *
+ *                                                                         *
+ * *********************************************************************** *
+ *                                                                         *
+ *   This program is free software; you can redistribute it and/or modify  *
+ *   it under the terms of the GNU General Public License as published by  *
+ *   the Free Software Foundation; either version 2 of the License, or     *
+ *   (at your option) any later version.                                   *
+ *   See also COPYING, LICENSE and WARRANTY file                           *
+ *                                                                         *
+ * *********************************************************************** */
+
+package org.matsim.core.mobsim.psim;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+import org.apache.log4j.Logger;
+import org.matsim.api.core.v01.Id;
+import org.matsim.api.core.v01.network.Link;
+import org.matsim.api.core.v01.network.Network;
+import org.matsim.api.core.v01.population.Activity;
+import org.matsim.api.core.v01.population.Leg;
+import org.matsim.api.core.v01.population.Person;
+import org.matsim.api.core.v01.population.Plan;
+import org.matsim.api.core.v01.population.PlanElement;
+import org.matsim.api.core.v01.population.Population;
+import org.matsim.api.core.v01.population.Route;
+import org.matsim.core.config.Config;
+import org.matsim.core.config.groups.ControlerConfigGroup;
+import org.matsim.core.mobsim.framework.Mobsim;
+import org.matsim.core.population.PopulationUtils;
+import org.matsim.core.population.routes.NetworkRoute;
+import org.matsim.core.router.StageActivityTypes;
+import org.matsim.core.router.TripStructureUtils;
+import org.matsim.core.router.TripStructureUtils.Trip;
+import org.matsim.core.router.util.TravelTime;
+import org.matsim.core.scoring.NewScoreAssignerImpl;
+import org.matsim.core.scoring.ScoringFunction;
+import org.matsim.core.scoring.ScoringFunctionFactory;
+import org.matsim.core.utils.misc.Time;
+import org.matsim.pt.routes.ExperimentalTransitRoute;
+import org.matsim.pt.transitSchedule.api.Departure;
+import org.matsim.pt.transitSchedule.api.TransitLine;
+import org.matsim.pt.transitSchedule.api.TransitRoute;
+import org.matsim.pt.transitSchedule.api.TransitRouteStop;
+import org.matsim.pt.transitSchedule.api.TransitSchedule;
+
+/**
+ * A pseudo-simulation that replaces the mobsim in the pseudo-iterations between two iterations with the qsim (see
+ * {@link ControlerConfigGroup#getPseudoIterationsPerMobsimIteration()}).
+ * <p></p>
+ * It does not produce any events.  Instead, the selected plans without a score (i.e. the plans that were created or
+ * mutated in the replanning of this iteration) are executed against the travel times learned in the last qsim
+ * iteration, and the resulting experienced activities, legs and trips are directly passed to a scoring function from
+ * the standard {@link ScoringFunctionFactory}; the resulting score is assigned to the plan like after a qsim iteration
+ * (see {@link NewScoreAssignerImpl}).  Plans that already have a score keep it.  Since no events are produced, scoring functions only see what is in the plan (e.g. no money
+ * events).
+ * <ul>
+ * <li> Legs with a network route of a qsim main mode use the {@link TravelTime} of their mode (at least 1 sec per link).
+ * <li> Legs with an {@link ExperimentalTransitRoute} wait for the next scheduled departure of the line at the access
+ * stop and then use the stop-to-stop times observed in the last qsim iteration, or the scheduled ones where nothing
+ * was observed.
+ * <li> All other legs are teleported with the travel time of their route.
+ * </ul>
+ */
+public final class PSim implements Mobsim {
+
+	private static final Logger log = Logger.getLogger(PSim.class);
+
+	private final Config config;
+	private final Population population;
+	private final Network network;
+	private final TransitSchedule transitSchedule;
+	private final ScoringFunctionFactory scoringFunctionFactory;
+	private final Map<String, TravelTime> travelTimes;
+	private final TransitStopStopTimes stopStopTimes;
+	private final StageActivityTypes stageActivityTypes;
+	private final Collection<String> mainModes;
+	private final NewScoreAssignerImpl newScoreAssigner;
+	private final int iteration;
+
+	PSim(final Config config, final Population population, final Network network, final TransitSchedule transitSchedule,
+			final ScoringFunctionFactory scoringFunctionFactory, final Map<String, TravelTime> travelTimes,
+			final TransitStopStopTimes stopStopTimes, final StageActivityTypes stageActivityTypes, final int iteration) {
+		this.config = config;
+		this.population = population;
+		this.network = network;
+		this.transitSchedule = transitSchedule;
+		this.scoringFunctionFactory = scoringFunctionFactory;
+		this.travelTimes = travelTimes;
+		this.stopStopTimes = stopStopTimes;
+		this.stageActivityTypes = stageActivityTypes;
+		this.mainModes = config.qsim().getMainModes();
+		this.newScoreAssigner = new NewScoreAssignerImpl(config.planCalcScore(), config.controler());
+		this.iteration = iteration;
+	}
+
+	/**
+	 * @return <code>true</code> if the given iteration is a pseudo-iteration, i.e. one that is executed by the
+	 * {@link PSim} instead of the qsim.  The first and the last iteration are never pseudo-iterations.
+	 */
+	public static boolean isPseudoIteration(final ControlerConfigGroup config, final int iteration) {
+		int pseudoIterations = config.getPseudoIterationsPerMobsimIteration();
+		if (pseudoIterations <= 0 || iteration <= config.getFirstIteration() || iteration >= config.getLastIteration()) {
+			return false;
+		}
+		return (iteration - config.getFirstIteration()) % (pseudoIterations + 1) != 0;
+	}
+
+	@Override
+	public void run() {
+		final List<Plan> plans = new ArrayList<>();
+		for (Person person : this.population.getPersons().values()) {
+			Plan plan = person.getSelectedPlan();
+			if (plan != null && plan.getScore() == null) {
+				plans.add(plan);
+			}
+		}
+		log.info("pseudo-simulating " + plans.size() + " of " + this.population.getPersons().size() + " selected plans.");
+
+		// the scoring functions are created on this thread, since the factories and the scoring parameters they look up
+		// (e.g. SubpopulationScoringParameters) are not thread-safe
+		final ScoringFunction[] scoringFunctions = new ScoringFunction[plans.size()];
+		for (int i = 0; i < plans.size(); i++) {
+			scoringFunctions[i] = this.scoringFunctionFactory.createNewScoringFunction(plans.get(i).getPerson());
+		}
+		final double[] scores = new double[plans.size()];
+		int numberOfThreads = Math.min(Math.max(1, this.config.global().getNumberOfThreads()), Math.max(1, plans.size()));
+		if (numberOfThreads == 1) {
+			for (int i = 0; i < plans.size(); i++) {
+				scores[i] = score(plans.get(i), scoringFunctions[i]);
+			}
+		} else {
+			score(plans, scoringFunctions, scores, numberOfThreads);
+		}
+		for (int i = 0; i < plans.size(); i++) {
+			this.newScoreAssigner.assignNewScore(this.iteration, plans.get(i), scores[i]);
+		}
+	}
+
+	private void score(final List<Plan> plans, final ScoringFunction[] scoringFunctions, final double[] scores,
+			final int numberOfThreads) {
+		int chunkSize = plans.size() / (4 * numberOfThreads) + 1;
+		ExecutorService executor = Executors.newFixedThreadPool(numberOfThreads);
+		try {
+			List<Future<?>> futures = new ArrayList<>();
+			for (int start = 0; start < plans.size(); start += chunkSize) {
+				final int from = start;
+				final int to = Math.min(plans.size(), start + chunkSize);
+				futures.add(executor.submit(() -> {
+					for (int i = from; i < to; i++) {
+						scores[i] = score(plans.get(i), scoringFunctions[i]);
+					}
+				}));
+			}
+			for (Future<?> future : futures) {
+				future.get();
+			}
+		} catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+			throw new RuntimeException(e);
+		} catch (ExecutionException e) {
+			throw new RuntimeException(e.getCause());
+		} finally {
+			executor.shutdown();
+		}
+	}
+
+	/**
+	 * Executes the plan, passes the resulting experienced plan to the scoring function and returns its score.
+	 */
+	double score(final Plan plan, final ScoringFunction scoringFunction) {
+		Plan experiencedPlan = PopulationUtils.createPlan();
+		List<PlanElement> planElements = plan.getPlanElements();
+		double endTime = this.config.qsim().getEndTime();
+		double now = 0.0;
+		for (int i = 0; i < planElements.size(); i++) {
+			PlanElement pe = planElements.get(i);
+			if (pe instanceof Activity) {
+				Activity activity = PopulationUtils.createActivity((Activity) pe);
+				activity.setStartTime(i == 0 ? Time.getUndefinedTime() : now);
+				if (i == planElements.size() - 1) {
+					activity.setEndTime(Time.getUndefinedTime());
+				} else {
+					double activityEndTime = PopulationUtils.decideOnActivityEndTime((Activity) pe, now, this.config);
+					if (Time.isUndefinedTime(activityEndTime)) {
+						// the agent would stay at this activity for the rest of the simulation
+						scoringFunction.agentStuck(now);
+						break;
+					}
+					now = Math.max(now, activityEndTime);
+					activity.setEndTime(now);
+				}
+				scoringFunction.handleActivity(activity);
+				experiencedPlan.addActivity(activity);
+				if (i > 0 && !this.stageActivityTypes.isStageActivity(activity.getType())) {
+					for (Trip trip : TripStructureUtils.getTrips(experiencedPlan, this.stageActivityTypes)) {
+						scoringFunction.handleTrip(trip);
+					}
+					experiencedPlan.getPlanElements().clear();
+					experiencedPlan.addActivity(activity);
+				}
+			} else {
+				Leg leg = PopulationUtils.createLeg((Leg) pe);
+				double travelTime = getTravelTime(plan.getPerson(), (Leg) pe, now);
+				leg.setDepartureTime(now);
+				leg.setTravelTime(travelTime);
+				now += travelTime;
+				if (!Time.isUndefinedTime(endTime) && now > endTime) {
+					scoringFunction.agentStuck(endTime);
+					break;
+				}
+				scoringFunction.handleLeg(leg);
+				experiencedPlan.addLeg(leg);
+			}
+		}
+		scoringFunction.finish();
+		return scoringFunction.getScore();
+	}
+
+	private double getTravelTime(final Person person, final Leg leg, final double departureTime) {
+		Route route = leg.getRoute();
+		if (route instanceof NetworkRoute && this.mainModes.contains(leg.getMode())) {
+			TravelTime travelTime = this.travelTimes.get(leg.getMode());
+			if (travelTime != null) {
+				return getNetworkTravelTime(person, (NetworkRoute) route, travelTime, departureTime);
+			}
+		}
+		if (route instanceof ExperimentalTransitRoute && this.transitSchedule != null) {
+			double travelTime = getTransitTravelTime((ExperimentalTransitRoute) route, departureTime);
+			if (!Time.isUndefinedTime(travelTime)) {
+				return travelTime;
+			}
+		}
+		if (route != null && !Time.isUndefinedTime(route.getTravelTime())) {
+			return route.getTravelTime();
+		}
+		return Time.isUndefinedTime(leg.getTravelTime()) ? 0.0 : leg.getTravelTime();
+	}
+
+	private double getNetworkTravelTime(final Person person, final NetworkRoute route, final TravelTime travelTime,
+			final double departureTime) {
+		if (route.getStartLinkId().equals(route.getEndLinkId()) && route.getLinkIds().isEmpty()) {
+			return 0.0;
+		}
+		double now = departureTime;
+		for (Id<Link> linkId : route.getLinkIds()) {
+			now += getLinkTravelTime(person, linkId, travelTime, now);
+		}
+		now += getLinkTravelTime(person, route.getEndLinkId(), travelTime, now);
+		return now - departureTime;
+	}
+
+	private double getLinkTravelTime(final Person person, final Id<Link> linkId, final TravelTime travelTime, final double time) {
+		return Math.max(1.0, travelTime.getLinkTravelTime(this.network.getLinks().get(linkId), time, person, null));
+	}
+
+	/**
+	 * @return the waiting plus in-vehicle time, or undefined if the route or a later departure cannot be found
+	 */
+	private double getTransitTravelTime(final ExperimentalTransitRoute route, final double departureTime) {
+		TransitLine line = this.transitSchedule.getTransitLines().get(route.getLineId());
+		TransitRoute transitRoute = line == null ? null : line.getRoutes().get(route.getRouteId());
+		if (transitRoute == null) {
+			return Time.getUndefinedTime();
+		}
+		List<TransitRouteStop> stops = transitRoute.getStops();
+		int accessIndex = -1;
+		int egressIndex = -1;
+		for (int i = 0; i < stops.size(); i++) {
+			if (accessIndex < 0) {
+				if (stops.get(i).getStopFacility().getId().equals(route.getAccessStopId())) {
+					accessIndex = i;
+				}
+			} else if (stops.get(i).getStopFacility().getId().equals(route.getEgressStopId())) {
+				egressIndex = i;
+				break;
+			}
+		}
+		if (egressIndex < 0) {
+			return Time.getUndefinedTime();
+		}
+
+		TransitRouteStop accessStop = stops.get(accessIndex);
+		double vehicleDepartureTime = Double.POSITIVE_INFINITY;
+		for (Departure departure : transitRoute.getDepartures().values()) {
+			double time = departure.getDepartureTime() + getDepartureOffset(accessStop);
+			if (time >= departureTime && time < vehicleDepartureTime) {
+				vehicleDepartureTime = time;
+			}
+		}
+		if (vehicleDepartureTime == Double.POSITIVE_INFINITY) {
+			return Time.getUndefinedTime();
+		}
+
+		double now = vehicleDepartureTime;
+		for (int i = accessIndex; i < egressIndex; i++) {
+			TransitRouteStop fromStop = stops.get(i);
+			TransitRouteStop toStop = stops.get(i + 1);
+			double scheduledTravelTime = getArrivalOffset(toStop) - getDepartureOffset(fromStop);
+			if (this.stopStopTimes == null) {
+				now += scheduledTravelTime;
+			} else {
+				now += this.stopStopTimes.getTravelTime(fromStop.getStopFacility().getId(), toStop.getStopFacility().getId(), now,
+						scheduledTravelTime);
+			}
+			if (i + 1 < egressIndex) {
+				now += Math.max(0.0, getDepartureOffset(toStop) - getArrivalOffset(toStop));
+			}
+		}
+		return now - departureTime;
+	}
+
+	private static double getArrivalOffset(final TransitRouteStop stop) {
+		return Time.isUndefinedTime(stop.getArrivalOffset()) ? stop.getDepartureOffset() : stop.getArrivalOffset();
+	}
+
+	private static double getDepartureOffset(final TransitRouteStop stop) {
+		return Time.isUndefinedTime(stop.getDepartureOffset()) ? stop.getArrivalOffset() : stop.getDepartureOffset();
+	}
+
+}
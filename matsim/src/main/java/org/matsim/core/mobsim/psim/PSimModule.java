@@ -0,0 +1,41 @@
+/* *********************************************************************** *
+ * project: org.matsim.*
+ * PSimModule.java
+ *                                                                         *
+ * *********************************************************************** *
+ *                                                                         *
+ * copyright       : (C) 2019 by the members listed in the COPYING,        *
+ *                   LICENSE and WARRANTY file.                            *
+ * email           : info at matsim dot org                                *
+ *                                                                         *
+ * *********************************************************************** *
+ *                                                                         *
+ *   This program is free software; you can redistribute it and/or modify  *
+ *   it under the terms of the GNU General Public License as published by  *
+ *   the Free Software Foundation; either version 2 of the License, or     *
+ *   (at your option) any later version.                                   *
+ *   See also COPYING, LICENSE and WARRANTY file                           *
+ *                                                                         *
+ * *********************************************************************** */
+
+package org.matsim.core.mobsim.psim;
+
+import org.matsim.core.controler.AbstractModule;
+import org.matsim.core.mobsim.framework.Mobsim;
+
+/**
+ * Binds the mobsim such that the qsim iterations alternate with pseudo-iterations executed by the {@link PSim}.
+ * Installed by the {@link org.matsim.core.mobsim.qsim.QSimModule} if
+ * {@link org.matsim.core.config.groups.ControlerConfigGroup#getPseudoIterationsPerMobsimIteration()} is larger than 0.
+ */
+public final class PSimModule extends AbstractModule {
+
+	@Override
+	public void install() {
+		bind(Mobsim.class).toProvider(PSimProvider.class);
+		if (getConfig().transit().isUseTransit()) {
+			addEventHandlerBinding().to(TransitStopStopTimes.class);
+		}
+	}
+
+}
@@ -0,0 +1,77 @@
+/* *********************************************************************** *
+ * project: org.matsim.*
+ * PSimProvider.java
+ *                                                                         *
+ * *********************************************************************** *
+ *                                                                         *
+ * copyright       : (C) 2019 by the members listed in the COPYING,        *
+ *                   LICENSE and WARRANTY file.                            *
+ * email           : info at matsim dot org                                *
+ *                                                                         *
+ * *********************************************************************** *
+ *                                                                         *
+ *   This program is free software; you can redistribute it and/or modify  *
+ *   it under the terms of the GNU General Public License as published by  *
+ *   the Free Software Foundation; either version 2 of the License, or     *
+ *   (at your option) any later version.                                   *
+ *   See also COPYING, LICENSE and WARRANTY file                           *
+ *                                                                         *
+ * *********************************************************************** */
+
+package org.matsim.core.mobsim.psim;
+
+import java.util.Map;
+
+import javax.inject.Inject;
+import javax.inject.Provider;
+
+import org.matsim.api.core.v01.Scenario;
+import org.matsim.core.config.Config;
+import org.matsim.core.controler.IterationCounter;
+import org.matsim.core.mobsim.framework.Mobsim;
+import org.matsim.core.mobsim.qsim.QSimProvider;
+import org.matsim.core.router.TripRouter;
+import org.matsim.core.router.util.TravelTime;
+import org.matsim.core.scoring.ScoringFunctionFactory;
+
+/**
+ * Provides the qsim in the regular iterations and the {@link PSim} in the pseudo-iterations.
+ */
+final class PSimProvider implements Provider<Mobsim> {
+
+	private final Config config;
+	private final Scenario scenario;
+	private final IterationCounter iterationCounter;
+	private final QSimProvider qsimProvider;
+	private final ScoringFunctionFactory scoringFunctionFactory;
+	private final Map<String, TravelTime> travelTimes;
+	private final Provider<TripRouter> tripRouterProvider;
+	private final TransitStopStopTimes stopStopTimes;
+
+	@Inject
+	PSimProvider(Config config, Scenario scenario, IterationCounter iterationCounter, QSimProvider qsimProvider,
+			ScoringFunctionFactory scoringFunctionFactory, Map<String, TravelTime> travelTimes,
+			Provider<TripRouter> tripRouterProvider, TransitStopStopTimes stopStopTimes) {
+		this.config = config;
+		this.scenario = scenario;
+		this.iterationCounter = iterationCounter;
+		this.qsimProvider = qsimProvider;
+		this.scoringFunctionFactory = scoringFunctionFactory;
+		this.travelTimes = travelTimes;
+		this.tripRouterProvider = tripRouterProvider;
+		this.stopStopTimes = stopStopTimes;
+	}
+
+	@Override
+	public Mobsim get() {
+		if (!PSim.isPseudoIteration(this.config.controler(), this.iterationCounter.getIterationNumber())) {
+			return this.qsimProvider.get();
+		}
+		boolean useTransit = this.config.transit().isUseTransit();
+		return new PSim(this.config, this.scenario.getPopulation(), this.scenario.getNetwork(),
+				useTransit ? this.scenario.getTransitSchedule() : null, this.scoringFunctionFactory, this.travelTimes,
+				useTransit ? this.stopStopTimes : null, this.tripRouterProvider.get().getStageActivityTypes(),
+				this.iterationCounter.getIterationNumber());
+	}
+
+}
@@ -0,0 +1,100 @@
+/* *********************************************************************** *
+ * project: org.matsim.*
+ * TransitStopStopTimes.java
+ *                                                                         *
+ * *********************************************************************** *
+ *                                                                         *
+ * copyright       : (C) 2019 by the members listed in the COPYING,        *
+ *                   LICENSE and WARRANTY file.                            *
+ * email           : info at matsim dot org                                *
+ *                                                                         *
+ * *********************************************************************** *
+ *                                                                         *
+ *   This program is free software; you can redistribute it and/or modify  *
+ *   it under the terms of the GNU General Public License as published by  *
+ *   the Free Software Foundation; either version 2 of the License, or     *
+ *   (at your option) any later version.                                   *
+ *   See also COPYING, LICENSE and WARRANTY file                           *
+ *                                                                         *
+ * *********************************************************************** */
+
+package org.matsim.core.mobsim.psim;
+
+import java.util.HashMap;
+import java.util.Map;
+
+import javax.inject.Singleton;
+
+import org.matsim.api.core.v01.Id;
+import org.matsim.core.api.experimental.events.VehicleArrivesAtFacilityEvent;
+import org.matsim.core.api.experimental.events.VehicleDepartsAtFacilityEvent;
+import org.matsim.core.api.experimental.events.handler.VehicleArrivesAtFacilityEventHandler;
+import org.matsim.core.api.experimental.events.handler.VehicleDepartsAtFacilityEventHandler;
+import org.matsim.pt.transitSchedule.api.TransitStopFacility;
+import org.matsim.vehicles.Vehicle;
+
+/**
+ * Collects the average travel times of transit vehicles between two consecutive stops, per time bin of the departure
+ * at the first stop.  The times are learned in the iterations with the qsim and used by the {@link PSim} in the
+ * pseudo-iterations in between.
+ */
+@Singleton
+final class TransitStopStopTimes implements VehicleArrivesAtFacilityEventHandler, VehicleDepartsAtFacilityEventHandler {
+
+	private static final double BIN_SIZE = 900.0;
+	private static final int NUMBER_OF_BINS = 30 * 4;
+
+	private final Map<Id<Vehicle>, Id<TransitStopFacility>> lastStops = new HashMap<>();
+	private final Map<Id<Vehicle>, Double> lastDepartureTimes = new HashMap<>();
+	private final Map<Id<TransitStopFacility>, Map<Id<TransitStopFacility>, double[]>> stopStopTimes = new HashMap<>();
+
+	@Override
+	public void handleEvent(VehicleDepartsAtFacilityEvent event) {
+		this.lastStops.put(event.getVehicleId(), event.getFacilityId());
+		this.lastDepartureTimes.put(event.getVehicleId(), event.getTime());
+	}
+
+	@Override
+	public void handleEvent(VehicleArrivesAtFacilityEvent event) {
+		Id<TransitStopFacility> fromStopId = this.lastStops.remove(event.getVehicleId());
+		Double departureTime = this.lastDepartureTimes.remove(event.getVehicleId());
+		if (fromStopId == null) {
+			return;
+		}
+		double[] sumsAndCounts = this.stopStopTimes.computeIfAbsent(fromStopId, k -> new HashMap<>())
+				.computeIfAbsent(event.getFacilityId(), k -> new double[2 * NUMBER_OF_BINS]);
+		int bin = getBin(departureTime);
+		sumsAndCounts[2 * bin] += event.getTime() - departureTime;
+		sumsAndCounts[2 * bin + 1]++;
+	}
+
+	/**
+	 * @return the average travel time between the two stops for vehicles departing at <code>time</code> at the first
+	 * stop, or <code>defaultTravelTime</code> if no vehicle was observed there in this time bin
+	 */
+	double getTravelTime(final Id<TransitStopFacility> fromStopId, final Id<TransitStopFacility> toStopId, final double time,
+			final double defaultTravelTime) {
+		Map<Id<TransitStopFacility>, double[]> times = this.stopStopTimes.get(fromStopId);
+		double[] sumsAndCounts = times == null ? null : times.get(toStopId);
+		if (sumsAndCounts == null) {
+			return defaultTravelTime;
+		}
+		int bin = getBin(time);
+		if (sumsAndCounts[2 * bin + 1] == 0) {
+			return defaultTravelTime;
+		}
+		return sumsAndCounts[2 * bin] / sumsAndCounts[2 * bin + 1];
+	}
+
+	private static int getBin(final double time) {
+		return Math.max(0, Math.min(NUMBER_OF_BINS - 1, (int) (time / BIN_SIZE)));
+	}
+
+	@Override
+	public void reset(int iteration) {
+		this.lastStops.clear();
+		this.lastDepartureTimes.clear();
+		this.stopStopTimes.clear();
+	}
+
+}
@@ -0,0 +1,199 @@
+/* *********************************************************************** *
+ * project: org.matsim.*
+ * ActivityEndsQueue.java
+ *                                                                         *
+ * *********************************************************************** *
+ *                                                                         *
+ * copyright       : (C) 2019 by the members listed in the COPYING,        *
+ *                   LICENSE and WARRANTY file.                            *
+ * email           : info at matsim dot org                                *
+ *                                                                         *
+ * *********************************************************************** *
+ *                                                                         *
+ *   This program is free software; you can redistribute it and/or modify  *
+ *   it under the terms of the GNU General Public License as published by  *
+ *   the Free Software Foundation; either version 2 of the License, or     *
+ *   (at your option) any later version.                                   *
+ *   See also COPYING, LICENSE and WARRANTY file                           *
+ *                                                                         *
+ * *********************************************************************** */
+
+package org.matsim.core.mobsim.qsim;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.Map;
+
+import org.matsim.api.core.v01.Identifiable;
+import org.matsim.api.core.v01.population.Person;
+
+/**
+ * The activity ends of the {@link ActivityEngine}: a binary min-heap ordered by the activity end time (ties: the agent
+ * with the larger id first) where every queued agent knows its position in the heap.  Thus an agent can be removed in
+ * O(log n) when its activity end is rescheduled, instead of scanning the whole queue.
+ * <p></p>
+ * Every agent gets exactly one entry which is re-used for all its activities, so neither adding an agent nor draining
+ * the due agents allocates memory once the agent was seen.  The entries are only dropped by {@link #clear()}.
+ * <p></p>
+ * All methods are synchronized since the parallel qsim adds agents from several threads.  The heap operations are the
+ * same as in {@link java.util.concurrent.PriorityBlockingQueue}, so agents with the same end time leave in the same
+ * order as before.
+ */
+final class ActivityEndsQueue<A extends Identifiable<Person>> {
+
+	static final class Entry<A> {
+		final A agent;
+		double activityEndTime;
+		int index = -1;
+
+		private Entry(A agent) {
+			this.agent = agent;
+		}
+	}
+
+	private final Map<A, Entry<A>> entries = new IdentityHashMap<>();
+	private Entry<A>[] heap;
+	private int size = 0;
+
+	ActivityEndsQueue(int initialCapacity) {
+		this.heap = newArray(Math.max(1, initialCapacity));
+	}
+
+	@SuppressWarnings("unchecked")
+	private static <A> Entry<A>[] newArray(int length) {
+		return new Entry[length];
+	}
+
+	/**
+	 * Queues the agent with the given activity end time.  If the agent is queued already, its end time is updated.
+	 */
+	synchronized void add(A agent, double activityEndTime) {
+		Entry<A> entry = this.entries.get(agent);
+		if (entry == null) {
+			entry = new Entry<>(agent);
+			this.entries.put(agent, entry);
+		} else if (entry.index >= 0) {
+			removeAt(entry.index);
+		}
+		entry.activityEndTime = activityEndTime;
+		if (this.size == this.heap.length) {
+			this.heap = Arrays.copyOf(this.heap, this.heap.length * 2);
+		}
+		siftUp(this.size, entry);
+		this.size++;
+	}
+
+	/**
+	 * @return <code>true</code> if the agent was queued
+	 */
+	synchronized boolean remove(A agent) {
+		Entry<A> entry = this.entries.get(agent);
+		if (entry == null || entry.index < 0) {
+			return false;
+		}
+		removeAt(entry.index);
+		return true;
+	}
+
+	/**
+	 * @return the first agent if its activity ends at or before <code>time</code>, removing it from the queue, or
+	 * <code>null</code> otherwise
+	 */
+	synchronized A pollDue(double time) {
+		if (this.size == 0 || this.heap[0].activityEndTime > time) {
+			return null;
+		}
+		Entry<A> first = this.heap[0];
+		removeAt(0);
+		return first.agent;
+	}
+
+	synchronized int size() {
+		return this.size;
+	}
+
+	/**
+	 * @return the queued entries in heap order, i.e. in the iteration order of the former priority queue
+	 */
+	synchronized List<Entry<A>> getQueuedEntries() {
+		return new ArrayList<>(Arrays.asList(this.heap).subList(0, this.size));
+	}
+
+	synchronized void clear() {
+		Arrays.fill(this.heap, 0, this.size, null);
+		this.size = 0;
+		this.entries.clear();
+	}
+
+	private void removeAt(int i) {
+		Entry<A> removed = this.heap[i];
+		removed.index = -1;
+		int last = --this.size;
+		if (last == i) {
+			this.heap[i] = null;
+			return;
+		}
+		Entry<A> moved = this.heap[last];
+		this.heap[last] = null;
+		siftDown(i, moved);
+		if (this.heap[i] == moved) {
+			siftUp(i, moved);
+		}
+	}
+
+	private void siftUp(int k, Entry<A> entry) {
+		while (k > 0) {
+			int parent = (k - 1) >>> 1;
+			Entry<A> e = this.heap[parent];
+			if (compare(entry, e) >= 0) {
+				break;
+			}
+			set(k, e);
+			k = parent;
+		}
+		set(k, entry);
+	}
+
+	private void siftDown(int k, Entry<A> entry) {
+		int half = this.size >>> 1;
+		while (k < half) {
+			int child = (k << 1) + 1;
+			Entry<A> c = this.heap[child];
+			int right = child + 1;
+			if (right < this.size && compare(c, this.heap[right]) > 0) {
+				c = this.heap[child = right];
+			}
+			if (compare(entry, c) <= 0) {
+				break;
+			}
+			set(k, c);
+			k = child;
+		}
+		set(k, entry);
+	}
+
+	private void set(int k, Entry<A> entry) {
+		this.heap[k] = entry;
+		entry.index = k;
+	}
+
+	private static <A extends Identifiable<Person>> int compare(Entry<A> arg0, Entry<A> arg1) {
+		int cmp = Double.compare(arg0.activityEndTime, arg1.activityEndTime);
+		if (cmp == 0) {
+			// Both depart at the same time -> let the one with the larger id be first (=smaller)
+			//
+			// yy We are not sure what the above comment line is supposed to say.  Presumably, it is supposed
+			// to say that the agent with the larger ID should be "smaller" one in the comparison.
+			// In practice, it seems
+			// that something like "emob_9" is before "emob_8", and something like "emob_10" before "emob_1".
+			// It is unclear why this convention is supposed to be helpful.
+			// kai & dominik, jul'12
+			//
+			return arg1.agent.getId().compareTo(arg0.agent.getId());
+		}
+		return cmp;
+	}
+
+}
@@ -2,11 +2,14 @@ package org.matsim.core.mobsim.qsim;
 
 import com.google.inject.Provides;
 import com.google.inject.Singleton;
+import org.matsim.core.config.groups.QSimConfigGroup;
 import org.matsim.core.mobsim.qsim.agents.AgentFactory;
+import org.matsim.core.mobsim.qsim.agents.CompactAgentFactory;
 import org.matsim.core.mobsim.qsim.agents.DefaultAgentFactory;
 import org.matsim.core.mobsim.qsim.agents.PopulationAgentSource;
 import org.matsim.core.mobsim.qsim.agents.TransitAgentFactory;
 import org.matsim.core.mobsim.qsim.interfaces.Netsim;
+import org.matsim.core.mobsim.qsim.qnetsimengine.CompactQVehicle;
 import org.matsim.core.mobsim.qsim.qnetsimengine.QVehicleFactory;
 import org.matsim.core.mobsim.qsim.qnetsimengine.QVehicleImpl;
 import org.matsim.pt.config.TransitConfigGroup;
@@ -22,9 +25,11 @@ public class PopulationModule extends AbstractQSimModule {
 
 	@Provides
 	@Singleton
-	AgentFactory provideAgentFactory(TransitConfigGroup config, Netsim simulation) {
+	AgentFactory provideAgentFactory(TransitConfigGroup config, QSimConfigGroup qsimConfig, Netsim simulation) {
 		if (config.isUseTransit()) {
 			return new TransitAgentFactory(simulation);
+		} else if (qsimConfig.isUsingCompactAgents()) {
+			return new CompactAgentFactory(simulation);
 		} else {
 			return new DefaultAgentFactory(simulation);
 		}
@@ -32,7 +37,10 @@ public class PopulationModule extends AbstractQSimModule {
 	
 	@Provides
 	@Singleton
-	QVehicleFactory provideQVehicleFactory( ) {
+	QVehicleFactory provideQVehicleFactory( QSimConfigGroup qsimConfig ) {
+		if (qsimConfig.isUsingCompactAgents()) {
+			return CompactQVehicle::new;
+		}
 		return QVehicleImpl::new;
 	}
 }
@@ -0,0 +1,163 @@
+/* *********************************************************************** *
+ * project: org.matsim.*
+ * QSimMetrics.java
+ *                                                                         *
+ * *********************************************************************** *
+ *                                                                         *
+ * copyright       : (C) 2019 by the members listed in the COPYING,        *
+ *                   LICENSE and WARRANTY file.                            *
+ * email           : info at matsim dot org                                *
+ *                                                                         *
+ * *********************************************************************** *
+ *                                                                         *
+ *   This program is free software; you can redistribute it and/or modify  *
+ *   it under the terms of the GNU General Public License as published by  *
+ *   the Free Software Foundation; either version 2 of the License, or     *
+ *   (at your option) any later version.                                   *
+ *   See also COPYING, LICENSE and WARRANTY file                           *
+ *                                                                         *
+ * *********************************************************************** */
+
+package org.matsim.core.mobsim.qsim;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.atomic.LongAdder;
+
+import org.matsim.api.core.v01.events.Event;
+import org.matsim.core.events.handler.BasicEventHandler;
+import org.matsim.core.mobsim.qsim.interfaces.MobsimEngine;
+import org.matsim.core.mobsim.qsim.interfaces.NetsimLink;
+import org.matsim.core.mobsim.qsim.qnetsimengine.NetsimEngine;
+import org.matsim.core.mobsim.qsim.qnetsimengine.QNetsimEngine;
+
+/**
+ * Samples the throughput of a running {@link QSim} every <code>interval</code> seconds of simulated time and pushes
+ * the values to the {@link QSimMetricsRegistry}s.  Between two samples, only the step times of the engines and the
+ * number of events are accumulated.  A last sample is taken when the simulation ends, so that every registry is
+ * flushed at least once per mobsim run.
+ * <p></p>
+ * Only the registries created for this run (e.g. the csv file of the iteration) are closed after the simulation; the
+ * registries bound in the controler live as long as the controler and are closed at shutdown, see
+ * {@link QSimMetricsRegistryCloser}.
+ */
+final class QSimMetrics implements BasicEventHandler {
+
+	static final String SIM_SECONDS_PER_WALL_SECOND = "simSecondsPerWallSecond";
+	static final String EVENTS_PER_SECOND = "eventsPerSecond";
+	static final String AGENTS_LIVING = "agentsLiving";
+	static final String AGENTS_LOST = "agentsLost";
+	static final String ACTIVE_LINKS = "activeLinks";
+	static final String ACTIVE_NODES = "activeNodes";
+	static final String VEHICLES_ON_NETWORK = "vehiclesOnNetwork";
+	static final String ENGINE_STEP_MILLIS_PREFIX = "stepMillis.";
+
+	private final double interval;
+	private final List<QSimMetricsRegistry> registries = new ArrayList<>();
+	private final List<QSimMetricsRegistry> createdRegistries;
+	private final LongAdder eventCount = new LongAdder();
+	private final Map<MobsimEngine, long[]> engineNanos = new LinkedHashMap<>();
+
+	private double nextSampleTime;
+	private double lastSampleSimTime;
+	private long lastSampleWallNanos;
+	private long lastEventCount;
+	private int steps;
+
+	QSimMetrics(final double interval, final Collection<QSimMetricsRegistry> createdRegistries,
+			final Collection<QSimMetricsRegistry> boundRegistries) {
+		this.interval = interval;
+		this.createdRegistries = new ArrayList<>(createdRegistries);
+		this.registries.addAll(createdRegistries);
+		this.registries.addAll(boundRegistries);
+	}
+
+	void prepareSim(final Collection<MobsimEngine> engines, final double simStartTime) {
+		for (MobsimEngine engine : engines) {
+			this.engineNanos.put(engine, new long[1]);
+		}
+		this.lastSampleSimTime = simStartTime;
+		this.nextSampleTime = Math.floor(simStartTime / this.interval) * this.interval + this.interval;
+		this.lastSampleWallNanos = System.nanoTime();
+	}
+
+	void addEngineTime(final MobsimEngine engine, final long nanos) {
+		long[] sum = this.engineNanos.get(engine);
+		if (sum != null) {
+			sum[0] += nanos;
+		}
+	}
+
+	void afterSimStep(final double now, final QSim qsim) {
+		this.steps++;
+		if (now >= this.nextSampleTime) {
+			sample(now, qsim);
+			while (this.nextSampleTime <= now) {
+				this.nextSampleTime += this.interval;
+			}
+		}
+	}
+
+	void afterSim(final double now, final QSim qsim) {
+		sample(now, qsim);
+		for (QSimMetricsRegistry registry : this.createdRegistries) {
+			registry.close();
+		}
+	}
+
+	private void sample(final double now, final QSim qsim) {
+		long wallNanos = System.nanoTime();
+		double wallSeconds = Math.max(wallNanos - this.lastSampleWallNanos, 1) / 1e9;
+		long events = this.eventCount.sum();
+
+		record(SIM_SECONDS_PER_WALL_SECOND, (now - this.lastSampleSimTime) / wallSeconds);
+		record(EVENTS_PER_SECOND, (events - this.lastEventCount) / wallSeconds);
+		record(AGENTS_LIVING, qsim.getAgentCounter().getLiving());
+		record(AGENTS_LOST, qsim.getAgentCounter().getLost());
+		NetsimEngine netEngine = qsim.getNetsimEngine();
+		if (netEngine instanceof QNetsimEngine) {
+			QNetsimEngine qNetsimEngine = (QNetsimEngine) netEngine;
+			record(ACTIVE_LINKS, qNetsimEngine.getNumberOfSimulatedLinks());
+			record(ACTIVE_NODES, qNetsimEngine.getNumberOfSimulatedNodes());
+			int vehicles = 0;
+			for (NetsimLink link : qNetsimEngine.getNetsimNetwork().getNetsimLinks().values()) {
+				vehicles += link.getAllNonParkedVehicles().size();
+			}
+			record(VEHICLES_ON_NETWORK, vehicles);
+		}
+		if (this.steps > 0) {
+			for (Map.Entry<MobsimEngine, long[]> entry : this.engineNanos.entrySet()) {
+				// average step time since the last sample
+				record(ENGINE_STEP_MILLIS_PREFIX + entry.getKey().getClass().getSimpleName(), entry.getValue()[0] / 1e6 / this.steps);
+				entry.getValue()[0] = 0;
+			}
+		}
+		for (QSimMetricsRegistry registry : this.registries) {
+			registry.flush(now);
+		}
+
+		this.lastSampleSimTime = now;
+		this.lastSampleWallNanos = wallNanos;
+		this.lastEventCount = events;
+		this.steps = 0;
+	}
+
+	private void record(final String name, final double value) {
+		for (QSimMetricsRegistry registry : this.registries) {
+			registry.record(name, value);
+		}
+	}
+
+	@Override
+	public void handleEvent(final Event event) {
+		this.eventCount.increment();
+	}
+
+	@Override
+	public void reset(final int iteration) {
+	}
+
+}
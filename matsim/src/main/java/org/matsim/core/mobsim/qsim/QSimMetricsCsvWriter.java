@@ -0,0 +1,91 @@
+/* *********************************************************************** *
+ * project: org.matsim.*
+ * QSimMetricsCsvWriter.java
+ *                                                                         *
+ * *********************************************************************** *
+ *                                                                         *
+ * copyright       : (C) 2019 by the members listed in the COPYING,        *
+ *                   LICENSE and WARRANTY file.                            *
+ * email           : info at matsim dot org                                *
+ *                                                                         *
+ * *********************************************************************** *
+ *                                                                         *
+ *   This program is free software; you can redistribute it and/or modify  *
+ *   it under the terms of the GNU General Public License as published by  *
+ *   the Free Software Foundation; either version 2 of the License, or     *
+ *   (at your option) any later version.                                   *
+ *   See also COPYING, LICENSE and WARRANTY file                           *
+ *                                                                         *
+ * *********************************************************************** */
+
+
+package org.matsim.core.mobsim.qsim;
+
+import java.io.BufferedWriter;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+import org.matsim.core.utils.io.IOUtils;
+import org.matsim.core.utils.misc.Time;
+
+/**
+ * Writes the samples of the qsim metrics as comma-separated file, one line per sample.  The columns are fixed by
+ * the metrics of the first sample.
+ */
+public final class QSimMetricsCsvWriter implements QSimMetricsRegistry {
+
+	private final BufferedWriter writer;
+	private final Map<String, Double> values = new LinkedHashMap<>();
+	private List<String> columns = null;
+
+	public QSimMetricsCsvWriter(final String filename) {
+		this.writer = IOUtils.getBufferedWriter(filename);
+	}
+
+	@Override
+	public void record(final String name, final double value) {
+		this.values.put(name, value);
+	}
+
+	@Override
+	public void flush(final double simTime) {
+		try {
+			if (this.columns == null) {
+				this.columns = new ArrayList<>(this.values.keySet());
+				this.writer.write("time");
+				for (String column : this.columns) {
+					this.writer.write(',');
+					this.writer.write(column);
+				}
+				this.writer.newLine();
+			}
+			this.writer.write(Time.writeTime(simTime));
+			for (String column : this.columns) {
+				this.writer.write(',');
+				Double value = this.values.get(column);
+				if (value != null) {
+					this.writer.write(Double.toString(value));
+				}
+			}
+			this.writer.newLine();
+			this.writer.flush();
+			this.values.clear();
+		} catch (IOException e) {
+			throw new UncheckedIOException(e);
+		}
+	}
+
+	@Override
+	public void close() {
+		try {
+			this.writer.close();
+		} catch (IOException e) {
+			throw new UncheckedIOException(e);
+		}
+	}
+
+}
@@ -0,0 +1,59 @@
+/* *********************************************************************** *
+ * project: org.matsim.*
+ * QSimMetricsRegistry.java
+ *                                                                         *
+ * *********************************************************************** *
+ *                                                                         *
+ * copyright       : (C) 2019 by the members listed in the COPYING,        *
+ *                   LICENSE and WARRANTY file.                            *
+ * email           : info at matsim dot org                                *
+ *                                                                         *
+ * *********************************************************************** *
+ *                                                                         *
+ *   This program is free software; you can redistribute it and/or modify  *
+ *   it under the terms of the GNU General Public License as published by  *
+ *   the Free Software Foundation; either version 2 of the License, or     *
+ *   (at your option) any later version.                                   *
+ *   See also COPYING, LICENSE and WARRANTY file                           *
+ *                                                                         *
+ * *********************************************************************** */
+
+
+package org.matsim.core.mobsim.qsim;
+
+/**
+ * Receives the throughput metrics of the {@link QSim} while it is running, see
+ * {@link org.matsim.core.config.groups.QSimConfigGroup#getMetricsInterval()}.  Bind an implementation in the
+ * controler injector to forward the values to a monitoring system (e.g. as gauges of a Micrometer registry).
+ * <p></p>
+ * {@link #flush(double)} is called at least once per mobsim run, the last time when the simulation has ended.  All
+ * methods but {@link #close()} are called from the thread running the mobsim.
+ */
+public interface QSimMetricsRegistry {
+
+	QSimMetricsRegistry NO_OP = new QSimMetricsRegistry() {
+		@Override
+		public void record(String name, double value) {
+		}
+		@Override
+		public void flush(double simTime) {
+		}
+	};
+
+	/**
+	 * Sets the current value of the metric <code>name</code>.
+	 */
+	void record(String name, double value);
+
+	/**
+	 * Called after all metrics of one sample have been recorded.
+	 */
+	void flush(double simTime);
+
+	/**
+	 * Called once when the controler shuts down, i.e. after the mobsims of all iterations.
+	 */
+	default void close() {
+	}
+
+}
@@ -0,0 +1,44 @@
+/* *********************************************************************** *
+ * project: org.matsim.*
+ * QSimMetricsRegistryCloser.java
+ *                                                                         *
+ * *********************************************************************** *
+ *                                                                         *
+ * copyright       : (C) 2019 by the members listed in the COPYING,        *
+ *                   LICENSE and WARRANTY file.                            *
+ * email           : info at matsim dot org                                *
+ *                                                                         *
+ * *********************************************************************** *
+ *                                                                         *
+ *   This program is free software; you can redistribute it and/or modify  *
+ *   it under the terms of the GNU General Public License as published by  *
+ *   the Free Software Foundation; either version 2 of the License, or     *
+ *   (at your option) any later version.                                   *
+ *   See also COPYING, LICENSE and WARRANTY file                           *
+ *                                                                         *
+ * *********************************************************************** */
+
+package org.matsim.core.mobsim.qsim;
+
+import com.google.inject.Inject;
+
+import org.matsim.core.controler.events.ShutdownEvent;
+import org.matsim.core.controler.listener.ShutdownListener;
+
+/**
+ * Closes the {@link QSimMetricsRegistry} bound in the controler when the controler shuts down.  It is used by the
+ * mobsims of all iterations, so the {@link QSim} itself only flushes it.
+ */
+final class QSimMetricsRegistryCloser implements ShutdownListener {
+
+	@Inject(optional = true)
+	private QSimMetricsRegistry metricsRegistry;
+
+	@Override
+	public void notifyShutdown(final ShutdownEvent event) {
+		if (this.metricsRegistry != null) {
+			this.metricsRegistry.close();
+		}
+	}
+
+}
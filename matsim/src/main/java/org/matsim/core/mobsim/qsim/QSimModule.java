@@ -12,6 +12,7 @@ import javax.inject.Inject;
 import org.matsim.core.config.Config;
 import org.matsim.core.controler.AbstractModule;
 import org.matsim.core.mobsim.framework.Mobsim;
+import org.matsim.core.mobsim.psim.PSimModule;
 import org.matsim.core.mobsim.qsim.changeeventsengine.NetworkChangeEventsModule;
 import org.matsim.core.mobsim.qsim.components.QSimComponentsModule;
 import org.matsim.core.mobsim.qsim.messagequeueengine.MessageQueueModule;
@@ -88,7 +89,13 @@ public class QSimModule extends AbstractModule {
 		).to(new TypeLiteral<Set<AbstractQSimModule>>() {});
 		// I don't know why this is here.  kai, nov'18
 
-		bind(Mobsim.class).toProvider(QSimProvider.class);
+		if (getConfig().controler().getPseudoIterationsPerMobsimIteration() > 0) {
+			install(new PSimModule());
+			// (alternates between the qsim and pseudo-iterations with the PSim)
+		} else {
+			bind(Mobsim.class).toProvider(QSimProvider.class);
+		}
+		addControlerListenerBinding().to(QSimMetricsRegistryCloser.class);
 		
 		// yyyy the following will eventually be moved to QSim scope, and into QNetsimEngineModule:
 //		if ( config.qsim().isUseLanes() ) {
@@ -28,6 +28,7 @@ import com.google.inject.name.Named;
 import org.apache.log4j.Logger;
 import org.matsim.core.config.Config;
 import org.matsim.core.controler.IterationCounter;
+import org.matsim.core.controler.OutputDirectoryHierarchy;
 import org.matsim.core.mobsim.framework.AgentSource;
 import org.matsim.core.mobsim.framework.listeners.MobsimListener;
 import org.matsim.core.mobsim.qsim.components.QSimComponent;
@@ -40,7 +41,9 @@ import org.matsim.core.mobsim.qsim.pt.TransitStopHandlerFactory;
 import org.matsim.core.mobsim.qsim.qnetsimengine.QNetworkFactory;
 
 import java.lang.annotation.Annotation;
+import java.util.ArrayList;
 import java.util.Collection;
+import java.util.Collections;
 import java.util.List;
 
 public class QSimProvider implements Provider<QSim> {
@@ -53,6 +56,10 @@ public class QSimProvider implements Provider<QSim> {
 	private QSimComponentsConfig components;
 	@Inject(optional = true)
 	private IterationCounter iterationCounter;
+	@Inject(optional = true)
+	private OutputDirectoryHierarchy controlerIO;
+	@Inject(optional = true)
+	private QSimMetricsRegistry metricsRegistry;
 
 	@Inject
 	QSimProvider(Injector injector, Config config, Collection<AbstractQSimModule> modules,
@@ -94,6 +101,17 @@ public class QSimProvider implements Provider<QSim> {
 
 		QSim qSim = qsimInjector.getInstance(QSim.class);
 
+		if (config.qsim().getMetricsInterval() > 0) {
+			List<QSimMetricsRegistry> createdRegistries = new ArrayList<>();
+			if (controlerIO != null && iterationCounter != null) {
+				createdRegistries.add(new QSimMetricsCsvWriter(controlerIO.getIterationFilename(iterationCounter.getIterationNumber(), "qsim_metrics.csv")));
+			}
+			// (the bound registry is used by all iterations and only closed at shutdown, see QSimMetricsRegistryCloser)
+			List<QSimMetricsRegistry> boundRegistries = metricsRegistry == null ? Collections.emptyList()
+					: Collections.singletonList(metricsRegistry);
+			qSim.enableMetrics(config.qsim().getMetricsInterval(), createdRegistries, boundRegistries);
+		}
+
         for (Object activeComponent : components.getActiveComponents()) {
 			Key<Collection<Provider<QSimComponent>>> activeComponentKey;
 			if (activeComponent instanceof Annotation) {
@@ -0,0 +1,58 @@
+/* *********************************************************************** *
+ * project: org.matsim.*
+ *                                                                         *
+ * *********************************************************************** *
+ *                                                                         *
+ * copyright       : (C) 2019 by the members listed in the COPYING,        *
+ *                   LICENSE and WARRANTY file.                            *
+ * email           : info at matsim dot org                                *
+ *                                                                         *
+ * *********************************************************************** *
+ *                                                                         *
+ *   This program is free software; you can redistribute it and/or modify  *
+ *   it under the terms of the GNU General Public License as published by  *
+ *   the Free Software Foundation; either version 2 of the License, or     *
+ *   (at your option) any later version.                                   *
+ *   See also COPYING, LICENSE and WARRANTY file                           *
+ *                                                                         *
+ * *********************************************************************** */
+
+package org.matsim.core.mobsim.qsim.agents;
+
+import javax.inject.Inject;
+
+import org.matsim.api.core.v01.Scenario;
+import org.matsim.api.core.v01.population.Person;
+import org.matsim.core.api.experimental.events.EventsManager;
+import org.matsim.core.config.groups.PlansConfigGroup;
+import org.matsim.core.mobsim.framework.MobsimDriverAgent;
+import org.matsim.core.mobsim.framework.MobsimTimer;
+import org.matsim.core.mobsim.qsim.interfaces.Netsim;
+
+/**
+ * Creates {@link CompactPersonDriverAgent}s.  Everything the agents need from the mobsim is kept here once, instead of
+ * in every agent.
+ */
+public final class CompactAgentFactory implements AgentFactory {
+
+	final Scenario scenario;
+	final EventsManager events;
+	final MobsimTimer simTimer;
+	final PlansConfigGroup.ActivityDurationInterpretation activityDurationInterpretation;
+	final boolean usePersonIdForMissingVehicleId;
+
+	@Inject
+	public CompactAgentFactory(final Netsim simulation) {
+		this.scenario = simulation.getScenario();
+		this.events = simulation.getEventsManager();
+		this.simTimer = simulation.getSimTimer();
+		this.activityDurationInterpretation = this.scenario.getConfig().plans().getActivityDurationInterpretation();
+		this.usePersonIdForMissingVehicleId = this.scenario.getConfig().qsim().getUsePersonIdForMissingVehicleId();
+	}
+
+	@Override
+	public MobsimDriverAgent createMobsimAgentFromPerson(final Person p) {
+		return new CompactPersonDriverAgent(p.getSelectedPlan(), this);
+	}
+
+}
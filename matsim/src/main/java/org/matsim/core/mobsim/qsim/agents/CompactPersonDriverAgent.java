@@ -0,0 +1,382 @@
+/* *********************************************************************** *
+ * project: org.matsim.*
+ *                                                                         *
+ * *********************************************************************** *
+ *                                                                         *
+ * copyright       : (C) 2019 by the members listed in the COPYING,        *
+ *                   LICENSE and WARRANTY file.                            *
+ * email           : info at matsim dot org                                *
+ *                                                                         *
+ * *********************************************************************** *
+ *                                                                         *
+ *   This program is free software; you can redistribute it and/or modify  *
+ *   it under the terms of the GNU General Public License as published by  *
+ *   the Free Software Foundation; either version 2 of the License, or     *
+ *   (at your option) any later version.                                   *
+ *   See also COPYING, LICENSE and WARRANTY file                           *
+ *                                                                         *
+ * *********************************************************************** */
+
+package org.matsim.core.mobsim.qsim.agents;
+
+import java.util.List;
+
+import org.apache.log4j.Logger;
+import org.matsim.api.core.v01.Id;
+import org.matsim.api.core.v01.events.ActivityEndEvent;
+import org.matsim.api.core.v01.events.ActivityStartEvent;
+import org.matsim.api.core.v01.events.PersonArrivalEvent;
+import org.matsim.api.core.v01.network.Link;
+import org.matsim.api.core.v01.population.Activity;
+import org.matsim.api.core.v01.population.Leg;
+import org.matsim.api.core.v01.population.Person;
+import org.matsim.api.core.v01.population.Plan;
+import org.matsim.api.core.v01.population.PlanElement;
+import org.matsim.api.core.v01.population.Route;
+import org.matsim.core.gbl.Gbl;
+import org.matsim.core.mobsim.framework.HasPerson;
+import org.matsim.core.mobsim.framework.MobsimDriverAgent;
+import org.matsim.core.mobsim.framework.MobsimPassengerAgent;
+import org.matsim.core.mobsim.framework.PlanAgent;
+import org.matsim.core.mobsim.qsim.interfaces.MobsimVehicle;
+import org.matsim.core.population.PopulationUtils;
+import org.matsim.core.population.routes.NetworkRoute;
+import org.matsim.core.utils.misc.Time;
+import org.matsim.facilities.FacilitiesUtils;
+import org.matsim.facilities.Facility;
+import org.matsim.vehicles.Vehicle;
+
+/**
+ * A plan based agent with a small footprint, for mobsims with many agents.  Behaves like the
+ * {@link PersonDriverAgentImpl}, but
+ * <ul>
+ * <li> is one object instead of a chain of delegates; everything which is the same for all agents is kept by the
+ * {@link CompactAgentFactory};
+ * <li> does not wrap the plan, and does not copy it when the first activity starts (so the start times of the
+ * activities are not written into a copy of the plan);
+ * <li> keeps the link ids of the network route of the current leg, which are shared with the plan and not copied,
+ * together with an int cursor, and the destination link, so that moving over a node does not go through the plan,
+ * the leg and the route again.
+ * </ul>
+ * Since it does not provide a modifiable plan, it cannot be used together with within-day replanning.
+ */
+public final class CompactPersonDriverAgent implements MobsimDriverAgent, MobsimPassengerAgent, HasPerson, PlanAgent {
+
+	private static final Logger log = Logger.getLogger(CompactPersonDriverAgent.class);
+	private static int finalActHasDpTimeWrnCnt = 0;
+	private static int noRouteWrnCnt = 0;
+
+	private final Plan plan;
+	private final CompactAgentFactory shared;
+	private MobsimVehicle vehicle = null;
+	private State state = State.ABORT;
+	private Id<Link> currentLinkId = null;
+	private Id<Link> destinationLinkId = null;
+	// the link ids of the current leg if it has a network route, otherwise null
+	private List<Id<Link>> routeLinkIds = null;
+	private double activityEndTime = Time.UNDEFINED_TIME;
+	private int currentPlanElementIndex = 0;
+	private int routeCursor = 0;
+
+	CompactPersonDriverAgent(final Plan plan, final CompactAgentFactory shared) {
+		this.plan = plan;
+		this.shared = shared;
+		List<PlanElement> planElements = plan.getPlanElements();
+		if (planElements.size() > 0) {
+			Activity firstAct = (Activity) planElements.get(0);
+			final Id<Link> linkId = PopulationUtils.computeLinkIdFromActivity(firstAct, shared.scenario.getActivityFacilities(),
+					shared.scenario.getConfig());
+			Gbl.assertIf(linkId != null);
+			this.currentLinkId = linkId;
+			this.state = State.ACTIVITY;
+			calculateAndSetDepartureTime(firstAct);
+		}
+	}
+
+	@Override
+	public void endLegAndComputeNextState(final double now) {
+		this.shared.events.processEvent(new PersonArrivalEvent(now, this.getId(), this.destinationLinkId, getCurrentLeg().getMode()));
+		if ((!(this.currentLinkId == null && this.destinationLinkId == null))
+				&& !this.currentLinkId.equals(this.destinationLinkId)) {
+			log.error("The agent " + this.getId() + " has destination link " + this.destinationLinkId
+					+ ", but arrived on link " + this.currentLinkId + ". Setting agent state to ABORT.");
+			this.state = State.ABORT;
+		} else {
+			advancePlan(now);
+		}
+		this.routeCursor = 0;
+	}
+
+	@Override
+	public void setStateToAbort(final double now) {
+		this.state = State.ABORT;
+	}
+
+	@Override
+	public void notifyArrivalOnLinkByNonNetworkMode(final Id<Link> linkId) {
+		Gbl.assertNotNull(linkId);
+		this.currentLinkId = linkId;
+	}
+
+	@Override
+	public void endActivityAndComputeNextState(final double now) {
+		Activity act = (Activity) this.getCurrentPlanElement();
+		this.shared.events.processEvent(new ActivityEndEvent(now, this.getId(), this.currentLinkId, act.getFacilityId(), act.getType()));
+		advancePlan(now);
+	}
+
+	private void advancePlan(final double now) {
+		this.currentPlanElementIndex++;
+
+		if (this.currentPlanElementIndex >= this.plan.getPlanElements().size()) {
+			log.error("plan of agent with id = " + this.getId() + " has run empty.  Setting agent state to ABORT (but continuing the mobsim).");
+			this.state = State.ABORT;
+			return;
+		}
+
+		PlanElement pe = this.getCurrentPlanElement();
+		if (pe instanceof Activity) {
+			Activity act = (Activity) pe;
+			this.state = State.ACTIVITY;
+			this.destinationLinkId = null;
+			this.routeLinkIds = null;
+			this.shared.events.processEvent(new ActivityStartEvent(now, this.getId(), this.currentLinkId, act.getFacilityId(), act.getType()));
+			calculateAndSetDepartureTime(act);
+		} else if (pe instanceof Leg) {
+			initializeLeg((Leg) pe);
+		} else {
+			throw new RuntimeException("Unknown PlanElement of type: " + pe.getClass().getName());
+		}
+	}
+
+	private void initializeLeg(final Leg leg) {
+		this.state = State.LEG;
+		this.routeCursor = 0;
+		Route route = leg.getRoute();
+		if (route == null) {
+			log.error("The agent " + this.getId() + " has no route in its leg.  Setting agent state to ABORT.");
+			if (noRouteWrnCnt < 1) {
+				log.info("(Route is needed inside Leg even if you want teleportation since Route carries the start/endLinkId info.)");
+				noRouteWrnCnt++;
+			}
+			this.state = State.ABORT;
+			this.destinationLinkId = null;
+			this.routeLinkIds = null;
+			return;
+		}
+		this.destinationLinkId = route.getEndLinkId();
+		this.routeLinkIds = route instanceof NetworkRoute ? ((NetworkRoute) route).getLinkIds() : null;
+	}
+
+	private void calculateAndSetDepartureTime(final Activity act) {
+		double now = this.shared.simTimer.getTimeOfDay();
+		double departure = ActivityDurationUtils.calculateDepartureTime(act, now, this.shared.activityDurationInterpretation);
+
+		if (this.currentPlanElementIndex == this.plan.getPlanElements().size() - 1) {
+			if (finalActHasDpTimeWrnCnt < 1 && departure != Double.POSITIVE_INFINITY) {
+				log.error("last activity of person driver agent id " + this.getId() + " has end time < infty; setting it to infty");
+				log.error(Gbl.ONLYONCE);
+				finalActHasDpTimeWrnCnt++;
+			}
+			departure = Double.POSITIVE_INFINITY;
+		}
+
+		this.activityEndTime = departure;
+	}
+
+	// ============================================================================
+	// driving
+
+	@Override
+	public Id<Link> chooseNextLinkId() {
+		if (this.routeLinkIds == null) {
+			// routes that are not network routes cannot be interpreted
+			return null;
+		}
+		if (this.routeCursor < this.routeLinkIds.size()) {
+			return this.routeLinkIds.get(this.routeCursor);
+		}
+		// the route has run dry: go to the destination link, except if the last link of the route was a loop link
+		// which ended on the destination link, see PlanBasedDriverAgentImpl
+		if (this.routeCursor > this.routeLinkIds.size() && this.currentLinkId.equals(this.destinationLinkId)) {
+			return null;
+		}
+		return this.destinationLinkId;
+	}
+
+	@Override
+	public void notifyMoveOverNode(final Id<Link> newLinkId) {
+		Gbl.assertNotNull(newLinkId);
+		this.currentLinkId = newLinkId;
+		this.routeCursor++;
+	}
+
+	@Override
+	public boolean isWantingToArriveOnCurrentLink() {
+		if (this.routeLinkIds == null) {
+			return true;
+		}
+		return this.routeCursor >= this.routeLinkIds.size() && this.currentLinkId.equals(this.destinationLinkId);
+	}
+
+	// ============================================================================
+	// (nearly) pure getters and setters below here
+
+	@Override
+	public Id<Vehicle> getPlannedVehicleId() {
+		NetworkRoute route = (NetworkRoute) this.getCurrentLeg().getRoute(); // if casts fail: illegal state.
+		if (route.getVehicleId() != null) {
+			return route.getVehicleId();
+		}
+		Gbl.assertIf(this.shared.usePersonIdForMissingVehicleId);
+		return Id.create(this.getId(), Vehicle.class); // we still assume the vehicleId is the agentId if no vehicleId is given.
+	}
+
+	@Override
+	public String getMode() {
+		if (this.currentPlanElementIndex >= this.plan.getPlanElements().size()) {
+			return null;
+		}
+		PlanElement currentPlanElement = this.getCurrentPlanElement();
+		if (!(currentPlanElement instanceof Leg)) {
+			return null;
+		}
+		return ((Leg) currentPlanElement).getMode();
+	}
+
+	@Override
+	public Double getExpectedTravelTime() {
+		PlanElement currentPlanElement = this.getCurrentPlanElement();
+		if (!(currentPlanElement instanceof Leg)) {
+			return null;
+		}
+		final double travelTimeFromRoute = ((Leg) currentPlanElement).getRoute().getTravelTime();
+		if (travelTimeFromRoute != Time.UNDEFINED_TIME) {
+			return travelTimeFromRoute;
+		} else if (((Leg) currentPlanElement).getTravelTime() != Time.UNDEFINED_TIME) {
+			return ((Leg) currentPlanElement).getTravelTime();
+		} else {
+			return null;
+		}
+	}
+
+	@Override
+	public Double getExpectedTravelDistance() {
+		PlanElement currentPlanElement = this.getCurrentPlanElement();
+		if (!(currentPlanElement instanceof Leg)) {
+			return null;
+		}
+		return ((Leg) currentPlanElement).getRoute().getDistance();
+	}
+
+	@Override
+	public PlanElement getCurrentPlanElement() {
+		return this.plan.getPlanElements().get(this.currentPlanElementIndex);
+	}
+
+	@Override
+	public PlanElement getNextPlanElement() {
+		if (this.currentPlanElementIndex < this.plan.getPlanElements().size() - 1) {
+			return this.plan.getPlanElements().get(this.currentPlanElementIndex + 1);
+		} else {
+			return null;
+		}
+	}
+
+	@Override
+	public PlanElement getPreviousPlanElement() {
+		if (this.currentPlanElementIndex >= 1) {
+			return this.plan.getPlanElements().get(this.currentPlanElementIndex - 1);
+		} else {
+			return null;
+		}
+	}
+
+	/**
+	 * @return an unmodifiable view of the plan, created on every call
+	 */
+	@Override
+	public Plan getCurrentPlan() {
+		return PopulationUtils.unmodifiablePlan(this.plan);
+	}
+
+	@Override
+	public Id<Person> getId() {
+		return this.plan.getPerson().getId();
+	}
+
+	@Override
+	public Person getPerson() {
+		return this.plan.getPerson();
+	}
+
+	@Override
+	public MobsimVehicle getVehicle() {
+		return this.vehicle;
+	}
+
+	@Override
+	public void setVehicle(final MobsimVehicle vehicle) {
+		this.vehicle = vehicle;
+	}
+
+	@Override
+	public Id<Link> getCurrentLinkId() {
+		return this.currentLinkId;
+	}
+
+	@Override
+	public Id<Link> getDestinationLinkId() {
+		return this.destinationLinkId;
+	}
+
+	@Override
+	public double getActivityEndTime() {
+		return this.activityEndTime;
+	}
+
+	@Override
+	public State getState() {
+		return this.state;
+	}
+
+	private Leg getCurrentLeg() {
+		return (Leg) this.getCurrentPlanElement();
+	}
+
+	@Override
+	public Facility getCurrentFacility() {
+		PlanElement pe = this.getCurrentPlanElement();
+		Activity activity;
+		if (pe instanceof Activity) {
+			activity = (Activity) pe;
+		} else if (pe instanceof Leg) {
+			activity = findActivity(-1);
+		} else {
+			throw new RuntimeException("unexpected type of PlanElement");
+		}
+		return FacilitiesUtils.toFacility(activity, this.shared.scenario.getActivityFacilities());
+	}
+
+	@Override
+	public Facility getDestinationFacility() {
+		PlanElement pe = this.getCurrentPlanElement();
+		if (pe instanceof Leg) {
+			return FacilitiesUtils.toFacility(findActivity(+1), this.shared.scenario.getActivityFacilities());
+		} else if (pe instanceof Activity) {
+			return null;
+		}
+		throw new RuntimeException("unexpected type of PlanElement");
+	}
+
+	private Activity findActivity(final int direction) {
+		List<PlanElement> planElements = this.plan.getPlanElements();
+		for (int idx = this.currentPlanElementIndex + direction; idx >= 0 && idx < planElements.size(); idx += direction) {
+			if (planElements.get(idx) instanceof Activity) {
+				return (Activity) planElements.get(idx);
+			}
+		}
+		return null;
+	}
+
+}
@@ -178,6 +178,10 @@ public final class TransitAgent implements MobsimDriverPassengerAgent, PlanAgent
 	public final Id<TransitStopFacility> getDesiredDestinationStopId() {
 		return transitAgentDelegate.getDesiredDestinationStopId();
 	}
+	@Override
+	public final Id<TransitLine> getDesiredLineId() {
+		return transitAgentDelegate.getDesiredLineId();
+	}
 
 	@Override
 	public final PlanElement getPreviousPlanElement() {
@@ -9,7 +9,6 @@ import javax.inject.Inject;
 
 public class SteppableScheduler extends Scheduler implements Steppable {
 
-	private Message lookahead;
 	private boolean finished = false;
 
 	@Inject
@@ -21,27 +20,14 @@ public class SteppableScheduler extends Scheduler implements Steppable {
 	public void doSimStep(double time) {
 		finished = false; // I don't think we can restart once the queue has run dry, but just in case.
 
-		// "lookahead" is, I think, just a cache of the next message in the queue, to avoid having to retreive it again.
-		// yyyy looks like a potential bug to me if some other message gets inserted with an earlier message arrival time?  kai, feb'19
-		if (lookahead != null && time < lookahead.getMessageArrivalTime()) {
-			return;
+		// There used to be a "lookahead" cache of the next message here, which was not correct if some other message got inserted with an
+		// earlier message arrival time.  The queue now only hands out the messages until the current time.
+		Message m;
+		while ((m = queue.getNextMessage(time)) != null) {
+			m.processEvent();
+			m.handleMessage();
 		}
-		if (lookahead != null) {
-			lookahead.processEvent();
-			lookahead.handleMessage();
-			lookahead = null;
-		}
-		while (!queue.isEmpty()) {
-			Message m = queue.getNextMessage();
-			if (m != null && m.getMessageArrivalTime() <= time) {
-				m.processEvent();
-				m.handleMessage();
-			} else {
-				lookahead = m;
-				return;
-			}
-		}
-		finished = true; // queue has run dry.
+		finished = queue.isEmpty(); // queue has run dry.
 	}
 
 	public boolean isFinished() {
@@ -67,6 +67,16 @@ public interface PTPassengerAgent extends PassengerAgent {
 	
 	public Id<TransitStopFacility> getDesiredDestinationStopId();
 
+	/**
+	 * Asks a passenger waiting at a stop for the transit line it wants to board.  The answer must not change while the
+	 * passenger is waiting.
+	 *
+	 * @return The transit line id, or <code>null</code> if the passenger might board any line.
+	 */
+	public default Id<TransitLine> getDesiredLineId() {
+		return null;
+	}
+
 	/**
 	 * @return a statistical weight, how many "real" agents this agent represents, e.g. "5.0" if you simulate a 20%-sample.
 	 */
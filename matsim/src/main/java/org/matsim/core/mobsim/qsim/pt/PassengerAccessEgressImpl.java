@@ -106,31 +106,35 @@ class PassengerAccessEgressImpl implements PassengerAccessEgress {
 	private List<PTPassengerAgent> findPassengersEntering(TransitRoute transitRoute, TransitLine transitLine, TransitVehicle vehicle, 
 			final TransitStopFacility stop, List<TransitRouteStop> stopsToCome, int freeCapacity, double now) {
 		ArrayList<PTPassengerAgent> passengersEntering = new ArrayList<>();
+		// (the waiting agents are visited without copying them; they are removed from the stop when they enter)
+		int[] remainingCapacity = { freeCapacity };
 		
 		if (this.isGeneratingDeniedBoardingEvents) {
 			
-			for (PTPassengerAgent agent : this.agentTracker.getAgentsAtFacility(stop.getId())) {
+			this.agentTracker.visitAgentsAtFacility(stop.getId(), transitLine.getId(), agent -> {
 				if (agent.getEnterTransitRoute(transitLine, transitRoute, stopsToCome, vehicle)) {
-					if (freeCapacity >= 1) {
+					if (remainingCapacity[0] >= 1) {
 						passengersEntering.add(agent);
-						freeCapacity--;
+						remainingCapacity[0]--;
 					} else {
 						this.agentsDeniedToBoard.add(agent);
 					}
 				}
-			}
+				return true;
+			});
 
 		} else {
 		
-			for (PTPassengerAgent agent : this.agentTracker.getAgentsAtFacility(stop.getId())) {
-				if (freeCapacity == 0) {
-					break;
+			this.agentTracker.visitAgentsAtFacility(stop.getId(), transitLine.getId(), agent -> {
+				if (remainingCapacity[0] == 0) {
+					return false;
 				}
 				if (agent.getEnterTransitRoute(transitLine, transitRoute, stopsToCome, vehicle)) {
 					passengersEntering.add(agent);
-					freeCapacity--;
+					remainingCapacity[0]--;
 				}
-			}
+				return true;
+			});
 		
 		}
 		
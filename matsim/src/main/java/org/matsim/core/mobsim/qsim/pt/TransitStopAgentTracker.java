@@ -25,15 +25,33 @@ import org.matsim.api.core.v01.Id;
 import org.matsim.core.api.experimental.events.AgentWaitingForPtEvent;
 import org.matsim.core.api.experimental.events.EventsManager;
 import org.matsim.core.mobsim.qsim.AgentTracker;
+import org.matsim.pt.transitSchedule.api.TransitLine;
 import org.matsim.pt.transitSchedule.api.TransitStopFacility;
 
+import java.util.AbstractMap;
+import java.util.ArrayList;
 import java.util.Collections;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
 import java.util.List;
 import java.util.Map;
+import java.util.Objects;
 import java.util.concurrent.ConcurrentHashMap;
-import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.function.Predicate;
 
 /**
+ * Keeps track of the agents waiting at transit stops.
+ * <p></p>
+ * At every stop, the waiting agents are kept in buckets per {@link PTPassengerAgent#getDesiredLineId() desired line},
+ * so a vehicle serving a line only needs to look at the agents waiting for that line (and those who might board any
+ * line), and an agent is added and removed in constant time.  Within a bucket, the agents are ordered by their arrival
+ * at the stop.
+ * <p></p>
+ * The bucket of an agent is chosen when it arrives at the stop.  Code that changes the desired line of a waiting agent,
+ * e.g. within-day replanning, has to call {@link #updateDesiredLine(PTPassengerAgent, Id)} afterwards, otherwise the
+ * agent is still offered to the vehicles of its old line only.
+ *
  * @author mrieser
  */
 public class TransitStopAgentTracker implements AgentTracker {
@@ -41,7 +59,7 @@ public class TransitStopAgentTracker implements AgentTracker {
 	private final static Logger log = Logger.getLogger(TransitStopAgentTracker.class);
 	
 	private final EventsManager events;
-	private final Map<Id<TransitStopFacility>, List<PTPassengerAgent>> agentsAtStops = new ConcurrentHashMap<>();
+	private final Map<Id<TransitStopFacility>, StopAgents> agentsAtStops = new ConcurrentHashMap<>();
 
 	public TransitStopAgentTracker(final EventsManager events) {
 		this.events = events;
@@ -51,11 +69,7 @@ public class TransitStopAgentTracker implements AgentTracker {
 		if (stopId == null) {
 			throw new NullPointerException("stop must not be null.");
 		}
-		List<PTPassengerAgent> agents = this.agentsAtStops.get(stopId);
-		if (agents == null) {
-			agents = new CopyOnWriteArrayList<>();// TODO check again. this might turn out to be slow, but we likely need something thread safe here. marcel/oct2014 
-			this.agentsAtStops.put(stopId, agents);
-		}
+		StopAgents agents = this.agentsAtStops.computeIfAbsent(stopId, id -> new StopAgents());
 		if ( !agents.add(agent) ) {
 			log.error("did NOT add agent " + agent.getId() + " since it was already there.");
 		}
@@ -67,7 +81,7 @@ public class TransitStopAgentTracker implements AgentTracker {
 		if (stopId == null) {
 			throw new NullPointerException("stopId must not be null.");
 		}
-		List<PTPassengerAgent> agents = this.agentsAtStops.get(stopId);
+		StopAgents agents = this.agentsAtStops.get(stopId);
 		if (agents != null) {
 			if (!agents.remove(agent)) {
 				log.error("Agent " + agent.getId() + " could not be removed from waiting at stop " + stopId);
@@ -77,16 +91,172 @@ public class TransitStopAgentTracker implements AgentTracker {
 		}
 	}
 
+	/**
+	 * Moves a waiting agent to the bucket of its current {@link PTPassengerAgent#getDesiredLineId() desired line},
+	 * keeping its place in the order of arrival.
+	 */
+	public void updateDesiredLine(final PTPassengerAgent agent, final Id<TransitStopFacility> stopId) {
+		StopAgents agents = this.agentsAtStops.get(stopId);
+		if (agents == null || !agents.updateLine(agent)) {
+			log.error("Agent " + agent.getId() + " is not waiting at stop " + stopId);
+		}
+	}
+
+	/**
+	 * @return all agents waiting at the stop, in the order they arrived at the stop
+	 */
 	@Override
 	public List<PTPassengerAgent> getAgentsAtFacility(final Id<TransitStopFacility> stopId) {
-		List<PTPassengerAgent> agents = this.agentsAtStops.get(stopId);
+		StopAgents agents = this.agentsAtStops.get(stopId);
+		if (agents == null) {
+			return Collections.emptyList();
+		}
+		return Collections.unmodifiableList(agents.getAll());
+	}
+
+	/**
+	 * Passes the agents waiting at the stop which might want to board the line, i.e. the agents waiting for this line
+	 * or for any line, to the visitor in the order they arrived at the stop, until the visitor returns <code>false</code>.
+	 * As opposed to {@link #getAgentsAtFacility(Id, Id)}, the agents are not copied.  The visitor is called while the
+	 * agents at the stop are locked, so it must not add agents to or remove agents from this stop.
+	 */
+	public void visitAgentsAtFacility(final Id<TransitStopFacility> stopId, final Id<TransitLine> lineId, final Predicate<PTPassengerAgent> visitor) {
+		StopAgents agents = this.agentsAtStops.get(stopId);
+		if (agents != null) {
+			agents.visitForLine(lineId, visitor);
+		}
+	}
+
+	/**
+	 * @return the agents waiting at the stop which might want to board the line, i.e. the agents waiting for this line
+	 * or for any line, in the order they arrived at the stop
+	 */
+	public List<PTPassengerAgent> getAgentsAtFacility(final Id<TransitStopFacility> stopId, final Id<TransitLine> lineId) {
+		StopAgents agents = this.agentsAtStops.get(stopId);
 		if (agents == null) {
 			return Collections.emptyList();
 		}
-		return Collections.unmodifiableList(agents);
+		return Collections.unmodifiableList(agents.getForLine(lineId));
 	}
 
 	public Map<Id<TransitStopFacility>, List<PTPassengerAgent>> getAgentsAtStop() {
-		return this.agentsAtStops;
+		Map<Id<TransitStopFacility>, List<PTPassengerAgent>> agentsAtStop = new LinkedHashMap<>();
+		for (Map.Entry<Id<TransitStopFacility>, StopAgents> e : this.agentsAtStops.entrySet()) {
+			agentsAtStop.put(e.getKey(), Collections.unmodifiableList(e.getValue().getAll()));
+		}
+		return agentsAtStop;
+	}
+
+	/**
+	 * The agents waiting at one stop.  Synchronized, since agents may depart and board at the same stop from several
+	 * threads of the qsim.
+	 */
+	private static final class StopAgents {
+		// all agents in the order of arrival, with the line they wait for
+		private final LinkedHashMap<PTPassengerAgent, Id<TransitLine>> lineOfAgent = new LinkedHashMap<>();
+		// the agents by the line they wait for (key null: any line), with their arrival number
+		private final Map<Id<TransitLine>, LinkedHashMap<PTPassengerAgent, Long>> agentsByLine = new HashMap<>();
+		private long arrivals = 0;
+
+		synchronized boolean add(PTPassengerAgent agent) {
+			if (this.lineOfAgent.containsKey(agent)) {
+				return false;
+			}
+			Id<TransitLine> lineId = agent.getDesiredLineId();
+			this.lineOfAgent.put(agent, lineId);
+			this.agentsByLine.computeIfAbsent(lineId, id -> new LinkedHashMap<>()).put(agent, this.arrivals++);
+			return true;
+		}
+
+		synchronized boolean remove(PTPassengerAgent agent) {
+			if (!this.lineOfAgent.containsKey(agent)) {
+				return false;
+			}
+			Id<TransitLine> lineId = this.lineOfAgent.remove(agent);
+			LinkedHashMap<PTPassengerAgent, Long> agents = this.agentsByLine.get(lineId);
+			agents.remove(agent);
+			if (agents.isEmpty()) {
+				this.agentsByLine.remove(lineId);
+			}
+			return true;
+		}
+
+		synchronized boolean updateLine(PTPassengerAgent agent) {
+			if (!this.lineOfAgent.containsKey(agent)) {
+				return false;
+			}
+			Id<TransitLine> oldLineId = this.lineOfAgent.get(agent);
+			Id<TransitLine> lineId = agent.getDesiredLineId();
+			if (Objects.equals(oldLineId, lineId)) {
+				return true;
+			}
+			LinkedHashMap<PTPassengerAgent, Long> oldAgents = this.agentsByLine.get(oldLineId);
+			long arrival = oldAgents.remove(agent);
+			if (oldAgents.isEmpty()) {
+				this.agentsByLine.remove(oldLineId);
+			}
+			// (does not change the order of lineOfAgent)
+			this.lineOfAgent.put(agent, lineId);
+
+			LinkedHashMap<PTPassengerAgent, Long> agents = this.agentsByLine.computeIfAbsent(lineId, id -> new LinkedHashMap<>());
+			// insert the agent at its place in the order of arrival; agents rarely change their line while waiting
+			List<Map.Entry<PTPassengerAgent, Long>> later = new ArrayList<>();
+			for (Iterator<Map.Entry<PTPassengerAgent, Long>> it = agents.entrySet().iterator(); it.hasNext(); ) {
+				Map.Entry<PTPassengerAgent, Long> e = it.next();
+				if (e.getValue() > arrival) {
+					later.add(new AbstractMap.SimpleImmutableEntry<>(e));
+					it.remove();
+				}
+			}
+			agents.put(agent, arrival);
+			for (Map.Entry<PTPassengerAgent, Long> e : later) {
+				agents.put(e.getKey(), e.getValue());
+			}
+			return true;
+		}
+
+		synchronized List<PTPassengerAgent> getAll() {
+			return new ArrayList<>(this.lineOfAgent.keySet());
+		}
+
+		synchronized List<PTPassengerAgent> getForLine(Id<TransitLine> lineId) {
+			List<PTPassengerAgent> agents = new ArrayList<>();
+			visitForLine(lineId, agents::add);
+			return agents;
+		}
+
+		synchronized void visitForLine(Id<TransitLine> lineId, Predicate<PTPassengerAgent> visitor) {
+			LinkedHashMap<PTPassengerAgent, Long> forLine = lineId == null ? null : this.agentsByLine.get(lineId);
+			LinkedHashMap<PTPassengerAgent, Long> forAnyLine = this.agentsByLine.get(null);
+			if (forLine == null || forAnyLine == null) {
+				LinkedHashMap<PTPassengerAgent, Long> agents = forLine == null ? forAnyLine : forLine;
+				if (agents != null) {
+					for (PTPassengerAgent agent : agents.keySet()) {
+						if (!visitor.test(agent)) {
+							return;
+						}
+					}
+				}
+				return;
+			}
+			// merge both buckets by arrival
+			Iterator<Map.Entry<PTPassengerAgent, Long>> it1 = forLine.entrySet().iterator();
+			Iterator<Map.Entry<PTPassengerAgent, Long>> it2 = forAnyLine.entrySet().iterator();
+			Map.Entry<PTPassengerAgent, Long> e1 = it1.next();
+			Map.Entry<PTPassengerAgent, Long> e2 = it2.next();
+			while (e1 != null || e2 != null) {
+				PTPassengerAgent agent;
+				if (e2 == null || (e1 != null && e1.getValue() < e2.getValue())) {
+					agent = e1.getKey();
+					e1 = it1.hasNext() ? it1.next() : null;
+				} else {
+					agent = e2.getKey();
+					e2 = it2.hasNext() ? it2.next() : null;
+				}
+				if (!visitor.test(agent)) {
+					return;
+				}
+			}
+		}
 	}
 }
@@ -81,6 +81,9 @@ abstract class AbstractQLink implements QLinkI {
 	// (NOTE: via the qnetwork you reach the QNetsimEngine.  That is the "global" thing.  In contrast, via the netElementActivator,
 	// you reach the QNetsimEngineRunner.  That is the thread that runs the QLink.  Kai, mar'16
 
+	// the position of the link in the order of the events within a time step, only used with deterministic parallelism
+	/*package*/ int canonicalIndex = 0;
+
 	// joint implementation for Customizable
 	private final Map<String, Object> customAttributes = new HashMap<>();
 
@@ -0,0 +1,173 @@
+/* *********************************************************************** *
+ * project: org.matsim.*
+ * CompactQVehicle.java
+ *                                                                         *
+ * *********************************************************************** *
+ *                                                                         *
+ * copyright       : (C) 2019 by the members listed in the COPYING,        *
+ *                   LICENSE and WARRANTY file.                            *
+ * email           : info at matsim dot org                                *
+ *                                                                         *
+ * *********************************************************************** *
+ *                                                                         *
+ *   This program is free software; you can redistribute it and/or modify  *
+ *   it under the terms of the GNU General Public License as published by  *
+ *   the Free Software Foundation; either version 2 of the License, or     *
+ *   (at your option) any later version.                                   *
+ *   See also COPYING, LICENSE and WARRANTY file                           *
+ *                                                                         *
+ * *********************************************************************** */
+
+package org.matsim.core.mobsim.qsim.qnetsimengine;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.List;
+
+import org.matsim.api.core.v01.Id;
+import org.matsim.api.core.v01.network.Link;
+import org.matsim.core.mobsim.framework.DriverAgent;
+import org.matsim.core.mobsim.framework.MobsimDriverAgent;
+import org.matsim.core.mobsim.framework.PassengerAgent;
+import org.matsim.vehicles.Vehicle;
+
+/**
+ * A {@link QVehicle} with a smaller footprint than the {@link QVehicleImpl}, meant for large populations of private
+ * vehicles: the id and the passenger capacity are taken from the {@link Vehicle} when needed, and the list of
+ * passengers is only created when the first passenger enters.  Otherwise, it behaves like the {@link QVehicleImpl}.
+ * <p></p>
+ * Use it by binding a {@link QVehicleFactory} which returns <code>CompactQVehicle::new</code>, or by setting
+ * <code>usingCompactAgents</code> in the qsim config group.
+ */
+public final class CompactQVehicle implements QVehicle {
+
+	private static final List<PassengerAgent> NO_PASSENGERS = Collections.emptyList();
+
+	private final Vehicle vehicle;
+	private Link currentLink = null;
+	private DriverAgent driver = null;
+	private List<PassengerAgent> passengers = null;
+	private double linkEnterTime = 0.;
+	private double earliestLinkExitTime = 0.;
+
+	public CompactQVehicle(final Vehicle vehicle) {
+		this.vehicle = vehicle;
+		// (warn once here, like the QVehicleImpl, and not every time the capacity is needed)
+		QVehicleImpl.warnIfNoCapacity(vehicle);
+	}
+
+	@Override
+	public Id<Vehicle> getId() {
+		return this.vehicle.getId();
+	}
+
+	@Override
+	public Vehicle getVehicle() {
+		return this.vehicle;
+	}
+
+	@Override
+	public void setCurrentLink(final Link link) {
+		this.currentLink = link;
+	}
+
+	@Override
+	public Link getCurrentLink() {
+		return this.currentLink;
+	}
+
+	@Override
+	public double getEarliestLinkExitTime() {
+		return this.earliestLinkExitTime;
+	}
+
+	@Override
+	public void setEarliestLinkExitTime(final double time) {
+		this.earliestLinkExitTime = time;
+	}
+
+	@Override
+	public double getLinkEnterTime() {
+		return this.linkEnterTime;
+	}
+
+	@Override
+	public void setLinkEnterTime(final double linkEnterTime) {
+		this.linkEnterTime = linkEnterTime;
+	}
+
+	@Override
+	public MobsimDriverAgent getDriver() {
+		if (this.driver instanceof MobsimDriverAgent) {
+			return (MobsimDriverAgent) this.driver;
+		} else if (this.driver == null) {
+			return null;
+		} else {
+			throw new RuntimeException("error (downstream methods need to be made to accept DriverAgent)");
+		}
+	}
+
+	@Override
+	public void setDriver(final DriverAgent driver) {
+		if (driver != null && this.driver != null && !this.driver.getId().equals(driver.getId())) {
+			throw new RuntimeException("A driver (" + this.driver.getId() + ") " +
+					"is already set in vehicle " + this.getId() + ". " +
+					"Setting agent " + driver.getId().toString() + " is not possible!");
+		}
+		this.driver = driver;
+	}
+
+	@Override
+	public double getSizeInEquivalents() {
+		return this.vehicle.getType().getPcuEquivalents();
+	}
+
+	@Override
+	public double getFlowCapacityConsumptionInEquivalents() {
+		return this.vehicle.getType().getPcuEquivalents() / this.vehicle.getType().getFlowEfficiencyFactor();
+	}
+
+	@Override
+	public double getMaximumVelocity() {
+		return this.vehicle.getType().getMaximumVelocity();
+	}
+
+	@Override
+	public Collection<? extends PassengerAgent> getPassengers() {
+		if (this.passengers == null) {
+			return NO_PASSENGERS;
+		}
+		return Collections.unmodifiableCollection(this.passengers);
+	}
+
+	@Override
+	public boolean addPassenger(final PassengerAgent passenger) {
+		if (this.passengers == null) {
+			if (getPassengerCapacity() <= 0) {
+				return false;
+			}
+			this.passengers = new ArrayList<>(2);
+		} else if (this.passengers.size() >= getPassengerCapacity()) {
+			return false;
+		}
+		return this.passengers.add(passenger);
+	}
+
+	@Override
+	public boolean removePassenger(final PassengerAgent passenger) {
+		return this.passengers != null && this.passengers.remove(passenger);
+	}
+
+	@Override
+	public int getPassengerCapacity() {
+		return QVehicleImpl.computePassengerCapacity(this.vehicle);
+	}
+
+	@Override
+	public String toString() {
+		return "Vehicle Id " + getId() + ", driven by (personId) " + this.driver.getId()
+				+ ", on link " + this.currentLink.getId();
+	}
+
+}
@@ -18,7 +18,11 @@ public class NetsimEngineContext {
 	public NetsimEngineContext(EventsManager events, double effectiveCellSize, AgentCounter agentCounter,
 			AbstractAgentSnapshotInfoBuilder snapshotInfoBuilder, QSimConfigGroup qsimConfig, MobsimTimer mobsimTimer, 
 			SnapshotLinkWidthCalculator linkWidthCalculator) {
-		this.events = events;
+		if (qsimConfig != null && QNetsimEngineRunner.isBuffering(qsimConfig)) {
+			this.events = new QNetsimEngineRunner.BufferingEventsManager(events);
+		} else {
+			this.events = events;
+		}
 		this.effectiveCellSize = effectiveCellSize;
 		this.agentCounter = agentCounter;
 		this.snapshotInfoBuilder = snapshotInfoBuilder;
@@ -19,6 +19,7 @@
 
 package org.matsim.core.mobsim.qsim.qnetsimengine;
 
+import java.util.ArrayList;
 import java.util.Collection;
 
 import org.matsim.api.core.v01.Id;
@@ -26,6 +27,7 @@ import org.matsim.api.core.v01.Identifiable;
 import org.matsim.core.mobsim.qsim.interfaces.MobsimVehicle;
 import org.matsim.lanes.Lane;
 import org.matsim.vehicles.Vehicle;
+import org.matsim.vis.snapshotwriters.AgentPositionBuffer;
 import org.matsim.vis.snapshotwriters.AgentSnapshotInfo;
 
 
@@ -53,6 +55,12 @@ public interface QLaneI extends Identifiable<Lane> {
 	
 	static interface VisData {
 		public Collection<AgentSnapshotInfo> addAgentSnapshotInfo(Collection<AgentSnapshotInfo> positions, double now ) ;
+
+		public default void addAgentPositions(AgentPositionBuffer buffer, double now) {
+			for (AgentSnapshotInfo position : addAgentSnapshotInfo(new ArrayList<>(), now)) {
+				buffer.add(position);
+			}
+		}
 	}
 
 	VisData getVisData();
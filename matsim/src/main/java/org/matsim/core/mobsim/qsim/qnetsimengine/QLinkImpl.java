@@ -39,6 +39,7 @@ import org.matsim.core.utils.geometry.transformations.IdentityTransformation;
 import org.matsim.lanes.VisLaneModelBuilder;
 import org.matsim.lanes.VisLinkWLanes;
 import org.matsim.vehicles.Vehicle;
+import org.matsim.vis.snapshotwriters.AgentPositionBuffer;
 import org.matsim.vis.snapshotwriters.AgentSnapshotInfo;
 import org.matsim.vis.snapshotwriters.VisData;
 
@@ -310,6 +311,33 @@ public final class QLinkImpl extends AbstractQLink implements SignalizeableItem
 			return positions;
 		}
 
+		@Override
+		public void addAgentPositions(AgentPositionBuffer buffer) {
+			QLaneI.VisData roadVisData = getAcceptingQLane().getVisData() ;
+			if (visLink != null) {
+				((QueueWithBuffer.VisDataImpl)roadVisData).setVisInfo(visLink.getLinkStartCoord(), visLink.getLinkEndCoord()) ;
+			}
+
+			double now = context.getSimTimer().getTimeOfDay() ;
+			roadVisData.addAgentPositions(buffer, now) ;
+
+			// the vehicles and agents which are not on the road are few, so they are positioned as usual
+			if (getTransitQLink().getTransitVehicleStopQueue().isEmpty() && QLinkImpl.this.getWaitingList().isEmpty()
+					&& QLinkImpl.this.getAdditionalAgentsOnLink().isEmpty()) {
+				return;
+			}
+			Collection<AgentSnapshotInfo> positions = new ArrayList<>() ;
+			int cnt2 = 10 ;
+			cnt2 = context.snapshotInfoBuilder.positionVehiclesFromTransitStop(positions, getLink(), getTransitQLink().getTransitVehicleStopQueue(), cnt2 );
+			cnt2 = context.snapshotInfoBuilder.positionVehiclesFromWaitingList(positions, QLinkImpl.this.getLink(), cnt2,
+					QLinkImpl.this.getWaitingList());
+			context.snapshotInfoBuilder.positionAgentsInActivities(positions, QLinkImpl.this.getLink(),
+					QLinkImpl.this.getAdditionalAgentsOnLink(), cnt2);
+			for (AgentSnapshotInfo position : positions) {
+				buffer.add(position);
+			}
+		}
+
 	}
 
 	@Override
@@ -23,6 +23,7 @@ package org.matsim.core.mobsim.qsim.qnetsimengine;
 import org.apache.log4j.Logger;
 import org.matsim.api.core.v01.Id;
 import org.matsim.api.core.v01.Scenario;
+import org.matsim.api.core.v01.events.Event;
 import org.matsim.api.core.v01.events.PersonLeavesVehicleEvent;
 import org.matsim.api.core.v01.network.Link;
 import org.matsim.api.core.v01.population.Person;
@@ -119,11 +120,39 @@ public class QNetsimEngine implements MobsimEngine, NetsimEngine {
 	private ExecutorService pool;
 
 	private final boolean usingThreadpool;
+
+	private final boolean deterministicParallelism;
+
+	private final boolean bufferingEvents;
+
+	private final List<Event> eventsBatch = new ArrayList<>();
 	
 	// for detailed run time analysis - used in combination with QSim.analyzeRunTimes
 	public static int numObservedTimeSteps = 24*3600;
 	public static boolean printRunTimesPerTimeStep = false;
 	
+	/**
+	 * Wraps the events manager of the mobsim if the events of the links and nodes are buffered, so that the events which
+	 * are thrown while the links and nodes are moved, e.g. by transit drivers and their passengers at stops, are
+	 * buffered as well and do not overtake the events of the links and nodes.
+	 */
+	public static EventsManager createBufferingEventsManager(EventsManager events, QSimConfigGroup qsimConfig) {
+		if (QNetsimEngineRunner.isBuffering(qsimConfig)) {
+			return new QNetsimEngineRunner.BufferingEventsManager(events);
+		}
+		return events;
+	}
+
+	/**
+	 * Collects the agent if it is handed over to the mobsim while the links and nodes of a buffering runner are moved,
+	 * e.g. a passenger who leaves a transit vehicle at a stop.
+	 *
+	 * @return <code>false</code> if the next state of the agent needs to be arranged right away
+	 */
+	public static boolean bufferAgent(MobsimAgent agent) {
+		return QNetsimEngineRunner.buffer(agent);
+	}
+
 	@Override
 	public void setInternalInterface( InternalInterface internalInterface) {
 		this.internalInterface = internalInterface;
@@ -140,6 +169,8 @@ public class QNetsimEngine implements MobsimEngine, NetsimEngine {
 		final Config config = sim.getScenario().getConfig();
 		final QSimConfigGroup qsimConfigGroup = config.qsim();
 		this.usingThreadpool = qsimConfigGroup.isUsingThreadpool();
+		this.deterministicParallelism = qsimConfigGroup.isDeterministicParallelism();
+		this.bufferingEvents = QNetsimEngineRunner.isBuffering(qsimConfigGroup);
 
 
 		// configuring the car departure hander (including the vehicle behavior)
@@ -335,6 +366,66 @@ public class QNetsimEngine implements MobsimEngine, NetsimEngine {
 			this.startBarrier.arriveAndAwaitAdvance();
 			this.endBarrier.arriveAndAwaitAdvance();
 		}
+
+		if (this.bufferingEvents) {
+			passOnBufferedEventsAndAgents();
+		}
+	}
+
+	/**
+	 * Passes on the events and the agents collected by the runners during the time step.  Consecutive events are handed
+	 * to the events manager as one batch.  With deterministic parallelism, they are ordered by the canonical index of
+	 * the nodes and links they come from; the runners have sorted them already, so they only need to be merged.
+	 * Otherwise, they are passed on runner by runner, which keeps the order of the events of every vehicle since a
+	 * node and its outgoing links are moved by the same runner.
+	 */
+	private void passOnBufferedEventsAndAgents() {
+		EventsManager events = this.qsim.getEventsManager();
+		if (this.deterministicParallelism) {
+			int[] next = new int[this.engines.size()];
+			while (true) {
+				int first = -1;
+				int firstIndex = 0;
+				for (int i = 0; i < this.engines.size(); i++) {
+					QNetsimEngineRunner engine = this.engines.get(i);
+					if (next[i] < engine.getNumberOfBuffered() && (first < 0 || engine.getBufferedIndex(next[i]) < firstIndex)) {
+						first = i;
+						firstIndex = engine.getBufferedIndex(next[i]);
+					}
+				}
+				if (first < 0) {
+					break;
+				}
+				passOn(events, this.engines.get(first).getBuffered(next[first]++));
+			}
+		} else {
+			for (QNetsimEngineRunner engine : this.engines) {
+				for (int i = 0; i < engine.getNumberOfBuffered(); i++) {
+					passOn(events, engine.getBuffered(i));
+				}
+			}
+		}
+		flushEventsBatch(events);
+		for (QNetsimEngineRunner engine : this.engines) {
+			engine.clearBuffered();
+		}
+	}
+
+	private void passOn(EventsManager events, Object eventOrAgent) {
+		if (eventOrAgent instanceof Event) {
+			this.eventsBatch.add((Event) eventOrAgent);
+		} else {
+			// the events so far have to be processed before the agent continues its plan
+			flushEventsBatch(events);
+			this.internalInterface.arrangeNextAgentState((MobsimAgent) eventOrAgent);
+		}
+	}
+
+	private void flushEventsBatch(EventsManager events) {
+		if (!this.eventsBatch.isEmpty()) {
+			events.processEvents(this.eventsBatch);
+			this.eventsBatch.clear();
+		}
 	}
 
 
@@ -410,11 +501,14 @@ public class QNetsimEngine implements MobsimEngine, NetsimEngine {
 	private void letVehicleArrive(QVehicle veh) {
 		double now = this.qsim.getSimTimer().getTimeOfDay();
 		MobsimDriverAgent driver = veh.getDriver();
-		this.qsim.getEventsManager().processEvent(new PersonLeavesVehicleEvent(now, driver.getId(), veh.getId()));
+		Event event = new PersonLeavesVehicleEvent(now, driver.getId(), veh.getId());
+		if (!QNetsimEngineRunner.buffer(event)) {
+			this.qsim.getEventsManager().processEvent(event);
+		}
 		// reset vehicles driver
 		veh.setDriver(null);
 		driver.endLegAndComputeNextState(now);
-		this.internalInterface.arrangeNextAgentState(driver);
+		arrangeNextAgentState(driver);
 	}
 
 	private void initQSimEngineThreads() {
@@ -439,9 +533,10 @@ public class QNetsimEngine implements MobsimEngine, NetsimEngine {
 		for (int i = 0; i < numOfRunners; i++) {
 			QNetsimEngineRunner engine ;
 			if (this.usingThreadpool) {
-				engine = new QNetsimEngineRunner();
+				engine = new QNetsimEngineRunner(this.bufferingEvents, this.deterministicParallelism);
 			} else {
-				engine = new QNetsimEngineRunner(this.startBarrier, separationBarrier, endBarrier);
+				engine = new QNetsimEngineRunner(this.startBarrier, separationBarrier, endBarrier, this.bufferingEvents,
+						this.deterministicParallelism);
 				Thread thread = new Thread(engine);
 				thread.setName("QNetsimEngineRunner_" + i);
 				thread.setDaemon(true);	// make the Thread Daemons so they will terminate automatically
@@ -507,6 +602,32 @@ public class QNetsimEngine implements MobsimEngine, NetsimEngine {
 		}
 
 		this.linksToActivateInitially.clear();
+
+		if (this.deterministicParallelism) {
+			assignCanonicalIndices();
+		}
+	}
+
+	/*
+	 * The nodes, followed by the links, ordered by id.  This is the order in which their events are passed on within
+	 * a time step with deterministic parallelism.
+	 */
+	private void assignCanonicalIndices() {
+		List<QNodeI> nodes = new ArrayList<>(network.getNetsimNodes().values());
+		nodes.sort((o1, o2) -> o1.getNode().getId().compareTo(o2.getNode().getId()));
+		int index = 0;
+		for (QNodeI node : nodes) {
+			if (node instanceof QNodeImpl) {
+				((QNodeImpl) node).canonicalIndex = index;
+			}
+			index++;
+		}
+		List<QLinkI> links = new ArrayList<>(network.getNetsimLinks().values());
+		links.sort((o1, o2) -> o1.getLink().getId().compareTo(o2.getLink().getId()));
+		for (QLinkI link : links) {
+			((AbstractQLink) link).canonicalIndex = index;
+			index++;
+		}
 	}
 
 	public void printEngineRunTimes() {
@@ -567,6 +688,9 @@ public class QNetsimEngine implements MobsimEngine, NetsimEngine {
 	}
 
 	private final void arrangeNextAgentState(MobsimAgent pp) {
-		internalInterface.arrangeNextAgentState(pp);
+		// when buffering, agents are passed on after the time step, see passOnBufferedEventsAndAgents()
+		if (!QNetsimEngineRunner.buffer(pp)) {
+			internalInterface.arrangeNextAgentState(pp);
+		}
 	}
 }
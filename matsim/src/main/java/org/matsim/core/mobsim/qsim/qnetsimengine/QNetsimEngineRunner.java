@@ -20,6 +20,10 @@
 
 package org.matsim.core.mobsim.qsim.qnetsimengine;
 
+import org.matsim.api.core.v01.events.Event;
+import org.matsim.core.api.experimental.events.EventsManager;
+import org.matsim.core.config.groups.QSimConfigGroup;
+import org.matsim.core.events.handler.EventHandler;
 import org.matsim.core.gbl.Gbl;
 import org.matsim.core.mobsim.qsim.QSim;
 
@@ -76,6 +80,21 @@ class QNetsimEngineRunner extends NetElementActivationRegistry implements Runnab
 
 	private boolean movingNodes;
 
+	/*
+	 * When buffering, the events of the nodes and links and the agents whose next state is to be arranged are not
+	 * passed on right away, but collected by the runner together with the canonical index of the node or link they
+	 * come from; this includes what the mobsim is called back with from the links, e.g. by transit drivers at stops.  The QNetsimEngine passes them on after the time step in bulk, so the events manager does not
+	 * need to be called concurrently.  With deterministic parallelism, they are ordered by that index, so that neither
+	 * the number of runners nor the timing of the threads has an influence on the order.
+	 */
+	private static final ThreadLocal<QNetsimEngineRunner> currentRunner = new ThreadLocal<>();
+	private final boolean buffering;
+	private final boolean canonicalOrder;
+	private Object[] buffered = new Object[1024];
+	private long[] bufferedOrder = new long[1024];
+	private int numberOfBuffered = 0;
+	private int currentIndex = 0;
+
 	/*package*/ long[] runTimes;
 	private long startTime = 0;
 	{	
@@ -83,17 +102,22 @@ class QNetsimEngineRunner extends NetElementActivationRegistry implements Runnab
 		else runTimes = null;
 	}
 	
-	/*package*/ QNetsimEngineRunner(Phaser startBarrier, Phaser separationBarrier, Phaser endBarrier) {
+	/*package*/ QNetsimEngineRunner(Phaser startBarrier, Phaser separationBarrier, Phaser endBarrier, boolean buffering,
+			boolean canonicalOrder) {
 		this.startBarrier = startBarrier;
 		this.separationBarrier = separationBarrier;
 		this.endBarrier = endBarrier;
+		this.buffering = buffering;
+		this.canonicalOrder = canonicalOrder;
 	}
-	QNetsimEngineRunner() {
+	QNetsimEngineRunner(boolean buffering, boolean canonicalOrder) {
 		// this is the execution path with invokeAll and the threadpool; it does not need (and should not use) the barriers.
 		// kai, jan'14
 		this.startBarrier = null;
 		this.separationBarrier = null;
 		this.endBarrier = null;
+		this.buffering = buffering;
+		this.canonicalOrder = canonicalOrder;
 	}
 
 	/*package*/ void setTime(final double t) {
@@ -116,10 +140,17 @@ class QNetsimEngineRunner extends NetElementActivationRegistry implements Runnab
 			return false;
 		}
 
-		if (this.movingNodes) {
-			moveNodes();
-		} else {
-			moveLinks();
+		if (this.buffering) {
+			currentRunner.set(this);
+		}
+		try {
+			if (this.movingNodes) {
+				moveNodes();
+			} else {
+				moveLinks();
+			}
+		} finally {
+			currentRunner.remove();
 		}
 		return true ;
 	}
@@ -127,6 +158,10 @@ class QNetsimEngineRunner extends NetElementActivationRegistry implements Runnab
 	@Override
 	public void run() {
 
+		if (this.buffering) {
+			currentRunner.set(this);
+		}
+
 		// The method is ended when the simulationRunning flag is set to false.
 		while(true) {
 
@@ -171,6 +206,7 @@ class QNetsimEngineRunner extends NetElementActivationRegistry implements Runnab
 		Iterator<QNodeImpl> simNodes = this.nodesQueue.iterator();
 		while (simNodes.hasNext()) {
 			node = simNodes.next();
+			this.currentIndex = node.canonicalIndex;
 			remainsActive = node.doSimStep(time);
 			if (!remainsActive) simNodes.remove();
 		}
@@ -183,12 +219,62 @@ class QNetsimEngineRunner extends NetElementActivationRegistry implements Runnab
 		ListIterator<QLinkI> simLinks = this.linksList.listIterator();
 		while (simLinks.hasNext()) {
 			link = simLinks.next();
+			if (this.canonicalOrder) {
+				this.currentIndex = ((AbstractQLink) link).canonicalIndex;
+			}
 
 			remainsActive = link.doSimStep();
 
 			if (!remainsActive) simLinks.remove();
 		}
 		lockLinks = false;
+
+		if (this.canonicalOrder) {
+			// sorted by the index of the node resp. link, and within a node resp. link in the order they were added
+			Arrays.sort(this.bufferedOrder, 0, this.numberOfBuffered);
+		}
+	}
+
+	static boolean isBuffering(QSimConfigGroup qsimConfig) {
+		return qsimConfig.isBufferingEvents() || qsimConfig.isDeterministicParallelism();
+	}
+
+	/**
+	 * Collects the event or agent if the current thread is moving nodes or links of a buffering runner.
+	 *
+	 * @return <code>false</code> if the event or agent needs to be handled right away
+	 */
+	static boolean buffer(Object eventOrAgent) {
+		QNetsimEngineRunner runner = currentRunner.get();
+		if (runner == null) {
+			return false;
+		}
+		int n = runner.numberOfBuffered;
+		if (n == runner.buffered.length) {
+			runner.buffered = Arrays.copyOf(runner.buffered, 2 * n);
+			runner.bufferedOrder = Arrays.copyOf(runner.bufferedOrder, 2 * n);
+		}
+		runner.buffered[n] = eventOrAgent;
+		runner.bufferedOrder[n] = ((long) runner.currentIndex << 32) | n;
+		runner.numberOfBuffered++;
+		return true;
+	}
+
+	/*package*/ int getNumberOfBuffered() {
+		return this.numberOfBuffered;
+	}
+
+	/*package*/ int getBufferedIndex(int i) {
+		return (int) (this.bufferedOrder[i] >>> 32);
+	}
+
+	/*package*/ Object getBuffered(int i) {
+		return this.buffered[(int) this.bufferedOrder[i]];
+	}
+
+	/*package*/ void clearBuffered() {
+		Arrays.fill(this.buffered, 0, this.numberOfBuffered, null);
+		this.numberOfBuffered = 0;
 	}
 
 	/*
@@ -232,4 +318,55 @@ class QNetsimEngineRunner extends NetElementActivationRegistry implements Runnab
 	public void setMovingNodes(boolean movingNodes) {
 		this.movingNodes = movingNodes;
 	}
-}
\ No newline at end of file
+
+	/**
+	 * Collects the events of the nodes and links moved by the runner of the current thread, see
+	 * {@link QNetsimEngineRunner#buffer(Object)}.
+	 */
+	static final class BufferingEventsManager implements EventsManager {
+
+		private final EventsManager delegate;
+
+		BufferingEventsManager(EventsManager delegate) {
+			this.delegate = delegate;
+		}
+
+		@Override
+		public void processEvent(Event event) {
+			if (!buffer(event)) {
+				this.delegate.processEvent(event);
+			}
+		}
+
+		@Override
+		public void addHandler(EventHandler handler) {
+			this.delegate.addHandler(handler);
+		}
+
+		@Override
+		public void removeHandler(EventHandler handler) {
+			this.delegate.removeHandler(handler);
+		}
+
+		@Override
+		public void resetHandlers(int iteration) {
+			this.delegate.resetHandlers(iteration);
+		}
+
+		@Override
+		public void initProcessing() {
+			this.delegate.initProcessing();
+		}
+
+		@Override
+		public void afterSimStep(double time) {
+			this.delegate.afterSimStep(time);
+		}
+
+		@Override
+		public void finishProcessing() {
+			this.delegate.finishProcessing();
+		}
+	}
+
+}
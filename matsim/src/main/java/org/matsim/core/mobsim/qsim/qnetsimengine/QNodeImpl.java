@@ -72,6 +72,9 @@ final class QNodeImpl implements QNodeI {
 	 * cdobler, sep'14
 	 */
 	private final AtomicBoolean active = new AtomicBoolean(false);
+
+	// the position of the node in the order of the events within a time step, only used with deterministic parallelism
+	/*package*/ int canonicalIndex = 0;
 	
 	private final Node node;
 	
@@ -82,6 +85,8 @@ final class QNodeImpl implements QNodeI {
 	private final Map<String, Object> customAttributes = new HashMap<>();
 	
 	private final Random random;
+	// only with deterministic parallelism, otherwise the random numbers come from the random above
+	private final long randomSeed;
 	private final NetsimEngineContext context;
 	private final NetsimInternalInterface netsimEngine;
 	
@@ -95,13 +100,19 @@ final class QNodeImpl implements QNodeI {
 		int nofInLinks = this.node.getInLinks().size();
 		this.inLinksArrayCache = new QLinkI[nofInLinks];
 		this.tempLinks = new QLinkI[nofInLinks];
-		if (this.context.qsimConfig.getNumberOfThreads() > 1) {
+		if (this.context.qsimConfig.isDeterministicParallelism()) {
+			// the random numbers of a node must neither depend on the other nodes nor on the thread which moves the node
+			this.random = null;
+			this.randomSeed = mix(MatsimRandom.getLastUsedSeed() + mix(n.getId().toString().hashCode()));
+		} else if (this.context.qsimConfig.getNumberOfThreads() > 1) {
 			// This could just as well be the "normal" case. The second alternative
 			// is just there so some scenarios / test cases stay
 			// "event-file-compatible". Consider removing the second alternative.
 			this.random = MatsimRandom.getLocalInstance();
+			this.randomSeed = 0;
 		} else {
 			this.random = MatsimRandom.getRandom();
+			this.randomSeed = 0;
 		}
 	}
 	
@@ -212,7 +223,7 @@ final class QNodeImpl implements QNodeI {
 		
 		// randomize based on capacity
 		for (int auxCounter = 0; auxCounter < inLinksCounter; auxCounter++) {
-			double rndNum = random.nextDouble() * inLinksCapSum;
+			double rndNum = nextDouble(now, auxCounter) * inLinksCapSum;
 			double selCap = 0.0;
 			for (int i = 0; i < inLinksCounter; i++) {
 				QLinkI link = this.tempLinks[i];
@@ -231,6 +242,25 @@ final class QNodeImpl implements QNodeI {
 		return true;
 	}
 	
+	/**
+	 * With deterministic parallelism, the n-th random number of a time step only depends on the seed, the node, the
+	 * time and n.
+	 */
+	private double nextDouble(final double now, final int n) {
+		if (this.random != null) {
+			return this.random.nextDouble();
+		}
+		long z = mix(this.randomSeed + mix(Double.doubleToLongBits(now)) + n * 0x9e3779b97f4a7c15L);
+		return (z >>> 11) * 0x1.0p-53;
+	}
+
+	// the finalizer of the SplitMix64 generator
+	private static long mix(long z) {
+		z = (z ^ (z >>> 30)) * 0xbf58476d1ce4e5b9L;
+		z = (z ^ (z >>> 27)) * 0x94d049bb133111ebL;
+		return z ^ (z >>> 31);
+	}
+
 	private void moveLink(final QLinkI link, final double now){
 		for (QLaneI lane : link.getOfferingQLanes()) {
 			while (! lane.isNotOfferingVehicle()) {
@@ -67,10 +67,16 @@ public class QVehicleImpl implements QVehicle {
 		this.id = basicVehicle.getId();
 		this.vehicle = basicVehicle;
 		this.passengers = new ArrayList<>();
+		this.passengerCapacity = getPassengerCapacity(basicVehicle);
+	}
 
-		VehicleCapacity capacity = basicVehicle.getType().getCapacity();
-		if (capacity == null) {
-			this.passengerCapacity = 4;
+	/*package*/ static int getPassengerCapacity(final Vehicle basicVehicle) {
+		warnIfNoCapacity(basicVehicle);
+		return computePassengerCapacity(basicVehicle);
+	}
+
+	/*package*/ static void warnIfNoCapacity(final Vehicle basicVehicle) {
+		if (basicVehicle.getType().getCapacity() == null) {
 			if (warnCount < 10) {
 				log.warn("No VehicleCapacity (= maximum number of passengers) set in Vehicle. "
 						+ "Using default value of 4.  This is only a problem if you need vehicles with different "
@@ -80,11 +86,21 @@ public class QVehicleImpl implements QVehicle {
 					log.warn( Gbl.FUTURE_SUPPRESSED ) ;
 				}
 			}
+		}
+	}
+
+	/**
+	 * Same as {@link #getPassengerCapacity(Vehicle)}, but without the warning if the capacity is missing.
+	 */
+	/*package*/ static int computePassengerCapacity(final Vehicle basicVehicle) {
+		VehicleCapacity capacity = basicVehicle.getType().getCapacity();
+		if (capacity == null) {
+			return 4;
 		} else {
 			// do *not* subtract one for the driver! Most pt vehicles define the capacity without the driver.
 			// for private cars, think about if we should subtract one from the capacity if the driver is set?
 			// But if we do, change the number of seats of the default vehicle from 4 to 5.
-			this.passengerCapacity = capacity.getSeats() +
+			return capacity.getSeats() +
 					(capacity.getStandingRoom() == null ? 0 : capacity.getStandingRoom());
 		}
 	}
@@ -22,6 +22,7 @@ package org.matsim.core.mobsim.qsim.qnetsimengine;
 import org.apache.log4j.Logger;
 import org.matsim.api.core.v01.Coord;
 import org.matsim.api.core.v01.Id;
+import org.matsim.api.core.v01.TransportMode;
 import org.matsim.api.core.v01.events.PersonStuckEvent;
 import org.matsim.api.core.v01.events.VehicleAbortsEvent;
 import org.matsim.api.core.v01.network.Link;
@@ -33,6 +34,7 @@ import org.matsim.core.config.groups.QSimConfigGroup.TrafficDynamics;
 import org.matsim.core.gbl.Gbl;
 import org.matsim.core.gbl.MatsimRandom;
 import org.matsim.core.mobsim.framework.MobsimDriverAgent;
+import org.matsim.core.mobsim.framework.PassengerAgent;
 import org.matsim.core.mobsim.qsim.interfaces.MobsimVehicle;
 import org.matsim.core.mobsim.qsim.interfaces.SignalGroupState;
 import org.matsim.core.mobsim.qsim.interfaces.SignalizeableItem;
@@ -46,6 +48,7 @@ import org.matsim.core.mobsim.qsim.qnetsimengine.vehicleq.VehicleQ;
 import org.matsim.core.utils.misc.Time;
 import org.matsim.lanes.Lane;
 import org.matsim.vehicles.Vehicle;
+import org.matsim.vis.snapshotwriters.AgentPositionBuffer;
 import org.matsim.vis.snapshotwriters.AgentSnapshotInfo;
 import org.matsim.vis.snapshotwriters.VisVehicle;
 
@@ -933,6 +936,83 @@ final class QueueWithBuffer implements QLaneI, SignalizeableItem {
 			return positions ;
 		}
 
+		/**
+		 * Samples the positions directly from the buffer and the queue of this lane, without creating
+		 * {@link AgentSnapshotInfo}s.  The vehicles are placed according to the queue logic of the
+		 * {@link QueueAgentSnapshotInfoBuilder} on the straight line between the upstream and the downstream coordinate,
+		 * i.e. holes, the configured snapshot style and the lane offsets are ignored.
+		 */
+		@Override
+		public final void addAgentPositions(AgentPositionBuffer positions, double now) {
+			if ( buffer.isEmpty() && vehQueue.isEmpty() ) {
+				return;
+			}
+			if ( this.upstreamCoord==null ) {
+				this.upstreamCoord = qLink.getFromNode().getCoord() ;
+			}
+			if ( this.downstreamCoord==null ) {
+				this.downstreamCoord = qLink.getToNode().getCoord() ;
+			}
+
+			double sumOfPCEs = 0. ;
+			for ( QVehicle veh : buffer ) {
+				sumOfPCEs += veh.getSizeInEquivalents() ;
+			}
+			for ( QVehicle veh : vehQueue ) {
+				sumOfPCEs += veh.getSizeInEquivalents() ;
+			}
+			double spacingOfOnePCE = Math.min( length / (storageCapacity + getBufferStorageCapacity()), length / sumOfPCEs ) ;
+			double freespeed = qLink.getFreespeed(now) ;
+
+			// same order as getAllVehicles(): the vehicle closest to the downstream end first
+			double distanceFromFromNode = Double.NaN ;
+			for ( QVehicle veh : buffer ) {
+				distanceFromFromNode = addAgentPosition(positions, veh, distanceFromFromNode, spacingOfOnePCE, freespeed, now) ;
+			}
+			for ( QVehicle veh : vehQueue ) {
+				distanceFromFromNode = addAgentPosition(positions, veh, distanceFromFromNode, spacingOfOnePCE, freespeed, now) ;
+			}
+		}
+
+		private double addAgentPosition(AgentPositionBuffer positions, QVehicle veh, double lastDistanceFromFromNode,
+				double spacingOfOnePCE, double freespeed, double now) {
+			double freespeedTravelTime = length / freespeed ;
+			double distanceFromFromNode = 0. ;
+			if ( freespeedTravelTime != 0. ) {
+				double remainingTravelTime = veh.getEarliestLinkExitTime() - now ;
+				distanceFromFromNode = Math.max( 0., (1. - remainingTravelTime / freespeedTravelTime) * length ) ;
+			}
+			double spacing = veh.getSizeInEquivalents() * spacingOfOnePCE ;
+			if ( Double.isNaN(lastDistanceFromFromNode) && distanceFromFromNode >= length ) {
+				distanceFromFromNode = length ;
+			} else {
+				double last = Double.isNaN(lastDistanceFromFromNode) ? length : lastDistanceFromFromNode ;
+				if ( distanceFromFromNode >= last - spacing ) {
+					distanceFromFromNode = last - spacing ;
+				}
+			}
+
+			double fraction = length > 0. ? distanceFromFromNode / length : 0. ;
+			double easting = this.upstreamCoord.getX() + fraction * (this.downstreamCoord.getX() - this.upstreamCoord.getX()) ;
+			double northing = this.upstreamCoord.getY() + fraction * (this.downstreamCoord.getY() - this.upstreamCoord.getY()) ;
+			double colorValue = VisUtils.calcSpeedValueBetweenZeroAndOne(veh, inverseFlowCapacityPerTimeStep, now, freespeed) ;
+
+			MobsimDriverAgent driver = veh.getDriver() ;
+			AgentSnapshotInfo.AgentState state ;
+			if ( driver instanceof TransitDriverAgent ) {
+				state = AgentSnapshotInfo.AgentState.TRANSIT_DRIVER ;
+			} else if ( TransportMode.car.equals(driver.getMode()) ) {
+				state = AgentSnapshotInfo.AgentState.PERSON_DRIVING_CAR ;
+			} else {
+				state = AgentSnapshotInfo.AgentState.PERSON_OTHER_MODE ;
+			}
+			for ( PassengerAgent passenger : veh.getPassengers() ) {
+				positions.add(passenger.getId(), easting, northing, colorValue, AgentSnapshotInfo.AgentState.PERSON_OTHER_MODE) ;
+			}
+			positions.add(driver.getId(), easting, northing, colorValue, state) ;
+			return distanceFromFromNode ;
+		}
+
 		void setVisInfo(Coord upstreamCoord, Coord downstreamCoord) {
 			this.upstreamCoord = upstreamCoord;
 			this.downstreamCoord = downstreamCoord;
@@ -164,6 +164,7 @@ import org.matsim.utils.objectattributes.attributable.Attributes;
 	@Override
 	public final boolean setFromNode(final Node node) {
 		this.from = node;
+		linkChanged();
 		return true;
 	}
 
@@ -175,6 +176,7 @@ import org.matsim.utils.objectattributes.attributable.Attributes;
 	@Override
 	public final boolean setToNode(final Node node) {
 		this.to = node;
+		linkChanged();
 		return true;
 	}
 
@@ -194,6 +196,7 @@ import org.matsim.utils.objectattributes.attributable.Attributes;
 	public void setCapacity(double capacityPerNetworkCapcityPeriod){
 		this.capacity = capacityPerNetworkCapcityPeriod;
 		this.checkCapacitySemantics();
+		linkChanged();
 	}
 
 	@Override
@@ -245,6 +248,7 @@ import org.matsim.utils.objectattributes.attributable.Attributes;
 	public void setFreespeed(double freespeed) {
 		this.freespeed = freespeed;
 		this.checkFreespeedSemantics();
+		linkChanged();
 	}
 
 	@Override
@@ -256,6 +260,7 @@ import org.matsim.utils.objectattributes.attributable.Attributes;
 	public final void setLength(double length) {
 		this.length = length;
 		this.checkLengthSemantics();
+		linkChanged();
 	}
 
 	@Override
@@ -273,6 +278,7 @@ import org.matsim.utils.objectattributes.attributable.Attributes;
 	public void setNumberOfLanes(double lanes) {
 		this.nofLanes = lanes;
 		this.checkNumberOfLanesSemantics();
+		linkChanged();
 	}
 
 	@Override
@@ -283,6 +289,16 @@ import org.matsim.utils.objectattributes.attributable.Attributes;
 	@Override
 	public final void setAllowedModes(final Set<String> modes) {
 		this.allowedModes = HashSetCache.get(modes);
+		linkChanged();
+	}
+
+	/**
+	 * keeps the {@link NetworkArrays} of the network up to date
+	 */
+	private void linkChanged() {
+		if (this.network instanceof NetworkImpl) {
+			((NetworkImpl) this.network).linkChanged(this);
+		}
 	}
 
 //	/*deliberately package*/ final void setOrigId2(final String id) {
@@ -0,0 +1,282 @@
+/* *********************************************************************** *
+ * project: org.matsim.*
+ * NetworkArrays.java
+ *                                                                         *
+ * *********************************************************************** *
+ *                                                                         *
+ * copyright       : (C) 2019 by the members listed in the COPYING,        *
+ *                   LICENSE and WARRANTY file.                            *
+ * email           : info at matsim dot org                                *
+ *                                                                         *
+ * *********************************************************************** *
+ *                                                                         *
+ *   This program is free software; you can redistribute it and/or modify  *
+ *   it under the terms of the GNU General Public License as published by  *
+ *   the Free Software Foundation; either version 2 of the License, or     *
+ *   (at your option) any later version.                                   *
+ *   See also COPYING, LICENSE and WARRANTY file                           *
+ *                                                                         *
+ * *********************************************************************** */
+
+package org.matsim.core.network;
+
+import java.util.BitSet;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.Set;
+
+import org.matsim.api.core.v01.Id;
+import org.matsim.api.core.v01.network.Link;
+import org.matsim.api.core.v01.network.Network;
+import org.matsim.api.core.v01.network.Node;
+
+/**
+ * A read-only structure-of-arrays view of the frequently used link properties of a network, so that hot loops (e.g.
+ * in routers) can read them with an index instead of going through the {@link Link} interface.
+ * <p></p>
+ * Links and nodes are indexed in the iteration order of {@link Network#getLinks()} and {@link Network#getNodes()} at
+ * the time the view is created; this is the same order as used by
+ * {@link org.matsim.core.router.util.ArrayRoutingNetworkFactory}.
+ * <p></p>
+ * Use {@link NetworkUtils#getNetworkArrays(Network)} to get an instance.  For the default network implementation,
+ * the instance is shared and kept up to date: changes done with the link setters are copied into the arrays,
+ * and for links with {@link NetworkChangeEvent}s the time-dependent getters delegate to the link itself.  Adding
+ * or removing links or nodes creates a new instance on the next call of {@link NetworkUtils#getNetworkArrays(Network)},
+ * existing instances keep the old structure.
+ * <p></p>
+ * Modes are encoded as bits in a <code>long</code>, so at most 64 different modes get a bit (see
+ * {@link #getModeMask(String)}); {@link #isAllowed(int, String)} also works for other modes.  The bits are assigned
+ * when the view is created, so modes that are only allowed on a link later do not get a bit either.
+ */
+public final class NetworkArrays {
+
+	private static final int MAX_MODES = Long.SIZE;
+
+	private final Link[] links;
+	private final Node[] nodes;
+	private final Map<Id<Link>, Integer> linkIndices;
+	private final Map<Id<Node>, Integer> nodeIndices;
+	private final double capacityPeriod;
+
+	private final double[] length;
+	private final double[] freespeed;
+	private final double[] capacity;
+	private final double[] lanes;
+	private final int[] fromNode;
+	private final int[] toNode;
+	private final long[] allowedModes;
+	/** not changed after construction, since the view is read by several threads while links are updated */
+	private final Map<String, Integer> modeIndices;
+
+	/** links with network change events, for which the time-dependent values must be asked from the link */
+	private final BitSet timeVariant = new BitSet();
+
+	/*package*/ NetworkArrays(final Network network) {
+		int nodeCount = network.getNodes().size();
+		int linkCount = network.getLinks().size();
+		this.nodes = new Node[nodeCount];
+		this.nodeIndices = new HashMap<>((int) (nodeCount / 0.75) + 1);
+		int i = 0;
+		for (Node node : network.getNodes().values()) {
+			this.nodes[i] = node;
+			this.nodeIndices.put(node.getId(), i);
+			i++;
+		}
+
+		Map<String, Integer> modeIndices = new HashMap<>();
+		for (Link link : network.getLinks().values()) {
+			for (String mode : link.getAllowedModes()) {
+				if (!modeIndices.containsKey(mode) && modeIndices.size() < MAX_MODES) {
+					modeIndices.put(mode, modeIndices.size());
+				}
+			}
+		}
+		this.modeIndices = Collections.unmodifiableMap(modeIndices);
+
+		this.links = new Link[linkCount];
+		this.linkIndices = new HashMap<>((int) (linkCount / 0.75) + 1);
+		this.length = new double[linkCount];
+		this.freespeed = new double[linkCount];
+		this.capacity = new double[linkCount];
+		this.lanes = new double[linkCount];
+		this.fromNode = new int[linkCount];
+		this.toNode = new int[linkCount];
+		this.allowedModes = new long[linkCount];
+		this.capacityPeriod = network.getCapacityPeriod();
+		i = 0;
+		for (Link link : network.getLinks().values()) {
+			this.links[i] = link;
+			this.linkIndices.put(link.getId(), i);
+			copyLink(i);
+			i++;
+		}
+		if (network instanceof TimeDependentNetwork) {
+			for (NetworkChangeEvent event : ((TimeDependentNetwork) network).getNetworkChangeEvents()) {
+				setTimeVariant(event);
+			}
+		}
+	}
+
+	private void copyLink(final int i) {
+		Link link = this.links[i];
+		this.length[i] = link.getLength();
+		this.freespeed[i] = link.getFreespeed();
+		this.capacity[i] = link.getCapacity();
+		this.lanes[i] = link.getNumberOfLanes();
+		this.fromNode[i] = getNodeIndex(link.getFromNode().getId());
+		this.toNode[i] = getNodeIndex(link.getToNode().getId());
+		long modes = 0;
+		for (String mode : link.getAllowedModes()) {
+			Integer modeIndex = this.modeIndices.get(mode);
+			if (modeIndex != null) {
+				modes |= 1L << modeIndex;
+			}
+		}
+		this.allowedModes[i] = modes;
+	}
+
+	/*package*/ void update(final Link link) {
+		int i = getLinkIndex(link.getId());
+		if (i >= 0 && this.links[i] == link) {
+			copyLink(i);
+		}
+	}
+
+	/*package*/ void setTimeVariant(final NetworkChangeEvent event) {
+		for (Link link : event.getLinks()) {
+			int i = getLinkIndex(link.getId());
+			if (i >= 0) {
+				this.timeVariant.set(i);
+			}
+		}
+	}
+
+	/*package*/ void clearTimeVariant() {
+		this.timeVariant.clear();
+	}
+
+	public int getLinkCount() {
+		return this.links.length;
+	}
+
+	public int getNodeCount() {
+		return this.nodes.length;
+	}
+
+	/**
+	 * @return the index of the link, or -1 if the link was not part of the network when this view was created
+	 */
+	public int getLinkIndex(final Id<Link> linkId) {
+		Integer index = this.linkIndices.get(linkId);
+		return index == null ? -1 : index;
+	}
+
+	/**
+	 * @return the index of the node, or -1 if the node was not part of the network when this view was created
+	 */
+	public int getNodeIndex(final Id<Node> nodeId) {
+		Integer index = this.nodeIndices.get(nodeId);
+		return index == null ? -1 : index;
+	}
+
+	public Link getLink(final int linkIndex) {
+		return this.links[linkIndex];
+	}
+
+	public Node getNode(final int nodeIndex) {
+		return this.nodes[nodeIndex];
+	}
+
+	public int getFromNodeIndex(final int linkIndex) {
+		return this.fromNode[linkIndex];
+	}
+
+	public int getToNodeIndex(final int linkIndex) {
+		return this.toNode[linkIndex];
+	}
+
+	public double getLength(final int linkIndex) {
+		return this.length[linkIndex];
+	}
+
+	public double getFreespeed(final int linkIndex) {
+		return this.freespeed[linkIndex];
+	}
+
+	/**
+	 * @see Link#getFreespeed(double)
+	 */
+	public double getFreespeed(final int linkIndex, final double time) {
+		if (this.timeVariant.get(linkIndex)) {
+			return this.links[linkIndex].getFreespeed(time);
+		}
+		return this.freespeed[linkIndex];
+	}
+
+	/**
+	 * @return the capacity per capacity period of the network
+	 */
+	public double getCapacity(final int linkIndex) {
+		return this.capacity[linkIndex];
+	}
+
+	/**
+	 * @see Link#getCapacity(double)
+	 */
+	public double getCapacity(final int linkIndex, final double time) {
+		if (this.timeVariant.get(linkIndex)) {
+			return this.links[linkIndex].getCapacity(time);
+		}
+		return this.capacity[linkIndex];
+	}
+
+	/**
+	 * @see Link#getFlowCapacityPerSec(double)
+	 */
+	public double getFlowCapacityPerSec(final int linkIndex, final double time) {
+		if (this.timeVariant.get(linkIndex)) {
+			return this.links[linkIndex].getFlowCapacityPerSec(time);
+		}
+		return this.capacity[linkIndex] / this.capacityPeriod;
+	}
+
+	public double getNumberOfLanes(final int linkIndex) {
+		return this.lanes[linkIndex];
+	}
+
+	/**
+	 * @see Link#getNumberOfLanes(double)
+	 */
+	public double getNumberOfLanes(final int linkIndex, final double time) {
+		if (this.timeVariant.get(linkIndex)) {
+			return this.links[linkIndex].getNumberOfLanes(time);
+		}
+		return this.lanes[linkIndex];
+	}
+
+	/**
+	 * @return the bit of the given mode in {@link #getAllowedModesMask(int)}, or 0 if the mode has no bit
+	 */
+	public long getModeMask(final String mode) {
+		Integer modeIndex = this.modeIndices.get(mode);
+		return modeIndex == null ? 0 : 1L << modeIndex;
+	}
+
+	/**
+	 * @return the allowed modes of the link as bit mask, see {@link #getModeMask(String)}
+	 */
+	public long getAllowedModesMask(final int linkIndex) {
+		return this.allowedModes[linkIndex];
+	}
+
+	public boolean isAllowed(final int linkIndex, final String mode) {
+		long mask = getModeMask(mode);
+		if (mask == 0) {
+			Set<String> modes = this.links[linkIndex].getAllowedModes();
+			return modes.contains(mode);
+		}
+		return (this.allowedModes[linkIndex] & mask) != 0;
+	}
+
+}
@@ -98,6 +98,8 @@ import java.util.Queue;
 	private boolean locked = false ;
 	private final Attributes attributes = new Attributes();
 
+	private volatile NetworkArrays networkArrays = null;
+
 	NetworkImpl() {
 		this.factory = new NetworkFactoryImpl(this);
 	}
@@ -129,6 +131,7 @@ import java.util.Queue;
 		toNode.addInLink(link);
 
 		links.put(link.getId(), link);
+		this.networkArrays = null;
 
 		if (this.linkQuadTree != null) {
 			double linkMinX = Math.min(link.getFromNode().getCoord().getX(), link.getToNode().getCoord().getX());
@@ -181,6 +184,7 @@ import java.util.Queue;
 					".\nNode is not added to the network.");
 		}
 		this.nodes.put(id, nn);
+		this.networkArrays = null;
 		if (this.nodeQuadTree != null) {
 			if (Double.isInfinite(this.nodeQuadTree.getMinEasting())) {
 				// looks like the quad tree was initialized with infinite bounds, see MATSIM-278.
@@ -217,6 +221,7 @@ import java.util.Queue;
 		if (n == null) {
 			return null;
 		}
+		this.networkArrays = null;
 		HashSet<Link> links1 = new HashSet<>();
 		links1.addAll(n.getInLinks().values());
 		links1.addAll(n.getOutLinks().values());
@@ -235,6 +240,7 @@ import java.util.Queue;
 		if (l == null) {
 			return null;
 		}
+		this.networkArrays = null;
 		l.getFromNode().removeOutLink(l.getId()) ;
 		l.getToNode().removeInLink(l.getId()) ;
 
@@ -256,6 +262,7 @@ import java.util.Queue;
 	public void setCapacityPeriod(final double capPeriod) {
 		testForLocked() ;
 		this.capacityPeriod = (int) capPeriod;
+		this.networkArrays = null;
 	}
 	@Override
 	public void setEffectiveCellSize(final double effectiveCellSize) {
@@ -287,6 +294,9 @@ import java.util.Queue;
 	 */
 	@Override public void setNetworkChangeEvents(final List<NetworkChangeEvent> events) {
 		this.networkChangeEvents.clear();
+		if (this.networkArrays != null) {
+			this.networkArrays.clearTimeVariant();
+		}
 		for(Link link : getLinks().values()) {
 			if (link instanceof TimeVariantLinkImpl) {
 				((TimeVariantLinkImpl)link).clearEvents();
@@ -313,6 +323,9 @@ import java.util.Queue;
 		for (Link link : event.getLinks()) {
 			if (link instanceof TimeVariantLinkImpl) {
 				((TimeVariantLinkImpl)link).applyEvent(event);
+				if (this.networkArrays != null) {
+					this.networkArrays.setTimeVariant(event);
+				}
 			} else {
 				throw new IllegalArgumentException("Link " + link.getId().toString() + " is not timeVariant. "
 						+ "Did you make the network factory time variant?  The easiest way to achieve this is "
@@ -374,6 +387,32 @@ import java.util.Queue;
 		return this.nodeQuadTree.getDisk(coord.getX(), coord.getY(), distance);
 	}
 
+	/**
+	 * @see NetworkUtils#getNetworkArrays(Network)
+	 */
+	NetworkArrays getNetworkArrays() {
+		NetworkArrays arrays = this.networkArrays;
+		if (arrays == null) {
+			synchronized (this) {
+				arrays = this.networkArrays;
+				if (arrays == null) {
+					arrays = new NetworkArrays(this);
+					this.networkArrays = arrays;
+				}
+			}
+		}
+		return arrays;
+	}
+
+	/**
+	 * Called by the links of this network when one of their attributes was set.
+	 */
+	void linkChanged(final Link link) {
+		if (this.networkArrays != null) {
+			this.networkArrays.update(link);
+		}
+	}
+
 	@Override
 	public Queue<NetworkChangeEvent> getNetworkChangeEvents() {
 		return this.networkChangeEvents;
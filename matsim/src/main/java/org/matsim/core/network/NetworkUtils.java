@@ -48,6 +48,9 @@ public final class NetworkUtils {
 
     private static Logger log = Logger.getLogger(NetworkUtils.class);
 
+	/** the array views of networks that are not a {@link NetworkImpl}, see {@link #getNetworkArrays(Network)} */
+	private static final Map<Network, NetworkArrays> networkArrays = new WeakHashMap<>();
+
     public static Network createNetwork(Config config) {
         return createNetwork(config.network());
     }
@@ -740,6 +743,26 @@ public final class NetworkUtils {
 		}
 	}
 
+	/**
+	 * @return an array based view of the link attributes of the network.  For the default network implementation,
+	 * the view is cached and kept consistent with link changes and network change events.  For other implementations,
+	 * the view is cached per network as well, but only recreated when the number of links or nodes has changed;
+	 * changes of link attributes are not seen.
+	 */
+	public static NetworkArrays getNetworkArrays(Network network) {
+		if ( network instanceof NetworkImpl ) {
+			return ((NetworkImpl) network).getNetworkArrays() ;
+		}
+		synchronized ( networkArrays ) {
+			NetworkArrays arrays = networkArrays.get( network ) ;
+			if ( arrays == null || arrays.getLinkCount() != network.getLinks().size() || arrays.getNodeCount() != network.getNodes().size() ) {
+				arrays = new NetworkArrays( network ) ;
+				networkArrays.put( network, arrays ) ;
+			}
+			return arrays ;
+		}
+	}
+
 
 	public static Link getNearestLinkExactly(Network network, Coord coord) {
 		if ( network instanceof SearchableNetwork ) {
@@ -41,12 +41,17 @@ import org.matsim.utils.objectattributes.attributable.Attributes;
 	private String name;
 	private Map<Id<Person>, Person> persons = new LinkedHashMap<>();
 	private final PopulationFactory populationFactory;
-	private final ObjectAttributes personAttributes = new ObjectAttributes();
+	private final ObjectAttributes personAttributes;
 	private long counter = 0;
 	private long nextMsg = 1;
 
 	PopulationImpl(PopulationFactory populationFactory2) {
+		this(populationFactory2, new ObjectAttributes());
+	}
+
+	PopulationImpl(PopulationFactory populationFactory2, ObjectAttributes personAttributes) {
 		this.populationFactory = populationFactory2 ;
+		this.personAttributes = personAttributes ;
 	}
 
 	@Override
@@ -71,6 +71,8 @@ import org.matsim.core.utils.io.UncheckedIOException;
 import org.matsim.core.utils.misc.Time;
 import org.matsim.facilities.ActivityFacilities;
 import org.matsim.facilities.ActivityFacility;
+import org.matsim.utils.objectattributes.ColumnarObjectAttributes;
+import org.matsim.utils.objectattributes.ObjectAttributes;
 import org.matsim.utils.objectattributes.attributable.Attributes;
 import org.matsim.utils.objectattributes.attributable.AttributesUtils;
 
@@ -127,7 +129,8 @@ public final class PopulationUtils {
 			throw new IllegalArgumentException("The type \"" + networkRouteType + "\" is not a supported type for network routes.");
 		}
 		routeFactory.setRouteFactory(NetworkRoute.class, factory);
-		return new PopulationImpl(new PopulationFactoryImpl(routeFactory));
+		ObjectAttributes personAttributes = plansConfigGroup.isUsingColumnarPersonAttributes() ? new ColumnarObjectAttributes() : new ObjectAttributes();
+		return new PopulationImpl(new PopulationFactoryImpl(routeFactory), personAttributes);
 	}
 
 	//	public static Population createStreamingPopulation(PlansConfigGroup plansConfigGroup, Network network) {
@@ -836,15 +839,15 @@ public final class PopulationUtils {
 		out.setDepartureTime(in.getDepartureTime());
 		out.setTravelTime(in.getTravelTime());
 		if (in.getRoute() != null) {
+			// cheap for the network routes, which share their link ids with the clone until they are set again
 			out.setRoute(in.getRoute().clone());
 		}
 		AttributesUtils.copyAttributesFromTo( in , out );
 	}
 
 	public static void copyFromTo(Activity act, Activity newAct) {
-		Coord coord = act.getCoord() == null ? null : new Coord(act.getCoord().getX(), act.getCoord().getY());
-		// (we don't want to copy the coord ref, but rather the contents!)
-		newAct.setCoord(coord);
+		// coords are immutable, so the instance can be shared between the copies
+		newAct.setCoord(act.getCoord());
 		newAct.setType( act.getType() );
 		newAct.setLinkId(act.getLinkId());
 		newAct.setStartTime(act.getStartTime());
@@ -183,7 +183,8 @@ import org.xml.sax.Attributes;
 		if (VALUE_YES.equals(sel)) {
 			selected = true;
 		}
-		else if (VALUE_NO.equals(sel)) {
+		else if (VALUE_NO.equals(sel) || sel == null) {
+			// null only happens when parsing without dtd (see MatsimXmlParser#setUsingFastParser), "no" is the dtd default
 			selected = false;
 		}
 		else {
@@ -55,6 +55,7 @@ final class CompressedNetworkRouteImpl extends AbstractRoute implements NetworkR
 
 	private final static Logger log = Logger.getLogger(CompressedNetworkRouteImpl.class);
 
+	// never changed in place, so that it can be shared with the clones; see setLinkIds
 	private ArrayList<Id<Link>> route = new ArrayList<Id<Link>>(0);
 	private final Map<Id<Link>, Id<Link>> subsequentLinks;
 	private double travelCost = Double.NaN;
@@ -73,10 +74,8 @@ final class CompressedNetworkRouteImpl extends AbstractRoute implements NetworkR
 
 	@Override
 	public CompressedNetworkRouteImpl clone() {
-		CompressedNetworkRouteImpl cloned = (CompressedNetworkRouteImpl) super.clone();
-		ArrayList<Id<Link>> tmpRoute = cloned.route;
-		cloned.route = new ArrayList<Id<Link>>(tmpRoute); // deep copy
-		return cloned;
+		// the link ids are shared with the clone (copy-on-write, see setLinkIds)
+		return (CompressedNetworkRouteImpl) super.clone();
 	}
 
 	@Override
@@ -192,7 +191,8 @@ final class CompressedNetworkRouteImpl extends AbstractRoute implements NetworkR
 
 	@Override
 	public void setLinkIds(final Id<Link> startLinkId, final List<Id<Link>> srcRoute, final Id<Link> endLinkId) {
-		this.route.clear();
+		// a new list instead of changing the old one, which may be shared with clones of this route
+		this.route = new ArrayList<Id<Link>>(0);
 		setStartLinkId(startLinkId);
 		setEndLinkId(endLinkId);
 		this.routeModCountState = this.modCount;
@@ -25,13 +25,22 @@ import java.util.HashMap;
 import java.util.LinkedHashSet;
 import java.util.List;
 import java.util.Map;
+import java.util.Random;
 import java.util.TreeMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
 
 import org.apache.log4j.Logger;
 import org.matsim.api.core.v01.population.BasicPlan;
 import org.matsim.api.core.v01.population.HasPlansAndId;
+import org.matsim.api.core.v01.population.Person;
+import org.matsim.api.core.v01.population.Plan;
 import org.matsim.core.api.internal.MatsimManager;
 import org.matsim.core.gbl.MatsimRandom;
+import org.matsim.core.replanning.selectors.AbstractPlanSelector;
+import org.matsim.core.replanning.selectors.PathSizeLogitSelector;
 import org.matsim.core.replanning.selectors.PlanSelector;
 import org.matsim.core.replanning.selectors.GenericWorstPlanForRemovalSelector;
 import org.matsim.core.replanning.selectors.RandomPlanSelector;
@@ -72,10 +81,26 @@ public class GenericStrategyManager<PL extends BasicPlan, AG extends HasPlansAnd
 	private PlanSelector<PL, AG> removalPlanSelector = new GenericWorstPlanForRemovalSelector<>();
 
 	private String subpopulationAttributeName = null;
+
+	private int numberOfThreadsForSelection = 0;
+	private long randomSeed = 0;
 	
 	public GenericStrategyManager() {
 	}
 
+	/**
+	 * Makes the choice of the strategy and the removal of surplus plans run on <code>numberOfThreads</code> threads.
+	 * Every person gets its own random stream, derived from the random seed, the iteration and the person id, so the
+	 * results do not depend on the number of threads or the order of the persons.  The strategies themselves are
+	 * still run sequentially in the order of the persons.
+	 *
+	 * @param numberOfThreads 0 to choose the strategies sequentially with the global random number generator (default)
+	 */
+	public final void setParallelStrategySelection(final int numberOfThreads, final long randomSeed) {
+		this.numberOfThreadsForSelection = numberOfThreads;
+		this.randomSeed = randomSeed;
+	}
+
 	/**
 	 * @param name the name of the subpopulation attribute
 	 * in the person's object attributes.
@@ -193,7 +218,22 @@ public class GenericStrategyManager<PL extends BasicPlan, AG extends HasPlansAnd
 			strategy.init(replanningContext);
 		}
 
-		// then go through the population and ...
+		if (this.numberOfThreadsForSelection > 0) {
+			final int iteration = replanningContext == null ? 0 : replanningContext.getIteration();
+			runWithParallelSelection(persons, subPopLookup, iteration);
+		} else {
+			runSequentially(persons, subPopLookup);
+		}
+
+		// finally make sure all strategies have finished there work
+		for (GenericPlanStrategy<PL, AG> strategy : distinctStrategies()) {
+			strategy.finish();
+		}
+
+	}
+
+	private void runSequentially(final Iterable<? extends HasPlansAndId<PL, AG>> persons, ObjectAttributes subPopLookup) {
+		// go through the population and ...
 		for (HasPlansAndId<PL, AG> person : persons ) {
 
 			// ... reduce the number of plans to the allowed maximum (in evol comp lang this is "selection")
@@ -215,12 +255,97 @@ public class GenericStrategyManager<PL extends BasicPlan, AG extends HasPlansAnd
 			// ... and run the strategy:
 			strategy.run(person);
 		}
+	}
 
-		// finally make sure all strategies have finished there work
-		for (GenericPlanStrategy<PL, AG> strategy : distinctStrategies()) {
-			strategy.finish();
+	/**
+	 * Removes the surplus plans and chooses the strategies in parallel (in chunks of persons), then runs the chosen
+	 * strategies sequentially, as the strategies are not thread-safe.  Plan removal with a removal selector that might
+	 * use the global random number generator is done in the sequential part, so it stays deterministic.
+	 */
+	@SuppressWarnings("unchecked")
+	private void runWithParallelSelection(final Iterable<? extends HasPlansAndId<PL, AG>> persons, final ObjectAttributes subPopLookup,
+			final int iteration) {
+		final List<HasPlansAndId<PL, AG>> personList = new ArrayList<>();
+		for (HasPlansAndId<PL, AG> person : persons) {
+			personList.add(person);
+		}
+		final int size = personList.size();
+		final GenericPlanStrategy<PL, AG>[] chosenStrategies = new GenericPlanStrategy[size];
+		final String[] subpopulations = new String[size];
+		final boolean removeInParallel = this.removalPlanSelector.getClass() == GenericWorstPlanForRemovalSelector.class
+				|| this.removalPlanSelector.getClass() == WorstPlanForRemovalSelector.class
+				|| this.removalPlanSelector.getClass() == PathSizeLogitSelector.class;
+
+		int numberOfThreads = Math.min(this.numberOfThreadsForSelection, Math.max(1, size));
+		int chunkSize = Math.max(1, size / (4 * numberOfThreads) + 1);
+		ExecutorService executor = Executors.newFixedThreadPool(numberOfThreads);
+		try {
+			List<Future<?>> futures = new ArrayList<>();
+			for (int start = 0; start < size; start += chunkSize) {
+				final int from = start;
+				final int to = Math.min(size, start + chunkSize);
+				futures.add(executor.submit(() -> {
+					Random random = new Random();
+					for (int i = from; i < to; i++) {
+						HasPlansAndId<PL, AG> person = personList.get(i);
+						random.setSeed(getPersonSeed(iteration, person));
+						if (removeInParallel && (this.maxPlansPerAgent > 0) && (person.getPlans().size() > this.maxPlansPerAgent)) {
+							removePlans(person, this.maxPlansPerAgent, random);
+						}
+						String subpopName = null;
+						if (this.subpopulationAttributeName != null) {
+							subpopName = (String) subPopLookup.getAttribute(person.getId().toString(), this.subpopulationAttributeName);
+						}
+						subpopulations[i] = subpopName;
+						chosenStrategies[i] = chooseStrategy(subpopName, random.nextDouble());
+					}
+				}));
+			}
+			for (Future<?> future : futures) {
+				future.get();
+			}
+		} catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+			throw new RuntimeException(e);
+		} catch (ExecutionException e) {
+			throw new RuntimeException(e.getCause());
+		} finally {
+			executor.shutdown();
 		}
 
+		Random random = new Random();
+		for (int i = 0; i < size; i++) {
+			HasPlansAndId<PL, AG> person = personList.get(i);
+			if (!removeInParallel && (this.maxPlansPerAgent > 0) && (person.getPlans().size() > this.maxPlansPerAgent)) {
+				random.setSeed(getPersonSeed(iteration, person) + 1);
+				removePlans(person, this.maxPlansPerAgent, random);
+			}
+			GenericPlanStrategy<PL, AG> strategy = chosenStrategies[i];
+			if (strategy==null) {
+				throw new RuntimeException("No strategy found! Have you defined at least one replanning strategy per subpopulation? Current subpopulation = " + subpopulations[i]);
+			}
+			strategy.run(person);
+		}
+	}
+
+	/**
+	 * @return the seed of the random stream of the person in the given iteration; SplitMix64-style mixing of the
+	 * global seed, the iteration and a 64 bit hash of the person id.
+	 */
+	private long getPersonSeed(final int iteration, final HasPlansAndId<PL, AG> person) {
+		String id = person.getId().toString();
+		long idHash = 1125899906842597L;
+		for (int i = 0; i < id.length(); i++) {
+			idHash = 31 * idHash + id.charAt(i);
+		}
+		long seed = mix(this.randomSeed + 0x9E3779B97F4A7C15L * (iteration + 1));
+		return mix(seed ^ idHash);
+	}
+
+	private static long mix(long z) {
+		z = (z ^ (z >>> 30)) * 0xBF58476D1CE4E5B9L;
+		z = (z ^ (z >>> 27)) * 0x94D049BB133111EBL;
+		return z ^ (z >>> 31);
 	}
 
 	private Collection<GenericPlanStrategy<PL, AG>> distinctStrategies() {
@@ -233,11 +358,26 @@ public class GenericStrategyManager<PL extends BasicPlan, AG extends HasPlansAnd
 	}
 
 	private void removePlans(final HasPlansAndId<PL, AG> person, final int maxNumberOfPlans) {
+		removePlans(person, maxNumberOfPlans, null);
+	}
+
+	/**
+	 * @param random if not null, used instead of the global random number generator to select a new plan
+	 */
+	@SuppressWarnings("unchecked")
+	private void removePlans(final HasPlansAndId<PL, AG> person, final int maxNumberOfPlans, final Random random) {
 		while (person.getPlans().size() > maxNumberOfPlans) {
-			PL plan = this.removalPlanSelector.selectPlan(person);
+			PL plan;
+			if (random != null && this.removalPlanSelector instanceof AbstractPlanSelector) {
+				// (draw from the random stream of the person instead of the global one)
+				plan = (PL) ((AbstractPlanSelector) this.removalPlanSelector).selectPlan((HasPlansAndId<Plan, Person>) person, random);
+			} else {
+				plan = this.removalPlanSelector.selectPlan(person);
+			}
 			person.removePlan(plan);
 			if (plan == person.getSelectedPlan()) {
-				final PL newPlanToSelect = new RandomPlanSelector<PL, AG>().selectPlan(person) ;
+				final PL newPlanToSelect = random == null ? new RandomPlanSelector<PL, AG>().selectPlan(person)
+						: person.getPlans().isEmpty() ? null : person.getPlans().get(random.nextInt(person.getPlans().size()));
 				if ( newPlanToSelect == null ) {
 					throw new IllegalStateException( "could not find a plan to select for person "+person );
 				}
@@ -272,19 +412,30 @@ public class GenericStrategyManager<PL extends BasicPlan, AG extends HasPlansAnd
 	private class MyStrategyChooser implements StrategyChooser<PL, AG> {
 		@Override
 		public GenericPlanStrategy<PL, AG> chooseStrategy(HasPlansAndId<PL, AG> person, String subpopulation) {
-			StrategyWeights<PL, AG> weights = GenericStrategyManager.this.getStrategyWeights(subpopulation);
-			
-			double rnd = MatsimRandom.getRandom().nextDouble() * weights.totalWeights;
-			
-			double sum = 0.0;
-			for (int i = 0, max = weights.weights.size(); i < max; i++) {
-				sum += weights.weights.get(i);
-				if (rnd <= sum) {
-					return weights.strategies.get(i);
-				}
-			}
+			return GenericStrategyManager.this.chooseStrategy(subpopulation, MatsimRandom.getRandom().nextDouble());
+		}
+	}
+
+	/**
+	 * @param draw a random number in [0, 1)
+	 */
+	private GenericPlanStrategy<PL, AG> chooseStrategy(final String subpopulation, final double draw) {
+		// must not create the weights, as this is called from several threads
+		StrategyWeights<PL, AG> weights = this.weightsPerSubpopulation.get(subpopulation);
+		if (weights == null) {
 			return null;
 		}
+
+		double rnd = draw * weights.totalWeights;
+
+		double sum = 0.0;
+		for (int i = 0, max = weights.weights.size(); i < max; i++) {
+			sum += weights.weights.get(i);
+			if (rnd <= sum) {
+				return weights.strategies.get(i);
+			}
+		}
+		return null;
 	}
 	private MyStrategyChooser myStrategyChooser = new MyStrategyChooser() ;
 
@@ -26,6 +26,7 @@ import org.matsim.api.core.v01.population.Plan;
 import org.matsim.api.core.v01.population.Population;
 import org.matsim.core.api.internal.MatsimManager;
 import org.matsim.core.config.groups.ControlerConfigGroup;
+import org.matsim.core.config.groups.GlobalConfigGroup;
 import org.matsim.core.config.groups.PlansConfigGroup;
 import org.matsim.core.config.groups.StrategyConfigGroup;
 import org.matsim.core.replanning.selectors.PlanSelector;
@@ -51,11 +52,12 @@ public class StrategyManager implements MatsimManager {
 
 	@Inject
 	StrategyManager(StrategyConfigGroup strategyConfigGroup, PlansConfigGroup plansConfigGroup,
-					ControlerConfigGroup controlerConfigGroup,
+					ControlerConfigGroup controlerConfigGroup, GlobalConfigGroup globalConfigGroup,
 					Map<StrategyConfigGroup.StrategySettings, PlanStrategy> planStrategies) {
 
 		this();
 		setMaxPlansPerAgent(strategyConfigGroup.getMaxAgentPlanMemorySize());
+		setParallelStrategySelection(strategyConfigGroup.getNumberOfThreadsForStrategySelection(), globalConfigGroup.getRandomSeed());
 
 		int globalInnovationDisableAfter = (int) ((controlerConfigGroup.getLastIteration() - controlerConfigGroup.getFirstIteration())
 				* strategyConfigGroup.getFractionOfIterationsToDisableInnovation() + controlerConfigGroup.getFirstIteration());
@@ -226,6 +228,13 @@ public class StrategyManager implements MatsimManager {
 		return delegate.getMaxPlansPerAgent();
 	}
 
+	/**
+	 * @see GenericStrategyManager#setParallelStrategySelection(int, long)
+	 */
+	public final void setParallelStrategySelection(final int numberOfThreads, final long randomSeed) {
+		delegate.setParallelStrategySelection(numberOfThreads, randomSeed);
+	}
+
 	@Deprecated
 	public final void addChangeRequestForDefaultSubpopulation(
 			final int iteration,
@@ -21,6 +21,7 @@
 package org.matsim.core.replanning.modules;
 
 import org.apache.log4j.Logger;
+import org.matsim.analysis.PhaseProfiler;
 import org.matsim.api.core.v01.population.Plan;
 import org.matsim.api.core.v01.replanning.PlanStrategyModule;
 import org.matsim.core.config.groups.GlobalConfigGroup;
@@ -72,6 +73,11 @@ abstract public class AbstractMultithreadedModule implements PlanStrategyModule
 
 	private ReplanningContext replanningContext;
 
+	// the names under which the module is measured by the PhaseProfiler
+	private final String handlePlanProfilerName = getClass().getName() + ".handlePlan";
+	private final String finishReplanningProfilerName = getClass().getName() + ".finishReplanning";
+	private final String planAlgoThreadProfilerName = getClass().getName() + ".planAlgoThread";
+
 	static final private Logger log = Logger.getLogger(AbstractMultithreadedModule.class);
 
 	/**
@@ -121,7 +127,12 @@ abstract public class AbstractMultithreadedModule implements PlanStrategyModule
 			this.algothreads[this.count % this.numOfThreads].addPlanToThread(plan);
 			this.count++;
 		} else {
-			this.directAlgo.run(plan);
+			PhaseProfiler.Measurement measurement = PhaseProfiler.start(PhaseProfiler.CATEGORY_STRATEGY_MODULE, this.handlePlanProfilerName);
+			try {
+				this.directAlgo.run(plan);
+			} finally {
+				PhaseProfiler.stop(measurement);
+			}
 		}
 	}
 
@@ -134,6 +145,15 @@ abstract public class AbstractMultithreadedModule implements PlanStrategyModule
 	
 	@Override
 	public final void finishReplanning() {
+		PhaseProfiler.Measurement measurement = PhaseProfiler.start(PhaseProfiler.CATEGORY_STRATEGY_MODULE, this.finishReplanningProfilerName);
+		try {
+			runThreadsAndReset();
+		} finally {
+			PhaseProfiler.stop(measurement);
+		}
+	}
+
+	private void runThreadsAndReset() {
 		this.beforeFinishReplanningHook();
 		
 		if (this.directAlgo == null) {
@@ -185,7 +205,7 @@ abstract public class AbstractMultithreadedModule implements PlanStrategyModule
 				this.name = algo.getClass().getSimpleName();
 				counter = new Counter("[" + this.name + "] handled plan # ");
 			}
-			PlanAlgoThread algothread = new PlanAlgoThread(algo, counter);
+			PlanAlgoThread algothread = new PlanAlgoThread(algo, counter, this.planAlgoThreadProfilerName);
 			Thread thread = new Thread(algothread, this.name + "." + i);
 			thread.setUncaughtExceptionHandler(this.exceptionHandler);
 			this.threads[i] = thread;
@@ -218,10 +238,12 @@ abstract public class AbstractMultithreadedModule implements PlanStrategyModule
 		private final PlanAlgorithm planAlgo;
 		private final List<Plan> plans = new LinkedList<>();
 		private final Counter counter;
+		private final String profilerName;
 
-		public PlanAlgoThread(final PlanAlgorithm algo, final Counter counter) {
+		public PlanAlgoThread(final PlanAlgorithm algo, final Counter counter, final String profilerName) {
 			this.planAlgo = algo;
 			this.counter = counter;
+			this.profilerName = profilerName;
 		}
 
 		public void addPlanToThread(final Plan plan) {
@@ -230,9 +252,15 @@ abstract public class AbstractMultithreadedModule implements PlanStrategyModule
 
 		@Override
 		public void run() {
-			for (Plan plan : this.plans) {
-				this.planAlgo.run(plan);
-				this.counter.incCounter();
+			// measured inside the thread, so that the allocations of this thread are attributed to the module
+			PhaseProfiler.Measurement measurement = PhaseProfiler.start(PhaseProfiler.CATEGORY_STRATEGY_MODULE, this.profilerName);
+			try {
+				for (Plan plan : this.plans) {
+					this.planAlgo.run(plan);
+					this.counter.incCounter();
+				}
+			} finally {
+				PhaseProfiler.stop(measurement);
 			}
 		}
 	}
@@ -20,6 +20,7 @@ package org.matsim.core.replanning.selectors;
 
 import java.util.List;
 import java.util.Map;
+import java.util.Random;
 
 import org.matsim.api.core.v01.population.HasPlansAndId;
 import org.matsim.api.core.v01.population.Person;
@@ -36,8 +37,16 @@ public abstract class AbstractPlanSelector implements PlanSelector<Plan, Person>
 
 	@Override
 	public final Plan selectPlan(HasPlansAndId<Plan, Person> person) {
+		return selectPlan(person, MatsimRandom.getRandom());
+	}
+
+	/**
+	 * Same as {@link #selectPlan(HasPlansAndId)}, but draws from the given random number generator instead of the global
+	 * one, e.g. to get reproducible results when selecting for several persons in parallel.
+	 */
+	public final Plan selectPlan(HasPlansAndId<Plan, Person> person, Random random) {
 		// First check if there are any unscored plans
-		Plan selectedPlan = new RandomUnscoredPlanSelector<Plan, Person>().selectPlan(person);
+		Plan selectedPlan = new RandomUnscoredPlanSelector<Plan, Person>().selectPlan(person, random);
 		if (selectedPlan != null) return selectedPlan;
 		// Okay, no unscored plans...
 
@@ -51,7 +60,7 @@ public abstract class AbstractPlanSelector implements PlanSelector<Plan, Person>
 		}
 
 		// choose a random number over interval [0,sumWeights[
-		double selnum = sumWeights*MatsimRandom.getRandom().nextDouble();
+		double selnum = sumWeights*random.nextDouble();
 		for (Plan plan : person.getPlans()) {
 			selnum -= wc.get(plan);
 			if (selnum <= 0.0) {
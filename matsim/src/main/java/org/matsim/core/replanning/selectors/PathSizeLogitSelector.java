@@ -20,7 +20,7 @@
 
 package org.matsim.core.replanning.selectors;
 
-import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
@@ -33,8 +33,9 @@ import org.matsim.api.core.v01.population.Plan;
 import org.matsim.api.core.v01.population.PlanElement;
 import org.matsim.core.config.Config;
 import org.matsim.core.config.groups.PlanCalcScoreConfigGroup;
+import org.matsim.core.network.NetworkArrays;
+import org.matsim.core.network.NetworkUtils;
 import org.matsim.core.population.routes.NetworkRoute;
-import org.matsim.core.population.routes.RouteUtils;
 
 import javax.inject.Inject;
 
@@ -50,11 +51,16 @@ public final class PathSizeLogitSelector extends AbstractPlanSelector {
 	private final double pathSizeLogitExponent;
 	private final double logitScaleFactor;
 	private Network network;
+	// fetched once, and only again when links have been added or removed, see calcWeights
+	private volatile NetworkArrays networkArrays;
+
+	private static final ThreadLocal<Scratch> SCRATCH = ThreadLocal.withInitial(Scratch::new);
 
 	public PathSizeLogitSelector( final double pathSizeLogitExponent, final double logitScaleFactor, final Network network ) {
 		this.pathSizeLogitExponent = pathSizeLogitExponent ;
 		this.logitScaleFactor = logitScaleFactor ;
 		this.network = network ;
+		this.networkArrays = NetworkUtils.getNetworkArrays(network) ;
 	}
 
 	public PathSizeLogitSelector(final PlanCalcScoreConfigGroup config, final Network network) {
@@ -70,79 +76,115 @@ public final class PathSizeLogitSelector extends AbstractPlanSelector {
 
 		double maxScore = Double.NEGATIVE_INFINITY;
 
-		HashMap<Id<Link>, ArrayList<Double>> linksInTime = new HashMap<>();
-		// (a data structure that memorizes possible leg start times for link utilization (??))
-		
-		HashMap<Integer,Double> planLength = new HashMap<Integer, Double>();
-		// (a data structure that memorizes the total travel distance of each plan)
-		// (yyyy is it obvious that no two plans can have the same hash code?  what happens if they do?  kai, oct'12)
-		// (why not just <Plan,Double>?????)
-		
+		// The link usages (link, departure time of the leg, link length) of all plans are collected in the (per thread)
+		// scratch arrays, in the order of plans, legs and links.  Usages of plan i are in [planStarts[i], planStarts[i+1]).
+		Scratch scratch = SCRATCH.get();
+		scratch.ensurePlanCapacity(plans.size());
+		NetworkArrays networkArrays = this.networkArrays;
+		if (networkArrays.getLinkCount() != this.network.getLinks().size()) {
+			networkArrays = NetworkUtils.getNetworkArrays(this.network);
+			this.networkArrays = networkArrays;
+		}
+		// (changes of link lengths are seen by the arrays of the default network implementation; links which the
+		// arrays do not know are looked up in the network below)
+		Map<Id<Link>, Integer> linksNotInArrays = null;
+		int usages = 0;
+
 		//this gets the choice sets C_n
 		//TODO [GL] since the lack of information in Route(),
 		//the very first and the very last link of a path will be ignored - gl
 		//dg, 09-2013: as first and last link are equal for all routes between to activities this is no major issue
 
-		for (Plan plan : plans) {
+		for (int p = 0; p < plans.size(); p++) {
+			Plan plan = plans.get(p);
 
 			if (plan.getScore() > maxScore) maxScore = plan.getScore();
 
+			scratch.planStarts[p] = usages;
 			double pathSize = 0;
-			double currentEndTime = 0.0;
 			for (PlanElement pe : plan.getPlanElements()) {
 				if (pe instanceof Leg) {
 					Leg leg = (Leg) pe;
-					currentEndTime = leg.getDepartureTime();
+					double currentEndTime = leg.getDepartureTime();
 
 					NetworkRoute r = (NetworkRoute) leg.getRoute();
 					// (yyyy this will fail when the route is not a network route.  kai, oct'12)
 
-					pathSize += RouteUtils.calcDistanceExcludingStartEndLink(r, network);
-					// (i.e. pathSize will be the sum over all routes of the plan)
-					
-					for (Id<Link> linkId : r.getLinkIds()){
-						ArrayList<Double> lit = linksInTime.get(linkId);
-						if (lit == null){
-							lit = new ArrayList<Double>();
-							linksInTime.put(linkId, lit);
+					double routeLength = 0;
+					for (Id<Link> linkId : r.getLinkIds()) {
+						int linkIndex = networkArrays.getLinkIndex(linkId);
+						double length;
+						if (linkIndex >= 0) {
+							length = networkArrays.getLength(linkIndex);
+						} else {
+							// (should not happen with the default network implementation)
+							length = this.network.getLinks().get(linkId).getLength();
+							if (linksNotInArrays == null) {
+								linksNotInArrays = new HashMap<>();
+							}
+							Integer index = linksNotInArrays.get(linkId);
+							if (index == null) {
+								index = networkArrays.getLinkCount() + linksNotInArrays.size();
+								linksNotInArrays.put(linkId, index);
+							}
+							linkIndex = index;
 						}
-						lit.add(currentEndTime);
+						scratch.ensureUsageCapacity(usages + 1);
+						scratch.linkIndices[usages] = linkIndex;
+						scratch.times[usages] = currentEndTime;
+						scratch.lengths[usages] = length;
+						usages++;
+						routeLength += length;
 					}
+					pathSize += routeLength;
+					// (i.e. pathSize will be the sum over all routes of the plan)
 				}
 			}
-			planLength.put(plan.hashCode(), pathSize);
+			scratch.planLengths[p] = pathSize;
 		}
+		scratch.planStarts[plans.size()] = usages;
 
-		for (Plan plan : plans) {
+		// for each link usage, count how many usages of the same link (by any plan) have roughly the same departure time (*).
+		// Sorting the usages by link gives the groups of usages of the same link.
+		long[] sortKeys = scratch.sortKeys;
+		for (int u = 0; u < usages; u++) {
+			sortKeys[u] = ((long) scratch.linkIndices[u] << 32) | u;
+		}
+		Arrays.sort(sortKeys, 0, usages);
+		int groupStart = 0;
+		while (groupStart < usages) {
+			int linkIndex = (int) (sortKeys[groupStart] >>> 32);
+			int groupEnd = groupStart + 1;
+			while (groupEnd < usages && (int) (sortKeys[groupEnd] >>> 32) == linkIndex) {
+				groupEnd++;
+			}
+			for (int i = groupStart; i < groupEnd; i++) {
+				double currentTime = scratch.times[(int) sortKeys[i]];
+				int denominator = 0;
+				for (int j = groupStart; j < groupEnd; j++) {
+					//TODO this is just for testing (those legs where the departure time differs more then 3600 seconds will not compared to each other) - need a
+					//little bit to brood on it - gl
+					// An alternative might be to use a kernal, e.g. a Gaussian.  Something like
+					// denominator += exp( (dbl-currentTime)^2 / sigma^2 ) .  kai, oct'12
+					if (Math.abs(scratch.times[(int) sortKeys[j]] - currentTime) <= 3600)
+						denominator++;
+				}
+				scratch.denominators[(int) sortKeys[i]] = denominator;
+			}
+			groupStart = groupEnd;
+		}
 
-			double tmp = 0;
-			for (PlanElement pe : plan.getPlanElements()) {
-				if (pe instanceof Leg) {
-					Leg leg = (Leg) pe;
-					double currentTime = leg.getDepartureTime();
-					NetworkRoute route = (NetworkRoute) leg.getRoute();
-					for (Id<Link> linkId : route.getLinkIds()){
-						double denominator = 0;
-						for (double dbl : linksInTime.get(linkId)){
-							//TODO this is just for testing (those legs where the departure time differs more then 3600 seconds will not compared to each other) - need a
-							//little bit to brood on it - gl
-							// An alternative might be to use a kernal, e.g. a Gaussian.  Something like
-							// denominator += exp( (dbl-currentTime)^2 / sigma^2 ) .  kai, oct'12
-							if (Math.abs(dbl - currentTime) <= 3600)
-								denominator++;
-						}
-						// (the meaning seems to be: for each link that the plan uses, it checks how many other times the
-						// same link is used by a leg that has roughly the same departure time (*))
+		for (int p = 0; p < plans.size(); p++) {
+			Plan plan = plans.get(p);
 
-						Link link = network.getLinks().get(linkId);
-						tmp += link.getLength() / denominator;
-						// (for a plan, the weight of a link is divided by the number of times it is used)
-					}
-				}
+			double tmp = 0;
+			for (int u = scratch.planStarts[p]; u < scratch.planStarts[p + 1]; u++) {
+				tmp += scratch.lengths[u] / scratch.denominators[u];
+				// (for a plan, the weight of a link is divided by the number of times it is used)
 			}
 			// tmp is now a number that contains the ``reduced'' travel distance of the plan.  Divide it by the full travel distance
 			// of the plan, and take to the power of this.beta:
-			double PSi = Math.pow(tmp/planLength.get(plan.hashCode()), this.pathSizeLogitExponent);
+			double PSi = Math.pow(tmp/scratch.planLengths[p], this.pathSizeLogitExponent);
 			
 			double weight;
 			if (Double.isInfinite(maxScore)) {
@@ -171,4 +213,35 @@ public final class PathSizeLogitSelector extends AbstractPlanSelector {
 		return weights ;
 	}
 
+	/**
+	 * Buffers reused between the calls on the same thread, so the selector can be used by several threads at once.
+	 */
+	private static final class Scratch {
+		int[] linkIndices = new int[256];
+		double[] times = new double[256];
+		double[] lengths = new double[256];
+		int[] denominators = new int[256];
+		long[] sortKeys = new long[256];
+		int[] planStarts = new int[16];
+		double[] planLengths = new double[16];
+
+		void ensureUsageCapacity(final int capacity) {
+			if (capacity > this.linkIndices.length) {
+				int newLength = Math.max(capacity, 2 * this.linkIndices.length);
+				this.linkIndices = Arrays.copyOf(this.linkIndices, newLength);
+				this.times = Arrays.copyOf(this.times, newLength);
+				this.lengths = Arrays.copyOf(this.lengths, newLength);
+				this.denominators = Arrays.copyOf(this.denominators, newLength);
+				this.sortKeys = Arrays.copyOf(this.sortKeys, newLength);
+			}
+		}
+
+		void ensurePlanCapacity(final int numberOfPlans) {
+			if (numberOfPlans + 1 > this.planStarts.length) {
+				this.planStarts = new int[numberOfPlans + 1];
+				this.planLengths = new double[numberOfPlans + 1];
+			}
+		}
+	}
+
 }
@@ -24,6 +24,8 @@ import org.matsim.api.core.v01.population.BasicPlan;
 import org.matsim.api.core.v01.population.HasPlansAndId;
 import org.matsim.core.gbl.MatsimRandom;
 
+import java.util.Random;
+
 
 /**
  * Select randomly one of the existing plans of the person.
@@ -38,6 +40,13 @@ public class RandomUnscoredPlanSelector<T extends BasicPlan, I> implements PlanS
 	 */
 	@Override
 	public T selectPlan(final HasPlansAndId<T, I> person) {
+		return selectPlan(person, MatsimRandom.getRandom());
+	}
+
+	/**
+	 * Same as {@link #selectPlan(HasPlansAndId)}, but draws from the given random number generator.
+	 */
+	public T selectPlan(final HasPlansAndId<T, I> person, final Random random) {
 		// following code copied from PersonImpl and then made runnable
 		
 		int cntUnscored = 0;
@@ -48,7 +57,7 @@ public class RandomUnscoredPlanSelector<T extends BasicPlan, I> implements PlanS
 		}
 		if (cntUnscored > 0) {
 			// select one of the unscored plans
-			int idxUnscored = MatsimRandom.getRandom().nextInt(cntUnscored);
+			int idxUnscored = random.nextInt(cntUnscored);
 			cntUnscored = 0;
 			for (T plan : person.getPlans()) {
 				if (plan.getScore() == null) {
@@ -29,6 +29,8 @@ import org.matsim.api.core.v01.network.Link;
 import org.matsim.api.core.v01.network.Network;
 import org.matsim.api.core.v01.network.Node;
 import org.matsim.core.network.LinkFactory;
+import org.matsim.core.network.NetworkArrays;
+import org.matsim.core.network.NetworkUtils;
 
 public class ArrayRoutingNetworkFactory extends AbstractRoutingNetworkFactory {
 	
@@ -36,11 +38,13 @@ public class ArrayRoutingNetworkFactory extends AbstractRoutingNetworkFactory {
 	
 	private int nodeArrayIndexCounter;
 	private int linkArrayIndexCounter;
+	private NetworkArrays networkArrays;
 
 	@Override
 	public synchronized ArrayRoutingNetwork createRoutingNetwork(final Network network) {
 		this.nodeArrayIndexCounter = 0;
 		this.linkArrayIndexCounter = 0;
+		this.networkArrays = NetworkUtils.getNetworkArrays(network);
 		
 		ArrayRoutingNetwork routingNetwork = new ArrayRoutingNetwork(network);
 		
@@ -70,6 +74,7 @@ public class ArrayRoutingNetworkFactory extends AbstractRoutingNetworkFactory {
 		}
 		
 		if (routingLinks.size() > 0) log.warn("Not all links have been use in the ArrayRoutingNetwork - check connectivity of input network!");
+		this.networkArrays = null;
 		
 		return routingNetwork;
 	}
@@ -81,7 +86,13 @@ public class ArrayRoutingNetworkFactory extends AbstractRoutingNetworkFactory {
 
 	@Override
 	public ArrayRoutingNetworkLink createRoutingNetworkLink(final Link link, final RoutingNetworkNode fromNode, final RoutingNetworkNode toNode) {
-		return new ArrayRoutingNetworkLink(link, fromNode, toNode, this.linkArrayIndexCounter++);
+		int index = this.linkArrayIndexCounter++;
+		// the network arrays use the same link order, so the index can be shared
+		NetworkArrays arrays = this.networkArrays;
+		if (arrays != null && (index >= arrays.getLinkCount() || arrays.getLink(index) != link)) {
+			arrays = null;
+		}
+		return new ArrayRoutingNetworkLink(link, fromNode, toNode, index, arrays);
 	}
 
 	@Override
@@ -21,15 +21,49 @@
 package org.matsim.core.router.util;
 
 import org.matsim.api.core.v01.network.Link;
+import org.matsim.core.network.NetworkArrays;
 import org.matsim.core.router.priorityqueue.HasIndex;
 
 public class ArrayRoutingNetworkLink extends AbstractRoutingNetworkLink implements HasIndex {
 
 	final int arrayIndex;
+	/** if not null, the link has the same index in it and the hot attributes are read from there */
+	private final NetworkArrays networkArrays;
 	
 	public ArrayRoutingNetworkLink(Link link, RoutingNetworkNode fromNode, RoutingNetworkNode toNode, int arrayIndex) {
+		this(link, fromNode, toNode, arrayIndex, null);
+	}
+
+	public ArrayRoutingNetworkLink(Link link, RoutingNetworkNode fromNode, RoutingNetworkNode toNode, int arrayIndex,
+			NetworkArrays networkArrays) {
 		super(link, fromNode, toNode);
 		this.arrayIndex = arrayIndex;
+		this.networkArrays = networkArrays;
+	}
+
+	@Override
+	public double getLength() {
+		return this.networkArrays == null ? super.getLength() : this.networkArrays.getLength(this.arrayIndex);
+	}
+
+	@Override
+	public double getFreespeed(double time) {
+		return this.networkArrays == null ? super.getFreespeed(time) : this.networkArrays.getFreespeed(this.arrayIndex, time);
+	}
+
+	@Override
+	public double getCapacity(double time) {
+		return this.networkArrays == null ? super.getCapacity(time) : this.networkArrays.getCapacity(this.arrayIndex, time);
+	}
+
+	@Override
+	public double getFlowCapacityPerSec(double time) {
+		return this.networkArrays == null ? super.getFlowCapacityPerSec(time) : this.networkArrays.getFlowCapacityPerSec(this.arrayIndex, time);
+	}
+
+	@Override
+	public double getNumberOfLanes(double time) {
+		return this.networkArrays == null ? super.getNumberOfLanes(time) : this.networkArrays.getNumberOfLanes(this.arrayIndex, time);
 	}
 	
 	@Override
@@ -41,7 +41,10 @@ import org.matsim.utils.objectattributes.AttributeConverter;
 import org.matsim.utils.objectattributes.ObjectAttributesXmlReader;
 import org.matsim.vehicles.VehicleReaderV1;
 
+import java.net.URISyntaxException;
 import java.net.URL;
+import java.nio.file.Path;
+import java.nio.file.Paths;
 import java.util.ArrayList;
 import java.util.Collections;
 import java.util.List;
@@ -103,9 +106,15 @@ class ScenarioLoaderImpl {
 //		log.info("loading scenario from base directory: " + currentDir);
 		// the above is not used and thus only causing confusion in the log output.  kai, sep'18
 
-		this.loadNetwork();
-		this.loadActivityFacilities();
-		this.loadPopulation();
+		if (this.config.controler().getInputScenarioSnapshotFile() != null) {
+			this.loadScenarioSnapshot();
+			this.loadNetworkChangeEvents();
+			this.loadActivityFacilities();
+		} else {
+			this.loadNetwork();
+			this.loadActivityFacilities();
+			this.loadPopulation();
+		}
 		this.loadHouseholds(); // tests internally if the file is there
 		this.loadTransit(); // tests internally if the file is there
 		this.loadTransitVehicles(); // tests internally if the file is there
@@ -135,15 +144,38 @@ class ScenarioLoaderImpl {
             reader.putAttributeConverters( attributeConverters );
             reader.parse(networkUrl);
 
-			if ((this.config.network().getChangeEventsInputFile()!= null) && this.config.network().isTimeVariantNetwork()) {
-				log.info("loading network change events from " + this.config.network().getChangeEventsInputFileUrl(this.config.getContext()).getFile());
-				Network network = this.scenario.getNetwork();
-				List<NetworkChangeEvent> changeEvents = new ArrayList<>() ;
-				NetworkChangeEventsParser parser = new NetworkChangeEventsParser(network,changeEvents);
-				parser.parse(this.config.network().getChangeEventsInputFileUrl(config.getContext()));
-				NetworkUtils.setNetworkChangeEvents(network,changeEvents);
-			}
+			this.loadNetworkChangeEvents();
+		}
+	}
+
+	private void loadNetworkChangeEvents() {
+		if ((this.config.network().getChangeEventsInputFile()!= null) && this.config.network().isTimeVariantNetwork()) {
+			log.info("loading network change events from " + this.config.network().getChangeEventsInputFileUrl(this.config.getContext()).getFile());
+			Network network = this.scenario.getNetwork();
+			List<NetworkChangeEvent> changeEvents = new ArrayList<>() ;
+			NetworkChangeEventsParser parser = new NetworkChangeEventsParser(network,changeEvents);
+			parser.parse(this.config.network().getChangeEventsInputFileUrl(config.getContext()));
+			NetworkUtils.setNetworkChangeEvents(network,changeEvents);
+		}
+	}
+
+	/**
+	 * Loads network, population and person attributes from a binary snapshot instead of the xml files
+	 */
+	private void loadScenarioSnapshot() {
+		URL snapshotUrl = ConfigGroup.getInputFileURL(this.config.getContext(), this.config.controler().getInputScenarioSnapshotFile());
+		log.info("loading network and population from scenario snapshot " + snapshotUrl + "; the network and plans files are ignored.");
+		Path snapshotPath;
+		try {
+			snapshotPath = Paths.get(snapshotUrl.toURI());
+		} catch (URISyntaxException | IllegalArgumentException e) {
+			throw new RuntimeException("scenario snapshots can only be read from local files, but got " + snapshotUrl, e);
 		}
+		ScenarioSnapshotReader reader = new ScenarioSnapshotReader(this.scenario.getNetwork(), this.scenario.getPopulation(),
+				this.config.global().getNumberOfThreads());
+		reader.putAttributeConverters(attributeConverters);
+		reader.read(snapshotPath);
+		PopulationUtils.printPlansCount(this.scenario.getPopulation()) ;
 	}
 
 	private void loadActivityFacilities() {
@@ -0,0 +1,458 @@
+/* *********************************************************************** *
+ * project: org.matsim.*
+ * ScenarioSnapshotReader.java
+ *                                                                         *
+ * *********************************************************************** *
+ *                                                                         *
+ * copyright       : (C) 2019 by the members listed in the COPYING,        *
+ *                   LICENSE and WARRANTY file.                            *
+ * email           : info at matsim dot org                                *
+ *                                                                         *
+ * *********************************************************************** *
+ *                                                                         *
+ *   This program is free software; you can redistribute it and/or modify  *
+ *   it under the terms of the GNU General Public License as published by  *
+ *   the Free Software Foundation; either version 2 of the License, or     *
+ *   (at your option) any later version.                                   *
+ *   See also COPYING, LICENSE and WARRANTY file                           *
+ *                                                                         *
+ * *********************************************************************** */
+package org.matsim.core.scenario;
+
+import org.apache.log4j.Logger;
+import org.matsim.api.core.v01.Coord;
+import org.matsim.api.core.v01.Id;
+import org.matsim.api.core.v01.network.Link;
+import org.matsim.api.core.v01.network.Network;
+import org.matsim.api.core.v01.network.NetworkFactory;
+import org.matsim.api.core.v01.network.Node;
+import org.matsim.api.core.v01.population.Activity;
+import org.matsim.api.core.v01.population.Leg;
+import org.matsim.api.core.v01.population.Person;
+import org.matsim.api.core.v01.population.Plan;
+import org.matsim.api.core.v01.population.Population;
+import org.matsim.api.core.v01.population.PopulationFactory;
+import org.matsim.api.core.v01.population.Route;
+import org.matsim.core.network.NetworkUtils;
+import org.matsim.core.population.routes.NetworkRoute;
+import org.matsim.core.population.routes.RouteFactories;
+import org.matsim.core.utils.io.UncheckedIOException;
+import org.matsim.facilities.ActivityFacility;
+import org.matsim.utils.objectattributes.AttributeConverter;
+import org.matsim.utils.objectattributes.ObjectAttributes;
+import org.matsim.utils.objectattributes.ObjectAttributesConverter;
+import org.matsim.utils.objectattributes.attributable.Attributes;
+import org.matsim.vehicles.Vehicle;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+import static org.matsim.core.scenario.ScenarioSnapshotWriter.*;
+
+/**
+ * Reads a snapshot written by {@link ScenarioSnapshotWriter} into the network and the population of a scenario.
+ * <p></p>
+ * All sections are memory-mapped. Network sections are read sequentially (links need their nodes), while the
+ * person blocks are deserialized in parallel and added to the population afterwards in the order of the file,
+ * so the resulting population is the same independently of the number of threads.
+ *
+ * @see ScenarioSnapshotWriter
+ */
+final class ScenarioSnapshotReader {
+	private static final Logger log = Logger.getLogger(ScenarioSnapshotReader.class);
+
+	private static final class Section {
+		final int kind;
+		final long offset;
+		final int length;
+
+		Section(final int kind, final long offset, final int length) {
+			this.kind = kind;
+			this.offset = offset;
+			this.length = length;
+		}
+	}
+
+	private final Network network;
+	private final Population population;
+	private final int numberOfThreads;
+	private Map<Class<?>, AttributeConverter<?>> attributeConverters = Collections.emptyMap();
+
+	private String[] strings;
+	// ids are resolved at most once per string and type.  Id.create() is not thread-safe (two threads may create
+	// different instances for the same key), so new ids are only created while holding the lock of the reader;
+	// entries that are already resolved are read without locking, which is safe since the fields of the ids are final.
+	private Id<Person>[] personIds;
+	private Id<Link>[] linkIds;
+	private Id<ActivityFacility>[] facilityIds;
+	private Id<Vehicle>[] vehicleIds;
+
+	ScenarioSnapshotReader(final Network network, final Population population, final int numberOfThreads) {
+		this.network = network;
+		this.population = population;
+		this.numberOfThreads = Math.max(1, numberOfThreads);
+	}
+
+	void putAttributeConverters(final Map<Class<?>, AttributeConverter<?>> converters) {
+		this.attributeConverters = converters;
+	}
+
+	@SuppressWarnings("unchecked")
+	void read(final Path path) {
+		log.info("reading scenario snapshot from " + path);
+		try (FileChannel channel = FileChannel.open(path, StandardOpenOption.READ)) {
+			final long size = channel.size();
+			ByteBuffer header = readFully(channel, 0, HEADER_SIZE);
+			if (header.getInt() != MAGIC) {
+				throw new RuntimeException(path + " is not a scenario snapshot.");
+			}
+			int version = header.getInt();
+			if (version != VERSION) {
+				throw new RuntimeException("unsupported scenario snapshot version " + version + " in " + path + ", expected " + VERSION);
+			}
+			ByteBuffer trailer = readFully(channel, size - TRAILER_SIZE, TRAILER_SIZE);
+			final long stringsOffset = trailer.getLong();
+			if (trailer.getInt() != MAGIC) {
+				throw new RuntimeException(path + " is truncated or corrupt.");
+			}
+
+			List<Section> sections = new ArrayList<>();
+			long position = HEADER_SIZE;
+			while (position < stringsOffset) {
+				ByteBuffer sectionHeader = readFully(channel, position, SECTION_HEADER_SIZE);
+				Section section = new Section(sectionHeader.getInt(), position + SECTION_HEADER_SIZE, sectionHeader.getInt());
+				sections.add(section);
+				position = section.offset + section.length;
+			}
+
+			readStrings(map(channel, stringsOffset + SECTION_HEADER_SIZE, (int) (size - TRAILER_SIZE - stringsOffset - SECTION_HEADER_SIZE)));
+			this.personIds = new Id[this.strings.length];
+			this.linkIds = new Id[this.strings.length];
+			this.facilityIds = new Id[this.strings.length];
+			this.vehicleIds = new Id[this.strings.length];
+
+			ObjectAttributesConverter converter = new ObjectAttributesConverter(this.attributeConverters);
+			List<Future<List<Person>>> personBlocks = new ArrayList<>();
+			ExecutorService executor = Executors.newFixedThreadPool(this.numberOfThreads);
+			try {
+				for (Section section : sections) {
+					ByteBuffer buffer = map(channel, section.offset, section.length);
+					switch (section.kind) {
+						case SECTION_NETWORK:
+							readNetwork(buffer, converter);
+							break;
+						case SECTION_NODES:
+							readNodes(buffer, converter);
+							break;
+						case SECTION_LINKS:
+							readLinks(buffer, converter);
+							break;
+						case SECTION_POPULATION:
+							readPopulation(buffer, converter);
+							break;
+						case SECTION_PERSONS:
+							// the converter is not thread-safe, thus every block gets its own one
+							personBlocks.add(executor.submit(() -> readPersons(buffer, new ObjectAttributesConverter(this.attributeConverters))));
+							break;
+						case SECTION_PERSON_ATTRIBUTES:
+							addPersons(personBlocks);
+							readPersonAttributes(buffer, converter);
+							break;
+						default:
+							throw new RuntimeException("unknown section kind " + section.kind + " in scenario snapshot " + path);
+					}
+				}
+				addPersons(personBlocks);
+			} finally {
+				executor.shutdown();
+			}
+		} catch (IOException e) {
+			throw new UncheckedIOException(e);
+		}
+		log.info("scenario snapshot read.");
+	}
+
+	private void addPersons(final List<Future<List<Person>>> personBlocks) {
+		try {
+			for (Future<List<Person>> block : personBlocks) {
+				for (Person person : block.get()) {
+					this.population.addPerson(person);
+				}
+			}
+		} catch (InterruptedException | ExecutionException e) {
+			throw new RuntimeException(e);
+		}
+		personBlocks.clear();
+	}
+
+	private void readStrings(final ByteBuffer buffer) {
+		this.strings = new String[buffer.getInt()];
+		for (int i = 0; i < this.strings.length; i++) {
+			this.strings[i] = readInlineString(buffer).intern();
+		}
+	}
+
+	private void readNetwork(final ByteBuffer buffer, final ObjectAttributesConverter converter) {
+		String name = string(buffer.getInt());
+		if (name != null) {
+			this.network.setName(name);
+		}
+		this.network.setCapacityPeriod(buffer.getDouble());
+		this.network.setEffectiveLaneWidth(buffer.getDouble());
+		readAttributes(buffer, this.network.getAttributes(), converter);
+	}
+
+	private void readNodes(final ByteBuffer buffer, final ObjectAttributesConverter converter) {
+		NetworkFactory factory = this.network.getFactory();
+		int count = buffer.getInt();
+		for (int i = 0; i < count; i++) {
+			Node node = factory.createNode(Id.create(string(buffer.getInt()), Node.class), readCoord(buffer));
+			NetworkUtils.setType(node, string(buffer.getInt()));
+			NetworkUtils.setOrigId(node, string(buffer.getInt()));
+			readAttributes(buffer, node.getAttributes(), converter);
+			this.network.addNode(node);
+		}
+	}
+
+	private void readLinks(final ByteBuffer buffer, final ObjectAttributesConverter converter) {
+		NetworkFactory factory = this.network.getFactory();
+		Map<Id<Node>, ? extends Node> nodes = this.network.getNodes();
+		int count = buffer.getInt();
+		for (int i = 0; i < count; i++) {
+			Id<Link> id = linkId(buffer.getInt());
+			Node fromNode = nodes.get(Id.create(string(buffer.getInt()), Node.class));
+			Node toNode = nodes.get(Id.create(string(buffer.getInt()), Node.class));
+			Link link = factory.createLink(id, fromNode, toNode);
+			link.setLength(buffer.getDouble());
+			link.setFreespeed(buffer.getDouble());
+			link.setCapacity(buffer.getDouble());
+			link.setNumberOfLanes(buffer.getDouble());
+			int modeCount = buffer.getInt();
+			Set<String> modes = new HashSet<>(modeCount);
+			for (int m = 0; m < modeCount; m++) {
+				modes.add(string(buffer.getInt()));
+			}
+			link.setAllowedModes(modes);
+			readAttributes(buffer, link.getAttributes(), converter);
+			this.network.addLink(link);
+		}
+	}
+
+	private void readPopulation(final ByteBuffer buffer, final ObjectAttributesConverter converter) {
+		String name = string(buffer.getInt());
+		if (name != null) {
+			this.population.setName(name);
+		}
+		readAttributes(buffer, this.population.getAttributes(), converter);
+	}
+
+	private List<Person> readPersons(final ByteBuffer buffer, final ObjectAttributesConverter converter) {
+		PopulationFactory factory = this.population.getFactory();
+		int count = buffer.getInt();
+		List<Person> persons = new ArrayList<>(count);
+		for (int i = 0; i < count; i++) {
+			Person person = factory.createPerson(personId(buffer.getInt()));
+			readAttributes(buffer, person.getAttributes(), converter);
+			int planCount = buffer.getInt();
+			int selected = buffer.getInt();
+			for (int p = 0; p < planCount; p++) {
+				Plan plan = readPlan(buffer, factory, converter);
+				person.addPlan(plan);
+				if (p == selected) {
+					person.setSelectedPlan(plan);
+				}
+			}
+			persons.add(person);
+		}
+		return persons;
+	}
+
+	private Plan readPlan(final ByteBuffer buffer, final PopulationFactory factory, final ObjectAttributesConverter converter) {
+		Plan plan = factory.createPlan();
+		if (buffer.get() != 0) {
+			plan.setScore(buffer.getDouble());
+		}
+		String type = string(buffer.getInt());
+		if (type != null) {
+			plan.setType(type);
+		}
+		readAttributes(buffer, plan.getAttributes(), converter);
+		int elementCount = buffer.getInt();
+		for (int e = 0; e < elementCount; e++) {
+			byte kind = buffer.get();
+			if (kind == ELEMENT_ACTIVITY) {
+				plan.addActivity(readActivity(buffer, factory, converter));
+			} else if (kind == ELEMENT_LEG) {
+				plan.addLeg(readLeg(buffer, factory, converter));
+			} else {
+				throw new RuntimeException("unknown plan element kind " + kind + " in scenario snapshot.");
+			}
+		}
+		return plan;
+	}
+
+	private Activity readActivity(final ByteBuffer buffer, final PopulationFactory factory, final ObjectAttributesConverter converter) {
+		String type = string(buffer.getInt());
+		Activity act = factory.createActivityFromCoord(type, readCoord(buffer));
+		act.setLinkId(linkId(buffer.getInt()));
+		act.setFacilityId(facilityId(buffer.getInt()));
+		act.setStartTime(buffer.getDouble());
+		act.setEndTime(buffer.getDouble());
+		act.setMaximumDuration(buffer.getDouble());
+		readAttributes(buffer, act.getAttributes(), converter);
+		return act;
+	}
+
+	private Leg readLeg(final ByteBuffer buffer, final PopulationFactory factory, final ObjectAttributesConverter converter) {
+		Leg leg = factory.createLeg(string(buffer.getInt()));
+		leg.setDepartureTime(buffer.getDouble());
+		leg.setTravelTime(buffer.getDouble());
+		readAttributes(buffer, leg.getAttributes(), converter);
+		byte routeKind = buffer.get();
+		if (routeKind != ROUTE_NONE) {
+			leg.setRoute(readRoute(buffer, routeKind, factory.getRouteFactories()));
+		}
+		return leg;
+	}
+
+	private Route readRoute(final ByteBuffer buffer, final byte routeKind, final RouteFactories routeFactories) {
+		String routeType = string(buffer.getInt());
+		Id<Link> startLinkId = linkId(buffer.getInt());
+		Id<Link> endLinkId = linkId(buffer.getInt());
+		Route route = routeFactories.createRoute(routeFactories.getRouteClassForType(routeType), startLinkId, endLinkId);
+		route.setTravelTime(buffer.getDouble());
+		route.setDistance(buffer.getDouble());
+		if (routeKind == ROUTE_NETWORK) {
+			NetworkRoute networkRoute = (NetworkRoute) route;
+			networkRoute.setVehicleId(vehicleId(buffer.getInt()));
+			networkRoute.setTravelCost(buffer.getDouble());
+			int linkCount = buffer.getInt();
+			List<Id<Link>> routeLinkIds = new ArrayList<>(linkCount);
+			for (int i = 0; i < linkCount; i++) {
+				routeLinkIds.add(linkId(buffer.getInt()));
+			}
+			networkRoute.setLinkIds(startLinkId, routeLinkIds, endLinkId);
+		} else if (buffer.get() != 0) {
+			route.setRouteDescription(readInlineString(buffer));
+		}
+		return route;
+	}
+
+	private void readPersonAttributes(final ByteBuffer buffer, final ObjectAttributesConverter converter) {
+		ObjectAttributes personAttributes = this.population.getPersonAttributes();
+		int count = buffer.getInt();
+		for (int i = 0; i < count; i++) {
+			String objectId = string(buffer.getInt());
+			int attributeCount = buffer.getInt();
+			for (int a = 0; a < attributeCount; a++) {
+				String key = string(buffer.getInt());
+				Object value = converter.convert(string(buffer.getInt()), string(buffer.getInt()));
+				if (value != null) {
+					personAttributes.putAttribute(objectId, key, value);
+				}
+			}
+		}
+	}
+
+	private void readAttributes(final ByteBuffer buffer, final Attributes attributes, final ObjectAttributesConverter converter) {
+		int count = buffer.getInt();
+		for (int i = 0; i < count; i++) {
+			String key = string(buffer.getInt());
+			Object value = converter.convert(string(buffer.getInt()), string(buffer.getInt()));
+			if (value != null) {
+				attributes.putAttribute(key, value);
+			}
+		}
+	}
+
+	private static Coord readCoord(final ByteBuffer buffer) {
+		switch (buffer.get()) {
+			case COORD_NULL:
+				return null;
+			case COORD_2D:
+				return new Coord(buffer.getDouble(), buffer.getDouble());
+			case COORD_3D:
+				return new Coord(buffer.getDouble(), buffer.getDouble(), buffer.getDouble());
+			default:
+				throw new RuntimeException("unknown coordinate kind in scenario snapshot.");
+		}
+	}
+
+	private static String readInlineString(final ByteBuffer buffer) {
+		byte[] bytes = new byte[buffer.getInt()];
+		buffer.get(bytes);
+		return new String(bytes, StandardCharsets.UTF_8);
+	}
+
+	private String string(final int index) {
+		return index == NULL_STRING ? null : this.strings[index];
+	}
+
+	private Id<Person> personId(final int index) {
+		Id<Person> id = this.personIds[index];
+		return id != null ? id : createId(this.personIds, index, Person.class);
+	}
+
+	private Id<Link> linkId(final int index) {
+		if (index == NULL_STRING) {
+			return null;
+		}
+		Id<Link> id = this.linkIds[index];
+		return id != null ? id : createId(this.linkIds, index, Link.class);
+	}
+
+	private Id<ActivityFacility> facilityId(final int index) {
+		if (index == NULL_STRING) {
+			return null;
+		}
+		Id<ActivityFacility> id = this.facilityIds[index];
+		return id != null ? id : createId(this.facilityIds, index, ActivityFacility.class);
+	}
+
+	private Id<Vehicle> vehicleId(final int index) {
+		if (index == NULL_STRING) {
+			return null;
+		}
+		Id<Vehicle> id = this.vehicleIds[index];
+		return id != null ? id : createId(this.vehicleIds, index, Vehicle.class);
+	}
+
+	private synchronized <T> Id<T> createId(final Id<T>[] ids, final int index, final Class<T> type) {
+		Id<T> id = ids[index];
+		if (id == null) {
+			id = Id.create(this.strings[index], type);
+			ids[index] = id;
+		}
+		return id;
+	}
+
+	private static ByteBuffer map(final FileChannel channel, final long offset, final int length) throws IOException {
+		return channel.map(FileChannel.MapMode.READ_ONLY, offset, length);
+	}
+
+	private static ByteBuffer readFully(final FileChannel channel, final long offset, final int length) throws IOException {
+		ByteBuffer buffer = ByteBuffer.allocate(length);
+		while (buffer.hasRemaining()) {
+			if (channel.read(buffer, offset + buffer.position()) < 0) {
+				throw new IOException("unexpected end of scenario snapshot.");
+			}
+		}
+		buffer.flip();
+		return buffer;
+	}
+
+}
@@ -0,0 +1,418 @@
+/* *********************************************************************** *
+ * project: org.matsim.*
+ * ScenarioSnapshotWriter.java
+ *                                                                         *
+ * *********************************************************************** *
+ *                                                                         *
+ * copyright       : (C) 2019 by the members listed in the COPYING,        *
+ *                   LICENSE and WARRANTY file.                            *
+ * email           : info at matsim dot org                                *
+ *                                                                         *
+ * *********************************************************************** *
+ *                                                                         *
+ *   This program is free software; you can redistribute it and/or modify  *
+ *   it under the terms of the GNU General Public License as published by  *
+ *   the Free Software Foundation; either version 2 of the License, or     *
+ *   (at your option) any later version.                                   *
+ *   See also COPYING, LICENSE and WARRANTY file                           *
+ *                                                                         *
+ * *********************************************************************** */
+package org.matsim.core.scenario;
+
+import org.apache.log4j.Logger;
+import org.matsim.api.core.v01.Coord;
+import org.matsim.api.core.v01.Id;
+import org.matsim.api.core.v01.network.Link;
+import org.matsim.api.core.v01.network.Network;
+import org.matsim.api.core.v01.network.Node;
+import org.matsim.api.core.v01.population.Activity;
+import org.matsim.api.core.v01.population.Leg;
+import org.matsim.api.core.v01.population.Person;
+import org.matsim.api.core.v01.population.Plan;
+import org.matsim.api.core.v01.population.PlanElement;
+import org.matsim.api.core.v01.population.Population;
+import org.matsim.api.core.v01.population.Route;
+import org.matsim.core.network.NetworkUtils;
+import org.matsim.core.population.routes.NetworkRoute;
+import org.matsim.core.utils.io.UncheckedIOException;
+import org.matsim.utils.objectattributes.AttributeConverter;
+import org.matsim.utils.objectattributes.ObjectAttributes;
+import org.matsim.utils.objectattributes.ObjectAttributesConverter;
+import org.matsim.utils.objectattributes.ObjectAttributesUtils;
+import org.matsim.utils.objectattributes.attributable.Attributes;
+
+import java.io.BufferedOutputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Writes the network and the population (including person attributes) of a scenario into a compact
+ * binary snapshot, which can be read again considerably faster than the corresponding xml files.
+ * <p></p>
+ * Layout of the file (all numbers big-endian):<ul>
+ * <li> header: magic number, format version
+ * <li> a sequence of sections, each consisting of the section kind, the payload length in bytes and the payload.
+ * Nodes, links and persons are split into blocks of limited size, so that every section can be memory-mapped
+ * on its own and the person blocks can be deserialized in parallel.
+ * <li> the string table: all ids, modes, activity types and attribute keys are written only once and are
+ * referenced from the other sections by their index.
+ * <li> trailer: the file offset of the string table, magic number
+ * </ul>
+ * The snapshot is meant as a cache for restarts and policy variants of the same scenario; it is not a replacement
+ * for the xml formats as an exchange format.  It only covers network and population: facilities, transit schedule,
+ * vehicles, households and lanes are not written and still have to be loaded from their files.  Everything the
+ * snapshot covers is either written completely or the writer fails, e.g. for attributes without converter or plan
+ * elements of unknown type, so that a snapshot never silently holds less than the scenario it was written from.
+ *
+ * @see ScenarioSnapshotReader
+ */
+final class ScenarioSnapshotWriter {
+	private static final Logger log = Logger.getLogger(ScenarioSnapshotWriter.class);
+
+	static final int MAGIC = 0x4d53534e; // "MSSN"
+	static final int VERSION = 2;
+
+	static final int SECTION_NETWORK = 1;
+	static final int SECTION_NODES = 2;
+	static final int SECTION_LINKS = 3;
+	static final int SECTION_POPULATION = 4;
+	static final int SECTION_PERSONS = 5;
+	static final int SECTION_PERSON_ATTRIBUTES = 6;
+	static final int SECTION_STRINGS = 7;
+
+	static final int HEADER_SIZE = 8;
+	static final int SECTION_HEADER_SIZE = 8;
+	static final int TRAILER_SIZE = 12;
+
+	static final int BLOCK_SIZE = 10000;
+
+	static final int NULL_STRING = -1;
+
+	static final byte COORD_NULL = 0;
+	static final byte COORD_2D = 1;
+	static final byte COORD_3D = 2;
+
+	static final byte ELEMENT_ACTIVITY = 0;
+	static final byte ELEMENT_LEG = 1;
+
+	static final byte ROUTE_NONE = 0;
+	static final byte ROUTE_NETWORK = 1;
+	static final byte ROUTE_OTHER = 2;
+
+	private interface SectionContent {
+		void write(DataOutputStream out) throws IOException;
+	}
+
+	private final Network network;
+	private final Population population;
+	private final ObjectAttributesConverter converter = new ObjectAttributesConverter();
+
+	private final Map<String, Integer> stringIndices = new HashMap<>();
+	private final List<String> strings = new ArrayList<>();
+
+	private final ByteArrayOutputStream sectionBuffer = new ByteArrayOutputStream(1 << 20);
+	private DataOutputStream out;
+	private long position;
+
+	ScenarioSnapshotWriter(final Network network, final Population population) {
+		this.network = network;
+		this.population = population;
+	}
+
+	void putAttributeConverters(final Map<Class<?>, AttributeConverter<?>> converters) {
+		this.converter.putAttributeConverters(converters);
+	}
+
+	void write(final String filename) {
+		log.info("writing scenario snapshot to " + filename);
+		try (DataOutputStream file = new DataOutputStream(new BufferedOutputStream(new FileOutputStream(filename), 1 << 16))) {
+			this.out = file;
+			this.position = 0;
+			file.writeInt(MAGIC);
+			file.writeInt(VERSION);
+			this.position += HEADER_SIZE;
+
+			writeNetwork();
+			writePopulation();
+
+			long stringsOffset = this.position;
+			writeSection(SECTION_STRINGS, this::writeStrings);
+
+			file.writeLong(stringsOffset);
+			file.writeInt(MAGIC);
+		} catch (IOException e) {
+			deleteIncompleteFile(filename);
+			throw new UncheckedIOException(e);
+		} catch (RuntimeException e) {
+			deleteIncompleteFile(filename);
+			throw e;
+		} finally {
+			this.out = null;
+		}
+		log.info("scenario snapshot written, " + this.strings.size() + " distinct strings.");
+	}
+
+	private static void deleteIncompleteFile(final String filename) {
+		if (!new File(filename).delete()) {
+			log.warn("could not delete the incomplete scenario snapshot " + filename);
+		}
+	}
+
+	private void writeNetwork() throws IOException {
+		if (this.network == null) {
+			return;
+		}
+		writeSection(SECTION_NETWORK, s -> {
+			s.writeInt(string(this.network.getName()));
+			s.writeDouble(this.network.getCapacityPeriod());
+			s.writeDouble(this.network.getEffectiveLaneWidth());
+			writeAttributes(s, this.network.getAttributes());
+		});
+		writeBlocks(SECTION_NODES, this.network.getNodes().values(), this::writeNode);
+		writeBlocks(SECTION_LINKS, this.network.getLinks().values(), this::writeLink);
+	}
+
+	private void writePopulation() throws IOException {
+		if (this.population == null) {
+			return;
+		}
+		writeSection(SECTION_POPULATION, s -> {
+			s.writeInt(string(this.population.getName()));
+			writeAttributes(s, this.population.getAttributes());
+		});
+		writeBlocks(SECTION_PERSONS, this.population.getPersons().values(), this::writePerson);
+
+		final ObjectAttributes personAttributes = this.population.getPersonAttributes();
+		if (personAttributes != null) {
+			writeBlocks(SECTION_PERSON_ATTRIBUTES, this.population.getPersons().keySet(),
+					(s, personId) -> writeObjectAttributes(s, personAttributes, personId.toString()));
+		}
+	}
+
+	private interface ElementWriter<T> {
+		void write(DataOutputStream out, T element) throws IOException;
+	}
+
+	private <T> void writeBlocks(final int kind, final Collection<? extends T> elements, final ElementWriter<T> elementWriter) throws IOException {
+		Iterator<? extends T> iter = elements.iterator();
+		while (iter.hasNext()) {
+			writeSection(kind, s -> {
+				List<T> block = new ArrayList<>(BLOCK_SIZE);
+				while (iter.hasNext() && block.size() < BLOCK_SIZE) {
+					block.add(iter.next());
+				}
+				s.writeInt(block.size());
+				for (T element : block) {
+					elementWriter.write(s, element);
+				}
+			});
+		}
+	}
+
+	private void writeSection(final int kind, final SectionContent content) throws IOException {
+		this.sectionBuffer.reset();
+		DataOutputStream s = new DataOutputStream(this.sectionBuffer);
+		content.write(s);
+		s.flush();
+		this.out.writeInt(kind);
+		this.out.writeInt(this.sectionBuffer.size());
+		this.sectionBuffer.writeTo(this.out);
+		this.position += SECTION_HEADER_SIZE + this.sectionBuffer.size();
+	}
+
+	private void writeStrings(final DataOutputStream s) throws IOException {
+		s.writeInt(this.strings.size());
+		for (String str : this.strings) {
+			writeInlineString(s, str);
+		}
+	}
+
+	private void writeNode(final DataOutputStream s, final Node node) throws IOException {
+		s.writeInt(string(node.getId()));
+		writeCoord(s, node.getCoord());
+		s.writeInt(string(NetworkUtils.getType(node)));
+		s.writeInt(string(NetworkUtils.getOrigId(node)));
+		writeAttributes(s, node.getAttributes());
+	}
+
+	private void writeLink(final DataOutputStream s, final Link link) throws IOException {
+		s.writeInt(string(link.getId()));
+		s.writeInt(string(link.getFromNode().getId()));
+		s.writeInt(string(link.getToNode().getId()));
+		s.writeDouble(link.getLength());
+		s.writeDouble(link.getFreespeed());
+		s.writeDouble(link.getCapacity());
+		s.writeDouble(link.getNumberOfLanes());
+		s.writeInt(link.getAllowedModes().size());
+		for (String mode : link.getAllowedModes()) {
+			s.writeInt(string(mode));
+		}
+		writeAttributes(s, link.getAttributes());
+	}
+
+	private void writePerson(final DataOutputStream s, final Person person) throws IOException {
+		s.writeInt(string(person.getId()));
+		writeAttributes(s, person.getAttributes());
+		s.writeInt(person.getPlans().size());
+		s.writeInt(person.getPlans().indexOf(person.getSelectedPlan()));
+		for (Plan plan : person.getPlans()) {
+			writePlan(s, plan);
+		}
+	}
+
+	private void writePlan(final DataOutputStream s, final Plan plan) throws IOException {
+		Double score = plan.getScore();
+		s.writeBoolean(score != null);
+		if (score != null) {
+			s.writeDouble(score);
+		}
+		s.writeInt(string(plan.getType()));
+		writeAttributes(s, plan.getAttributes());
+		s.writeInt(plan.getPlanElements().size());
+		for (PlanElement pe : plan.getPlanElements()) {
+			if (pe instanceof Activity) {
+				writeActivity(s, (Activity) pe);
+			} else if (pe instanceof Leg) {
+				writeLeg(s, (Leg) pe);
+			} else {
+				throw new RuntimeException("unknown plan element type: " + pe.getClass().getName());
+			}
+		}
+	}
+
+	private void writeActivity(final DataOutputStream s, final Activity act) throws IOException {
+		s.writeByte(ELEMENT_ACTIVITY);
+		s.writeInt(string(act.getType()));
+		writeCoord(s, act.getCoord());
+		s.writeInt(string(act.getLinkId()));
+		s.writeInt(string(act.getFacilityId()));
+		s.writeDouble(act.getStartTime());
+		s.writeDouble(act.getEndTime());
+		s.writeDouble(act.getMaximumDuration());
+		writeAttributes(s, act.getAttributes());
+	}
+
+	private void writeLeg(final DataOutputStream s, final Leg leg) throws IOException {
+		s.writeByte(ELEMENT_LEG);
+		s.writeInt(string(leg.getMode()));
+		s.writeDouble(leg.getDepartureTime());
+		s.writeDouble(leg.getTravelTime());
+		writeAttributes(s, leg.getAttributes());
+		writeRoute(s, leg.getRoute());
+	}
+
+	private void writeRoute(final DataOutputStream s, final Route route) throws IOException {
+		if (route == null) {
+			s.writeByte(ROUTE_NONE);
+			return;
+		}
+		s.writeByte(route instanceof NetworkRoute ? ROUTE_NETWORK : ROUTE_OTHER);
+		s.writeInt(string(route.getRouteType()));
+		s.writeInt(string(route.getStartLinkId()));
+		s.writeInt(string(route.getEndLinkId()));
+		s.writeDouble(route.getTravelTime());
+		s.writeDouble(route.getDistance());
+		if (route instanceof NetworkRoute) {
+			NetworkRoute networkRoute = (NetworkRoute) route;
+			s.writeInt(string(networkRoute.getVehicleId()));
+			s.writeDouble(networkRoute.getTravelCost());
+			List<Id<Link>> linkIds = networkRoute.getLinkIds();
+			s.writeInt(linkIds.size());
+			for (Id<Link> linkId : linkIds) {
+				s.writeInt(string(linkId));
+			}
+		} else {
+			// descriptions of other routes (e.g. pt) are mostly unique, no point in putting them into the string table
+			String description = route.getRouteDescription();
+			s.writeBoolean(description != null);
+			if (description != null) {
+				writeInlineString(s, description);
+			}
+		}
+	}
+
+	private void writeAttributes(final DataOutputStream s, final Attributes attributes) throws IOException {
+		writeAttributeMap(s, attributes.getAsMap());
+	}
+
+	private void writeObjectAttributes(final DataOutputStream s, final ObjectAttributes attributes, final String objectId) throws IOException {
+		Map<String, Object> values = new HashMap<>();
+		for (String name : ObjectAttributesUtils.getAllAttributeNames(attributes, objectId)) {
+			values.put(name, attributes.getAttribute(objectId, name));
+		}
+		s.writeInt(string(objectId));
+		writeAttributeMap(s, values);
+	}
+
+	private void writeAttributeMap(final DataOutputStream s, final Map<String, Object> attributes) throws IOException {
+		List<String> keys = new ArrayList<>(attributes.size());
+		List<String> values = new ArrayList<>(attributes.size());
+		List<String> classNames = new ArrayList<>(attributes.size());
+		for (Map.Entry<String, Object> e : attributes.entrySet()) {
+			String value = this.converter.convertToString(e.getValue());
+			if (value == null) {
+				// the xml writers only warn and skip the attribute, but a snapshot is used in place of the original files
+				throw new RuntimeException("no attribute converter for attribute " + e.getKey() + " of class "
+						+ e.getValue().getClass().getName() + ", cannot write it into the scenario snapshot.");
+			}
+			keys.add(e.getKey());
+			values.add(value);
+			classNames.add(e.getValue().getClass().getCanonicalName());
+		}
+		s.writeInt(keys.size());
+		for (int i = 0; i < keys.size(); i++) {
+			s.writeInt(string(keys.get(i)));
+			s.writeInt(string(classNames.get(i)));
+			s.writeInt(string(values.get(i)));
+		}
+	}
+
+	private static void writeCoord(final DataOutputStream s, final Coord coord) throws IOException {
+		if (coord == null) {
+			s.writeByte(COORD_NULL);
+		} else if (coord.hasZ()) {
+			s.writeByte(COORD_3D);
+			s.writeDouble(coord.getX());
+			s.writeDouble(coord.getY());
+			s.writeDouble(coord.getZ());
+		} else {
+			s.writeByte(COORD_2D);
+			s.writeDouble(coord.getX());
+			s.writeDouble(coord.getY());
+		}
+	}
+
+	private static void writeInlineString(final DataOutputStream s, final String str) throws IOException {
+		byte[] bytes = str.getBytes(StandardCharsets.UTF_8);
+		s.writeInt(bytes.length);
+		s.write(bytes);
+	}
+
+	private int string(final Id<?> id) {
+		return id == null ? NULL_STRING : string(id.toString());
+	}
+
+	private int string(final String str) {
+		if (str == null) {
+			return NULL_STRING;
+		}
+		Integer index = this.stringIndices.get(str);
+		if (index == null) {
+			index = this.strings.size();
+			this.strings.add(str);
+			this.stringIndices.put(str, index);
+		}
+		return index;
+	}
+
+}
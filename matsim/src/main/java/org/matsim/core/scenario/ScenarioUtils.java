@@ -4,12 +4,17 @@ import org.matsim.api.core.v01.Scenario;
 import org.matsim.api.core.v01.network.Network;
 import org.matsim.api.core.v01.population.Population;
 import org.matsim.core.config.Config;
+import org.matsim.core.config.groups.ControlerConfigGroup;
 import org.matsim.facilities.ActivityFacilities;
 import org.matsim.households.Households;
 import org.matsim.lanes.Lanes;
 import org.matsim.pt.transitSchedule.api.TransitSchedule;
+import org.matsim.utils.objectattributes.AttributeConverter;
 import org.matsim.vehicles.Vehicles;
 
+import java.util.Collections;
+import java.util.Map;
+
 
 /**
  * Provides ways to get a Scenario from the implementation in this package.
@@ -69,6 +74,25 @@ public final class ScenarioUtils {
 		ScenarioLoaderImpl scenarioLoader = new ScenarioLoaderImpl(scenario);
 		scenarioLoader.loadScenario();
 	}
+
+	/**
+	 *
+	 * Writes network, population and person attributes of the scenario into a binary snapshot file.  The snapshot
+	 * can be used instead of the xml files by setting it as input scenario snapshot file in the controler config group.
+	 * Facilities, transit schedule, vehicles, households and lanes are not part of the snapshot.  Throws an exception
+	 * rather than writing an incomplete snapshot, e.g. if there is no converter for an attribute.
+	 *
+	 * @see ControlerConfigGroup#setInputScenarioSnapshotFile(String)
+	 */
+	public static void writeScenarioSnapshot(final Scenario scenario, final String filename) {
+		writeScenarioSnapshot(scenario, filename, Collections.emptyMap());
+	}
+
+	public static void writeScenarioSnapshot(final Scenario scenario, final String filename, final Map<Class<?>, AttributeConverter<?>> attributeConverters) {
+		ScenarioSnapshotWriter writer = new ScenarioSnapshotWriter(scenario.getNetwork(), scenario.getPopulation());
+		writer.putAttributeConverters(attributeConverters);
+		writer.write(filename);
+	}
 	
 	public final static class ScenarioBuilder {
 		private MutableScenario scenario;
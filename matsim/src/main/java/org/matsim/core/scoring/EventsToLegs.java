@@ -121,6 +121,31 @@ TeleportationArrivalEventHandler, TransitDriverStartsEventHandler, PersonEntersV
 
 	}
 
+	/**
+	 * The network part of a leg in progress.  The link ids are only recorded if someone is interested in them, otherwise
+	 * only start and end link and the length of the links in between are kept.
+	 */
+	private static class ExperiencedRoute {
+
+		final Id<Link> startLinkId;
+		Id<Link> endLinkId;
+		int numberOfLinks = 1;
+		double distanceBetween = 0.0; // length of the links between start and end link
+		final List<Id<Link>> linkIds;
+
+		ExperiencedRoute(Id<Link> startLinkId, boolean recordingLinkIds) {
+			this.startLinkId = startLinkId;
+			this.endLinkId = startLinkId;
+			if (recordingLinkIds) {
+				this.linkIds = new ArrayList<>();
+				this.linkIds.add(startLinkId);
+			} else {
+				this.linkIds = null;
+			}
+		}
+
+	}
+
 	public interface LegHandler {
 		void handleLeg(PersonExperiencedLeg leg);
 	}
@@ -133,13 +158,15 @@ TeleportationArrivalEventHandler, TransitDriverStartsEventHandler, PersonEntersV
 		this.transitSchedule = transitSchedule;
 	}
 	private Map<Id<Person>, Leg> legs = new HashMap<>();
-	private Map<Id<Person>, List<Id<Link>>> experiencedRoutes = new HashMap<>();
+	private Map<Id<Person>, ExperiencedRoute> experiencedRoutes = new HashMap<>();
 	private Map<Id<Person>, Double> relPosOnDepartureLinkPerPerson = new HashMap<>();
 	private Map<Id<Person>, Double> relPosOnArrivalLinkPerPerson = new HashMap<>();
 	private Map<Id<Person>, TeleportationArrivalEvent> routelessTravels = new HashMap<>();
 	private Map<Id<Person>, PendingTransitTravel> transitTravels = new HashMap<>();
 	private Map<Id<Vehicle>, LineAndRoute> transitVehicle2currentRoute = new HashMap<>();
 	private List<LegHandler> legHandlers = new ArrayList<>();
+	private boolean discardingExperiencedRoutes = false;
+	private boolean experiencedRoutesRequested = false;
 
 
 	@Inject
@@ -156,6 +183,22 @@ TeleportationArrivalEventHandler, TransitDriverStartsEventHandler, PersonEntersV
 		}
 	}
 
+	/**
+	 * If set, the network routes of the legs only contain the start and the end link (with the distance of the
+	 * whole route), unless some consumer {@link #requestExperiencedRoutes() requests} the links.  This reduces the
+	 * memory needed per agent during the mobsim.
+	 */
+	public void setDiscardingExperiencedRoutes(boolean discardingExperiencedRoutes) {
+		this.discardingExperiencedRoutes = discardingExperiencedRoutes;
+	}
+
+	/**
+	 * Tells this class that the legs passed on have to contain the complete network routes.
+	 */
+	public void requestExperiencedRoutes() {
+		this.experiencedRoutesRequested = true;
+	}
+
 	@Override
 	public void reset(int iteration) {
 		legs.clear();
@@ -175,9 +218,8 @@ TeleportationArrivalEventHandler, TransitDriverStartsEventHandler, PersonEntersV
 		leg.setDepartureTime(event.getTime());
 		legs.put(event.getPersonId(), leg);
 
-		List<Id<Link>> route = new ArrayList<>();
-		route.add(event.getLinkId());
-		experiencedRoutes.put(event.getPersonId(), route);
+		boolean recordingLinkIds = !this.discardingExperiencedRoutes || this.experiencedRoutesRequested;
+		experiencedRoutes.put(event.getPersonId(), new ExperiencedRoute(event.getLinkId(), recordingLinkIds));
 	}
 
 	@Override
@@ -197,8 +239,15 @@ TeleportationArrivalEventHandler, TransitDriverStartsEventHandler, PersonEntersV
 	@Override
 	public void handleEvent(LinkEnterEvent event) {
 		Id<Person> driverOfVehicle = delegate.getDriverOfVehicle(event.getVehicleId());
-		List<Id<Link>> route = experiencedRoutes.get(driverOfVehicle);
-		route.add(event.getLinkId());
+		ExperiencedRoute route = experiencedRoutes.get(driverOfVehicle);
+		if (route.numberOfLinks > 1) {
+			route.distanceBetween += network.getLinks().get(route.endLinkId).getLength();
+		}
+		route.endLinkId = event.getLinkId();
+		route.numberOfLinks++;
+		if (route.linkIds != null) {
+			route.linkIds.add(event.getLinkId());
+		}
 	}
 
 	@Override
@@ -216,15 +265,20 @@ TeleportationArrivalEventHandler, TransitDriverStartsEventHandler, PersonEntersV
 
 	@Override
 	public void handleEvent(PersonArrivalEvent event) {
-		Leg leg = legs.get(event.getPersonId());
+		Leg leg = legs.remove(event.getPersonId());
 		leg.setTravelTime( event.getTime() - leg.getDepartureTime() );
 		double travelTime = leg.getDepartureTime() + leg.getTravelTime() - leg.getDepartureTime();
 		leg.setTravelTime(travelTime);
-		List<Id<Link>> experiencedRoute = experiencedRoutes.get(event.getPersonId());
-		assert experiencedRoute.size() >= 1  ;
+		ExperiencedRoute experiencedRoute = experiencedRoutes.remove(event.getPersonId());
+		assert experiencedRoute.numberOfLinks >= 1  ;
 		PendingTransitTravel pendingTransitTravel;
-		if (experiencedRoute.size() > 1) { // different links processed
-			NetworkRoute networkRoute = RouteUtils.createNetworkRoute(experiencedRoute, null);
+		if (experiencedRoute.numberOfLinks > 1) { // different links processed
+			NetworkRoute networkRoute;
+			if (experiencedRoute.linkIds != null) {
+				networkRoute = RouteUtils.createNetworkRoute(experiencedRoute.linkIds, null);
+			} else {
+				networkRoute = RouteUtils.createLinkNetworkRouteImpl(experiencedRoute.startLinkId, experiencedRoute.endLinkId);
+			}
 			networkRoute.setTravelTime(travelTime);
 
 			/* use the relative position of vehicle enter/leave traffic events on first/last links
@@ -234,8 +288,12 @@ TeleportationArrivalEventHandler, TransitDriverStartsEventHandler, PersonEntersV
 			double relPosOnDepartureLink = relPosOnDepartureLinkPerPerson.get(event.getPersonId());
 			Double relPosOnArrivalLink = relPosOnArrivalLinkPerPerson.get(event.getPersonId());
 			Gbl.assertNotNull( relPosOnArrivalLink );
-			networkRoute.setDistance(RouteUtils.calcDistance(networkRoute, relPosOnDepartureLink, 
-					relPosOnArrivalLink, network));
+			if (experiencedRoute.linkIds != null) {
+				networkRoute.setDistance(RouteUtils.calcDistance(networkRoute, relPosOnDepartureLink,
+						relPosOnArrivalLink, network));
+			} else {
+				networkRoute.setDistance(calcDistance(experiencedRoute, relPosOnDepartureLink, relPosOnArrivalLink));
+			}
 
 			leg.setRoute(networkRoute);
 		} else if ((pendingTransitTravel = transitTravels.remove(event.getPersonId())) != null) {
@@ -274,7 +332,7 @@ TeleportationArrivalEventHandler, TransitDriverStartsEventHandler, PersonEntersV
 			// i.e. experiencedRoute.size()==1 and no pendingTransitTravel
 
 			TeleportationArrivalEvent travelEvent = routelessTravels.remove(event.getPersonId());
-			Route genericRoute = RouteUtils.createGenericRouteImpl(experiencedRoute.get(0), event.getLinkId());
+			Route genericRoute = RouteUtils.createGenericRouteImpl(experiencedRoute.startLinkId, event.getLinkId());
 			genericRoute.setTravelTime(travelTime);
 			if (travelEvent != null) {
 				genericRoute.setDistance(travelEvent.getDistance());
@@ -283,11 +341,29 @@ TeleportationArrivalEventHandler, TransitDriverStartsEventHandler, PersonEntersV
 			}
 			leg.setRoute(genericRoute);
 		}
+		// (only keep state for the legs in progress)
+		relPosOnDepartureLinkPerPerson.remove(event.getPersonId());
+		relPosOnArrivalLinkPerPerson.remove(event.getPersonId());
+
 		for (LegHandler legHandler : legHandlers) {
 			legHandler.handleLeg(new PersonExperiencedLeg(event.getPersonId(), leg));
 		}
 	}
 
+	/**
+	 * Same as {@link RouteUtils#calcDistance(NetworkRoute, double, double, Network)}, but without the link ids.
+	 */
+	private double calcDistance(ExperiencedRoute route, double relPosOnDepartureLink, double relPosOnArrivalLink) {
+		double routeDistance = route.distanceBetween;
+		routeDistance += network.getLinks().get(route.startLinkId).getLength() * (1.0 - relPosOnDepartureLink);
+		if (!route.startLinkId.equals(route.endLinkId)) {
+			routeDistance += network.getLinks().get(route.endLinkId).getLength() * relPosOnArrivalLink;
+		} else {
+			routeDistance -= network.getLinks().get(route.endLinkId).getLength() * (1.0 - relPosOnArrivalLink);
+		}
+		return routeDistance;
+	}
+
 	@Override
 	public void handleEvent(TransitDriverStartsEvent event) {
 		LineAndRoute lineAndRoute = new LineAndRoute(event.getTransitLineId(), event.getTransitRouteId(), event.getDriverId());
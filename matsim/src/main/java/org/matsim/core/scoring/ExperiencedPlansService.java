@@ -11,8 +11,20 @@ public interface ExperiencedPlansService {
 
 	void writeExperiencedPlans(String filename);
 
+	/**
+	 * @throws IllegalStateException if the experienced plans of the current iteration are not recorded, see
+	 * {@link #requestExperiencedPlans()}
+	 */
 	Map<Id<Person>, Plan> getExperiencedPlans();
 
+	/**
+	 * Tells the service that some consumer is going to look at the experienced plans.  With
+	 * {@link org.matsim.core.config.groups.PlanCalcScoreConfigGroup#isStreamingScoring() streaming scoring}, they are
+	 * otherwise only recorded if they are written or memorized.  Has to be called before the iteration starts, e.g. at
+	 * startup.
+	 */
+	void requestExperiencedPlans();
+
 	void finishIteration();
 
 }
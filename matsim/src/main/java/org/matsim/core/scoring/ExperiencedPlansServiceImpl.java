@@ -5,6 +5,7 @@ import org.apache.log4j.Logger;
 import org.matsim.api.core.v01.Id;
 import org.matsim.api.core.v01.population.*;
 import org.matsim.core.config.Config;
+import org.matsim.core.config.groups.PlanCalcScoreConfigGroup;
 import org.matsim.core.controler.ControlerListenerManager;
 import org.matsim.core.controler.events.IterationStartsEvent;
 import org.matsim.core.controler.listener.IterationStartsListener;
@@ -17,26 +18,49 @@ class ExperiencedPlansServiceImpl implements ExperiencedPlansService, EventsToLe
 
 	private final static Logger log = Logger.getLogger(ExperiencedPlansServiceImpl.class);
 
-	@Inject private Config config;
+	private final Config config;
 	@Inject private Population population;
 	@Inject(optional = true) private ScoringFunctionsForPopulation scoringFunctionsForPopulation;
 
 	private final Map<Id<Person>, Plan> agentRecords = new HashMap<>();
+	private final EventsToLegs eventsToLegs;
+	private boolean experiencedPlansRequested = false;
+	private boolean recording;
 
 	@Inject
-	ExperiencedPlansServiceImpl(ControlerListenerManager controlerListenerManager, EventsToActivities eventsToActivities, EventsToLegs eventsToLegs) {
+	ExperiencedPlansServiceImpl(Config config, ControlerListenerManager controlerListenerManager, EventsToActivities eventsToActivities,
+			EventsToLegs eventsToLegs) {
+		this.config = config;
+		this.recording = isRecordingRequired();
 		controlerListenerManager.addControlerListener(new IterationStartsListener() {
 			@Override
 			public void notifyIterationStarts(IterationStartsEvent event) {
+				recording = isRecordingRequired();
+				if (!recording) {
+					// nobody is going to look at the experienced plans, so don't keep the whole day of every agent in memory
+					agentRecords.clear();
+					return;
+				}
+				eventsToLegs.requestExperiencedRoutes();
 				for (Person person : population.getPersons().values()) {
 					agentRecords.put(person.getId(), PopulationUtils.createPlan());
 				}
 			}
 		});
+		this.eventsToLegs = eventsToLegs;
 		eventsToActivities.addActivityHandler(this);
 		eventsToLegs.addLegHandler(this);
 	}
 
+	/**
+	 * @return false only with streaming scoring, if the experienced plans are neither written nor memorized nor requested
+	 */
+	private boolean isRecordingRequired() {
+		PlanCalcScoreConfigGroup scoringConfig = this.config.planCalcScore();
+		return !scoringConfig.isStreamingScoring() || scoringConfig.isWriteExperiencedPlans() || scoringConfig.isMemorizingExperiencedPlans()
+				|| this.experiencedPlansRequested;
+	}
+
 	@Override
 	synchronized public void handleLeg(PersonExperiencedLeg o) {
 		// Has to be synchronized because the thing which sends Legs and the thing which sends Activities can run
@@ -93,7 +117,16 @@ class ExperiencedPlansServiceImpl implements ExperiencedPlansService, EventsToLe
 
 	@Override
 	public Map<Id<Person>, Plan> getExperiencedPlans() {
+		if (!this.recording) {
+			throw new IllegalStateException("the experienced plans are not recorded with streaming scoring unless they are written, "
+					+ "memorized or requested through requestExperiencedPlans() before the iteration starts.");
+		}
 		return this.agentRecords;
 	}
 
+	@Override
+	public void requestExperiencedPlans() {
+		this.experiencedPlansRequested = true;
+	}
+
 }
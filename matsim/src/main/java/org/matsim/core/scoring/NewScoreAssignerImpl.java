@@ -12,7 +12,12 @@ import javax.inject.Inject;
 import java.util.HashMap;
 import java.util.Map;
 
-class NewScoreAssignerImpl implements NewScoreAssigner {
+/**
+ * Assigns the scores of the last simulation to the selected plans: new plans get the score, plans that already have
+ * a score get a mix of the old and the new score, using the learning rate or, after the configured fraction of
+ * iterations, the method of successive averages.
+ */
+public class NewScoreAssignerImpl implements NewScoreAssigner {
 
 	static private final Logger log = Logger.getLogger(NewScoreAssignerImpl.class);
 
@@ -23,7 +28,7 @@ class NewScoreAssignerImpl implements NewScoreAssigner {
 	private long scoreCount = 0;
 
 	@Inject
-	NewScoreAssignerImpl(PlanCalcScoreConfigGroup planCalcScoreConfigGroup, ControlerConfigGroup controlerConfigGroup) {
+	public NewScoreAssignerImpl(PlanCalcScoreConfigGroup planCalcScoreConfigGroup, ControlerConfigGroup controlerConfigGroup) {
 		if (planCalcScoreConfigGroup.getFractionOfIterationsToStartScoreMSA()!=null ) {
 			final int diff = controlerConfigGroup.getLastIteration() - controlerConfigGroup.getFirstIteration();
 			this.scoreMSAstartsAtIteration = (int) (diff
@@ -37,67 +42,72 @@ class NewScoreAssignerImpl implements NewScoreAssigner {
 
 		for (Person person : population.getPersons().values()) {
 			ScoringFunction sf = scoringFunctionsForPopulation.getScoringFunctionForAgent(person.getId());
-			double score = sf.getScore();
-			Plan plan = person.getSelectedPlan();
-			Double oldScore = plan.getScore();
-			if (oldScore == null) {
-				plan.setScore(score);
+			assignNewScore(iteration, person.getSelectedPlan(), sf.getScore());
+		}
+	}
+
+	/**
+	 * Assigns the given score of the last simulation to the plan, see {@link #assignNewScores(int, ScoringFunctionsForPopulation, Population)}.
+	 */
+	public void assignNewScore(int iteration, Plan plan, double score) {
+		Double oldScore = plan.getScore();
+		if (oldScore == null) {
+			plan.setScore(score);
+			if ( plan.getScore().isNaN() ) {
+				log.warn("score is NaN; plan:" + plan.toString() );
+			}
+		} else {
+			if ( this.scoreMSAstartsAtIteration == null || iteration < this.scoreMSAstartsAtIteration ) {
+				final double newScore = this.learningRate * score + (1 - this.learningRate) * oldScore;
+				if ( log.isTraceEnabled() ) {
+					log.trace( " lrn: " + this.learningRate + " oldScore: " + oldScore + " simScore: " + score + " newScore: " + newScore );
+				}
+				plan.setScore(newScore);
 				if ( plan.getScore().isNaN() ) {
-					log.warn("score is NaN; plan:" + plan.toString() );
+					log.warn("score is NaN; plan:" + plan.toString()+" with lrn: " + this.learningRate + " oldScore: " + oldScore + " simScore: " + score + " newScore: " + newScore );
 				}
 			} else {
-				if ( this.scoreMSAstartsAtIteration == null || iteration < this.scoreMSAstartsAtIteration ) {
-					final double newScore = this.learningRate * score + (1 - this.learningRate) * oldScore;
-					if ( log.isTraceEnabled() ) {
-						log.trace( " lrn: " + this.learningRate + " oldScore: " + oldScore + " simScore: " + score + " newScore: " + newScore );
-					}
-					plan.setScore(newScore);
-					if ( plan.getScore().isNaN() ) {
-						log.warn("score is NaN; plan:" + plan.toString()+" with lrn: " + this.learningRate + " oldScore: " + oldScore + " simScore: " + score + " newScore: " + newScore );
-					}
-				} else {
 //					double alpha = 1./(this.iteration - this.scoreMSAstartsAtIteration + 1) ;
 //					alpha *= scenario.getConfig().strategy().getMaxAgentPlanMemorySize() ; //(**)
 //					if ( alpha>1 ) {
 //						alpha = 1. ;
 //					}
 
-					Integer msaContribs = this.msaContributions.get(plan) ;
-					if ( msaContribs==null ) {
-						msaContribs = 0 ;
-					}
-					this.msaContributions.put(plan,msaContribs+1) ;
-					double alpha = 1./(msaContribs+1) ;
+				Integer msaContribs = this.msaContributions.get(plan) ;
+				if ( msaContribs==null ) {
+					msaContribs = 0 ;
+				}
+				this.msaContributions.put(plan,msaContribs+1) ;
+				double alpha = 1./(msaContribs+1) ;
 
-					final double newScore = alpha * score + (1.-alpha) * oldScore;
-					if ( log.isTraceEnabled() ) {
-						log.trace( " alpha: " + alpha + " oldScore: " + oldScore + " simScore: " + score + " newScore: " + newScore );
-					}
-					plan.setScore( newScore ) ;
-					if ( plan.getScore().isNaN() ) {
-						log.warn("score is NaN; plan:" + plan.toString() );
-					}
-					/*
-					// the above is some variant of MSA (method of successive
-					// averages). It is not the same as MSA since
-					// a plan is typically not scored in every iteration.
-					// However, plans are called with rates, for example
-					// only every 10th iteration. Yet, something like 1/(10x)
-					// still diverges in the same way as 1/x
-					// when integrated, so MSA should still converge to the
-					// correct result. kai, oct'12
-					// The above argument may be theoretically correct.  But something 9/10*old+1/10*new is too slow in practice.  Now
-					// multiplying with number of plans (**) in hope that it is better.  (Where is the theory department?) kai, nov'13
-					 * Looks to me like this is now truly MSA. kai, apr'15
-					// yyyy this has never been tested with scenarios :-(  .  At least there is a test case.  kai, oct'12
-					// (In the meantime, I have used it in certain of my own 1% runs, e.g. Ivory Coast.)
-					 */
+				final double newScore = alpha * score + (1.-alpha) * oldScore;
+				if ( log.isTraceEnabled() ) {
+					log.trace( " alpha: " + alpha + " oldScore: " + oldScore + " simScore: " + score + " newScore: " + newScore );
+				}
+				plan.setScore( newScore ) ;
+				if ( plan.getScore().isNaN() ) {
+					log.warn("score is NaN; plan:" + plan.toString() );
 				}
+				/*
+				// the above is some variant of MSA (method of successive
+				// averages). It is not the same as MSA since
+				// a plan is typically not scored in every iteration.
+				// However, plans are called with rates, for example
+				// only every 10th iteration. Yet, something like 1/(10x)
+				// still diverges in the same way as 1/x
+				// when integrated, so MSA should still converge to the
+				// correct result. kai, oct'12
+				// The above argument may be theoretically correct.  But something 9/10*old+1/10*new is too slow in practice.  Now
+				// multiplying with number of plans (**) in hope that it is better.  (Where is the theory department?) kai, nov'13
+				 * Looks to me like this is now truly MSA. kai, apr'15
+				// yyyy this has never been tested with scenarios :-(  .  At least there is a test case.  kai, oct'12
+				// (In the meantime, I have used it in certain of my own 1% runs, e.g. Ivory Coast.)
+				 */
 			}
-
-			this.scoreSum += score;
-			this.scoreCount++;
 		}
+
+		this.scoreSum += score;
+		this.scoreCount++;
 	}
 
 
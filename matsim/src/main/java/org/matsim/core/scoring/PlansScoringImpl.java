@@ -33,6 +33,7 @@ import org.matsim.core.controler.events.IterationEndsEvent;
 import org.matsim.core.controler.events.ScoringEvent;
 import org.matsim.core.controler.listener.IterationEndsListener;
 import org.matsim.core.controler.listener.ScoringListener;
+import org.matsim.core.mobsim.psim.PSim;
 
 
 /**
@@ -55,6 +56,10 @@ final class PlansScoringImpl implements PlansScoring, ScoringListener, Iteration
 
 	@Override
 	public void notifyScoring(final ScoringEvent event) {
+		if (PSim.isPseudoIteration(this.controlerConfigGroup, event.getIteration())) {
+			// the pseudo-simulation has already scored the plans that need a new score
+			return;
+		}
 		scoringFunctionsForPopulation.finishScoringFunctions();
 		NewScoreAssignerImpl newScoreAssigner = new NewScoreAssignerImpl(this.planCalcScoreConfigGroup, this.controlerConfigGroup);
 		newScoreAssigner.assignNewScores(event.getIteration(), this.scoringFunctionsForPopulation, this.population);
@@ -62,6 +67,9 @@ final class PlansScoringImpl implements PlansScoring, ScoringListener, Iteration
 
 	@Override
 	public void notifyIterationEnds(final IterationEndsEvent event) {
+		if (PSim.isPseudoIteration(this.controlerConfigGroup, event.getIteration())) {
+			return;
+		}
 		this.experiencedPlansService.finishIteration(); 
 		// (currently sets scores to experienced plans)
 		
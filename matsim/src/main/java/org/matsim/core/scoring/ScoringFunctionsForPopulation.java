@@ -39,6 +39,7 @@ import org.matsim.api.core.v01.population.Plan;
 import org.matsim.api.core.v01.population.Population;
 import org.matsim.core.api.experimental.events.EventsManager;
 import org.matsim.core.api.internal.HasPersonId;
+import org.matsim.core.config.groups.PlanCalcScoreConfigGroup;
 import org.matsim.core.controler.ControlerListenerManager;
 import org.matsim.core.controler.events.IterationStartsEvent;
 import org.matsim.core.controler.listener.IterationStartsListener;
@@ -103,13 +104,36 @@ import static org.matsim.core.router.TripStructureUtils.Trip;
 //	 */
 //	private boolean passLinkEventsToPerson = false;
 	
-	private Vehicle2DriverEventHandler vehicles2Drivers = new Vehicle2DriverEventHandler();
+	/*
+	 * The persons are distributed over the shards by the hash code of their id.  Every shard is an event handler of its
+	 * own (if there is more than one), so a parallel events manager can feed them on different threads.  The maps above
+	 * are only modified in init(), i.e. between the iterations; during the iteration, the entries of a person are only
+	 * accessed while holding the lock of its shard.
+	 */
+	private final ScoringShard[] shards;
+	private boolean recordingPartialScores = true;
 	@Inject(optional = true)
 	private TripRouter tripRouter;
 
 	@Inject
+	ScoringFunctionsForPopulation( ControlerListenerManager controlerListenerManager, EventsManager eventsManager, EventsToActivities eventsToActivities, EventsToLegs eventsToLegs,
+						 Population population, ScoringFunctionFactory scoringFunctionFactory, PlanCalcScoreConfigGroup planCalcScoreConfigGroup) {
+		this(controlerListenerManager, eventsManager, eventsToActivities, eventsToLegs, population, scoringFunctionFactory,
+				planCalcScoreConfigGroup.getNumberOfScoringShards());
+		if (planCalcScoreConfigGroup.isStreamingScoring()) {
+			// the partial scores are only needed for writing them
+			this.recordingPartialScores = planCalcScoreConfigGroup.isWriteExperiencedPlans();
+			eventsToLegs.setDiscardingExperiencedRoutes(true);
+		}
+	}
+
 	ScoringFunctionsForPopulation( ControlerListenerManager controlerListenerManager, EventsManager eventsManager, EventsToActivities eventsToActivities, EventsToLegs eventsToLegs,
 						 Population population, ScoringFunctionFactory scoringFunctionFactory) {
+		this(controlerListenerManager, eventsManager, eventsToActivities, eventsToLegs, population, scoringFunctionFactory, 1);
+	}
+
+	ScoringFunctionsForPopulation( ControlerListenerManager controlerListenerManager, EventsManager eventsManager, EventsToActivities eventsToActivities, EventsToLegs eventsToLegs,
+						 Population population, ScoringFunctionFactory scoringFunctionFactory, int numberOfShards) {
 		controlerListenerManager.addControlerListener(new IterationStartsListener() {
 			@Override
 			public void notifyIterationStarts(IterationStartsEvent event) {
@@ -118,21 +142,42 @@ import static org.matsim.core.router.TripStructureUtils.Trip;
 		});
 		this.population = population;
 		this.scoringFunctionFactory = scoringFunctionFactory;
-		eventsManager.addHandler(this);
+		this.shards = new ScoringShard[numberOfShards];
+		for (int i = 0; i < numberOfShards; i++) {
+			this.shards[i] = new ScoringShard();
+		}
+		if (numberOfShards == 1) {
+			eventsManager.addHandler(this);
+//			if ( passLinkEventsToPerson ) {
+				eventsManager.addHandler(this.shards[0].vehicles2Drivers);
+//			}
+		} else {
+			for (ScoringShard shard : this.shards) {
+				eventsManager.addHandler(shard);
+			}
+		}
 		eventsToActivities.addActivityHandler(this);
 		eventsToLegs.addLegHandler(this);
-//		if ( passLinkEventsToPerson ) {
-			eventsManager.addHandler(this.vehicles2Drivers);
-//		}
 	}
 
 	private void init() {
 		for (Person person : this.population.getPersons().values()) {
 			ScoringFunction data = this.scoringFunctionFactory.createNewScoringFunction(person);
 			this.agentScorers.put(person.getId(), data);
-			this.partialScores.put(person.getId(), new TDoubleArrayList());
+			if (this.recordingPartialScores) {
+				this.partialScores.put(person.getId(), new TDoubleArrayList());
+			}
 			this.tripRecords.put(person.getId(), PopulationUtils.createPlan());
 		}
+		// (initialize this here, before the shards may ask for it concurrently)
+		getStageActivities();
+	}
+
+	private ScoringShard getShard(final Id<Person> personId) {
+		if (this.shards.length == 1) {
+			return this.shards[0];
+		}
+		return this.shards[Math.abs(personId.hashCode() % this.shards.length)];
 	}
 
 	private StageActivityTypes getStageActivities() {
@@ -157,65 +202,35 @@ import static org.matsim.core.router.TripStructureUtils.Trip;
 	
 
 	@Override
-	synchronized public void handleEvent(Event o) {
-		// this is for the stuff that is directly based on events.
-		// note that this passes on _all_ person events, even those which are aggregated into legs and activities.
-		// for the time being, not all PersonEvents may "implement HasPersonId".
-		// link enter/leave events are NOT passed on, for performance reasons.
-		// kai/dominik, dec'12
-		if (o instanceof HasPersonId) {
-			ScoringFunction scoringFunction = getScoringFunctionForAgent(((HasPersonId) o).getPersonId());
-			if (scoringFunction != null) {
-				if (o instanceof PersonStuckEvent) {
-					scoringFunction.agentStuck(o.getTime());
-				} else if (o instanceof PersonMoneyEvent) {
-					scoringFunction.addMoney(((PersonMoneyEvent) o).getAmount());
-					// yy looking at this, I am a bit skeptic if it truly makes sense to not pass this additionally into the general events handling function below.
-					// A use case might be different utilities of money by money transaction type (e.g. toll, fare, reimbursement, ...).  kai, mar'17
-				} 
-//				else {
-					scoringFunction.handleEvent(o);
-					// passing this on in any case, see comment above.  kai, mar'17
-//				}
+	public void handleEvent(Event o) {
+		if (this.shards.length == 1) {
+			this.shards[0].handleEvent(o);
+		} else if (o instanceof HasPersonId) {
+			getShard(((HasPersonId) o).getPersonId()).handleEvent(o);
+		} else {
+			for (ScoringShard shard : this.shards) {
+				shard.handleEvent(o);
 			}
 		}
-//		if ( passLinkEventsToPerson ) {
-			// Establish and end connection between driver and vehicle
-			if (o instanceof VehicleEntersTrafficEvent) {
-				this.vehicles2Drivers.handleEvent((VehicleEntersTrafficEvent) o);
-			}
-			if (o instanceof VehicleLeavesTrafficEvent) {
-				this.vehicles2Drivers.handleEvent((VehicleLeavesTrafficEvent) o);
-			}
-			// Pass LinkEnterEvent to person scoring, required e.g. for bicycle where link attributes are observed in scoring
-			if ( o instanceof LinkEnterEvent ) {
-				Id<Vehicle> vehicleId = ((LinkEnterEvent)o).getVehicleId() ;
-				Id<Person> driverId = this.vehicles2Drivers.getDriverOfVehicle(vehicleId) ;
-				ScoringFunction scoringFunction = getScoringFunctionForAgent( driverId );
-				// (this will NOT do the scoring function lookup twice since LinkEnterEvent is not an instance of HasPersonId.  kai, mar'17)
-				if (scoringFunction != null) {
-					scoringFunction.handleEvent(o) ;
-				}
-			}
-			/*
-			 * (This shouldn't really be more expensive than passing the link events to the router: here, we have a map lookup
-			 * for agentId, there we have a map lookup for linkId. Should be somewhat similar in terms of average
-			 * computational complexity. In BetaTravelTest, 194sec w/ "false", 193sec w/ "true". However, the experienced
-			 * plans service in fact does the same thing, so we should be able to get away without having to do this twice.
-			 * kai, mar'17)
-			 */
-//		}
 	}
 
 	@Override
-	synchronized public void handleLeg(PersonExperiencedLeg o) {
+	public void handleLeg(PersonExperiencedLeg o) {
+		synchronized (getShard(o.getAgentId())) {
+			handleLegInShard(o);
+		}
+	}
+
+	private void handleLegInShard(PersonExperiencedLeg o) {
 		Id<Person> agentId = o.getAgentId();
 		Leg leg = o.getLeg();
 		ScoringFunction scoringFunction = ScoringFunctionsForPopulation.this.getScoringFunctionForAgent(agentId);
 		if (scoringFunction != null) {
 			scoringFunction.handleLeg(leg);
 			TDoubleCollection partialScoresForAgent = this.partialScores.get(agentId);
-			partialScoresForAgent.add(scoringFunction.getScore());
+			if (partialScoresForAgent != null) {
+				partialScoresForAgent.add(scoringFunction.getScore());
+			}
 		}
 		Plan plan = this.tripRecords.get( agentId ) ; // as container for trip
 		if ( plan!=null ) {
@@ -224,14 +239,22 @@ import static org.matsim.core.router.TripStructureUtils.Trip;
 	}
 
 	@Override
-	synchronized public void handleActivity(PersonExperiencedActivity o) {
+	public void handleActivity(PersonExperiencedActivity o) {
+		synchronized (getShard(o.getAgentId())) {
+			handleActivityInShard(o);
+		}
+	}
+
+	private void handleActivityInShard(PersonExperiencedActivity o) {
 		Id<Person> agentId = o.getAgentId();
 		Activity activity = o.getActivity();
 		ScoringFunction scoringFunction = ScoringFunctionsForPopulation.this.getScoringFunctionForAgent(agentId);
 		if (scoringFunction != null) {
 			scoringFunction.handleActivity(activity);
 			TDoubleCollection partialScoresForAgent = this.partialScores.get(agentId);
-			partialScoresForAgent.add(scoringFunction.getScore());
+			if (partialScoresForAgent != null) {
+				partialScoresForAgent.add(scoringFunction.getScore());
+			}
 		}
 		
 		Plan plan = this.tripRecords.get( agentId ); // as container for trip
@@ -325,4 +348,72 @@ import static org.matsim.core.router.TripStructureUtils.Trip;
 //	public void setPassLinkEventsToPerson(boolean passLinkEventsToPerson) {
 //		this.passLinkEventsToPerson = passLinkEventsToPerson;
 //	}
+
+	/**
+	 * Handles the events of the persons with {@link #getShard(Id)} == this.  Vehicle events are routed to the shard
+	 * of the driver by remembering only the vehicles entered by drivers of this shard.
+	 */
+	private final class ScoringShard implements BasicEventHandler {
+
+		private final Vehicle2DriverEventHandler vehicles2Drivers = new Vehicle2DriverEventHandler();
+
+		@Override
+		synchronized public void handleEvent(Event o) {
+			// this is for the stuff that is directly based on events.
+			// note that this passes on _all_ person events, even those which are aggregated into legs and activities.
+			// for the time being, not all PersonEvents may "implement HasPersonId".
+			// link enter/leave events are NOT passed on, for performance reasons.
+			// kai/dominik, dec'12
+			if (o instanceof HasPersonId) {
+				if (getShard(((HasPersonId) o).getPersonId()) != this) {
+					// another shard is responsible for this person (also for its vehicle, if it is a driver)
+					return;
+				}
+				ScoringFunction scoringFunction = getScoringFunctionForAgent(((HasPersonId) o).getPersonId());
+				if (scoringFunction != null) {
+					if (o instanceof PersonStuckEvent) {
+						scoringFunction.agentStuck(o.getTime());
+					} else if (o instanceof PersonMoneyEvent) {
+						scoringFunction.addMoney(((PersonMoneyEvent) o).getAmount());
+						// yy looking at this, I am a bit skeptic if it truly makes sense to not pass this additionally into the general events handling function below.
+						// A use case might be different utilities of money by money transaction type (e.g. toll, fare, reimbursement, ...).  kai, mar'17
+					} 
+//					else {
+						scoringFunction.handleEvent(o);
+						// passing this on in any case, see comment above.  kai, mar'17
+//					}
+				}
+			}
+//			if ( passLinkEventsToPerson ) {
+				// Establish and end connection between driver and vehicle
+				if (o instanceof VehicleEntersTrafficEvent) {
+					this.vehicles2Drivers.handleEvent((VehicleEntersTrafficEvent) o);
+				}
+				if (o instanceof VehicleLeavesTrafficEvent) {
+					this.vehicles2Drivers.handleEvent((VehicleLeavesTrafficEvent) o);
+				}
+				// Pass LinkEnterEvent to person scoring, required e.g. for bicycle where link attributes are observed in scoring
+				if ( o instanceof LinkEnterEvent ) {
+					Id<Vehicle> vehicleId = ((LinkEnterEvent)o).getVehicleId() ;
+					Id<Person> driverId = this.vehicles2Drivers.getDriverOfVehicle(vehicleId) ;
+					ScoringFunction scoringFunction = getScoringFunctionForAgent( driverId );
+					// (this will NOT do the scoring function lookup twice since LinkEnterEvent is not an instance of HasPersonId.  kai, mar'17)
+					if (scoringFunction != null) {
+						scoringFunction.handleEvent(o) ;
+					}
+				}
+				/*
+				 * (This shouldn't really be more expensive than passing the link events to the router: here, we have a map lookup
+				 * for agentId, there we have a map lookup for linkId. Should be somewhat similar in terms of average
+				 * computational complexity. In BetaTravelTest, 194sec w/ "false", 193sec w/ "true". However, the experienced
+				 * plans service in fact does the same thing, so we should be able to get away without having to do this twice.
+				 * kai, mar'17)
+				 */
+//			}
+		}
+
+		@Override
+		public void reset(int iteration) {
+		}
+	}
 }
@@ -0,0 +1,365 @@
+/* *********************************************************************** *
+ * project: org.matsim.*
+ * TimeWheelQueue.java
+ *                                                                         *
+ * *********************************************************************** *
+ *                                                                         *
+ * copyright       : (C) 2019 by the members listed in the COPYING,        *
+ *                   LICENSE and WARRANTY file.                            *
+ * email           : info at matsim dot org                                *
+ *                                                                         *
+ * *********************************************************************** *
+ *                                                                         *
+ *   This program is free software; you can redistribute it and/or modify  *
+ *   it under the terms of the GNU General Public License as published by  *
+ *   the Free Software Foundation; either version 2 of the License, or     *
+ *   (at your option) any later version.                                   *
+ *   See also COPYING, LICENSE and WARRANTY file                           *
+ *                                                                         *
+ * *********************************************************************** */
+
+package org.matsim.core.utils.collections;
+
+import java.util.Arrays;
+import java.util.Comparator;
+
+/**
+ * A time-ordered queue for simulation events, implemented as hierarchical timing wheel (calendar queue).
+ * <p></p>
+ * Time is divided into slots of <code>slotWidth</code> (by default one second).  The first wheel has one slot per
+ * time slot for the next {@value #LEVEL0_SIZE} slots, the second wheel one slot per {@value #LEVEL0_SIZE} time slots
+ * for the next {@value #LEVEL1_SIZE} of them; everything further in the future is kept in an overflow bucket.  Adding
+ * an element is O(1).  Only the elements of the current time slot are kept in a binary heap, so that the order within
+ * a slot is exact: elements are returned by increasing time, elements with the same time in the order of the
+ * comparator given at construction, and elements that are still equal in the order they were added.
+ * <p></p>
+ * In contrast to a {@link java.util.PriorityQueue} of tuples, the time is stored as primitive and no object is
+ * allocated per element once the buckets have grown to their working size.
+ * <p></p>
+ * This class is not thread-safe.
+ *
+ * @param <E> the type of the queued elements
+ */
+public final class TimeWheelQueue<E> {
+
+	private static final int LEVEL0_BITS = 12;
+	private static final int LEVEL1_BITS = 6;
+	private static final int LEVEL0_SIZE = 1 << LEVEL0_BITS;
+	private static final int LEVEL1_SIZE = 1 << LEVEL1_BITS;
+	private static final long LEVEL0_MASK = LEVEL0_SIZE - 1;
+	private static final long LEVEL1_MASK = LEVEL1_SIZE - 1;
+
+	private final double slotWidth;
+	private final Comparator<? super E> comparator;
+
+	private final Bucket[] level0 = new Bucket[LEVEL0_SIZE];
+	private final long[] level0Occupied = new long[LEVEL0_SIZE / 64];
+	private final Bucket[] level1 = new Bucket[LEVEL1_SIZE];
+	private long level1Occupied = 0;
+	private Bucket overflow = new Bucket();
+	private Bucket spareOverflow = new Bucket();
+
+	/** all elements with a slot <= currentSlot are in the heap, all others in the wheels or the overflow bucket */
+	private long currentSlot = 0;
+
+	private double[] heapTimes = new double[16];
+	private long[] heapSequence = new long[16];
+	private Object[] heapElements = new Object[16];
+	private int heapSize = 0;
+
+	private long nextSequence = 0;
+	private int size = 0;
+
+	/**
+	 * Creates a queue with one-second slots where elements with the same time are returned in the order they were added.
+	 */
+	public TimeWheelQueue() {
+		this(1.0, null);
+	}
+
+	/**
+	 * @param slotWidth the width of one time slot; should be about the time resolution of the added elements
+	 * @param comparator orders elements with the same time, may be <code>null</code>
+	 */
+	public TimeWheelQueue(final double slotWidth, final Comparator<? super E> comparator) {
+		if (!(slotWidth > 0)) {
+			throw new IllegalArgumentException("slotWidth must be positive, but is " + slotWidth);
+		}
+		this.slotWidth = slotWidth;
+		this.comparator = comparator;
+	}
+
+	public void add(final double time, final E element) {
+		if (this.size == 0) {
+			// start the wheels at the first element, so that the queue can be re-used for another simulation run
+			this.currentSlot = getSlot(time);
+		}
+		place(time, this.nextSequence++, element);
+		this.size++;
+	}
+
+	/**
+	 * @return the first element without removing it, or <code>null</code> if the queue is empty
+	 */
+	@SuppressWarnings("unchecked")
+	public E peek() {
+		if (this.size == 0) {
+			return null;
+		}
+		advance();
+		return (E) this.heapElements[0];
+	}
+
+	/**
+	 * @return the time of the first element, or {@link Double#POSITIVE_INFINITY} if the queue is empty
+	 */
+	public double peekTime() {
+		if (this.size == 0) {
+			return Double.POSITIVE_INFINITY;
+		}
+		advance();
+		return this.heapTimes[0];
+	}
+
+	/**
+	 * @return the first element, removing it from the queue, or <code>null</code> if the queue is empty
+	 */
+	public E poll() {
+		if (this.size == 0) {
+			return null;
+		}
+		advance();
+		return removeFirst();
+	}
+
+	/**
+	 * @return the first element if its time is at or before <code>time</code>, removing it from the queue, or
+	 * <code>null</code> otherwise
+	 */
+	public E poll(final double time) {
+		if (this.size == 0) {
+			return null;
+		}
+		advance();
+		if (this.heapTimes[0] > time) {
+			return null;
+		}
+		return removeFirst();
+	}
+
+	public int size() {
+		return this.size;
+	}
+
+	public boolean isEmpty() {
+		return this.size == 0;
+	}
+
+	public void clear() {
+		for (int i = 0; i < LEVEL0_SIZE; i++) {
+			if (this.level0[i] != null) {
+				this.level0[i].clear();
+			}
+		}
+		Arrays.fill(this.level0Occupied, 0);
+		for (int i = 0; i < LEVEL1_SIZE; i++) {
+			if (this.level1[i] != null) {
+				this.level1[i].clear();
+			}
+		}
+		this.level1Occupied = 0;
+		this.overflow.clear();
+		Arrays.fill(this.heapElements, 0, this.heapSize, null);
+		this.heapSize = 0;
+		this.size = 0;
+	}
+
+	private long getSlot(final double time) {
+		return (long) Math.floor(time / this.slotWidth);
+	}
+
+	private void place(final double time, final long sequence, final Object element) {
+		long slot = getSlot(time);
+		if (slot <= this.currentSlot) {
+			heapAdd(time, sequence, element);
+		} else if ((slot >> LEVEL0_BITS) == (this.currentSlot >> LEVEL0_BITS)) {
+			int i = (int) (slot & LEVEL0_MASK);
+			if (this.level0[i] == null) {
+				this.level0[i] = new Bucket();
+			}
+			this.level0[i].add(time, sequence, element);
+			this.level0Occupied[i >>> 6] |= 1L << i;
+		} else if ((slot >> (LEVEL0_BITS + LEVEL1_BITS)) == (this.currentSlot >> (LEVEL0_BITS + LEVEL1_BITS))) {
+			int j = (int) ((slot >> LEVEL0_BITS) & LEVEL1_MASK);
+			if (this.level1[j] == null) {
+				this.level1[j] = new Bucket();
+			}
+			this.level1[j].add(time, sequence, element);
+			this.level1Occupied |= 1L << j;
+		} else {
+			this.overflow.add(time, sequence, element);
+		}
+	}
+
+	/**
+	 * Moves the elements of the next occupied time slot into the heap if the heap is empty.
+	 */
+	private void advance() {
+		while (this.heapSize == 0) {
+			int i = nextOccupiedLevel0((int) (this.currentSlot & LEVEL0_MASK) + 1);
+			if (i >= 0) {
+				this.currentSlot = (this.currentSlot & ~LEVEL0_MASK) | i;
+				this.level0Occupied[i >>> 6] &= ~(1L << i);
+				Bucket bucket = this.level0[i];
+				for (int k = 0; k < bucket.size; k++) {
+					heapAdd(bucket.times[k], bucket.sequence[k], bucket.elements[k]);
+				}
+				bucket.clear();
+				return;
+			}
+			int j = nextOccupiedLevel1((int) ((this.currentSlot >> LEVEL0_BITS) & LEVEL1_MASK) + 1);
+			if (j >= 0) {
+				long level1Mask = (1L << (LEVEL0_BITS + LEVEL1_BITS)) - 1;
+				this.currentSlot = (this.currentSlot & ~level1Mask) | ((long) j << LEVEL0_BITS);
+				this.level1Occupied &= ~(1L << j);
+				Bucket bucket = this.level1[j];
+				for (int k = 0; k < bucket.size; k++) {
+					place(bucket.times[k], bucket.sequence[k], bucket.elements[k]);
+				}
+				bucket.clear();
+				continue;
+			}
+			Bucket bucket = this.overflow;
+			if (bucket.size == 0) {
+				throw new IllegalStateException("queue of size " + this.size + " has no elements.");
+			}
+			long minSlot = Long.MAX_VALUE;
+			for (int k = 0; k < bucket.size; k++) {
+				minSlot = Math.min(minSlot, getSlot(bucket.times[k]));
+			}
+			this.currentSlot = minSlot;
+			this.overflow = this.spareOverflow;
+			this.spareOverflow = bucket;
+			for (int k = 0; k < bucket.size; k++) {
+				place(bucket.times[k], bucket.sequence[k], bucket.elements[k]);
+			}
+			bucket.clear();
+		}
+	}
+
+	private int nextOccupiedLevel0(final int from) {
+		if (from >= LEVEL0_SIZE) {
+			return -1;
+		}
+		int w = from >>> 6;
+		long word = this.level0Occupied[w] & (-1L << from);
+		while (word == 0) {
+			w++;
+			if (w == this.level0Occupied.length) {
+				return -1;
+			}
+			word = this.level0Occupied[w];
+		}
+		return (w << 6) + Long.numberOfTrailingZeros(word);
+	}
+
+	private int nextOccupiedLevel1(final int from) {
+		if (from >= LEVEL1_SIZE) {
+			return -1;
+		}
+		long word = this.level1Occupied & (-1L << from);
+		return word == 0 ? -1 : Long.numberOfTrailingZeros(word);
+	}
+
+	@SuppressWarnings("unchecked")
+	private E removeFirst() {
+		E first = (E) this.heapElements[0];
+		int last = --this.heapSize;
+		if (last > 0) {
+			siftDown(0, this.heapTimes[last], this.heapSequence[last], this.heapElements[last]);
+		}
+		this.heapElements[last] = null;
+		this.size--;
+		return first;
+	}
+
+	private void heapAdd(final double time, final long sequence, final Object element) {
+		if (this.heapSize == this.heapTimes.length) {
+			int newLength = this.heapTimes.length * 2;
+			this.heapTimes = Arrays.copyOf(this.heapTimes, newLength);
+			this.heapSequence = Arrays.copyOf(this.heapSequence, newLength);
+			this.heapElements = Arrays.copyOf(this.heapElements, newLength);
+		}
+		int k = this.heapSize++;
+		while (k > 0) {
+			int parent = (k - 1) >>> 1;
+			if (compare(time, sequence, element, parent) >= 0) {
+				break;
+			}
+			set(k, this.heapTimes[parent], this.heapSequence[parent], this.heapElements[parent]);
+			k = parent;
+		}
+		set(k, time, sequence, element);
+	}
+
+	private void siftDown(int k, final double time, final long sequence, final Object element) {
+		int half = this.heapSize >>> 1;
+		while (k < half) {
+			int child = (k << 1) + 1;
+			int right = child + 1;
+			if (right < this.heapSize && compare(this.heapTimes[right], this.heapSequence[right], this.heapElements[right], child) < 0) {
+				child = right;
+			}
+			if (compare(time, sequence, element, child) <= 0) {
+				break;
+			}
+			set(k, this.heapTimes[child], this.heapSequence[child], this.heapElements[child]);
+			k = child;
+		}
+		set(k, time, sequence, element);
+	}
+
+	private void set(final int k, final double time, final long sequence, final Object element) {
+		this.heapTimes[k] = time;
+		this.heapSequence[k] = sequence;
+		this.heapElements[k] = element;
+	}
+
+	@SuppressWarnings("unchecked")
+	private int compare(final double time, final long sequence, final Object element, final int k) {
+		int cmp = Double.compare(time, this.heapTimes[k]);
+		if (cmp == 0 && this.comparator != null) {
+			cmp = this.comparator.compare((E) element, (E) this.heapElements[k]);
+		}
+		if (cmp == 0) {
+			cmp = Long.compare(sequence, this.heapSequence[k]);
+		}
+		return cmp;
+	}
+
+	private static final class Bucket {
+		double[] times = new double[4];
+		long[] sequence = new long[4];
+		Object[] elements = new Object[4];
+		int size = 0;
+
+		void add(final double time, final long sequence, final Object element) {
+			if (this.size == this.times.length) {
+				int newLength = this.times.length * 2;
+				this.times = Arrays.copyOf(this.times, newLength);
+				this.sequence = Arrays.copyOf(this.sequence, newLength);
+				this.elements = Arrays.copyOf(this.elements, newLength);
+			}
+			this.times[this.size] = time;
+			this.sequence[this.size] = sequence;
+			this.elements[this.size] = element;
+			this.size++;
+		}
+
+		void clear() {
+			Arrays.fill(this.elements, 0, this.size, null);
+			this.size = 0;
+		}
+	}
+
+}
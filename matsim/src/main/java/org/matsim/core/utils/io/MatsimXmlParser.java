@@ -29,12 +29,27 @@ import org.xml.sax.helpers.DefaultHandler;
 import javax.xml.parsers.ParserConfigurationException;
 import javax.xml.parsers.SAXParser;
 import javax.xml.parsers.SAXParserFactory;
+import javax.xml.stream.XMLInputFactory;
+import javax.xml.stream.XMLStreamConstants;
+import javax.xml.stream.XMLStreamException;
+import javax.xml.stream.XMLStreamReader;
+import java.io.BufferedInputStream;
+import java.io.BufferedReader;
 import java.io.File;
 import java.io.IOException;
 import java.io.InputStream;
+import java.io.Reader;
 import java.net.URL;
 import java.net.URLConnection;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.BitSet;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
 import java.util.Stack;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
 import java.util.zip.GZIPInputStream;
 
 /**
@@ -45,6 +60,9 @@ import java.util.zip.GZIPInputStream;
  * <p></p>
  * Notes:<ul>
  * <li> If implementing classes want to override the final methods, the will have to resort to delegation.   
+ * <li> Besides the SAX parser, there is a non-validating fast path based on StAX, which is used if
+ * {@link #setUsingFastParser(boolean)} is set and the file has one of the doctypes whose readers are known to work
+ * without the dtd.  It calls the same {@link #startTag} and {@link #endTag} methods.
  * </ul>
  *
  * @author mrieser
@@ -53,11 +71,30 @@ public abstract class MatsimXmlParser extends DefaultHandler implements MatsimRe
 
 	private static final Logger log = Logger.getLogger(MatsimXmlParser.class);
 
-	private final Stack<StringBuffer> buffers = new Stack<>();
+	private static final String XML_SCHEMA_INSTANCE = "http://www.w3.org/2001/XMLSchema-instance";
+	private static final Pattern DOCTYPE_SYSTEM_ID = Pattern.compile("(?:SYSTEM|PUBLIC\\s+[\"'][^\"']*[\"'])\\s+[\"']([^\"']+)[\"']");
+
+	/**
+	 * The doctypes which may be read by the fast parser, see {@link #isReadableWithoutDtd(String)}.  It does not load the dtd, thus does not fill in the default
+	 * values of missing attributes; the readers of these doctypes have been checked to apply the defaults themselves.
+	 * Files without doctype (e.g. events) have no defaults.
+	 */
+	private static final Set<String> FAST_PARSER_DOCTYPES = new HashSet<>(Arrays.asList("network_v1.dtd", "network_v2.dtd",
+			"population_v5.dtd", "population_v6.dtd", "transitSchedule_v1.dtd", "transitSchedule_v2.dtd"));
+
+	// how many characters resp. bytes may be read to find the doctype before the input is parsed from its start again
+	private static final int DOCTYPE_LOOKAHEAD = 1 << 20;
+
+	// one content buffer per nesting level, re-used for all elements at that level
+	private final List<StringBuilder> buffers = new ArrayList<>();
+	private int depth = 0;
+	// nesting levels whose current element has child elements; without dtd, the whitespace between them is not ignorable
+	private final BitSet levelsWithChildren = new BitSet();
 	private final Stack<String> theContext = new Stack<>();
 
 	private boolean isValidating = true;
 	private boolean isNamespaceAware = true;
+	private boolean isUsingFastParser = false;
 
 	private String localDtdBase = null;
 	// yy this is NOT working for me with "dtd", but it IS working with null. 
@@ -112,6 +149,23 @@ public abstract class MatsimXmlParser extends DefaultHandler implements MatsimRe
 		this.isValidating = validateXml;
 	}
 
+	/**
+	 * Sets, if the StAX based parsing path should be used instead of SAX.  This path never validates (independent of
+	 * {@link #setValidating(boolean)}) and does not load any DTDs; the doctype is taken from the DOCTYPE declaration
+	 * or the schema location of the root element.  It is meant for large input files that are known to be valid,
+	 * e.g. the output of a previous run.
+	 * <p></p>
+	 * Since the default values of attributes are defined in the dtd, only the doctypes whose readers apply the defaults
+	 * themselves are read by the fast parser: networks (v1, v2), populations (v5, v6), transit schedules (v1, v2), and
+	 * files without doctype (see {@link #isReadableWithoutDtd(String)}).  All other files are read by the SAX parser
+	 * nevertheless.
+	 *
+	 * @param usingFastParser Whether the StAX based parsing path should be used.
+	 */
+	public final void setUsingFastParser(final boolean usingFastParser) {
+		this.isUsingFastParser = usingFastParser;
+	}
+
 	/**
 	 * Specifies that the parser produced by this code will provide support for XML namespaces.
 	 * By default the value of this is set to <code>false</code>.
@@ -175,7 +229,16 @@ public abstract class MatsimXmlParser extends DefaultHandler implements MatsimRe
 		parse(new InputSource(stream));
 	}
 
-	public final void parse(final InputSource input) throws UncheckedIOException {
+	public final void parse(InputSource input) throws UncheckedIOException {
+		if (this.isUsingFastParser) {
+			input = getRereadableInput(input);
+			String peekedDoctype = peekDoctype(input);
+			if (peekedDoctype == null || isReadableWithoutDtd(peekedDoctype)) {
+				parseFast(input);
+				return;
+			}
+			log.info("the fast parser does not support the doctype " + peekedDoctype + ", using the SAX parser.");
+		}
 		try {
 			SAXParserFactory factory = SAXParserFactory.newInstance();
 			factory.setValidating(this.isValidating);
@@ -200,6 +263,181 @@ public abstract class MatsimXmlParser extends DefaultHandler implements MatsimRe
 		}
 	}
 
+	/**
+	 * Files which are read by the fast parser do not get the default values of the attributes which are defined in the
+	 * dtd; thus the fast parser is only used for the doctypes for which this returns <code>true</code>.  Readers which
+	 * apply the defaults themselves may override this.
+	 *
+	 * @param doctype the doctype of the file, see {@link #getDoctype()}
+	 * @return whether files of the doctype can be read without their dtd
+	 */
+	protected boolean isReadableWithoutDtd(final String doctype) {
+		return FAST_PARSER_DOCTYPES.contains(doctype);
+	}
+
+	/**
+	 * @return an input whose stream is marked at its start, so that it can be read again after the doctype is known
+	 */
+	private static InputSource getRereadableInput(final InputSource input) throws UncheckedIOException {
+		try {
+			InputSource rereadable = new InputSource(input.getSystemId());
+			if (input.getCharacterStream() != null) {
+				Reader reader = input.getCharacterStream();
+				rereadable.setCharacterStream(reader.markSupported() ? reader : new BufferedReader(reader));
+				rereadable.getCharacterStream().mark(DOCTYPE_LOOKAHEAD);
+			} else {
+				InputStream stream = input.getByteStream() != null ? input.getByteStream() : new URL(input.getSystemId()).openStream();
+				rereadable.setByteStream(stream.markSupported() ? stream : new BufferedInputStream(stream));
+				rereadable.getByteStream().mark(DOCTYPE_LOOKAHEAD);
+				rereadable.setEncoding(input.getEncoding());
+			}
+			return rereadable;
+		} catch (IOException e) {
+			throw new UncheckedIOException(e);
+		}
+	}
+
+	/**
+	 * Reads the input up to the root element to find the doctype, and resets it to its start.
+	 *
+	 * @return the doctype, or <code>null</code> if the input has none
+	 */
+	private String peekDoctype(final InputSource input) throws UncheckedIOException {
+		XMLStreamReader reader = null;
+		try {
+			reader = createFastParserReader(input);
+			while (reader.hasNext()) {
+				int event = reader.next();
+				if (event == XMLStreamConstants.DTD) {
+					Matcher matcher = DOCTYPE_SYSTEM_ID.matcher(reader.getText());
+					if (matcher.find()) {
+						return shortSystemId(matcher.group(1));
+					}
+				} else if (event == XMLStreamConstants.START_ELEMENT) {
+					String schemaLocation = reader.getAttributeValue(XML_SCHEMA_INSTANCE, "schemaLocation");
+					if (schemaLocation != null) {
+						String[] parts = schemaLocation.trim().split("\\s+");
+						return shortSystemId(parts[parts.length - 1]);
+					}
+					return null;
+				}
+			}
+			return null;
+		} catch (XMLStreamException e) {
+			throw new UncheckedIOException(e);
+		} finally {
+			try {
+				// closing the stream reader does not close the underlying input
+				if (reader != null) {
+					reader.close();
+				}
+				if (input.getCharacterStream() != null) {
+					input.getCharacterStream().reset();
+				} else {
+					input.getByteStream().reset();
+				}
+			} catch (XMLStreamException | IOException e) {
+				throw new UncheckedIOException(e);
+			}
+		}
+	}
+
+	private XMLStreamReader createFastParserReader(final InputSource input) throws XMLStreamException {
+		XMLInputFactory factory = XMLInputFactory.newInstance();
+		factory.setProperty(XMLInputFactory.IS_VALIDATING, false);
+		factory.setProperty(XMLInputFactory.SUPPORT_DTD, false);
+		factory.setProperty(XMLInputFactory.IS_NAMESPACE_AWARE, this.isNamespaceAware);
+		factory.setProperty(XMLInputFactory.IS_COALESCING, false);
+		if (input.getCharacterStream() != null) {
+			return factory.createXMLStreamReader(input.getCharacterStream());
+		}
+		return factory.createXMLStreamReader(input.getByteStream(), input.getEncoding());
+	}
+
+	private void parseFast(final InputSource input) throws UncheckedIOException {
+		XMLStreamReader reader = null;
+		try {
+			reader = createFastParserReader(input);
+			StaxAttributes atts = new StaxAttributes();
+			atts.setReader(reader);
+			this.startDocument();
+			boolean isRoot = true;
+			while (reader.hasNext()) {
+				switch (reader.next()) {
+					case XMLStreamConstants.DTD:
+						if (this.doctype == null) {
+							Matcher matcher = DOCTYPE_SYSTEM_ID.matcher(reader.getText());
+							if (matcher.find()) {
+								setDoctype(shortSystemId(matcher.group(1)));
+							}
+						}
+						break;
+					case XMLStreamConstants.START_ELEMENT:
+						if (isRoot) {
+							isRoot = false;
+							if (this.doctype == null) {
+								setDoctypeFromSchemaLocation(reader);
+							}
+						}
+						startElement(getTagName(reader), atts);
+						break;
+					case XMLStreamConstants.END_ELEMENT:
+						endElement(getTagName(reader));
+						break;
+					case XMLStreamConstants.CHARACTERS:
+					case XMLStreamConstants.CDATA:
+					case XMLStreamConstants.SPACE:
+						if (this.depth > 0) {
+							this.characters(reader.getTextCharacters(), reader.getTextStart(), reader.getTextLength());
+						}
+						break;
+					default:
+						break;
+				}
+			}
+			this.endDocument();
+		} catch (XMLStreamException | SAXException e) {
+			throw new UncheckedIOException(e);
+		} finally {
+			try {
+				if (reader != null) {
+					reader.close();
+				}
+				// closing the stream reader does not close the underlying input, the SAX parser does so
+				if (input.getCharacterStream() != null) {
+					input.getCharacterStream().close();
+				} else {
+					input.getByteStream().close();
+				}
+			} catch (XMLStreamException | IOException e) {
+				log.warn("could not close input " + this.theSource, e);
+			}
+		}
+	}
+
+	private static String getTagName(final XMLStreamReader reader) {
+		// same as in startElement(): the qualified name if there is no namespace, otherwise the local name
+		String prefix = reader.getPrefix();
+		String uri = reader.getNamespaceURI();
+		if (prefix != null && !prefix.isEmpty() && (uri == null || uri.isEmpty())) {
+			return prefix + ":" + reader.getLocalName();
+		}
+		return reader.getLocalName();
+	}
+
+	private void setDoctypeFromSchemaLocation(final XMLStreamReader reader) {
+		String schemaLocation = reader.getAttributeValue(XML_SCHEMA_INSTANCE, "schemaLocation");
+		if (schemaLocation != null) {
+			String[] parts = schemaLocation.trim().split("\\s+");
+			setDoctype(shortSystemId(parts[parts.length - 1]));
+		}
+	}
+
+	private static String shortSystemId(final String systemId) {
+		int index = systemId.replace('\\', '/').lastIndexOf('/');
+		return systemId.substring(index + 1);
+	}
+
 	// the following may be useful.  But it is nowhere used, so I am not sure if we fully understand its longterm maintenance implications, 
 	// so I rather comment it out. If it is needed somewhere, just comment it back in (and probably (**) above) 
 	// and leave a comment.  kai, jul'16
@@ -228,8 +466,7 @@ public abstract class MatsimXmlParser extends DefaultHandler implements MatsimRe
 		// ConfigReader* did override this.  Not sure if it did that for good reaons.  kai, jul'16
 		
 		// extract the last part of the systemId
-		int index = systemId.replace('\\', '/').lastIndexOf('/');
-		String shortSystemId = systemId.substring(index + 1);
+		String shortSystemId = shortSystemId(systemId);
 
 		if (this.doctype == null) {
 			// this is the first systemId we have to resolve, assume it's the doctype
@@ -331,9 +568,8 @@ public abstract class MatsimXmlParser extends DefaultHandler implements MatsimRe
 	public void characters(final char[] ch, final int start, final int length) throws SAXException {
 		// has to be non-final since otherwise the events parser does not work.  Probably ok (this here is just a default implementation). kai, jul'16
 		
-		StringBuffer buffer = this.buffers.peek();
-		if (buffer != null) {
-			buffer.append(ch, start, length);
+		if (this.depth > 0) {
+			this.buffers.get(this.depth - 1).append(ch, start, length);
 		}
 	}
 
@@ -342,7 +578,18 @@ public abstract class MatsimXmlParser extends DefaultHandler implements MatsimRe
 		// I have not good intuition if making this one non-final might be ok.  kai, jul'16
 
 		String tag = (uri.length() == 0) ? qName : localName;
-		this.buffers.push(new StringBuffer());
+		startElement(tag, atts);
+	}
+
+	private void startElement(final String tag, final Attributes atts) {
+		if (this.depth == this.buffers.size()) {
+			this.buffers.add(new StringBuilder());
+		}
+		if (this.depth > 0) {
+			this.levelsWithChildren.set(this.depth - 1);
+		}
+		this.levelsWithChildren.clear(this.depth);
+		this.depth++;
 		this.startTag(tag, atts, this.theContext);
 		this.theContext.push(tag);
 	}
@@ -352,9 +599,31 @@ public abstract class MatsimXmlParser extends DefaultHandler implements MatsimRe
 		// I have not good intuition if making this one non-final might be ok.  kai, jul'16
 		
 		String tag = (uri.length() == 0) ? qName : localName;
+		endElement(tag);
+	}
+
+	private void endElement(final String tag) {
 		this.theContext.pop();
-		StringBuffer buffer = this.buffers.pop();
-		this.endTag(tag, buffer.toString(), this.theContext);
+		this.depth--;
+		StringBuilder buffer = this.buffers.get(this.depth);
+		String content;
+		if (buffer.length() == 0 || (this.isUsingFastParser && this.levelsWithChildren.get(this.depth) && isWhitespace(buffer))) {
+			// the fast parser does not know the dtd, so it reports the whitespace between child elements as characters
+			content = "";
+		} else {
+			content = buffer.toString();
+		}
+		buffer.setLength(0);
+		this.endTag(tag, content, this.theContext);
+	}
+
+	private static boolean isWhitespace(final CharSequence chars) {
+		for (int i = 0, n = chars.length(); i < n; i++) {
+			if (!Character.isWhitespace(chars.charAt(i))) {
+				return false;
+			}
+		}
+		return true;
 	}
 
 	/* implement ErrorHandler */
@@ -0,0 +1,132 @@
+/* *********************************************************************** *
+ * project: org.matsim.*
+ * StaxAttributes.java
+ *                                                                         *
+ * *********************************************************************** *
+ *                                                                         *
+ * copyright       : (C) 2019 by the members listed in the COPYING,        *
+ *                   LICENSE and WARRANTY file.                            *
+ * email           : info at matsim dot org                                *
+ *                                                                         *
+ * *********************************************************************** *
+ *                                                                         *
+ *   This program is free software; you can redistribute it and/or modify  *
+ *   it under the terms of the GNU General Public License as published by  *
+ *   the Free Software Foundation; either version 2 of the License, or     *
+ *   (at your option) any later version.                                   *
+ *   See also COPYING, LICENSE and WARRANTY file                           *
+ *                                                                         *
+ * *********************************************************************** */
+
+package org.matsim.core.utils.io;
+
+import javax.xml.stream.XMLStreamReader;
+
+import org.xml.sax.Attributes;
+
+/**
+ * A view of the attributes of the current start element of a {@link XMLStreamReader} as SAX {@link Attributes}, so
+ * that the existing <code>startTag</code> implementations can be used with the StAX based parsing path of
+ * {@link MatsimXmlParser} without copying the attributes for every element.
+ * <p></p>
+ * Like the SAX attributes, an instance is only valid during the <code>startTag</code> call it is passed to.
+ * Attribute names as returned by the StAX parser are interned, so the lookup by name first tries an identity
+ * comparison, which succeeds for the (also interned) string constants used in the readers.
+ */
+final class StaxAttributes implements Attributes {
+
+	private static final String CDATA = "CDATA";
+
+	private XMLStreamReader reader = null;
+
+	/*package*/ void setReader(final XMLStreamReader reader) {
+		this.reader = reader;
+	}
+
+	@Override
+	public int getLength() {
+		return this.reader.getAttributeCount();
+	}
+
+	@Override
+	public String getURI(final int index) {
+		String uri = this.reader.getAttributeNamespace(index);
+		return uri == null ? "" : uri;
+	}
+
+	@Override
+	public String getLocalName(final int index) {
+		return this.reader.getAttributeLocalName(index);
+	}
+
+	@Override
+	public String getQName(final int index) {
+		String prefix = this.reader.getAttributePrefix(index);
+		String localName = this.reader.getAttributeLocalName(index);
+		if (prefix == null || prefix.isEmpty()) {
+			return localName;
+		}
+		return prefix + ":" + localName;
+	}
+
+	@Override
+	public String getType(final int index) {
+		return CDATA;
+	}
+
+	@Override
+	public String getValue(final int index) {
+		return this.reader.getAttributeValue(index);
+	}
+
+	@Override
+	public int getIndex(final String uri, final String localName) {
+		int count = this.reader.getAttributeCount();
+		for (int i = 0; i < count; i++) {
+			if (localName.equals(this.reader.getAttributeLocalName(i)) && uri.equals(getURI(i))) {
+				return i;
+			}
+		}
+		return -1;
+	}
+
+	@Override
+	public int getIndex(final String qName) {
+		int count = this.reader.getAttributeCount();
+		for (int i = 0; i < count; i++) {
+			String name = this.reader.getAttributeLocalName(i);
+			if (name == qName) {
+				return i;
+			}
+		}
+		for (int i = 0; i < count; i++) {
+			if (qName.equals(getQName(i))) {
+				return i;
+			}
+		}
+		return -1;
+	}
+
+	@Override
+	public String getType(final String uri, final String localName) {
+		return getIndex(uri, localName) < 0 ? null : CDATA;
+	}
+
+	@Override
+	public String getType(final String qName) {
+		return getIndex(qName) < 0 ? null : CDATA;
+	}
+
+	@Override
+	public String getValue(final String uri, final String localName) {
+		int index = getIndex(uri, localName);
+		return index < 0 ? null : this.reader.getAttributeValue(index);
+	}
+
+	@Override
+	public String getValue(final String qName) {
+		int index = getIndex(qName);
+		return index < 0 ? null : this.reader.getAttributeValue(index);
+	}
+
+}
@@ -35,6 +35,8 @@ import org.matsim.core.controler.listener.IterationEndsListener;
 import org.matsim.core.controler.listener.StartupListener;
 import org.matsim.core.utils.collections.CollectionUtils;
 import org.matsim.core.utils.geometry.transformations.TransformationFactory;
+import org.matsim.counts.algorithms.CountSimComparisonCsvStreamWriter;
+import org.matsim.counts.algorithms.CountSimComparisonKMLStreamWriter;
 import org.matsim.counts.algorithms.CountSimComparisonKMLWriter;
 import org.matsim.counts.algorithms.CountSimComparisonTableWriter;
 import org.matsim.counts.algorithms.CountsComparisonAlgorithm;
@@ -45,6 +47,7 @@ import org.matsim.counts.algorithms.graphs.CountsSimReal24GraphCreator;
 import org.matsim.counts.algorithms.graphs.CountsSimRealPerHourGraphCreator;
 
 import javax.inject.Inject;
+import java.util.Arrays;
 import java.util.HashMap;
 import java.util.Locale;
 import java.util.Map;
@@ -72,7 +75,9 @@ class CountsControlerListener implements StartupListener, IterationEndsListener
     @com.google.inject.Inject(optional=true)
     private Counts<Link> counts = null;
 
-    private final Map<Id<Link>, double[]> linkStats = new HashMap<>();
+    private final Map<Id<Link>, Integer> countIndices = new HashMap<>();
+    /** 24 hourly volumes per count station (in the order of countIndices), summed over the used iterations */
+    private double[] linkStats = new double[0];
     private int iterationsUsed = 0;
 
     @Inject
@@ -91,8 +96,9 @@ class CountsControlerListener implements StartupListener, IterationEndsListener
 	public void notifyStartup(final StartupEvent controlerStartupEvent) {
         if (counts != null) {
             for (Id<Link> linkId : counts.getCounts().keySet()) {
-                this.linkStats.put(linkId, new double[24]);
+                this.countIndices.put(linkId, this.countIndices.size());
             }
+            this.linkStats = new double[24 * this.countIndices.size()];
         }
 	}
 
@@ -105,26 +111,23 @@ class CountsControlerListener implements StartupListener, IterationEndsListener
 
             if (createCountsInIteration(event.getIteration())) {
                 iterationStopwatch.beginOperation(OPERATION_COMPARECOUNTS);
-                Map<Id<Link>, double[]> averages;
-                if (this.iterationsUsed > 1) {
-                    averages = new HashMap<>();
-                    for (Map.Entry<Id<Link>, double[]> e : this.linkStats.entrySet()) {
-                        Id<Link> linkId = e.getKey();
-                        double[] totalVolumesPerHour = e.getValue();
-                        double[] averageVolumesPerHour = new double[totalVolumesPerHour.length];
-                        for (int i = 0; i < totalVolumesPerHour.length; i++) {
-                            averageVolumesPerHour[i] = totalVolumesPerHour[i] / this.iterationsUsed;
-                        }
-                        averages.put(linkId, averageVolumesPerHour);
+                final double divisor = Math.max(this.iterationsUsed, 1);
+                CountsComparisonAlgorithm cca = new CountsComparisonAlgorithm(locationId -> {
+                    Integer index = this.countIndices.get(Id.create(locationId, Link.class));
+                    if (index == null) {
+                        return null;
                     }
-                } else {
-                    averages = this.linkStats;
-                }
-                CountsComparisonAlgorithm cca = new CountsComparisonAlgorithm(averages, counts, network, config.getCountsScaleFactor());
+                    double[] averageVolumesPerHour = new double[24];
+                    for (int i = 0; i < 24; i++) {
+                        averageVolumesPerHour[i] = this.linkStats[24 * index + i] / divisor;
+                    }
+                    return averageVolumesPerHour;
+                }, counts, network, config.getCountsScaleFactor());
                 if ((this.config.getDistanceFilter() != null) && (this.config.getDistanceFilterCenterNode() != null)) {
                     cca.setDistanceFilter(this.config.getDistanceFilter(), this.config.getDistanceFilterCenterNode());
                 }
                 cca.setCountsScaleFactor(this.config.getCountsScaleFactor());
+                cca.setNumberOfThreads(this.globalConfigGroup.getNumberOfThreads());
                 cca.run();
 
                 if (this.config.getOutputFormat().contains("html") ||
@@ -136,7 +139,13 @@ class CountsControlerListener implements StartupListener, IterationEndsListener
                     cgw.addGraphsCreator(new CountsSimReal24GraphCreator("average working day sim and count volumes"));
                     cgw.createHtmlAndGraphs();
                 }
-                if (this.config.getOutputFormat().contains("kml") ||
+                if (this.config.getOutputFormat().contains("kmlStream")) {
+                    String filename = controlerIO.getIterationFilename(event.getIteration(), "countscompare.kmz");
+                    CountSimComparisonKMLStreamWriter kmlWriter = new CountSimComparisonKMLStreamWriter(
+                            cca.getComparison(), network, TransformationFactory.getCoordinateTransformation(globalConfigGroup.getCoordinateSystem(), TransformationFactory.WGS84));
+                    kmlWriter.setIterationNumber(event.getIteration());
+                    kmlWriter.writeFile(filename);
+                } else if (this.config.getOutputFormat().contains("kml") ||
                         this.config.getOutputFormat().contains("all")) {
                     String filename = controlerIO.getIterationFilename(event.getIteration(), "countscompare.kmz");
                     CountSimComparisonKMLWriter kmlWriter = new CountSimComparisonKMLWriter(
@@ -150,6 +159,10 @@ class CountsControlerListener implements StartupListener, IterationEndsListener
                     CountSimComparisonTableWriter ctw = new CountSimComparisonTableWriter(cca.getComparison(), Locale.ENGLISH);
                     ctw.writeFile(filename);
                 }
+                if (this.config.getOutputFormat().contains("csv")) {
+                    String filename = controlerIO.getIterationFilename(event.getIteration(), "countscompare.csv.gz");
+                    new CountSimComparisonCsvStreamWriter(cca.getComparison()).writeFile(filename);
+                }
                 if (this.config.getOutputFormat().contains("xml") ||
                         this.config.getOutputFormat().contains("all")) {
                     String filename = controlerIO.getIterationFilename(event.getIteration(), "simulatedCounts.xml.gz");
@@ -189,39 +202,22 @@ class CountsControlerListener implements StartupListener, IterationEndsListener
 
 	private void addVolumes(final VolumesAnalyzer volumes) {
 		this.iterationsUsed++;
-		for (Map.Entry<Id<Link>, double[]> e : this.linkStats.entrySet()) {
+		for (Map.Entry<Id<Link>, Integer> e : this.countIndices.entrySet()) {
 			Id<Link> linkId = e.getKey();
-			double[] volumesPerHour = e.getValue(); 
-			double[] newVolume = getVolumesPerHourForLink(volumes, linkId); 
-			for (int i = 0; i < 24; i++) {
-				volumesPerHour[i] += newVolume[i];
-			}
-		}
-	}
-	
-	private double[] getVolumesPerHourForLink(final VolumesAnalyzer volumes, final Id<Link> linkId) {
-		if (this.config.isFilterModes()) {
-			double[] newVolume = new double[24];
-			for (String mode : this.analyzedModes) {
-				double[] volumesForMode = volumes.getVolumesPerHourForLink(linkId, mode);
-				if (volumesForMode == null) continue;
-				for (int i = 0; i < 24; i++) {
-					newVolume[i] += volumesForMode[i];
+			int offset = 24 * e.getValue();
+			if (this.config.isFilterModes()) {
+				for (String mode : this.analyzedModes) {
+					volumes.addVolumesPerHourForLink(linkId, mode, this.linkStats, offset);
 				}
+			} else {
+				volumes.addVolumesPerHourForLink(linkId, this.linkStats, offset);
 			}
-			return newVolume;
-		} else {
-			return volumes.getVolumesPerHourForLink(linkId);
 		}
 	}
 	
 	private void reset() {
 		this.iterationsUsed = 0;
-		for (double[] hours : this.linkStats.values()) {
-			for (int i = 0; i < hours.length; i++) {
-				hours[i] = 0.0;
-			}
-		}
+		Arrays.fill(this.linkStats, 0.0);
 	}
 
 }
@@ -0,0 +1,156 @@
+/* *********************************************************************** *
+ * project: org.matsim.*
+ * CountSimComparisonCsvStreamWriter.java
+ *                                                                         *
+ * *********************************************************************** *
+ *                                                                         *
+ * copyright       : (C) 2019 by the members listed in the COPYING,        *
+ *                   LICENSE and WARRANTY file.                            *
+ * email           : info at matsim dot org                                *
+ *                                                                         *
+ * *********************************************************************** *
+ *                                                                         *
+ *   This program is free software; you can redistribute it and/or modify  *
+ *   it under the terms of the GNU General Public License as published by  *
+ *   the Free Software Foundation; either version 2 of the License, or     *
+ *   (at your option) any later version.                                   *
+ *   See also COPYING, LICENSE and WARRANTY file                           *
+ *                                                                         *
+ * *********************************************************************** */
+
+package org.matsim.counts.algorithms;
+
+import java.io.BufferedWriter;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.text.DecimalFormat;
+import java.text.DecimalFormatSymbols;
+import java.text.NumberFormat;
+import java.util.List;
+import java.util.Locale;
+
+import org.apache.log4j.Logger;
+import org.matsim.api.core.v01.Id;
+import org.matsim.core.utils.io.IOUtils;
+import org.matsim.counts.CountSimComparison;
+
+/**
+ * Writes the same columns as the {@link CountSimComparisonTableWriter} as comma-separated file, together with the
+ * daily sums of the volumes per count station.  The rows are written while iterating over the comparisons once, so
+ * that no views or aggregates of all count stations are built in memory.  The daily sums rely on the comparisons of
+ * one count station being consecutive, as produced by the {@link CountsComparisonAlgorithm}.
+ * <p></p>
+ * Two files are written: <code>filename</code> with one row per count station and hour, and the same file name with
+ * <code>AWTV</code> inserted before the extension with one row per count station.  File names ending with
+ * <code>.gz</code> are compressed.
+ */
+public final class CountSimComparisonCsvStreamWriter {
+
+	private static final Logger log = Logger.getLogger(CountSimComparisonCsvStreamWriter.class);
+
+	private static final String SEPARATOR = ",";
+
+	private final List<CountSimComparison> countSimComparisons;
+	private final NumberFormat numberFormat = new DecimalFormat("#.############", DecimalFormatSymbols.getInstance(Locale.ENGLISH));
+
+	public CountSimComparisonCsvStreamWriter(final List<CountSimComparison> countSimComparisons) {
+		this.countSimComparisons = countSimComparisons;
+		this.numberFormat.setGroupingUsed(false);
+	}
+
+	public void writeFile(final String filename) {
+		String awtvFilename = getAwtvFilename(filename);
+		log.info("Writing CountsSimComparison to " + filename + " and " + awtvFilename);
+		try (BufferedWriter out = IOUtils.getBufferedWriter(filename);
+				BufferedWriter awtvOut = IOUtils.getBufferedWriter(awtvFilename)) {
+			out.write("linkId,countStationId,hour,simVolume,countVolume,relativeError,normalizedRelativeError,geh");
+			out.newLine();
+			awtvOut.write("linkId,countStationId,simVolume,countVolume,normalizedRelativeError");
+			awtvOut.newLine();
+
+			Id<?> currentId = null;
+			String currentCsId = null;
+			double simSum = 0;
+			double countSum = 0;
+			for (CountSimComparison csc : this.countSimComparisons) {
+				if (!csc.getId().equals(currentId)) {
+					if (currentId != null) {
+						writeDailySums(awtvOut, currentId, currentCsId, simSum, countSum);
+					}
+					currentId = csc.getId();
+					currentCsId = csc.getCsId();
+					simSum = 0;
+					countSum = 0;
+				}
+				simSum += csc.getSimulationValue();
+				countSum += csc.getCountValue();
+
+				out.write(csc.getId().toString());
+				out.write(SEPARATOR);
+				out.write(csvString(csc.getCsId()));
+				out.write(SEPARATOR);
+				out.write(Integer.toString(csc.getHour()));
+				out.write(SEPARATOR);
+				out.write(this.numberFormat.format(csc.getSimulationValue()));
+				out.write(SEPARATOR);
+				out.write(this.numberFormat.format(csc.getCountValue()));
+				out.write(SEPARATOR);
+				out.write(this.numberFormat.format(csc.calculateRelativeError()));
+				out.write(SEPARATOR);
+				out.write(this.numberFormat.format(csc.calculateNormalizedRelativeError()));
+				out.write(SEPARATOR);
+				out.write(this.numberFormat.format(csc.calculateGEHValue()));
+				out.newLine();
+			}
+			if (currentId != null) {
+				writeDailySums(awtvOut, currentId, currentCsId, simSum, countSum);
+			}
+		} catch (IOException e) {
+			throw new UncheckedIOException(e);
+		}
+	}
+
+	private void writeDailySums(final BufferedWriter out, final Id<?> id, final String csId, final double simSum,
+			final double countSum) throws IOException {
+		double max = Math.max(simSum, countSum);
+		double normalizedRelativeError = max == 0.0 ? 0.0 : Math.abs(simSum - countSum) / max;
+		out.write(id.toString());
+		out.write(SEPARATOR);
+		out.write(csvString(csId));
+		out.write(SEPARATOR);
+		out.write(this.numberFormat.format(simSum));
+		out.write(SEPARATOR);
+		out.write(this.numberFormat.format(countSum));
+		out.write(SEPARATOR);
+		out.write(this.numberFormat.format(normalizedRelativeError));
+		out.newLine();
+	}
+
+	/**
+	 * the labels of count stations are free text, so they are quoted if necessary
+	 */
+	private static String csvString(final String str) {
+		if (str == null) {
+			return "";
+		}
+		if (str.indexOf(',') < 0 && str.indexOf('"') < 0 && str.indexOf('\n') < 0) {
+			return str;
+		}
+		return '"' + str.replace("\"", "\"\"") + '"';
+	}
+
+	private static String getAwtvFilename(final String filename) {
+		String base = filename;
+		String compression = "";
+		if (base.endsWith(".gz")) {
+			compression = ".gz";
+			base = base.substring(0, base.length() - 3);
+		}
+		int dot = base.lastIndexOf('.');
+		if (dot > base.lastIndexOf('/') && dot >= 0) {
+			return base.substring(0, dot) + "AWTV" + base.substring(dot) + compression;
+		}
+		return base + "AWTV" + compression;
+	}
+
+}
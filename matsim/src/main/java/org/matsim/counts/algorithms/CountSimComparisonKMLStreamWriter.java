@@ -0,0 +1,226 @@
+/* *********************************************************************** *
+ * project: org.matsim.*
+ * CountSimComparisonKMLStreamWriter.java
+ *                                                                         *
+ * *********************************************************************** *
+ *                                                                         *
+ * copyright       : (C) 2019 by the members listed in the COPYING,        *
+ *                   LICENSE and WARRANTY file.                            *
+ * email           : info at matsim dot org                                *
+ *                                                                         *
+ * *********************************************************************** *
+ *                                                                         *
+ *   This program is free software; you can redistribute it and/or modify  *
+ *   it under the terms of the GNU General Public License as published by  *
+ *   the Free Software Foundation; either version 2 of the License, or     *
+ *   (at your option) any later version.                                   *
+ *   See also COPYING, LICENSE and WARRANTY file                           *
+ *                                                                         *
+ * *********************************************************************** */
+
+package org.matsim.counts.algorithms;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.io.Writer;
+import java.text.DecimalFormat;
+import java.text.NumberFormat;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import org.apache.log4j.Logger;
+import org.matsim.api.core.v01.Coord;
+import org.matsim.api.core.v01.Id;
+import org.matsim.api.core.v01.network.Link;
+import org.matsim.api.core.v01.network.Network;
+import org.matsim.core.gbl.MatsimResource;
+import org.matsim.core.utils.geometry.CoordinateTransformation;
+import org.matsim.core.utils.misc.Time;
+import org.matsim.counts.CountSimComparison;
+import org.matsim.vis.kml.KMZWriter;
+
+/**
+ * Writes the same hourly placemarks (relative error, normalized relative error, GEH) as the
+ * {@link CountSimComparisonKMLWriter}, but streams them directly into the kmz instead of building the kml document
+ * in memory, and does not create the graphs per count station.  This keeps the time and memory needed independent
+ * of the number of count stations, which matters for some 10'000 count stations.
+ */
+public final class CountSimComparisonKMLStreamWriter extends CountSimComparisonWriter {
+
+	private static final Logger log = Logger.getLogger(CountSimComparisonKMLStreamWriter.class);
+
+	private static final String CIRCLEICON = "icons/circle.png";
+	private static final String CROSSICON = "icons/plus.png";
+	private static final String MINUSICON = "icons/minus.png";
+
+	/** style name prefix and kml color (aabbggrr) */
+	private static final String[] COLORS = {"red", "ff0f0fbe", "yellow", "ff14e6e6", "green", "ff14dc0a", "grey", "ff424242"};
+
+	private final NumberFormat nf = new DecimalFormat("#.#");
+	private final Network network;
+	private final CoordinateTransformation coordTransform;
+	private final Map<Id<?>, String> coordinates = new HashMap<>();
+
+	public CountSimComparisonKMLStreamWriter(final List<CountSimComparison> countSimCompList, final Network network,
+			final CoordinateTransformation coordTransform) {
+		super(countSimCompList);
+		this.network = network;
+		this.coordTransform = coordTransform;
+	}
+
+	@Override
+	public void writeFile(final String filename) {
+		log.info("Writing google earth file to " + filename);
+		KMZWriter kmzWriter = new KMZWriter(filename);
+		try {
+			kmzWriter.addNonKMLFile(MatsimResource.getAsInputStream("icons/circle.png"), CIRCLEICON);
+			kmzWriter.addNonKMLFile(MatsimResource.getAsInputStream("icons/plus.png"), CROSSICON);
+			kmzWriter.addNonKMLFile(MatsimResource.getAsInputStream("icons/minus.png"), MINUSICON);
+			kmzWriter.addNonKMLFile(MatsimResource.getAsInputStream("countsKml/countsLegend240x300.png"), "countsLegend.png");
+			kmzWriter.addNonKMLFile(MatsimResource.getAsInputStream("countsKml/countsLegendNormalized.png"), "countsLegendNormalized.png");
+			kmzWriter.addNonKMLFile(MatsimResource.getAsInputStream("countsKml/countsLegendGEH.png"), "countsLegendGEH.png");
+
+			Writer out = kmzWriter.startMainKml();
+			out.write("<?xml version=\"1.0\" encoding=\"UTF-8\"?>\n");
+			out.write("<kml xmlns=\"http://www.opengis.net/kml/2.2\">\n<Document>\n");
+			writeStyles(out);
+			out.write("<Folder>\n<name>Comparison, Iteration " + this.iterationNumber + "</name>\n");
+			writeLegend(out, "Legend", "countsLegend.png", true);
+			writeLegend(out, "Legend Normalized", "countsLegendNormalized.png", false);
+			writeLegend(out, "Legend GEH", "countsLegendGEH.png", false);
+			writeFolder(out, "Relative Values", true, Type.RELATIVE);
+			writeFolder(out, "Normalized Relative Values", false, Type.NORMALIZED);
+			writeFolder(out, "GEH Values", false, Type.GEH);
+			out.write("</Folder>\n</Document>\n</kml>\n");
+			out.flush();
+		} catch (IOException e) {
+			throw new UncheckedIOException(e);
+		} finally {
+			kmzWriter.close();
+		}
+		log.info("DONE with writing kml file.");
+	}
+
+	private enum Type { RELATIVE, NORMALIZED, GEH }
+
+	private static void writeStyles(final Writer out) throws IOException {
+		for (int c = 0; c < COLORS.length; c += 2) {
+			writeStyle(out, COLORS[c] + "CircleStyle", COLORS[c + 1], CIRCLEICON);
+			writeStyle(out, COLORS[c] + "CrossStyle", COLORS[c + 1], CROSSICON);
+			writeStyle(out, COLORS[c] + "MinusStyle", COLORS[c + 1], MINUSICON);
+		}
+	}
+
+	private static void writeStyle(final Writer out, final String id, final String color, final String icon) throws IOException {
+		out.write("<Style id=\"" + id + "\"><IconStyle><color>" + color + "</color><scale>0.5</scale><Icon><href>" + icon
+				+ "</href></Icon></IconStyle></Style>\n");
+	}
+
+	private static void writeLegend(final Writer out, final String name, final String image, final boolean visible) throws IOException {
+		out.write("<ScreenOverlay><name>" + name + "</name><visibility>" + (visible ? 1 : 0) + "</visibility><Icon><href>./" + image
+				+ "</href></Icon><overlayXY x=\"0.0\" y=\"0.0\" xunits=\"fraction\" yunits=\"fraction\"/>"
+				+ "<screenXY x=\"0.02\" y=\"0.07\" xunits=\"fraction\" yunits=\"fraction\"/></ScreenOverlay>\n");
+	}
+
+	private void writeFolder(final Writer out, final String name, final boolean visible, final Type type) throws IOException {
+		out.write("<Folder>\n<name>" + name + "</name><visibility>" + (visible ? 1 : 0) + "</visibility>\n");
+		for (int h = 1; h < 25; h++) {
+			out.write("<Folder><name>Traffic from " + twoDigits(h - 1) + " to " + twoDigits(h) + " o'clock</name>");
+			out.write("<visibility>" + (visible ? 1 : 0) + "</visibility>");
+			out.write("<TimeSpan><begin>1999-01-01T" + Time.writeTime((h - 1) * 3600) + "</begin><end>1999-01-01T"
+					+ Time.writeTime(h * 3600) + "</end></TimeSpan>\n");
+			for (CountSimComparison csc : this.countComparisonFilter.getCountsForHour(h)) {
+				writePlacemark(out, csc, visible, type);
+			}
+			out.write("</Folder>\n");
+		}
+		out.write("</Folder>\n");
+	}
+
+	private void writePlacemark(final Writer out, final CountSimComparison csc, final boolean visible, final Type type) throws IOException {
+		double relativeError = csc.calculateRelativeError();
+		double normalizedRelativeError = csc.calculateNormalizedRelativeError();
+		double gehValue = csc.calculateGEHValue();
+		out.write("<Placemark><visibility>");
+		out.write(visible ? "1" : "0");
+		out.write("</visibility><description><![CDATA[");
+		if (csc.getCsId() != null) {
+			out.write("<h2>Count Station: " + csc.getCsId() + "</h2>");
+		}
+		out.write("<h2>Link: " + csc.getId() + "</h2>");
+		out.write("<h3>Details from " + twoDigits(csc.getHour() - 1) + " o'clock to " + twoDigits(csc.getHour()) + " o'clock</h3>");
+		out.write("<p>Count Value: " + csc.getCountValue() + "</p>");
+		out.write("<p>MATSim Value: " + csc.getSimulationValue() + "</p>");
+		out.write("<p>Relative Error: " + this.nf.format(relativeError * 100) + "%</p>");
+		out.write("<p>Normalized Relative Error: " + this.nf.format(normalizedRelativeError * 100) + "%</p>");
+		out.write("<p>GEH: " + gehValue + "</p>");
+		out.write("]]></description><styleUrl>#");
+		out.write(getStyle(csc, normalizedRelativeError, gehValue, type));
+		out.write("</styleUrl><Point><coordinates>");
+		out.write(getCoordinates(csc.getId()));
+		out.write("</coordinates></Point></Placemark>\n");
+	}
+
+	/**
+	 * Same classification as in {@link CountSimComparisonKMLWriter}.
+	 */
+	private static String getStyle(final CountSimComparison csc, final double normalizedRelativeError, final double gehValue, final Type type) {
+		double sim = csc.getSimulationValue();
+		double count = csc.getCountValue();
+		switch (type) {
+		case RELATIVE:
+			if (sim > count) {
+				if (sim < count * 1.5) return "greenCrossStyle";
+				if (sim < count * 2) return "yellowCrossStyle";
+				return "redCrossStyle";
+			}
+			if (sim > count * 0.75) return "greenMinusStyle";
+			if (sim > count * 0.5) return "yellowMinusStyle";
+			return "redMinusStyle";
+		case NORMALIZED:
+			if (normalizedRelativeError <= 0.10) return "greenCircleStyle";
+			String symbol = sim > count ? "CrossStyle" : "MinusStyle";
+			if (normalizedRelativeError <= 0.25) return "green" + symbol;
+			if (normalizedRelativeError <= 0.50) return "yellow" + symbol;
+			if (normalizedRelativeError <= 1.00) return "red" + symbol;
+			return "greyCircleStyle";
+		case GEH:
+			if (gehValue < 5) return "greenCircleStyle";
+			if (gehValue < 10) return "yellowCircleStyle";
+			if (gehValue > 10) return "redCircleStyle";
+			return "greyCircleStyle";
+		default:
+			throw new IllegalArgumentException(type.toString());
+		}
+	}
+
+	private String getCoordinates(final Id<?> id) {
+		String coordinates = this.coordinates.get(id);
+		if (coordinates == null) {
+			Link link = this.network.getLinks().get(Id.create(id, Link.class));
+			Coord coord = this.coordTransform.transform(calculatePlacemarkPosition(link));
+			coordinates = coord.getX() + "," + coord.getY() + ",0.0";
+			this.coordinates.put(id, coordinates);
+		}
+		return coordinates;
+	}
+
+	/**
+	 * 40 % of the link length away from the from node, as in {@link CountSimComparisonKMLWriter}.
+	 */
+	private static Coord calculatePlacemarkPosition(final Link l) {
+		Coord coordFrom = l.getFromNode().getCoord();
+		Coord coordTo = l.getToNode().getCoord();
+		double xDiff = coordTo.getX() - coordFrom.getX();
+		double yDiff = coordTo.getY() - coordFrom.getY();
+		double length = Math.sqrt((xDiff*xDiff) + (yDiff*yDiff));
+		double scale = l.getLength() * 0.4;
+		return new Coord(coordFrom.getX() + (xDiff * scale / length), coordFrom.getY() + (yDiff * scale / length));
+	}
+
+	private static String twoDigits(final int hour) {
+		return hour < 10 ? "0" + hour : Integer.toString(hour);
+	}
+
+}
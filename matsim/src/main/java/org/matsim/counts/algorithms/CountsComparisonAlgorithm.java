@@ -23,6 +23,10 @@ package org.matsim.counts.algorithms;
 import java.util.ArrayList;
 import java.util.List;
 import java.util.Map;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
 
 import org.apache.log4j.Logger;
 import org.matsim.analysis.VolumesAnalyzer;
@@ -75,6 +79,8 @@ public class CountsComparisonAlgorithm {
 
 	private double countsScaleFactor;
 
+	private int numberOfThreads = 1;
+
 	private final static Logger log = Logger.getLogger(CountsComparisonAlgorithm.class);
 
 	public CountsComparisonAlgorithm(final VolumesAnalyzer volumes, final Counts<Link> counts, final Network network, final double countsScaleFactor) {
@@ -120,7 +126,39 @@ public class CountsComparisonAlgorithm {
 	 * countAttribute Attribute of this class.
 	 */
 	private void compare() {
-		for (Count<Link> count : this.counts.getCounts().values()) {
+		List<Count<Link>> allCounts = new ArrayList<>(this.counts.getCounts().values());
+		if (this.numberOfThreads <= 1 || allCounts.size() < 2 * this.numberOfThreads) {
+			compare(allCounts, this.result);
+			return;
+		}
+		// every chunk is compared into its own list; the lists are concatenated in the order of the chunks so that the
+		// result is the same as with a single thread
+		int chunkSize = allCounts.size() / (4 * this.numberOfThreads) + 1;
+		ExecutorService executor = Executors.newFixedThreadPool(this.numberOfThreads);
+		try {
+			List<Future<List<CountSimComparison>>> futures = new ArrayList<>();
+			for (int start = 0; start < allCounts.size(); start += chunkSize) {
+				List<Count<Link>> chunk = allCounts.subList(start, Math.min(start + chunkSize, allCounts.size()));
+				futures.add(executor.submit(() -> {
+					List<CountSimComparison> chunkResult = new ArrayList<>(chunk.size() * 24);
+					compare(chunk, chunkResult);
+					return chunkResult;
+				}));
+			}
+			for (Future<List<CountSimComparison>> future : futures) {
+				this.result.addAll(future.get());
+			}
+		} catch (InterruptedException e) {
+			throw new RuntimeException(e);
+		} catch (ExecutionException e) {
+			throw new RuntimeException(e.getCause());
+		} finally {
+			executor.shutdown();
+		}
+	}
+
+	private void compare(final List<Count<Link>> countsToCompare, final List<CountSimComparison> comparisons) {
+		for (Count<Link> count : countsToCompare) {
 			if (!distanceFilter.isInRange(count)) {
 				continue;
 			}
@@ -135,7 +173,7 @@ public class CountsComparisonAlgorithm {
 					double countValue = volume.getValue();
 					double simValue=volumes[hour-1];
 					simValue *= this.countsScaleFactor;
-					this.result.add(new CountSimComparisonImpl(count.getId(), count.getCsLabel(), hour, countValue, simValue));
+					comparisons.add(new CountSimComparisonImpl(count.getId(), count.getCsLabel(), hour, countValue, simValue));
 				}
 			}
 		}
@@ -196,5 +234,13 @@ public class CountsComparisonAlgorithm {
 	public void setCountsScaleFactor(final double countsScaleFactor) {
 		this.countsScaleFactor = countsScaleFactor;
 	}
+
+	/**
+	 * Sets the number of threads used to compare the count stations.  The {@link VolumesForId} and the
+	 * {@link DistanceFilter} must be safe to be called concurrently if more than one thread is used.
+	 */
+	public void setNumberOfThreads(final int numberOfThreads) {
+		this.numberOfThreads = numberOfThreads;
+	}
 	
 }
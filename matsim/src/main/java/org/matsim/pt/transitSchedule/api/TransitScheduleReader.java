@@ -49,6 +49,8 @@ public class TransitScheduleReader implements MatsimReader {
 	private final String externalInputCRS;
 	private final String targetCRS;
 
+	private boolean usingFastParser = false;
+
 	public TransitScheduleReader(
 	        final String targetCRS,
 			final Scenario scenario) {
@@ -68,17 +70,30 @@ public class TransitScheduleReader implements MatsimReader {
 		this(null, null, scenario);
 	}
 
+	/**
+	 * @see MatsimXmlParser#setUsingFastParser(boolean)
+	 */
+	public void setUsingFastParser(final boolean usingFastParser) {
+		this.usingFastParser = usingFastParser;
+	}
+
 	@Override
 	public void readFile(final String filename) throws UncheckedIOException {
-		new XmlScheduleReader(externalInputCRS, targetCRS, this.scenario).readFile(filename);
+		createXmlScheduleReader().readFile(filename);
 	}
 	@Override
 	public void readURL( final URL url ) throws UncheckedIOException {
-		new XmlScheduleReader(externalInputCRS, targetCRS, this.scenario).parse(url);
+		createXmlScheduleReader().parse(url);
 	}
 
 	public void readStream(final InputStream stream) throws UncheckedIOException {
-		new XmlScheduleReader(externalInputCRS, targetCRS, this.scenario).parse(stream);
+		createXmlScheduleReader().parse(stream);
+	}
+
+	private XmlScheduleReader createXmlScheduleReader() {
+		XmlScheduleReader reader = new XmlScheduleReader(externalInputCRS, targetCRS, this.scenario);
+		reader.setUsingFastParser(this.usingFastParser);
+		return reader;
 	}
 
 	private static class XmlScheduleReader extends MatsimXmlParser {
@@ -0,0 +1,424 @@
+/* *********************************************************************** *
+ * project: org.matsim.*
+ * ColumnarObjectAttributes.java
+ *                                                                         *
+ * *********************************************************************** *
+ *                                                                         *
+ * copyright       : (C) 2019 by the members listed in the COPYING,        *
+ *                   LICENSE and WARRANTY file.                            *
+ * email           : info at matsim dot org                                *
+ *                                                                         *
+ * *********************************************************************** *
+ *                                                                         *
+ *   This program is free software; you can redistribute it and/or modify  *
+ *   it under the terms of the GNU General Public License as published by  *
+ *   the Free Software Foundation; either version 2 of the License, or     *
+ *   (at your option) any later version.                                   *
+ *   See also COPYING, LICENSE and WARRANTY file                           *
+ *                                                                         *
+ * *********************************************************************** */
+
+package org.matsim.utils.objectattributes;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.BitSet;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+
+/**
+ * A variant of {@link ObjectAttributes} that stores the attributes column-wise: every object gets an index when its
+ * first attribute is set, and every attribute name is stored in one column indexed by this object index.  Columns
+ * containing only {@link Double}s or {@link Integer}s are backed by primitive arrays, columns containing only
+ * {@link String}s are dictionary encoded (which is very compact for attributes like the subpopulation, which only
+ * have a few distinct values).  As soon as a column gets a value of another type, it is converted to a column of
+ * plain objects.
+ * <p></p>
+ * Compared to {@link ObjectAttributes}, this needs a fraction of the memory if many objects have the same few
+ * attributes.  A lookup by object id and attribute name is one hash lookup for each, followed by an array read.
+ * Callers reading the same attributes of many objects can resolve both to indices once (see
+ * {@link #getObjectIndex(String)} and {@link #getAttributeIndex(String)}) and then read the values by index without
+ * any hash lookup.  Setting an attribute to <code>null</code> removes it.  Object indices of objects removed with
+ * {@link #removeAllAttributes(String)} are not re-used; this class is meant for data that is mostly read.
+ * <p></p>
+ * <em>This class is not thread-safe.</em>
+ */
+public final class ColumnarObjectAttributes extends ObjectAttributes {
+
+	private final Map<String, Integer> objectIndices = new HashMap<>();
+	/** object ids by index, <code>null</code> for removed objects */
+	private final List<String> objectIds = new ArrayList<>();
+	private final Map<String, Integer> attributeIndices = new LinkedHashMap<>();
+	/** columns by attribute index */
+	private final List<Column> columns = new ArrayList<>();
+
+	public ColumnarObjectAttributes() {
+		// the attributes are stored in the columns, not in the map of the super class
+		super(Collections.<String, Map<String, Object>>emptyMap());
+	}
+
+	@Override
+	public Object putAttribute(final String objectId, final String attribute, final Object value) {
+		if (value == null) {
+			return removeAttribute(objectId, attribute);
+		}
+		int index = getOrCreateObjectIndex(objectId);
+		Integer attributeIndex = this.attributeIndices.get(attribute);
+		Column column;
+		if (attributeIndex == null) {
+			column = createColumn(value);
+			this.attributeIndices.put(attribute, this.columns.size());
+			this.columns.add(column);
+		} else {
+			column = this.columns.get(attributeIndex);
+			if (!column.accepts(value)) {
+				column = new ObjectColumn(column);
+				this.columns.set(attributeIndex, column);
+			}
+		}
+		Object oldValue = column.get(index);
+		column.set(index, value);
+		return oldValue;
+	}
+
+	@Override
+	public Object getAttribute(final String objectId, final String attribute) {
+		Integer index = this.objectIndices.get(objectId);
+		if (index == null) {
+			return null;
+		}
+		Column column = getColumn(attribute);
+		return column == null ? null : column.get(index);
+	}
+
+	@Override
+	public Object removeAttribute(final String objectId, final String attribute) {
+		Integer index = this.objectIndices.get(objectId);
+		if (index == null) {
+			return null;
+		}
+		Column column = getColumn(attribute);
+		if (column == null) {
+			return null;
+		}
+		Object oldValue = column.get(index);
+		column.remove(index);
+		return oldValue;
+	}
+
+	@Override
+	public void removeAllAttributes(final String objectId) {
+		Integer index = this.objectIndices.remove(objectId);
+		if (index != null) {
+			for (Column column : this.columns) {
+				column.remove(index);
+			}
+			this.objectIds.set(index, null);
+		}
+	}
+
+	@Override
+	public void clear() {
+		this.objectIndices.clear();
+		this.objectIds.clear();
+		this.attributeIndices.clear();
+		this.columns.clear();
+	}
+
+	/**
+	 * @return the internal index of the given object, or -1 if the object has no attributes.
+	 */
+	public int getObjectIndex(final String objectId) {
+		Integer index = this.objectIndices.get(objectId);
+		return index == null ? -1 : index;
+	}
+
+	/**
+	 * @return the internal index of the given attribute, or -1 if no object has (or had) this attribute.  The index
+	 * stays the same until {@link #clear()} is called.
+	 */
+	public int getAttributeIndex(final String attribute) {
+		Integer index = this.attributeIndices.get(attribute);
+		return index == null ? -1 : index;
+	}
+
+	/**
+	 * @return the value of a String attribute of the object with the given index (see {@link #getObjectIndex(String)}
+	 * and {@link #getAttributeIndex(String)}), or <code>null</code> if the object does not have this attribute.
+	 * @throws ClassCastException if the attribute is not of type String
+	 */
+	public String getStringAttribute(final int objectIndex, final int attributeIndex) {
+		if (objectIndex < 0 || attributeIndex < 0) {
+			return null;
+		}
+		Column column = this.columns.get(attributeIndex);
+		if (column instanceof StringColumn) {
+			return ((StringColumn) column).getString(objectIndex);
+		}
+		return (String) column.get(objectIndex);
+	}
+
+	/**
+	 * Convenience method for <code>getStringAttribute(objectIndex, getAttributeIndex(attribute))</code>.
+	 */
+	public String getStringAttribute(final int objectIndex, final String attribute) {
+		return getStringAttribute(objectIndex, getAttributeIndex(attribute));
+	}
+
+	/**
+	 * Convenience method for <code>getStringAttribute(getObjectIndex(objectId), getAttributeIndex(attribute))</code>.
+	 */
+	public String getStringAttribute(final String objectId, final String attribute) {
+		return getStringAttribute(getObjectIndex(objectId), getAttributeIndex(attribute));
+	}
+
+	/**
+	 * @return the value of a numeric attribute of the object with the given index (see {@link #getObjectIndex(String)}
+	 * and {@link #getAttributeIndex(String)}), or <code>defaultValue</code> if the object does not have this attribute.
+	 * Does not box the value if the attribute column only contains Doubles or only Integers.
+	 * @throws ClassCastException if the attribute is not numeric
+	 */
+	public double getDoubleAttribute(final int objectIndex, final int attributeIndex, final double defaultValue) {
+		if (objectIndex < 0 || attributeIndex < 0) {
+			return defaultValue;
+		}
+		Column column = this.columns.get(attributeIndex);
+		if (!column.isSet(objectIndex)) {
+			return defaultValue;
+		}
+		if (column instanceof DoubleColumn) {
+			return ((DoubleColumn) column).values[objectIndex];
+		}
+		if (column instanceof IntColumn) {
+			return ((IntColumn) column).values[objectIndex];
+		}
+		return ((Number) column.get(objectIndex)).doubleValue();
+	}
+
+	/**
+	 * Convenience method for <code>getDoubleAttribute(objectIndex, getAttributeIndex(attribute), defaultValue)</code>.
+	 */
+	public double getDoubleAttribute(final int objectIndex, final String attribute, final double defaultValue) {
+		return getDoubleAttribute(objectIndex, getAttributeIndex(attribute), defaultValue);
+	}
+
+	@Override
+	/*package*/ Collection<String> getObjectIds() {
+		List<String> ids = new ArrayList<>(this.objectIndices.size());
+		for (String id : this.objectIds) {
+			if (id != null) {
+				ids.add(id);
+			}
+		}
+		return Collections.unmodifiableList(ids);
+	}
+
+	@Override
+	/*package*/ Map<String, Object> getAllAttributes(final String objectId) {
+		Integer index = this.objectIndices.get(objectId);
+		if (index == null) {
+			return null;
+		}
+		Map<String, Object> map = new LinkedHashMap<>();
+		for (Map.Entry<String, Integer> e : this.attributeIndices.entrySet()) {
+			Object value = this.columns.get(e.getValue()).get(index);
+			if (value != null) {
+				map.put(e.getKey(), value);
+			}
+		}
+		return map;
+	}
+
+	@Override
+	public String toString() {
+		StringBuilder stb = new StringBuilder();
+		for (String objectId : getObjectIds()) {
+			stb.append("key=").append(objectId);
+			for (Map.Entry<String, Object> ee : getAllAttributes(objectId).entrySet()) {
+				stb.append("; subkey=").append(ee.getKey());
+				stb.append("; object=").append(ee.getValue().toString());
+			}
+			stb.append("\n");
+		}
+		return stb.toString();
+	}
+
+	private Column getColumn(final String attribute) {
+		Integer attributeIndex = this.attributeIndices.get(attribute);
+		return attributeIndex == null ? null : this.columns.get(attributeIndex);
+	}
+
+	private int getOrCreateObjectIndex(final String objectId) {
+		Integer index = this.objectIndices.get(objectId);
+		if (index == null) {
+			index = this.objectIds.size();
+			this.objectIds.add(objectId);
+			this.objectIndices.put(objectId, index);
+		}
+		return index;
+	}
+
+	private static Column createColumn(final Object value) {
+		if (value instanceof Double) {
+			return new DoubleColumn();
+		}
+		if (value instanceof Integer) {
+			return new IntColumn();
+		}
+		if (value instanceof String) {
+			return new StringColumn();
+		}
+		return new ObjectColumn();
+	}
+
+	private static int grow(final int length, final int index) {
+		return Math.max(index + 1, Math.max(16, length + (length >> 1)));
+	}
+
+	private static abstract class Column {
+		final BitSet present = new BitSet();
+
+		boolean isSet(final int index) {
+			return this.present.get(index);
+		}
+
+		/** @return the value at the given index, or <code>null</code> if not set */
+		abstract Object get(int index);
+
+		abstract boolean accepts(Object value);
+
+		abstract void set(int index, Object value);
+
+		void remove(final int index) {
+			this.present.clear(index);
+		}
+	}
+
+	private static final class DoubleColumn extends Column {
+		double[] values = new double[0];
+
+		@Override
+		Object get(final int index) {
+			return isSet(index) ? this.values[index] : null;
+		}
+
+		@Override
+		boolean accepts(final Object value) {
+			return value instanceof Double;
+		}
+
+		@Override
+		void set(final int index, final Object value) {
+			if (index >= this.values.length) {
+				this.values = Arrays.copyOf(this.values, grow(this.values.length, index));
+			}
+			this.values[index] = (Double) value;
+			this.present.set(index);
+		}
+	}
+
+	private static final class IntColumn extends Column {
+		int[] values = new int[0];
+
+		@Override
+		Object get(final int index) {
+			return isSet(index) ? this.values[index] : null;
+		}
+
+		@Override
+		boolean accepts(final Object value) {
+			return value instanceof Integer;
+		}
+
+		@Override
+		void set(final int index, final Object value) {
+			if (index >= this.values.length) {
+				this.values = Arrays.copyOf(this.values, grow(this.values.length, index));
+			}
+			this.values[index] = (Integer) value;
+			this.present.set(index);
+		}
+	}
+
+	private static final class StringColumn extends Column {
+		private int[] codes = new int[0];
+		private final List<String> dictionary = new ArrayList<>();
+		private final Map<String, Integer> dictionaryIndices = new HashMap<>();
+
+		String getString(final int index) {
+			return isSet(index) ? this.dictionary.get(this.codes[index]) : null;
+		}
+
+		@Override
+		Object get(final int index) {
+			return getString(index);
+		}
+
+		@Override
+		boolean accepts(final Object value) {
+			return value instanceof String;
+		}
+
+		@Override
+		void set(final int index, final Object value) {
+			if (index >= this.codes.length) {
+				this.codes = Arrays.copyOf(this.codes, grow(this.codes.length, index));
+			}
+			Integer code = this.dictionaryIndices.get(value);
+			if (code == null) {
+				code = this.dictionary.size();
+				this.dictionary.add((String) value);
+				this.dictionaryIndices.put((String) value, code);
+			}
+			this.codes[index] = code;
+			this.present.set(index);
+		}
+	}
+
+	private static final class ObjectColumn extends Column {
+		private Object[] values = new Object[0];
+
+		ObjectColumn() {
+		}
+
+		/** converts a typed column into a column of plain objects */
+		ObjectColumn(final Column column) {
+			for (int i = column.present.nextSetBit(0); i >= 0; i = column.present.nextSetBit(i + 1)) {
+				set(i, column.get(i));
+			}
+		}
+
+		@Override
+		Object get(final int index) {
+			return index < this.values.length ? this.values[index] : null;
+		}
+
+		@Override
+		boolean accepts(final Object value) {
+			return true;
+		}
+
+		@Override
+		void set(final int index, final Object value) {
+			if (index >= this.values.length) {
+				this.values = Arrays.copyOf(this.values, grow(this.values.length, index));
+			}
+			this.values[index] = Objects.requireNonNull(value);
+			this.present.set(index);
+		}
+
+		@Override
+		void remove(final int index) {
+			super.remove(index);
+			if (index < this.values.length) {
+				this.values[index] = null;
+			}
+		}
+	}
+
+}
@@ -19,6 +19,7 @@
 
 package org.matsim.utils.objectattributes;
 
+import java.util.Collection;
 import java.util.IdentityHashMap;
 import java.util.LinkedHashMap;
 import java.util.Map;
@@ -30,7 +31,8 @@ import org.matsim.core.api.internal.MatsimExtensionPoint;
  * A simple helper class to store arbitrary attributes (identified by Strings) for
  * arbitrary objects (identified by String-Ids). Note that this implementation uses
  * large amounts of memory for storing many attributes for many objects, it is not
- * heavily optimized.
+ * heavily optimized. See {@link ColumnarObjectAttributes} for a more compact
+ * alternative for large numbers of objects.
  * <p></p>
  * <em>This class is not thread-safe.</em>
  * <p></p>
@@ -43,7 +45,18 @@ import org.matsim.core.api.internal.MatsimExtensionPoint;
  */
 public class ObjectAttributes implements MatsimExtensionPoint {
 
-	/*package*/ Map<String, Map<String, Object>> attributes = new LinkedHashMap<String, Map<String, Object>>(1000);
+	/*package*/ final Map<String, Map<String, Object>> attributes;
+
+	public ObjectAttributes() {
+		this(new LinkedHashMap<String, Map<String, Object>>(1000));
+	}
+
+	/**
+	 * For subclasses which store the attributes differently, and thus do not need the map.
+	 */
+	/*package*/ ObjectAttributes(final Map<String, Map<String, Object>> attributes) {
+		this.attributes = attributes;
+	}
 	
 	@Override
 	public String toString() {
@@ -98,4 +111,19 @@ public class ObjectAttributes implements MatsimExtensionPoint {
 		this.attributes.clear();
 	}
 
+	/**
+	 * @return the ids of all objects that have (or had) attributes, in the order they were first added.
+	 */
+	/*package*/ Collection<String> getObjectIds() {
+		return this.attributes.keySet();
+	}
+
+	/**
+	 * @return the attributes of the given object, or <code>null</code> if the object is not known. Callers must
+	 * not modify the returned map.
+	 */
+	/*package*/ Map<String, Object> getAllAttributes(final String objectId) {
+		return this.attributes.get(objectId);
+	}
+
 }
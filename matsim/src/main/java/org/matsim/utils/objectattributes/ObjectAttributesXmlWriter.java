@@ -69,13 +69,13 @@ public class ObjectAttributesXmlWriter extends MatsimXmlWriter {
 		writeDoctype(TAG_OBJECT_ATTRIBUTES, "http://matsim.org/files/dtd/objectattributes_v1.dtd");
 		writeStartTag(TAG_OBJECT_ATTRIBUTES, null);
 		List<Tuple<String, String>> xmlAttributes = new LinkedList<Tuple<String, String>>();
-		for (Map.Entry<String, Map<String, Object>> entry : this.attributes.attributes.entrySet()) {
-			xmlAttributes.add(super.createTuple(ATTR_OBJECTID, entry.getKey()));
+		for (String objectId : this.attributes.getObjectIds()) {
+			xmlAttributes.add(super.createTuple(ATTR_OBJECTID, objectId));
 			writeStartTag(TAG_OBJECT, xmlAttributes);
 			xmlAttributes.clear();
 			// sort attributes by name
 			Map<String, Object> objAttributes = new TreeMap<String, Object>();
-			for (Map.Entry<String, Object> objAttribute : entry.getValue().entrySet()) {
+			for (Map.Entry<String, Object> objAttribute : this.attributes.getAllAttributes(objectId).entrySet()) {
 				objAttributes.put(objAttribute.getKey(), objAttribute.getValue());
 			}
 			// write attributes
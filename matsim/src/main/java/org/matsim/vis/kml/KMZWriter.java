@@ -26,6 +26,7 @@ import java.io.FileOutputStream;
 import java.io.IOException;
 import java.io.InputStream;
 import java.io.OutputStreamWriter;
+import java.io.Writer;
 import java.util.HashMap;
 import java.util.Map;
 import java.util.zip.ZipEntry;
@@ -147,6 +148,18 @@ public class KMZWriter implements MatsimSomeWriter {
 		writeKml("main.kml", kml);
 	}
 
+	/**
+	 * Starts the main kml and returns a writer to stream it into the file, instead of building the complete
+	 * KML-object in memory. No other file may be added until the main kml is complete. The returned writer must
+	 * not be closed; call {@link #close()} of this class instead.
+	 */
+	public Writer startMainKml() throws IOException {
+		ZipEntry ze = new ZipEntry("main.kml");
+		ze.setMethod(ZipEntry.DEFLATED);
+		this.zipOut.putNextEntry(ze);
+		return this.out;
+	}
+
 	/**
 	 * Closes this file for writing.
 	 */
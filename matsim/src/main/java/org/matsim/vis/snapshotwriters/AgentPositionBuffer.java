@@ -0,0 +1,114 @@
+/* *********************************************************************** *
+ * project: org.matsim.*
+ * AgentPositionBuffer.java
+ *                                                                         *
+ * *********************************************************************** *
+ *                                                                         *
+ * copyright       : (C) 2019 by the members listed in the COPYING,        *
+ *                   LICENSE and WARRANTY file.                            *
+ * email           : info at matsim dot org                                *
+ *                                                                         *
+ * *********************************************************************** *
+ *                                                                         *
+ *   This program is free software; you can redistribute it and/or modify  *
+ *   it under the terms of the GNU General Public License as published by  *
+ *   the Free Software Foundation; either version 2 of the License, or     *
+ *   (at your option) any later version.                                   *
+ *   See also COPYING, LICENSE and WARRANTY file                           *
+ *                                                                         *
+ * *********************************************************************** */
+
+package org.matsim.vis.snapshotwriters;
+
+import java.util.Arrays;
+
+import org.matsim.api.core.v01.Id;
+import org.matsim.api.core.v01.population.Person;
+import org.matsim.vis.snapshotwriters.AgentSnapshotInfo.AgentState;
+
+/**
+ * The positions of the agents of one snapshot, stored in arrays of primitives instead of one
+ * {@link AgentSnapshotInfo} object per agent.  The buffer is meant to be cleared and re-used
+ * for every snapshot, so that taking a snapshot does not create any objects once the arrays
+ * are large enough.
+ */
+public final class AgentPositionBuffer {
+
+	private static final AgentState[] STATES = AgentState.values();
+
+	private Id<Person>[] ids;
+	private double[] eastings;
+	private double[] northings;
+	private float[] colorValues;
+	private byte[] states;
+	private int size = 0;
+
+	public AgentPositionBuffer() {
+		this(1024);
+	}
+
+	@SuppressWarnings("unchecked")
+	public AgentPositionBuffer(int initialCapacity) {
+		int capacity = Math.max(initialCapacity, 16);
+		this.ids = new Id[capacity];
+		this.eastings = new double[capacity];
+		this.northings = new double[capacity];
+		this.colorValues = new float[capacity];
+		this.states = new byte[capacity];
+	}
+
+	public void add(Id<Person> id, double easting, double northing, double colorValueBetweenZeroAndOne, AgentState state) {
+		if (this.size == this.ids.length) {
+			int capacity = this.ids.length * 2;
+			this.ids = Arrays.copyOf(this.ids, capacity);
+			this.eastings = Arrays.copyOf(this.eastings, capacity);
+			this.northings = Arrays.copyOf(this.northings, capacity);
+			this.colorValues = Arrays.copyOf(this.colorValues, capacity);
+			this.states = Arrays.copyOf(this.states, capacity);
+		}
+		this.ids[this.size] = id;
+		this.eastings[this.size] = easting;
+		this.northings[this.size] = northing;
+		this.colorValues[this.size] = (float) colorValueBetweenZeroAndOne;
+		this.states[this.size] = (byte) state.ordinal();
+		this.size++;
+	}
+
+	public void add(AgentSnapshotInfo position) {
+		add(position.getId(), position.getEasting(), position.getNorthing(), position.getColorValueBetweenZeroAndOne(),
+				position.getAgentState());
+	}
+
+	/**
+	 * Removes all positions, but keeps the arrays for the next snapshot.
+	 */
+	public void clear() {
+		Arrays.fill(this.ids, 0, this.size, null);
+		this.size = 0;
+	}
+
+	public int size() {
+		return this.size;
+	}
+
+	public Id<Person> getId(int index) {
+		return this.ids[index];
+	}
+
+	public double getEasting(int index) {
+		return this.eastings[index];
+	}
+
+	public double getNorthing(int index) {
+		return this.northings[index];
+	}
+
+	public double getColorValueBetweenZeroAndOne(int index) {
+		return this.colorValues[index];
+	}
+
+	public AgentState getAgentState(int index) {
+		return STATES[this.states[index]];
+	}
+
+}
@@ -0,0 +1,111 @@
+/* *********************************************************************** *
+ * project: org.matsim.*
+ * BinarySnapshotReader.java
+ *                                                                         *
+ * *********************************************************************** *
+ *                                                                         *
+ * copyright       : (C) 2019 by the members listed in the COPYING,        *
+ *                   LICENSE and WARRANTY file.                            *
+ * email           : info at matsim dot org                                *
+ *                                                                         *
+ * *********************************************************************** *
+ *                                                                         *
+ *   This program is free software; you can redistribute it and/or modify  *
+ *   it under the terms of the GNU General Public License as published by  *
+ *   the Free Software Foundation; either version 2 of the License, or     *
+ *   (at your option) any later version.                                   *
+ *   See also COPYING, LICENSE and WARRANTY file                           *
+ *                                                                         *
+ * *********************************************************************** */
+
+package org.matsim.vis.snapshotwriters;
+
+import java.io.Closeable;
+import java.io.DataInputStream;
+import java.io.EOFException;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+
+import org.matsim.api.core.v01.Id;
+import org.matsim.api.core.v01.population.Person;
+import org.matsim.core.utils.io.IOUtils;
+import org.matsim.core.utils.io.UncheckedIOException;
+import org.matsim.vis.snapshotwriters.AgentSnapshotInfo.AgentState;
+
+/**
+ * Reads the snapshots written by the {@link BinarySnapshotWriter}, one after the other.
+ */
+public final class BinarySnapshotReader implements Closeable {
+
+	private static final AgentState[] STATES = AgentState.values();
+
+	private final DataInputStream in;
+	private final List<Id<Person>> ids = new ArrayList<>();
+	private double time = Double.NaN;
+
+	public BinarySnapshotReader(String filename) {
+		this.in = new DataInputStream(IOUtils.getInputStream(filename));
+		try {
+			if (this.in.readInt() != BinarySnapshotWriter.MAGIC) {
+				throw new RuntimeException(filename + " is not a binary snapshot file.");
+			}
+			int version = this.in.readInt();
+			if (version != BinarySnapshotWriter.VERSION) {
+				throw new RuntimeException("unsupported binary snapshot version " + version + " in " + filename
+						+ ", expected " + BinarySnapshotWriter.VERSION);
+			}
+		} catch (IOException e) {
+			throw new UncheckedIOException(e);
+		}
+	}
+
+	/**
+	 * Reads the next snapshot into the (cleared) buffer.
+	 *
+	 * @return <code>false</code> if there are no more snapshots
+	 */
+	public boolean readSnapshot(AgentPositionBuffer positions) {
+		positions.clear();
+		try {
+			try {
+				this.time = this.in.readDouble();
+			} catch (EOFException e) {
+				return false;
+			}
+			int newIds = this.in.readInt();
+			for (int i = 0; i < newIds; i++) {
+				this.ids.add(Id.createPersonId(this.in.readUTF()));
+			}
+			int size = this.in.readInt();
+			for (int i = 0; i < size; i++) {
+				Id<Person> id = this.ids.get(this.in.readInt());
+				double easting = this.in.readFloat();
+				double northing = this.in.readFloat();
+				AgentState state = STATES[this.in.readByte()];
+				double colorValue = this.in.readUnsignedByte() / 255.0;
+				positions.add(id, easting, northing, colorValue, state);
+			}
+			return true;
+		} catch (IOException e) {
+			throw new UncheckedIOException(e);
+		}
+	}
+
+	/**
+	 * @return the time of the snapshot read last
+	 */
+	public double getTime() {
+		return this.time;
+	}
+
+	@Override
+	public void close() {
+		try {
+			this.in.close();
+		} catch (IOException e) {
+			throw new UncheckedIOException(e);
+		}
+	}
+
+}
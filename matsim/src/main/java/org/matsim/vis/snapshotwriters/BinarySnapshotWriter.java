@@ -0,0 +1,139 @@
+/* *********************************************************************** *
+ * project: org.matsim.*
+ * BinarySnapshotWriter.java
+ *                                                                         *
+ * *********************************************************************** *
+ *                                                                         *
+ * copyright       : (C) 2019 by the members listed in the COPYING,        *
+ *                   LICENSE and WARRANTY file.                            *
+ * email           : info at matsim dot org                                *
+ *                                                                         *
+ * *********************************************************************** *
+ *                                                                         *
+ *   This program is free software; you can redistribute it and/or modify  *
+ *   it under the terms of the GNU General Public License as published by  *
+ *   the Free Software Foundation; either version 2 of the License, or     *
+ *   (at your option) any later version.                                   *
+ *   See also COPYING, LICENSE and WARRANTY file                           *
+ *                                                                         *
+ * *********************************************************************** */
+
+package org.matsim.vis.snapshotwriters;
+
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.Map;
+
+import org.matsim.api.core.v01.Id;
+import org.matsim.api.core.v01.population.Person;
+import org.matsim.core.utils.io.IOUtils;
+import org.matsim.core.utils.io.UncheckedIOException;
+
+/**
+ * Writes the snapshots into a compact binary file.
+ * <p></p>
+ * Layout of the file (all numbers big-endian):<ul>
+ * <li> header: magic number, format version
+ * <li> per snapshot: the time (double), the number of agent ids which appear for the first time (int) followed by
+ * these ids (modified UTF-8, numbered consecutively in the order of their first appearance), the number of
+ * positions (int) and per position: id index (int), easting and northing (float), agent state (byte) and the color
+ * value (byte, 0..255 for 0..1).
+ * </ul>
+ * Coordinates are stored as floats, which is precise to a few decimeters in typical projected coordinate systems.
+ *
+ * @see BinarySnapshotReader
+ */
+public final class BinarySnapshotWriter implements BufferedSnapshotWriter {
+
+	static final int MAGIC = 0x4d534e50; // "MSNP"
+	static final int VERSION = 1;
+
+	private final DataOutputStream out;
+	private final Map<Id<Person>, Integer> idIndices = new HashMap<>();
+	private int[] indices = new int[1024];
+
+	// for the SnapshotWriter methods
+	private final AgentPositionBuffer positions = new AgentPositionBuffer();
+	private double currentTime = -1;
+
+	public BinarySnapshotWriter(String filename) {
+		this.out = new DataOutputStream(IOUtils.getOutputStream(filename));
+		try {
+			this.out.writeInt(MAGIC);
+			this.out.writeInt(VERSION);
+		} catch (IOException e) {
+			throw new UncheckedIOException(e);
+		}
+	}
+
+	@Override
+	public void writeSnapshot(double time, AgentPositionBuffer positions) {
+		int size = positions.size();
+		if (this.indices.length < size) {
+			this.indices = Arrays.copyOf(this.indices, Math.max(size, 2 * this.indices.length));
+		}
+		try {
+			this.out.writeDouble(time);
+
+			// first the ids which were not written yet, so that a reader knows all ids of the positions
+			int firstNewIndex = this.idIndices.size();
+			for (int i = 0; i < size; i++) {
+				Id<Person> id = positions.getId(i);
+				Integer index = this.idIndices.get(id);
+				if (index == null) {
+					index = this.idIndices.size();
+					this.idIndices.put(id, index);
+				}
+				this.indices[i] = index;
+			}
+			this.out.writeInt(this.idIndices.size() - firstNewIndex);
+			for (int i = 0; i < size; i++) {
+				if (this.indices[i] >= firstNewIndex) {
+					this.out.writeUTF(positions.getId(i).toString());
+					firstNewIndex++;
+				}
+			}
+
+			this.out.writeInt(size);
+			for (int i = 0; i < size; i++) {
+				this.out.writeInt(this.indices[i]);
+				this.out.writeFloat((float) positions.getEasting(i));
+				this.out.writeFloat((float) positions.getNorthing(i));
+				this.out.writeByte(positions.getAgentState(i).ordinal());
+				this.out.writeByte((int) Math.round(255 * Math.max(0.0, Math.min(1.0, positions.getColorValueBetweenZeroAndOne(i)))));
+			}
+		} catch (IOException e) {
+			throw new UncheckedIOException(e);
+		}
+	}
+
+	@Override
+	public void beginSnapshot(double time) {
+		this.currentTime = time;
+		this.positions.clear();
+	}
+
+	@Override
+	public void addAgent(AgentSnapshotInfo position) {
+		this.positions.add(position);
+	}
+
+	@Override
+	public void endSnapshot() {
+		writeSnapshot(this.currentTime, this.positions);
+		this.positions.clear();
+		this.currentTime = -1;
+	}
+
+	@Override
+	public void finish() {
+		try {
+			this.out.close();
+		} catch (IOException e) {
+			throw new UncheckedIOException(e);
+		}
+	}
+
+}
@@ -0,0 +1,39 @@
+/* *********************************************************************** *
+ * project: org.matsim.*
+ * BufferedSnapshotWriter.java
+ *                                                                         *
+ * *********************************************************************** *
+ *                                                                         *
+ * copyright       : (C) 2019 by the members listed in the COPYING,        *
+ *                   LICENSE and WARRANTY file.                            *
+ * email           : info at matsim dot org                                *
+ *                                                                         *
+ * *********************************************************************** *
+ *                                                                         *
+ *   This program is free software; you can redistribute it and/or modify  *
+ *   it under the terms of the GNU General Public License as published by  *
+ *   the Free Software Foundation; either version 2 of the License, or     *
+ *   (at your option) any later version.                                   *
+ *   See also COPYING, LICENSE and WARRANTY file                           *
+ *                                                                         *
+ * *********************************************************************** */
+
+package org.matsim.vis.snapshotwriters;
+
+/**
+ * A {@link SnapshotWriter} which can write a whole snapshot from an {@link AgentPositionBuffer}.
+ * If all snapshot writers implement this interface, no {@link AgentSnapshotInfo} objects have
+ * to be created for the snapshots.
+ */
+public interface BufferedSnapshotWriter extends SnapshotWriter {
+
+	/**
+	 * Writes a snapshot containing all positions of the buffer.  The buffer is re-used after
+	 * the method returns, so the writer must not keep a reference to it.
+	 *
+	 * @param time The time of the snapshot.
+	 * @param positions The positions, ids, and states of the agents.
+	 */
+	public void writeSnapshot(double time, AgentPositionBuffer positions);
+
+}
@@ -38,6 +38,9 @@ import java.util.List;
 public class SnapshotWriterManager implements MobsimBeforeCleanupListener, MobsimAfterSimStepListener, MobsimInitializedListener {
 	
 	private final List<SnapshotWriter> snapshotWriters = new ArrayList<SnapshotWriter>();
+
+	/** re-used for all snapshots which go to {@link BufferedSnapshotWriter}s */
+	private final AgentPositionBuffer positionBuffer = new AgentPositionBuffer();
 	
 	/** time since last snapshot */
 	private double snapshotTime = 0.0;
@@ -92,20 +95,46 @@ public class SnapshotWriterManager implements MobsimBeforeCleanupListener, Mobsi
 	
 	private void doSnapshot(final double time, VisMobsim visMobsim) {
 		if (!this.snapshotWriters.isEmpty()) {
-			Collection<AgentSnapshotInfo> positions = new ArrayList<AgentSnapshotInfo>();
-			for (VisLink link : visMobsim.getVisNetwork().getVisLinks().values()) {
-				link.getVisData().addAgentSnapshotInfo(positions);
-			}
-			
 			// We do not put non-network agents in movies.
 			// Otherwise, we would add snapshots from visMobsim.getNonNetworkAgentSnapshots() here.
-			
+
+			boolean needsSnapshotInfos = false;
+			boolean needsPositionBuffer = false;
 			for (SnapshotWriter writer : this.snapshotWriters) {
-				writer.beginSnapshot(time);
-				for (AgentSnapshotInfo position : positions) {
-					writer.addAgent(position);
+				if (writer instanceof BufferedSnapshotWriter) {
+					needsPositionBuffer = true;
+				} else {
+					needsSnapshotInfos = true;
+				}
+			}
+
+			if (needsPositionBuffer) {
+				this.positionBuffer.clear();
+				for (VisLink link : visMobsim.getVisNetwork().getVisLinks().values()) {
+					link.getVisData().addAgentPositions(this.positionBuffer);
+				}
+				for (SnapshotWriter writer : this.snapshotWriters) {
+					if (writer instanceof BufferedSnapshotWriter) {
+						((BufferedSnapshotWriter) writer).writeSnapshot(time, this.positionBuffer);
+					}
+				}
+			}
+
+			if (needsSnapshotInfos) {
+				Collection<AgentSnapshotInfo> positions = new ArrayList<AgentSnapshotInfo>();
+				for (VisLink link : visMobsim.getVisNetwork().getVisLinks().values()) {
+					link.getVisData().addAgentSnapshotInfo(positions);
+				}
+				for (SnapshotWriter writer : this.snapshotWriters) {
+					if (writer instanceof BufferedSnapshotWriter) {
+						continue;
+					}
+					writer.beginSnapshot(time);
+					for (AgentSnapshotInfo position : positions) {
+						writer.addAgent(position);
+					}
+					writer.endSnapshot();
 				}
-				writer.endSnapshot();
 			}
 		}
 	}
@@ -19,6 +19,7 @@
 
 package org.matsim.vis.snapshotwriters;
 
+import java.util.ArrayList;
 import java.util.Collection;
 
 /**
@@ -29,4 +30,15 @@ public interface VisData {
 
 	public Collection<AgentSnapshotInfo> addAgentSnapshotInfo(final Collection<AgentSnapshotInfo> positions);
 
+	/**
+	 * Adds the positions of the agents to the buffer.  Implementations which know their vehicles can override this
+	 * to write the positions directly into the buffer; by default, they are converted from the
+	 * {@link AgentSnapshotInfo}s.
+	 */
+	public default void addAgentPositions(final AgentPositionBuffer buffer) {
+		for (AgentSnapshotInfo position : addAgentSnapshotInfo(new ArrayList<>())) {
+			buffer.add(position);
+		}
+	}
+
 }
\ No newline at end of file
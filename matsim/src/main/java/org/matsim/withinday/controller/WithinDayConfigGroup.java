@@ -51,8 +51,38 @@ public final class WithinDayConfigGroup extends ReflectiveConfigGroup {
 	// ---
 	// ---
 	
+	private static final String MAX_REPLANNING_DELAY = "maxReplanningDelay" ;
+	private static final String MAX_REPLANNING_DELAY_CMT = "maximum delay in seconds after which the results of the during-activity and during-leg "
+			+ "replanning have to be available.  With 0, the mobsim waits for the replanning in each time step.  Otherwise the agents are "
+			+ "replanned asynchronously, on copies, and the results are applied when they are collected." ;
+	
+	private double maxReplanningDelay = 0.0 ;
+	
+	/**
+	 * {@value #MAX_REPLANNING_DELAY_CMT}
+	 * 
+	 * @return the maxReplanningDelay
+	 */
+	@StringGetter(MAX_REPLANNING_DELAY)
+	public double getMaxReplanningDelay() {
+		return maxReplanningDelay;
+	}
+	/**
+	 * {@value #MAX_REPLANNING_DELAY_CMT}
+	 * 
+	 * @param maxReplanningDelay the maxReplanningDelay to set
+	 */
+	@StringSetter(MAX_REPLANNING_DELAY)
+	public void setMaxReplanningDelay(double maxReplanningDelay) {
+		this.maxReplanningDelay = maxReplanningDelay;
+	}
+
+	// ---
+	// ---
+	
 	@Override public Map<String, String> getComments() {
 		Map<String, String> comments = super.getComments();
+		comments.put(MAX_REPLANNING_DELAY, MAX_REPLANNING_DELAY_CMT);
 		return comments ;
 	}
 }
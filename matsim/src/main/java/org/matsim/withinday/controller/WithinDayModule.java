@@ -39,9 +39,11 @@ import org.matsim.withinday.mobsim.WithinDayQSimFactory;
 import org.matsim.withinday.replanning.identifiers.tools.ActivityReplanningMap;
 import org.matsim.withinday.replanning.identifiers.tools.LinkReplanningMap;
 import org.matsim.withinday.trafficmonitoring.EarliestLinkExitTimeProvider;
+import org.matsim.withinday.trafficmonitoring.LinkEnteredProvider;
 import org.matsim.withinday.trafficmonitoring.WithinDayTravelTimeModule;
 
 import com.google.inject.Provides;
+import com.google.inject.Singleton;
 
 public class WithinDayModule extends AbstractModule {
     @Override
@@ -56,6 +58,7 @@ public class WithinDayModule extends AbstractModule {
         bind(ActivityReplanningMap.class).asEagerSingleton();
         bind(LinkReplanningMap.class).asEagerSingleton();
         bind(EarliestLinkExitTimeProvider.class).asEagerSingleton();
+        bind(LinkEnteredProvider.class).in(Singleton.class);
     }
 
     @SuppressWarnings("static-method")
@@ -21,17 +21,21 @@
 package org.matsim.withinday.mobsim;
 
 import org.apache.log4j.Logger;
+import org.matsim.api.core.v01.Scenario;
 import org.matsim.core.api.experimental.events.EventsManager;
-import org.matsim.core.config.groups.GlobalConfigGroup;
+import org.matsim.core.config.ConfigUtils;
+import org.matsim.core.mobsim.framework.MobsimAgent;
 import org.matsim.core.mobsim.qsim.ActivityEndRescheduler;
 import org.matsim.core.mobsim.qsim.ActivityEndReschedulerProvider;
 import org.matsim.core.mobsim.qsim.InternalInterface;
 import org.matsim.core.mobsim.qsim.interfaces.MobsimEngine;
 import org.matsim.core.utils.collections.Tuple;
 import org.matsim.core.utils.misc.Time;
+import org.matsim.withinday.controller.WithinDayConfigGroup;
 import org.matsim.withinday.replanning.parallel.ParallelDuringActivityReplanner;
 import org.matsim.withinday.replanning.parallel.ParallelDuringLegReplanner;
 import org.matsim.withinday.replanning.parallel.ParallelInitialReplanner;
+import org.matsim.withinday.replanning.parallel.ReplanningAgentCopy;
 import org.matsim.withinday.replanning.replanners.interfaces.WithinDayDuringActivityReplannerFactory;
 import org.matsim.withinday.replanning.replanners.interfaces.WithinDayDuringLegReplannerFactory;
 import org.matsim.withinday.replanning.replanners.interfaces.WithinDayInitialReplannerFactory;
@@ -77,18 +81,40 @@ public class WithinDayEngine implements MobsimEngine, ActivityEndReschedulerProv
 	private Map<WithinDayDuringLegReplannerFactory, Tuple<Double, Double>> duringLegReplannerFactory;
 	
 	private InternalInterface internalInterface;
+	
+	/*
+	 * When replanning asynchronously, the replanners get copies of the agents. The
+	 * activity ends of the copies are rescheduled when their results are applied.
+	 */
+	private final ActivityEndRescheduler activityEndRescheduler = new ActivityEndRescheduler() {
+		@Override
+		public void rescheduleActivityEnd(MobsimAgent agent) {
+			if (agent instanceof ReplanningAgentCopy) {
+				((ReplanningAgentCopy) agent).rescheduleActivityEndWhenApplied(internalInterface.getMobsim());
+			} else {
+				internalInterface.getMobsim().rescheduleActivityEnd(agent);
+			}
+		}
+	};
 
 	@Inject
-	public WithinDayEngine(EventsManager eventsManager, GlobalConfigGroup globalConfigGroup) {
+	public WithinDayEngine(EventsManager eventsManager, Scenario scenario) {
 		this.eventsManager = eventsManager;
 		
 		this.duringActivityReplannerFactory = new LinkedHashMap<>();
 		this.duringLegReplannerFactory = new LinkedHashMap<>();
 
+		int numberOfThreads = scenario.getConfig().global().getNumberOfThreads();
 		log.info("Initialize Parallel Replanning Modules");
-		this.parallelInitialReplanner = new ParallelInitialReplanner(globalConfigGroup.getNumberOfThreads(), eventsManager);
-		this.parallelDuringActivityReplanner = new ParallelDuringActivityReplanner(globalConfigGroup.getNumberOfThreads(), eventsManager);
-		this.parallelDuringLegReplanner = new ParallelDuringLegReplanner(globalConfigGroup.getNumberOfThreads(), eventsManager);
+		this.parallelInitialReplanner = new ParallelInitialReplanner(numberOfThreads, eventsManager);
+		this.parallelDuringActivityReplanner = new ParallelDuringActivityReplanner(numberOfThreads, eventsManager);
+		this.parallelDuringLegReplanner = new ParallelDuringLegReplanner(numberOfThreads, eventsManager);
+		this.parallelDuringActivityReplanner.setActivityFacilities(scenario.getActivityFacilities());
+		this.parallelDuringLegReplanner.setActivityFacilities(scenario.getActivityFacilities());
+		
+		WithinDayConfigGroup withinDayConfigGroup = ConfigUtils.addOrGetModule(scenario.getConfig(), 
+				WithinDayConfigGroup.GROUP_NAME, WithinDayConfigGroup.class);
+		this.setMaxReplanningDelay(withinDayConfigGroup.getMaxReplanningDelay());
 
 		log.info("Initialize Replanning Modules");
 		this.initialReplanningModule = new InitialReplanningModule(parallelInitialReplanner);
@@ -120,6 +146,30 @@ public class WithinDayEngine implements MobsimEngine, ActivityEndReschedulerProv
 		return duringLegReplanning;
 	}
 
+	/**
+	 * Lets the mobsim go on while the agents are replanned during their activities
+	 * and legs. The replanning results have to be available at the latest
+	 * <code>maxReplanningDelay</code> seconds after the agents have been identified.
+	 * Before that, the mobsim only waits for them if timed replanners are added or
+	 * removed. Use 0 (the default) to replan synchronously in each time step.
+	 * The default is taken from the {@link WithinDayConfigGroup}.
+	 * <p></p>
+	 * The replanners then work on copies of the agents, see {@link ReplanningAgentCopy}.
+	 * The results are applied to the agents when they are collected, unless an agent
+	 * has gone on in the meantime, i.e. has started another plan element or has passed
+	 * a link which the replanned route does not contain.  Replanners which reschedule
+	 * activity ends have to use the {@link #getActivityRescheduler()} of this engine.
+	 * Initial replanning is always done synchronously.
+	 */
+	public void setMaxReplanningDelay(double maxReplanningDelay) {
+		this.parallelDuringActivityReplanner.setMaxReplanningDelay(maxReplanningDelay);
+		this.parallelDuringLegReplanner.setMaxReplanningDelay(maxReplanningDelay);
+	}
+
+	public double getMaxReplanningDelay() {
+		return this.parallelDuringLegReplanner.getMaxReplanningDelay();
+	}
+
 	public void addIntialReplannerFactory(WithinDayInitialReplannerFactory factory) {
 		this.parallelInitialReplanner.addWithinDayReplannerFactory(factory);
 	}
@@ -214,6 +264,6 @@ public class WithinDayEngine implements MobsimEngine, ActivityEndReschedulerProv
 	
 	@Override
 	public ActivityEndRescheduler getActivityRescheduler() {
-		return this.internalInterface.getMobsim();
+		return this.activityEndRescheduler;
 	}
 }
@@ -0,0 +1,59 @@
+/* *********************************************************************** *
+ * project: org.matsim.*
+ * ActivityStartedIdentifier.java
+ *                                                                         *
+ * *********************************************************************** *
+ *                                                                         *
+ * copyright       : (C) 2019 by the members listed in the COPYING,        *
+ *                   LICENSE and WARRANTY file.                            *
+ * email           : info at matsim dot org                                *
+ *                                                                         *
+ * *********************************************************************** *
+ *                                                                         *
+ *   This program is free software; you can redistribute it and/or modify  *
+ *   it under the terms of the GNU General Public License as published by  *
+ *   the Free Software Foundation; either version 2 of the License, or     *
+ *   (at your option) any later version.                                   *
+ *   See also COPYING, LICENSE and WARRANTY file                           *
+ *                                                                         *
+ * *********************************************************************** */
+
+package org.matsim.withinday.replanning.identifiers;
+
+import java.util.Set;
+import java.util.TreeSet;
+
+import org.matsim.api.core.v01.Id;
+import org.matsim.api.core.v01.population.Person;
+import org.matsim.core.mobsim.framework.MobsimAgent;
+import org.matsim.withinday.replanning.identifiers.interfaces.DuringActivityAgentSelector;
+import org.matsim.withinday.replanning.identifiers.tools.ActivityReplanningMap;
+
+/**
+ * Identifies the agents which have started an activity in the last time step. As opposed
+ * to the {@link ActivityPerformingIdentifier}, only the agents collected from the activity
+ * start events are checked, i.e. the effort depends on the number of activity starts per
+ * time step.
+ */
+public class ActivityStartedIdentifier extends DuringActivityAgentSelector {
+	
+	protected ActivityReplanningMap activityReplanningMap;
+	
+	// use the Factory!
+	/*package*/ ActivityStartedIdentifier(ActivityReplanningMap activityReplanningMap) {
+		this.activityReplanningMap = activityReplanningMap;
+	}
+	
+	@Override
+	public Set<MobsimAgent> getAgentsToReplan(double time) {
+		Set<MobsimAgent> agentsToReplan = new TreeSet<MobsimAgent>(new ById());
+
+		for (MobsimAgent mobsimAgent : this.activityReplanningMap.getActivityStartedAgents()) {
+			Id<Person> agentId = mobsimAgent.getId();
+			if (this.applyFilters(agentId, time)) agentsToReplan.add(mobsimAgent);
+		}
+		
+		return agentsToReplan;
+	}
+
+}
@@ -0,0 +1,43 @@
+/* *********************************************************************** *
+ * project: org.matsim.*
+ * ActivityStartedIdentifierFactory.java
+ *                                                                         *
+ * *********************************************************************** *
+ *                                                                         *
+ * copyright       : (C) 2019 by the members listed in the COPYING,        *
+ *                   LICENSE and WARRANTY file.                            *
+ * email           : info at matsim dot org                                *
+ *                                                                         *
+ * *********************************************************************** *
+ *                                                                         *
+ *   This program is free software; you can redistribute it and/or modify  *
+ *   it under the terms of the GNU General Public License as published by  *
+ *   the Free Software Foundation; either version 2 of the License, or     *
+ *   (at your option) any later version.                                   *
+ *   See also COPYING, LICENSE and WARRANTY file                           *
+ *                                                                         *
+ * *********************************************************************** */
+
+package org.matsim.withinday.replanning.identifiers;
+
+import org.matsim.withinday.replanning.identifiers.interfaces.DuringActivityAgentSelector;
+import org.matsim.withinday.replanning.identifiers.interfaces.DuringActivityIdentifierFactory;
+import org.matsim.withinday.replanning.identifiers.tools.ActivityReplanningMap;
+
+public class ActivityStartedIdentifierFactory extends DuringActivityIdentifierFactory {
+
+	private ActivityReplanningMap activityReplanningMap;
+	
+	public ActivityStartedIdentifierFactory(ActivityReplanningMap activityReplanningMap) {
+		this.activityReplanningMap = activityReplanningMap;
+	}
+	
+	@Override
+	public DuringActivityAgentSelector createIdentifier() {
+		DuringActivityAgentSelector identifier = new ActivityStartedIdentifier(activityReplanningMap);
+		identifier.setAgentSelectorFactory(this);
+		this.addAgentFiltersToIdentifier(identifier);
+		return identifier;
+	}
+
+}
@@ -0,0 +1,65 @@
+/* *********************************************************************** *
+ * project: org.matsim.*
+ * LinkEnteredIdentifier.java
+ *                                                                         *
+ * *********************************************************************** *
+ *                                                                         *
+ * copyright       : (C) 2019 by the members listed in the COPYING,        *
+ *                   LICENSE and WARRANTY file.                            *
+ * email           : info at matsim dot org                                *
+ *                                                                         *
+ * *********************************************************************** *
+ *                                                                         *
+ *   This program is free software; you can redistribute it and/or modify  *
+ *   it under the terms of the GNU General Public License as published by  *
+ *   the Free Software Foundation; either version 2 of the License, or     *
+ *   (at your option) any later version.                                   *
+ *   See also COPYING, LICENSE and WARRANTY file                           *
+ *                                                                         *
+ * *********************************************************************** */
+
+package org.matsim.withinday.replanning.identifiers;
+
+import java.util.Map;
+import java.util.Set;
+import java.util.TreeSet;
+
+import org.matsim.api.core.v01.Id;
+import org.matsim.api.core.v01.population.Person;
+import org.matsim.core.mobsim.framework.MobsimAgent;
+import org.matsim.withinday.mobsim.MobsimDataProvider;
+import org.matsim.withinday.replanning.identifiers.interfaces.DuringLegAgentSelector;
+import org.matsim.withinday.trafficmonitoring.LinkEnteredProvider;
+
+/**
+ * Identifies the agents which have entered a new link in the last time step. As opposed
+ * to the {@link LegPerformingIdentifier}, the agents are not searched among all leg
+ * performing agents. Instead, the {@link LinkEnteredProvider} collects them from the
+ * link enter events, i.e. the effort depends on the number of link changes per time step.
+ */
+public class LinkEnteredIdentifier extends DuringLegAgentSelector {
+
+	private final LinkEnteredProvider linkEnteredProvider;
+	private final MobsimDataProvider mobsimDataProvider;
+	
+	// use the Factory!
+	/*package*/ LinkEnteredIdentifier(LinkEnteredProvider linkEnteredProvider, MobsimDataProvider mobsimDataProvider) {
+		this.linkEnteredProvider = linkEnteredProvider;
+		this.mobsimDataProvider = mobsimDataProvider;
+	}
+	
+	@Override
+	public Set<MobsimAgent> getAgentsToReplan(double time) {
+		Map<Id<Person>, MobsimAgent> mapping = this.mobsimDataProvider.getAgents();
+		Set<MobsimAgent> agentsToReplan = new TreeSet<MobsimAgent>(new ById());
+
+		for (Id<Person> agentId : this.linkEnteredProvider.getLinkEnteredAgentsInLastTimeStep().keySet()) {
+			MobsimAgent agent = mapping.get(agentId);
+			// (agents which the mobsim does not know, e.g. drivers of transit vehicles, are skipped)
+			if (agent != null && this.applyFilters(agentId, time)) agentsToReplan.add(agent);
+		}
+		
+		return agentsToReplan;
+	}
+
+}
@@ -0,0 +1,46 @@
+/* *********************************************************************** *
+ * project: org.matsim.*
+ * LinkEnteredIdentifierFactory.java
+ *                                                                         *
+ * *********************************************************************** *
+ *                                                                         *
+ * copyright       : (C) 2019 by the members listed in the COPYING,        *
+ *                   LICENSE and WARRANTY file.                            *
+ * email           : info at matsim dot org                                *
+ *                                                                         *
+ * *********************************************************************** *
+ *                                                                         *
+ *   This program is free software; you can redistribute it and/or modify  *
+ *   it under the terms of the GNU General Public License as published by  *
+ *   the Free Software Foundation; either version 2 of the License, or     *
+ *   (at your option) any later version.                                   *
+ *   See also COPYING, LICENSE and WARRANTY file                           *
+ *                                                                         *
+ * *********************************************************************** */
+
+package org.matsim.withinday.replanning.identifiers;
+
+import org.matsim.withinday.mobsim.MobsimDataProvider;
+import org.matsim.withinday.replanning.identifiers.interfaces.DuringLegAgentSelector;
+import org.matsim.withinday.replanning.identifiers.interfaces.DuringLegIdentifierFactory;
+import org.matsim.withinday.trafficmonitoring.LinkEnteredProvider;
+
+public class LinkEnteredIdentifierFactory extends DuringLegIdentifierFactory {
+
+	private final LinkEnteredProvider linkEnteredProvider;
+	private final MobsimDataProvider mobsimDataProvider;
+	
+	public LinkEnteredIdentifierFactory(LinkEnteredProvider linkEnteredProvider, MobsimDataProvider mobsimDataProvider) {
+		this.linkEnteredProvider = linkEnteredProvider;
+		this.mobsimDataProvider = mobsimDataProvider;
+	}
+	
+	@Override
+	public DuringLegAgentSelector createIdentifier() {
+		DuringLegAgentSelector identifier = new LinkEnteredIdentifier(this.linkEnteredProvider, this.mobsimDataProvider);
+		identifier.setAgentSelectorFactory(this);
+		this.addAgentFiltersToIdentifier(identifier);
+		return identifier;
+	}
+
+}
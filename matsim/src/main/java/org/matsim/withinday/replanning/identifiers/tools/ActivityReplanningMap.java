@@ -69,6 +69,13 @@ public class ActivityReplanningMap implements PersonStuckEventHandler,
 	 * activity in the same time step as they start it. 
 	 */
 	private final Map<Id<Person>, MobsimAgent> startingAgents;	// PersonId
+	
+	/*
+	 * Agents that have started an activity in the last time step and are still performing
+	 * it. Replaced after each time step, therefore its size only depends on the number of
+	 * activity starts and not on the number of agents performing an activity.
+	 */
+	private Map<Id<Person>, MobsimAgent> startedAgents;	// PersonId
 
 	/*
 	 * Contains activity end times of agents that are currently performing an activity.
@@ -96,6 +103,7 @@ public class ActivityReplanningMap implements PersonStuckEventHandler,
 		this.mobsimDataProvider = mobsimDataProvider;
 
 		this.startingAgents = new HashMap<>();
+		this.startedAgents = new LinkedHashMap<>();
 		this.activityEndTimes = new HashMap<>();
 		
 		this.activityPerformingAgents = new ConcurrentHashMap<Integer, Map<Id<Person>, MobsimAgent>>();
@@ -139,6 +147,7 @@ public class ActivityReplanningMap implements PersonStuckEventHandler,
 	public void notifyMobsimAfterSimStep(MobsimAfterSimStepEvent e) {
 		
 		double now = e.getSimulationTime();
+		this.startedAgents = new LinkedHashMap<>();
 		for (MobsimAgent mobsimAgent : startingAgents.values()) {
 
 			double departureTime = mobsimAgent.getActivityEndTime();
@@ -152,6 +161,7 @@ public class ActivityReplanningMap implements PersonStuckEventHandler,
 				int bin = this.getTimeBin(mobsimAgent.getActivityEndTime());
 				Map<Id<Person>, MobsimAgent> map = getMapForTimeBin(bin);
 				map.put(mobsimAgent.getId(), mobsimAgent);
+				this.startedAgents.put(mobsimAgent.getId(), mobsimAgent);
 			} else {
 				log.warn("Departure time is in the past - ignoring activity!");
 			}
@@ -219,6 +229,7 @@ public class ActivityReplanningMap implements PersonStuckEventHandler,
 	public void handleEvent(ActivityEndEvent event) {
 		Id<Person> agentId = event.getPersonId();
 		this.startingAgents.remove(agentId);
+		this.startedAgents.remove(agentId);
 		
 		Double activityEndTime = this.activityEndTimes.remove(agentId);
 		if (activityEndTime != null) {
@@ -270,6 +281,15 @@ public class ActivityReplanningMap implements PersonStuckEventHandler,
 		return Collections.unmodifiableSet(this.activityEndTimes.keySet());
 	}
 	
+	/**
+	 * Returns a Collection containing all agents that have started an activity in the last
+	 * time step. Unlike getActivityPerformingAgents(), its size only depends on the number
+	 * of activity starts in that time step.
+	 */
+	public Collection<MobsimAgent> getActivityStartedAgents() {
+		return Collections.unmodifiableCollection(this.startedAgents.values());
+	}
+	
 	/**
 	 * Returns a Collection containing all agents that are going to end their activity in the 
 	 * time step belongs to the given time. Typically, this is the current simulation time. 
@@ -284,6 +304,7 @@ public class ActivityReplanningMap implements PersonStuckEventHandler,
 	@Override
 	public void reset(int iteration) {
 		this.startingAgents.clear();
+		this.startedAgents = new LinkedHashMap<>();
 		this.activityEndTimes.clear();
 	}
 }
\ No newline at end of file
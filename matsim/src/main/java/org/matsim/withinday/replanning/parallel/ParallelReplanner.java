@@ -21,9 +21,14 @@
 package org.matsim.withinday.replanning.parallel;
 
 import java.lang.Thread.UncaughtExceptionHandler;
+import java.util.ArrayList;
 import java.util.Collections;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
 import java.util.LinkedHashSet;
 import java.util.LinkedList;
+import java.util.List;
+import java.util.Map;
 import java.util.Queue;
 import java.util.Set;
 import java.util.concurrent.BrokenBarrierException;
@@ -32,7 +37,12 @@ import java.util.concurrent.LinkedBlockingQueue;
 import java.util.concurrent.atomic.AtomicBoolean;
 
 import org.apache.log4j.Logger;
+import org.matsim.api.core.v01.Id;
+import org.matsim.api.core.v01.population.Person;
 import org.matsim.core.api.experimental.events.EventsManager;
+import org.matsim.core.mobsim.framework.MobsimAgent;
+import org.matsim.core.utils.misc.Time;
+import org.matsim.facilities.ActivityFacilities;
 import org.matsim.withinday.replanning.identifiers.interfaces.AgentSelector;
 import org.matsim.withinday.replanning.replanners.interfaces.WithinDayReplanner;
 import org.matsim.withinday.replanning.replanners.interfaces.WithinDayReplannerFactory;
@@ -76,6 +86,28 @@ public abstract class ParallelReplanner<T extends WithinDayReplannerFactory<? ex
 	
 	protected boolean simIsRunning = false;
 	
+	/*
+	 * If the maximum replanning delay is > 0, the replanning is done asynchronously:
+	 * run(time) hands the replanning tasks over to the replanning threads and returns,
+	 * so the mobsim goes on while the agents are replanned. The results are collected
+	 * in a later time step, at the latest maxReplanningDelay seconds after the agents
+	 * have been identified. Tasks which are added while the threads are still busy
+	 * are handled in the next batch.
+	 * 
+	 * The replanners do not get the agents but ReplanningAgentCopies, one per agent
+	 * and batch, which are created and applied to the agents by the mobsim thread.
+	 * See WithinDayEngine.setMaxReplanningDelay(...).
+	 */
+	private double maxReplanningDelay = 0.0;
+	private boolean replanningInProgress = false;
+	private double replanningStartTime = Time.getUndefinedTime();
+	private final List<ReplanningTask> pendingTasks = new ArrayList<>();
+	private double pendingTasksTime = Time.getUndefinedTime();
+	private double lastRunTime = Time.getUndefinedTime();
+	private final Map<Id<Person>, ReplanningAgentCopy> agentCopies = new LinkedHashMap<>();
+	private ActivityFacilities activityFacilities = null;
+	private int droppedResults = 0;
+	
 	public ParallelReplanner(int numOfThreads, EventsManager eventsManager) {
 		this.setNumberOfThreads(numOfThreads);
 		this.eventsManager = eventsManager;
@@ -149,6 +181,11 @@ public abstract class ParallelReplanner<T extends WithinDayReplannerFactory<? ex
 		}
 
 		this.simIsRunning = true;
+		this.replanningInProgress = false;
+		this.pendingTasks.clear();
+		this.pendingTasksTime = Time.getUndefinedTime();
+		this.agentCopies.clear();
+		this.droppedResults = 0;
 		
 		/*
 		 * After initialization the threads are waiting at the
@@ -170,10 +207,6 @@ public abstract class ParallelReplanner<T extends WithinDayReplannerFactory<? ex
 	 * "as it is"...
 	 */
 	public final void run(double time) {
-		// no Agents to Replan
-		if (lastRoundRobin == roundRobin) return;
-		else lastRoundRobin = roundRobin;
-
 		/*
 		 * If an exception occurred, at least one of the events replanning threads
 		 * has crashed. Therefore the remaining threads would get stuck at the
@@ -183,6 +216,33 @@ public abstract class ParallelReplanner<T extends WithinDayReplannerFactory<? ex
 			return;
 		}
 		
+		this.lastRunTime = time;
+		double oldestTaskTime = time;
+		if (this.replanningInProgress) {
+			if (!this.pendingTasks.isEmpty() && Time.isUndefinedTime(this.pendingTasksTime)) {
+				this.pendingTasksTime = time;
+			}
+			
+			// let the threads go on if they are not done yet and the delay allows it
+			if (time < this.replanningStartTime + this.maxReplanningDelay && !isReplanningFinished()) return;
+			
+			this.waitForReplanning(time);
+		}
+		
+		// the tasks which have been added while the last batch was in progress
+		if (!this.pendingTasks.isEmpty()) {
+			if (!Time.isUndefinedTime(this.pendingTasksTime)) oldestTaskTime = this.pendingTasksTime;
+			for (ReplanningTask replanningTask : this.pendingTasks) {
+				this.assignReplanningTask(replanningTask);
+			}
+			this.pendingTasks.clear();
+			this.pendingTasksTime = Time.getUndefinedTime();
+		}
+		
+		// no Agents to Replan
+		if (lastRoundRobin == roundRobin) return;
+		else lastRoundRobin = roundRobin;
+		
 		try {
 			// set current time
 			for (ReplanningRunnable replanningRunnable : replanningRunnables) {
@@ -191,17 +251,68 @@ public abstract class ParallelReplanner<T extends WithinDayReplannerFactory<? ex
 
 			this.timeStepStartBarrier.await();
 
-			this.timeStepEndBarrier.await();
-
+			if (this.maxReplanningDelay > 0.0) {
+				this.replanningInProgress = true;
+				this.replanningStartTime = oldestTaskTime;
+			} else {
+				this.timeStepEndBarrier.await();
+			}
 		} catch (InterruptedException e) {
 			throw new RuntimeException(e);
 		} catch (BrokenBarrierException e) {
 	      	throw new RuntimeException(e);
 		}
 	}
+	
+	/*
+	 * The replanning threads have finished if they are all waiting at the TimeStepEndBarrier.
+	 */
+	private boolean isReplanningFinished() {
+		return this.timeStepEndBarrier.getNumberWaiting() == this.numOfThreads;
+	}
+	
+	/*
+	 * Waits until the replanning threads have finished the batch which is in progress,
+	 * if there is one, applies the results to the agents and passes the collected
+	 * ReplanningEvents to the EventsManager. Their time is the given one, i.e. the
+	 * current time of the mobsim. Results of agents which have gone on in a way that
+	 * does not fit the results anymore are dropped, together with their events.
+	 */
+	private void waitForReplanning(double time) {
+		if (!this.replanningInProgress || hadException.get()) return;
+		
+		try {
+			this.timeStepEndBarrier.await();
+		} catch (InterruptedException e) {
+			throw new RuntimeException(e);
+		} catch (BrokenBarrierException e) {
+			throw new RuntimeException(e);
+		}
+		this.replanningInProgress = false;
+		
+		Set<Id<Person>> droppedAgentIds = new HashSet<>();
+		for (ReplanningAgentCopy agentCopy : this.agentCopies.values()) {
+			if (!agentCopy.applyToAgent()) droppedAgentIds.add(agentCopy.getId());
+		}
+		this.agentCopies.clear();
+		this.droppedResults += droppedAgentIds.size();
+		
+		for (ReplanningRunnable replanningRunnable : this.replanningRunnables) {
+			replanningRunnable.processCollectedEvents(time, droppedAgentIds);
+		}
+	}
 
 	public final void afterSim() {
 
+		this.waitForReplanning(this.lastRunTime);
+		if (!this.pendingTasks.isEmpty()) {
+			log.warn(this.pendingTasks.size() + " replanning tasks have not been handled because the simulation has ended.");
+			this.pendingTasks.clear();
+		}
+		if (this.droppedResults > 0) {
+			log.info(this.droppedResults + " asynchronous replanning results have been dropped because the agents had gone on.");
+		}
+		
 		this.simIsRunning = false;
 		
 		if (this.hadException.get()) {
@@ -244,7 +355,12 @@ public abstract class ParallelReplanner<T extends WithinDayReplannerFactory<? ex
 		}
 	}
 	
+	/*
+	 * Timed replanners are added and removed while the simulation is running. If
+	 * the replanning threads are busy, they have to finish first.
+	 */
 	public final void addWithinDayReplannerFactory(T factory) {
+		this.waitForReplanning(this.lastRunTime);
 		this.replannerFactories.add(factory);
 		
 		/*
@@ -270,7 +386,9 @@ public abstract class ParallelReplanner<T extends WithinDayReplannerFactory<? ex
 	}
 
 	public final void removeWithinDayReplannerFactory(T factory) {
+		this.waitForReplanning(this.lastRunTime);
 		this.replannerFactories.remove(factory);
+		this.pendingTasks.removeIf(replanningTask -> replanningTask.getWithinDayReplannerId().equals(factory.getId()));
 		
 		for (ReplanningRunnable replanningRunnable : this.replanningRunnables) {
 			replanningRunnable.removeWithinDayReplanner(factory.getId());
@@ -288,9 +406,51 @@ public abstract class ParallelReplanner<T extends WithinDayReplannerFactory<? ex
 	}
 
 	public final void addReplanningTask(ReplanningTask replanningTask) {	
+		if (this.replanningInProgress) this.pendingTasks.add(replanningTask);
+		else this.assignReplanningTask(replanningTask);
+	}
+	
+	private void assignReplanningTask(ReplanningTask replanningTask) {
+		if (this.maxReplanningDelay > 0.0) {
+			// all replanners of the batch work on the same copy of an agent
+			MobsimAgent agent = replanningTask.getAgentToReplan();
+			ReplanningAgentCopy agentCopy = this.agentCopies.computeIfAbsent(agent.getId(),
+					id -> new ReplanningAgentCopy(agent, this.activityFacilities));
+			replanningTask = new ReplanningTask(agentCopy, replanningTask.getWithinDayReplannerId());
+		}
 		this.replanningRunnables[this.roundRobin % this.numOfThreads].addReplanningTask(replanningTask);
 		this.roundRobin++;
 	}
+	
+	/**
+	 * Sets the maximum delay (in seconds) after which the results of the replanning
+	 * have to be available. With 0 (the default), the mobsim waits in each time step
+	 * until the agents are replanned. Otherwise the replanning is done asynchronously,
+	 * on copies of the agents, whose results are applied when they are collected.
+	 */
+	public final void setMaxReplanningDelay(double maxReplanningDelay) {
+		if (maxReplanningDelay < 0.0) {
+			throw new IllegalArgumentException("The maximum replanning delay must not be negative: " + maxReplanningDelay);
+		}
+		if (this.simIsRunning) {
+			throw new IllegalStateException("The maximum replanning delay cannot be changed while the simulation is running.");
+		}
+		this.maxReplanningDelay = maxReplanningDelay;
+		for (ReplanningRunnable replanningRunnable : this.replanningRunnables) {
+			replanningRunnable.setCollectEvents(maxReplanningDelay > 0.0);
+		}
+	}
+	
+	public final double getMaxReplanningDelay() {
+		return this.maxReplanningDelay;
+	}
+	
+	/**
+	 * The facilities which the copies of the agents look up when replanning asynchronously.
+	 */
+	public final void setActivityFacilities(ActivityFacilities activityFacilities) {
+		this.activityFacilities = activityFacilities;
+	}
 
 	private final void setNumberOfThreads(int numberOfThreads) {
 		numOfThreads = Math.max(numberOfThreads, 1); // it should be at least 1 here; we allow 0 in other places for "no threads"
@@ -0,0 +1,303 @@
+/* *********************************************************************** *
+ * project: org.matsim.*
+ * ReplanningAgentCopy.java
+ *                                                                         *
+ * *********************************************************************** *
+ *                                                                         *
+ * copyright       : (C) 2019 by the members listed in the COPYING,        *
+ *                   LICENSE and WARRANTY file.                            *
+ * email           : info at matsim dot org                                *
+ *                                                                         *
+ * *********************************************************************** *
+ *                                                                         *
+ *   This program is free software; you can redistribute it and/or modify  *
+ *   it under the terms of the GNU General Public License as published by  *
+ *   the Free Software Foundation; either version 2 of the License, or     *
+ *   (at your option) any later version.                                   *
+ *   See also COPYING, LICENSE and WARRANTY file                           *
+ *                                                                         *
+ * *********************************************************************** */
+
+package org.matsim.withinday.replanning.parallel;
+
+import java.util.List;
+
+import org.matsim.api.core.v01.Id;
+import org.matsim.api.core.v01.network.Link;
+import org.matsim.api.core.v01.population.Activity;
+import org.matsim.api.core.v01.population.Leg;
+import org.matsim.api.core.v01.population.Person;
+import org.matsim.api.core.v01.population.Plan;
+import org.matsim.api.core.v01.population.PlanElement;
+import org.matsim.api.core.v01.population.Route;
+import org.matsim.core.mobsim.framework.HasPerson;
+import org.matsim.core.mobsim.framework.MobsimAgent;
+import org.matsim.core.mobsim.framework.PlanAgent;
+import org.matsim.core.mobsim.qsim.ActivityEndRescheduler;
+import org.matsim.core.mobsim.qsim.agents.HasModifiablePlan;
+import org.matsim.core.mobsim.qsim.agents.WithinDayAgentUtils;
+import org.matsim.core.population.PopulationUtils;
+import org.matsim.core.population.routes.NetworkRoute;
+import org.matsim.core.utils.misc.Time;
+import org.matsim.facilities.ActivityFacilities;
+import org.matsim.facilities.FacilitiesUtils;
+import org.matsim.facilities.Facility;
+import org.matsim.utils.objectattributes.attributable.AttributesUtils;
+
+/**
+ * The agent which the replanners get when replanning asynchronously.  It is created by the mobsim thread and holds a
+ * copy of the agent's plan, with copies of all routes, and of the agent's state at that time.  The replanners change
+ * the copy on the replanning threads, while the agent itself is only read and changed by the mobsim thread.  When the
+ * results are collected, the mobsim thread applies them to the agent, see {@link #applyToAgent()}.
+ * <p></p>
+ * Resetting the caches and rescheduling the activity end, if the replanners ask for it, are done when the results are
+ * applied.  The latter only works with the {@link ActivityEndRescheduler} of the WithinDayEngine.
+ */
+public final class ReplanningAgentCopy implements MobsimAgent, PlanAgent, HasPerson, HasModifiablePlan {
+
+	private final MobsimAgent agent;
+	private final PlanElement agentCurrentPlanElement;
+	private final ActivityFacilities facilities;
+
+	private final Plan plan;
+	private final int currentPlanElementIndex;
+	private final int currentLinkIndex;
+	private final Id<Link> currentLinkId;
+	private final State state;
+	private final double activityEndTime;
+
+	private boolean resetCaches = false;
+	private ActivityEndRescheduler activityEndRescheduler = null;
+
+	/*package*/ ReplanningAgentCopy(MobsimAgent agent, ActivityFacilities facilities) {
+		if (!(agent instanceof PlanAgent) || !(agent instanceof HasModifiablePlan)) {
+			throw new RuntimeException("Sorry, agent is from type " + agent.getClass().toString() +
+					" which does not support asynchronous replanning. Aborting!");
+		}
+		this.agent = agent;
+		this.facilities = facilities;
+
+		// this makes the agent's plan modifiable, so the current plan element is the one which the results are applied to
+		Plan agentPlan = WithinDayAgentUtils.getModifiablePlan(agent);
+		this.agentCurrentPlanElement = ((PlanAgent) agent).getCurrentPlanElement();
+		this.currentPlanElementIndex = WithinDayAgentUtils.getCurrentPlanElementIndex(agent);
+
+		this.plan = PopulationUtils.createPlan(agentPlan.getPerson());
+		PopulationUtils.copyFromTo(agentPlan, this.plan);
+		for (PlanElement planElement : this.plan.getPlanElements()) {
+			// the copied legs share their routes until they are accessed; copy them here, on the mobsim thread
+			if (planElement instanceof Leg) ((Leg) planElement).getRoute();
+		}
+
+		this.currentLinkIndex = ((HasModifiablePlan) agent).getCurrentLinkIndex();
+		this.currentLinkId = agent.getCurrentLinkId();
+		this.state = agent.getState();
+		this.activityEndTime = agent.getActivityEndTime();
+	}
+
+	/**
+	 * Applies the replanned plan to the agent, if the agent is still performing the same plan element and, if it is
+	 * on a leg, still on a part of its route which the replanning has not changed.  Otherwise, the results are
+	 * outdated and are dropped.  Replanners must not add or remove plan elements before the current one.
+	 *
+	 * @return whether the results have been applied
+	 */
+	/*package*/ boolean applyToAgent() {
+		if (((PlanAgent) this.agent).getCurrentPlanElement() != this.agentCurrentPlanElement) return false;
+
+		List<PlanElement> planElements = WithinDayAgentUtils.getModifiablePlan(this.agent).getPlanElements();
+		List<PlanElement> replannedPlanElements = this.plan.getPlanElements();
+		if (replannedPlanElements.size() <= this.currentPlanElementIndex) return false;
+
+		PlanElement replannedCurrentPlanElement = replannedPlanElements.get(this.currentPlanElementIndex);
+		if (this.agentCurrentPlanElement instanceof Leg) {
+			if (!(replannedCurrentPlanElement instanceof Leg)) return false;
+			Leg leg = (Leg) this.agentCurrentPlanElement;
+			Leg replannedLeg = (Leg) replannedCurrentPlanElement;
+
+			// the agent may have gone on since the copy was made
+			int agentLinkIndex = ((HasModifiablePlan) this.agent).getCurrentLinkIndex();
+			if (agentLinkIndex != this.currentLinkIndex
+					&& !isSameRouteUpTo(leg.getRoute(), replannedLeg.getRoute(), agentLinkIndex)) return false;
+
+			leg.setMode(replannedLeg.getMode());
+			leg.setDepartureTime(replannedLeg.getDepartureTime());
+			leg.setTravelTime(replannedLeg.getTravelTime());
+			leg.setRoute(replannedLeg.getRoute());
+			AttributesUtils.copyAttributesFromTo(replannedLeg, leg);
+		} else {
+			if (!(replannedCurrentPlanElement instanceof Activity)) return false;
+			PopulationUtils.copyFromTo((Activity) replannedCurrentPlanElement, (Activity) this.agentCurrentPlanElement);
+		}
+
+		planElements.subList(this.currentPlanElementIndex + 1, planElements.size()).clear();
+		planElements.addAll(replannedPlanElements.subList(this.currentPlanElementIndex + 1, replannedPlanElements.size()));
+
+		if (this.resetCaches) WithinDayAgentUtils.resetCaches(this.agent);
+		if (this.activityEndRescheduler != null) this.activityEndRescheduler.rescheduleActivityEnd(this.agent);
+		return true;
+	}
+
+	/*
+	 * Whether the replanned route contains the same links as the agent's route up to the given link index, i.e. up
+	 * to the link the agent is on.
+	 */
+	private static boolean isSameRouteUpTo(Route route, Route replannedRoute, int linkIndex) {
+		if (!(route instanceof NetworkRoute) || !(replannedRoute instanceof NetworkRoute)) return false;
+		List<Id<Link>> linkIds = ((NetworkRoute) route).getLinkIds();
+		List<Id<Link>> replannedLinkIds = ((NetworkRoute) replannedRoute).getLinkIds();
+		if (linkIndex > linkIds.size() || linkIndex > replannedLinkIds.size()) return false;
+		return linkIds.subList(0, linkIndex).equals(replannedLinkIds.subList(0, linkIndex));
+	}
+
+	/**
+	 * Lets the given rescheduler reschedule the agent's activity end when the results are applied.
+	 */
+	public void rescheduleActivityEndWhenApplied(ActivityEndRescheduler activityEndRescheduler) {
+		this.activityEndRescheduler = activityEndRescheduler;
+	}
+
+	/*package*/ MobsimAgent getAgent() {
+		return this.agent;
+	}
+
+	@Override
+	public Plan getModifiablePlan() {
+		return this.plan;
+	}
+
+	@Override
+	public void resetCaches() {
+		this.resetCaches = true;
+	}
+
+	@Override
+	public int getCurrentLinkIndex() {
+		return this.currentLinkIndex;
+	}
+
+	@Override
+	public Plan getCurrentPlan() {
+		return this.plan;
+	}
+
+	@Override
+	public PlanElement getCurrentPlanElement() {
+		return this.plan.getPlanElements().get(this.currentPlanElementIndex);
+	}
+
+	@Override
+	public PlanElement getNextPlanElement() {
+		return getPlanElement(this.currentPlanElementIndex + 1);
+	}
+
+	@Override
+	public PlanElement getPreviousPlanElement() {
+		return getPlanElement(this.currentPlanElementIndex - 1);
+	}
+
+	private PlanElement getPlanElement(int index) {
+		List<PlanElement> planElements = this.plan.getPlanElements();
+		return index >= 0 && index < planElements.size() ? planElements.get(index) : null;
+	}
+
+	@Override
+	public Person getPerson() {
+		return this.plan.getPerson();
+	}
+
+	@Override
+	public Id<Person> getId() {
+		return this.agent.getId();
+	}
+
+	@Override
+	public State getState() {
+		return this.state;
+	}
+
+	@Override
+	public double getActivityEndTime() {
+		return this.activityEndTime;
+	}
+
+	@Override
+	public Id<Link> getCurrentLinkId() {
+		return this.currentLinkId;
+	}
+
+	@Override
+	public Id<Link> getDestinationLinkId() {
+		PlanElement currentPlanElement = getCurrentPlanElement();
+		if (!(currentPlanElement instanceof Leg)) return null;
+		return ((Leg) currentPlanElement).getRoute().getEndLinkId();
+	}
+
+	@Override
+	public String getMode() {
+		PlanElement currentPlanElement = getCurrentPlanElement();
+		if (!(currentPlanElement instanceof Leg)) return null;
+		return ((Leg) currentPlanElement).getMode();
+	}
+
+	@Override
+	public Double getExpectedTravelTime() {
+		PlanElement currentPlanElement = getCurrentPlanElement();
+		if (!(currentPlanElement instanceof Leg)) return null;
+		Leg leg = (Leg) currentPlanElement;
+		if (leg.getRoute().getTravelTime() != Time.UNDEFINED_TIME) return leg.getRoute().getTravelTime();
+		if (leg.getTravelTime() != Time.UNDEFINED_TIME) return leg.getTravelTime();
+		return null;
+	}
+
+	@Override
+	public Double getExpectedTravelDistance() {
+		PlanElement currentPlanElement = getCurrentPlanElement();
+		if (!(currentPlanElement instanceof Leg)) return null;
+		return ((Leg) currentPlanElement).getRoute().getDistance();
+	}
+
+	@Override
+	public Facility getCurrentFacility() {
+		for (int index = this.currentPlanElementIndex; index >= 0; index--) {
+			PlanElement planElement = this.plan.getPlanElements().get(index);
+			if (planElement instanceof Activity) return FacilitiesUtils.toFacility((Activity) planElement, this.facilities);
+		}
+		return null;
+	}
+
+	@Override
+	public Facility getDestinationFacility() {
+		if (!(getCurrentPlanElement() instanceof Leg)) return null;
+		for (int index = this.currentPlanElementIndex + 1; index < this.plan.getPlanElements().size(); index++) {
+			PlanElement planElement = this.plan.getPlanElements().get(index);
+			if (planElement instanceof Activity) return FacilitiesUtils.toFacility((Activity) planElement, this.facilities);
+		}
+		return null;
+	}
+
+	/*
+	 * The copy is not simulated; the mobsim only works with the agent itself.
+	 */
+
+	@Override
+	public void endActivityAndComputeNextState(double now) {
+		throw new IllegalStateException("agent " + getId() + " is a copy for replanning and cannot be simulated");
+	}
+
+	@Override
+	public void endLegAndComputeNextState(double now) {
+		throw new IllegalStateException("agent " + getId() + " is a copy for replanning and cannot be simulated");
+	}
+
+	@Override
+	public void setStateToAbort(double now) {
+		throw new IllegalStateException("agent " + getId() + " is a copy for replanning and cannot be simulated");
+	}
+
+	@Override
+	public void notifyArrivalOnLinkByNonNetworkMode(Id<Link> linkId) {
+		throw new IllegalStateException("agent " + getId() + " is a copy for replanning and cannot be simulated");
+	}
+
+}
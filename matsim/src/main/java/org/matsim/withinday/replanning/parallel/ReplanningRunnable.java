@@ -22,6 +22,7 @@ package org.matsim.withinday.replanning.parallel;
 
 import org.apache.log4j.Logger;
 import org.matsim.api.core.v01.Id;
+import org.matsim.api.core.v01.population.Person;
 import org.matsim.core.api.experimental.events.EventsManager;
 import org.matsim.core.gbl.Gbl;
 import org.matsim.core.mobsim.framework.MobsimAgent;
@@ -32,10 +33,13 @@ import org.matsim.withinday.replanning.identifiers.interfaces.AgentSelector;
 import org.matsim.withinday.replanning.replanners.interfaces.WithinDayReplanner;
 import org.matsim.withinday.replanning.replanners.tools.ReplanningTask;
 
+import java.util.ArrayList;
 import java.util.HashMap;
+import java.util.List;
 import java.util.Map;
 import java.util.Map.Entry;
 import java.util.Queue;
+import java.util.Set;
 import java.util.TreeMap;
 import java.util.concurrent.BrokenBarrierException;
 import java.util.concurrent.CyclicBarrier;
@@ -71,6 +75,15 @@ public abstract class ReplanningRunnable implements Runnable {
 	protected Map<Id<WithinDayReplanner>, Queue<ReplanningTask>> replanningTasks = new TreeMap<>();
     protected EventsManager eventsManager;
 	
+	/*
+	 * When replanning asynchronously, the mobsim has already gone on when the
+	 * replanning is done. The ReplanningEvents are therefore collected and
+	 * passed to the EventsManager by the mobsim thread, with the time when the
+	 * results are applied. Otherwise, the events would not be ordered chronologically.
+	 */
+	private boolean collectEvents = false;
+	private final List<ReplanningEvent> collectedEvents = new ArrayList<>();
+	
 	protected CyclicBarrier timeStepStartBarrier;
 	protected CyclicBarrier betweenReplannerBarrier;
 	protected CyclicBarrier timeStepEndBarrier;
@@ -86,6 +99,25 @@ public abstract class ReplanningRunnable implements Runnable {
 	public final void setTime(double time) {
 		this.time = time;
 	}
+	
+	public final void setCollectEvents(boolean collectEvents) {
+		this.collectEvents = collectEvents;
+	}
+	
+	/*
+	 * Passes the collected ReplanningEvents to the EventsManager, except those of
+	 * the agents whose results have been dropped. Must not be called while the
+	 * thread is replanning.
+	 */
+	public final void processCollectedEvents(double time, Set<Id<Person>> droppedAgentIds) {
+		if (eventsManager != null) {
+			for (ReplanningEvent event : this.collectedEvents) {
+				if (droppedAgentIds.contains(event.getPersonId())) continue;
+				eventsManager.processEvent(new ReplanningEvent(time, event.getPersonId(), event.getReplannerType()));
+			}
+		}
+		this.collectedEvents.clear();
+	}
 		
 	public final void setCyclicTimeStepStartBarrier(CyclicBarrier barrier) {
 		this.timeStepStartBarrier = barrier;
@@ -180,7 +212,8 @@ public abstract class ReplanningRunnable implements Runnable {
 					if (eventsManager != null) {
 						ReplanningEvent replanningEvent = new ReplanningEvent(time, withinDayAgent.getId(), 
 								withinDayReplanner.getClass().getSimpleName());
-						eventsManager.processEvent(replanningEvent);
+						if (collectEvents) this.collectedEvents.add(replanningEvent);
+						else eventsManager.processEvent(replanningEvent);
 					}
 					
 					counter.incCounter();
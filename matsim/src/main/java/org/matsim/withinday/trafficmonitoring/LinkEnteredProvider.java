@@ -24,6 +24,8 @@ import java.util.Collections;
 import java.util.Map;
 import java.util.concurrent.ConcurrentHashMap;
 
+import javax.inject.Inject;
+
 import org.matsim.api.core.v01.Id;
 import org.matsim.api.core.v01.events.LinkEnterEvent;
 import org.matsim.api.core.v01.events.PersonArrivalEvent;
@@ -37,8 +39,10 @@ import org.matsim.api.core.v01.events.handler.VehicleLeavesTrafficEventHandler;
 import org.matsim.api.core.v01.network.Link;
 import org.matsim.api.core.v01.events.handler.VehicleEntersTrafficEventHandler;
 import org.matsim.api.core.v01.population.Person;
+import org.matsim.core.api.experimental.events.EventsManager;
 import org.matsim.core.events.algorithms.Vehicle2DriverEventHandler;
 import org.matsim.core.mobsim.framework.events.MobsimAfterSimStepEvent;
+import org.matsim.core.mobsim.framework.listeners.FixedOrderSimulationListener;
 import org.matsim.core.mobsim.framework.listeners.MobsimAfterSimStepListener;
 
 /**
@@ -59,6 +63,19 @@ public class LinkEnteredProvider implements LinkEnterEventHandler, PersonArrival
 	
 	private Vehicle2DriverEventHandler delegate = new Vehicle2DriverEventHandler();
 	
+	public LinkEnteredProvider() {
+	}
+	
+	/*
+	 * Not bound eagerly by the WithinDayModule, i.e. only created, and registered as event handler and
+	 * simulation listener, when it is injected somewhere, e.g. to create a LinkEnteredIdentifierFactory.
+	 */
+	@Inject
+	public LinkEnteredProvider(EventsManager eventsManager, FixedOrderSimulationListener fosl) {
+		eventsManager.addHandler(this);
+		fosl.addSimulationListener(this);
+	}
+	
 	public Map<Id<Person>, Id<Link>> getLinkEnteredAgentsInLastTimeStep() {
 		return Collections.unmodifiableMap(this.lastTimeStepLinkEnteredAgents);
 	}
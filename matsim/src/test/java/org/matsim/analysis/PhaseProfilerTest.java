@@ -0,0 +1,102 @@
+/* *********************************************************************** *
+ * project: org.matsim.*
+ *                                                                         *
+ * *********************************************************************** *
+ *                                                                         *
+ * copyright       : (C) 2019 by the members listed in the COPYING,        *
+ *                   LICENSE and WARRANTY file.                            *
+ * email           : info at matsim dot org                                *
+ *                                                                         *
+ * *********************************************************************** *
+ *                                                                         *
+ *   This program is free software; you can redistribute it and/or modify  *
+ *   it under the terms of the GNU General Public License as published by  *
+ *   the Free Software Foundation; either version 2 of the License, or     *
+ *   (at your option) any later version.                                   *
+ *   See also COPYING, LICENSE and WARRANTY file                           *
+ *                                                                         *
+ * *********************************************************************** */
+
+package org.matsim.analysis;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+
+import org.junit.Assert;
+import org.junit.Rule;
+import org.junit.Test;
+import org.matsim.api.core.v01.Id;
+import org.matsim.api.core.v01.events.LinkEnterEvent;
+import org.matsim.api.core.v01.events.handler.LinkEnterEventHandler;
+import org.matsim.core.api.experimental.events.EventsManager;
+import org.matsim.core.events.EventsUtils;
+import org.matsim.core.utils.io.IOUtils;
+import org.matsim.testcases.MatsimTestUtils;
+
+public class PhaseProfilerTest {
+
+	@Rule public MatsimTestUtils utils = new MatsimTestUtils();
+
+	@Test
+	public void testDisabled() {
+		PhaseProfiler profiler = PhaseProfiler.getInstance();
+		profiler.setEnabled(false);
+		Assert.assertNull(PhaseProfiler.start(PhaseProfiler.CATEGORY_PHASE, "test"));
+		PhaseProfiler.stop(null);
+	}
+
+	@Test
+	public void testProfile() throws IOException {
+		PhaseProfiler profiler = PhaseProfiler.getInstance();
+		profiler.setEnabled(true);
+		try {
+			profiler.beginIteration(3);
+			for (int i = 0; i < 5; i++) {
+				PhaseProfiler.stop(PhaseProfiler.start(PhaseProfiler.CATEGORY_PHASE, "test"));
+			}
+			EventsManager events = EventsUtils.createEventsManager();
+			CountingHandler handler = new CountingHandler();
+			events.addHandler(handler);
+			for (int i = 0; i < 7; i++) {
+				events.processEvent(new LinkEnterEvent(i, Id.createVehicleId(1), Id.createLinkId(1)));
+			}
+			Assert.assertEquals(7, handler.count);
+			Assert.assertEquals(5, profiler.getTimer(PhaseProfiler.CATEGORY_PHASE, "test").getCount());
+			Assert.assertEquals(7, profiler.getTimer(PhaseProfiler.CATEGORY_EVENT_HANDLER, CountingHandler.class.getName()).getCount());
+
+			String filename = this.utils.getOutputDirectory() + "phase_profile.csv";
+			profiler.endIteration(filename);
+			List<String> lines = new ArrayList<>();
+			try (BufferedReader reader = IOUtils.getBufferedReader(filename)) {
+				String line;
+				while ((line = reader.readLine()) != null) {
+					lines.add(line);
+				}
+			}
+			Assert.assertEquals("iteration,category,name,count,totalMillis,maxMillis,allocatedBytes", lines.get(0));
+			Assert.assertEquals(3, lines.size());
+			Assert.assertTrue(lines.get(1).startsWith("3,"));
+
+			profiler.beginIteration(4);
+			Assert.assertEquals(0, profiler.getTimer(PhaseProfiler.CATEGORY_PHASE, "test").getCount());
+		} finally {
+			profiler.setEnabled(false);
+		}
+	}
+
+	private static class CountingHandler implements LinkEnterEventHandler {
+		int count = 0;
+
+		@Override
+		public void handleEvent(LinkEnterEvent event) {
+			this.count++;
+		}
+
+		@Override
+		public void reset(int iteration) {
+		}
+	}
+
+}
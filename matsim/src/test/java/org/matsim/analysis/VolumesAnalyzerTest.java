@@ -0,0 +1,120 @@
+/* *********************************************************************** *
+ * project: org.matsim.*
+ *                                                                         *
+ * *********************************************************************** *
+ *                                                                         *
+ * copyright       : (C) 2019 by the members listed in the COPYING,        *
+ *                   LICENSE and WARRANTY file.                            *
+ * email           : info at matsim dot org                                *
+ *                                                                         *
+ * *********************************************************************** *
+ *                                                                         *
+ *   This program is free software; you can redistribute it and/or modify  *
+ *   it under the terms of the GNU General Public License as published by  *
+ *   the Free Software Foundation; either version 2 of the License, or     *
+ *   (at your option) any later version.                                   *
+ *   See also COPYING, LICENSE and WARRANTY file                           *
+ *                                                                         *
+ * *********************************************************************** */
+
+package org.matsim.analysis;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import org.junit.Assert;
+import org.junit.Test;
+import org.matsim.api.core.v01.Coord;
+import org.matsim.api.core.v01.Id;
+import org.matsim.api.core.v01.TransportMode;
+import org.matsim.api.core.v01.events.LinkLeaveEvent;
+import org.matsim.api.core.v01.events.VehicleEntersTrafficEvent;
+import org.matsim.api.core.v01.network.Link;
+import org.matsim.api.core.v01.network.Network;
+import org.matsim.api.core.v01.network.Node;
+import org.matsim.api.core.v01.population.Person;
+import org.matsim.core.network.NetworkUtils;
+import org.matsim.vehicles.Vehicle;
+
+public class VolumesAnalyzerTest {
+
+	@Test
+	public void testVolumes() {
+		Network network = createNetwork();
+		Id<Link> link1 = Id.createLinkId(1);
+		Id<Link> unknownLink = Id.createLinkId("unknown");
+		Id<Vehicle> car = Id.createVehicleId("car");
+		Id<Vehicle> bike = Id.createVehicleId("bike");
+
+		VolumesAnalyzer analyzer = new VolumesAnalyzer(900, 24 * 3600 - 1, network);
+		analyzer.handleEvent(new VehicleEntersTrafficEvent(0, Id.create("1", Person.class), link1, car, TransportMode.car, 1.0));
+		analyzer.handleEvent(new VehicleEntersTrafficEvent(0, Id.create("2", Person.class), link1, bike, TransportMode.bike, 1.0));
+		analyzer.handleEvent(new LinkLeaveEvent(100, car, link1));
+		analyzer.handleEvent(new LinkLeaveEvent(200, bike, link1));
+		analyzer.handleEvent(new LinkLeaveEvent(1000, car, link1));
+		analyzer.handleEvent(new LinkLeaveEvent(4000, car, link1));
+		analyzer.handleEvent(new LinkLeaveEvent(30 * 3600, car, unknownLink));
+
+		Assert.assertEquals(97, analyzer.getVolumesArraySize());
+		int[] volumes = analyzer.getVolumesForLink(link1);
+		Assert.assertEquals(2, volumes[0]);
+		Assert.assertEquals(1, volumes[1]);
+		Assert.assertEquals(1, volumes[4]);
+		Assert.assertEquals(1, analyzer.getVolumesForLink(link1, TransportMode.bike)[0]);
+		Assert.assertEquals(1, analyzer.getVolumesForLink(link1, TransportMode.car)[0]);
+		Assert.assertNull(analyzer.getVolumesForLink(Id.createLinkId(2)));
+		Assert.assertEquals(1, analyzer.getVolumesForLink(unknownLink)[96]);
+
+		double[] perHour = analyzer.getVolumesPerHourForLink(link1);
+		Assert.assertEquals(3.0, perHour[0], 1e-10);
+		Assert.assertEquals(1.0, perHour[1], 1e-10);
+		Assert.assertEquals(2.0, analyzer.getVolumesPerHourForLink(link1, TransportMode.car)[0], 1e-10);
+
+		Assert.assertEquals(2, analyzer.getLinkIds().size());
+		Assert.assertTrue(analyzer.getLinkIds().contains(unknownLink));
+		Assert.assertEquals(2, analyzer.getModes().size());
+
+		analyzer.reset(1);
+		Assert.assertNull(analyzer.getVolumesForLink(link1));
+		Assert.assertNull(analyzer.getVolumesForLink(link1, TransportMode.car));
+		Assert.assertTrue(analyzer.getLinkIds().isEmpty());
+	}
+
+	@Test
+	public void testConcurrentEvents() throws InterruptedException {
+		Network network = createNetwork();
+		VolumesAnalyzer analyzer = new VolumesAnalyzer(3600, 24 * 3600 - 1, network);
+		List<Thread> threads = new ArrayList<>();
+		for (int t = 0; t < 4; t++) {
+			final Id<Vehicle> vehicleId = Id.createVehicleId(t);
+			threads.add(new Thread(() -> {
+				analyzer.handleEvent(new VehicleEntersTrafficEvent(0, Id.create("1", Person.class), Id.createLinkId(1), vehicleId,
+						TransportMode.car, 1.0));
+				for (int i = 0; i < 10000; i++) {
+					analyzer.handleEvent(new LinkLeaveEvent(i, vehicleId, Id.createLinkId(1 + i % 2)));
+				}
+			}));
+		}
+		for (Thread thread : threads) {
+			thread.start();
+		}
+		for (Thread thread : threads) {
+			thread.join();
+		}
+		Assert.assertEquals(4 * 3600 / 2, analyzer.getVolumesForLink(Id.createLinkId(1))[0]);
+		Assert.assertEquals(4 * 5000.0, analyzer.getVolumesPerHourForLink(Id.createLinkId(2), TransportMode.car)[0]
+				+ analyzer.getVolumesPerHourForLink(Id.createLinkId(2), TransportMode.car)[1]
+				+ analyzer.getVolumesPerHourForLink(Id.createLinkId(2), TransportMode.car)[2], 1e-10);
+	}
+
+	private static Network createNetwork() {
+		Network network = NetworkUtils.createNetwork();
+		Node node1 = NetworkUtils.createAndAddNode(network, Id.createNodeId(1), new Coord(0, 0));
+		Node node2 = NetworkUtils.createAndAddNode(network, Id.createNodeId(2), new Coord(1000, 0));
+		Node node3 = NetworkUtils.createAndAddNode(network, Id.createNodeId(3), new Coord(2000, 0));
+		NetworkUtils.createAndAddLink(network, Id.createLinkId(1), node1, node2, 1000, 10, 3600, 1);
+		NetworkUtils.createAndAddLink(network, Id.createLinkId(2), node2, node3, 1000, 10, 3600, 1);
+		return network;
+	}
+
+}
@@ -0,0 +1,114 @@
+/* *********************************************************************** *
+ * project: org.matsim.*
+ *                                                                         *
+ * *********************************************************************** *
+ *                                                                         *
+ * copyright       : (C) 2019 by the members listed in the COPYING,        *
+ *                   LICENSE and WARRANTY file.                            *
+ * email           : info at matsim dot org                                *
+ *                                                                         *
+ * *********************************************************************** *
+ *                                                                         *
+ *   This program is free software; you can redistribute it and/or modify  *
+ *   it under the terms of the GNU General Public License as published by  *
+ *   the Free Software Foundation; either version 2 of the License, or     *
+ *   (at your option) any later version.                                   *
+ *   See also COPYING, LICENSE and WARRANTY file                           *
+ *                                                                         *
+ * *********************************************************************** */
+
+package org.matsim.core.events;
+
+import java.io.File;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+import org.junit.Assert;
+import org.junit.Rule;
+import org.junit.Test;
+import org.matsim.api.core.v01.Id;
+import org.matsim.api.core.v01.events.Event;
+import org.matsim.api.core.v01.events.LinkEnterEvent;
+import org.matsim.api.core.v01.events.PersonDepartureEvent;
+import org.matsim.core.api.experimental.events.EventsManager;
+import org.matsim.core.events.algorithms.EventWriterXML;
+import org.matsim.core.events.handler.BasicEventHandler;
+import org.matsim.testcases.MatsimTestUtils;
+
+public class IndexedEventsReaderTest {
+
+	@Rule public MatsimTestUtils utils = new MatsimTestUtils();
+
+	@Test
+	public void testReadSlice_uncompressed() {
+		runTest(this.utils.getOutputDirectory() + "events.xml");
+	}
+
+	@Test
+	public void testReadSlice_compressed() {
+		runTest(this.utils.getOutputDirectory() + "events.xml.gz");
+	}
+
+	private static void runTest(String filename) {
+		List<Event> allEvents = writeEvents(filename);
+
+		List<String> expected = new ArrayList<>();
+		for (Event e : allEvents) {
+			if (e.getTime() >= 7200 && e.getTime() < 30000 && e.getEventType().equals(LinkEnterEvent.EVENT_TYPE)) {
+				expected.add(e.toString());
+			}
+		}
+
+		// first call builds the index, second one uses the stored index
+		for (int i = 0; i < 2; i++) {
+			EventsManager events = EventsUtils.createEventsManager();
+			EventCollector collector = new EventCollector();
+			events.addHandler(collector);
+			IndexedEventsReader reader = new IndexedEventsReader(events);
+			reader.setMaxBlockBytes(10000);
+			reader.setNumberOfThreads(2);
+			reader.readFile(filename, 7200, 30000, Collections.singleton(LinkEnterEvent.EVENT_TYPE));
+			Assert.assertEquals(expected, collector.events);
+			Assert.assertTrue(new File(filename + IndexedEventsReader.INDEX_SUFFIX).exists());
+		}
+
+		EventsManager events = EventsUtils.createEventsManager();
+		EventCollector collector = new EventCollector();
+		events.addHandler(collector);
+		new IndexedEventsReader(events).readFile(filename, Double.NEGATIVE_INFINITY, Double.POSITIVE_INFINITY);
+		Assert.assertEquals(allEvents.size(), collector.events.size());
+	}
+
+	private static List<Event> writeEvents(String filename) {
+		EventWriterXML writer = new EventWriterXML(filename);
+		List<Event> events = new ArrayList<>();
+		for (int i = 0; i < 20000; i++) {
+			double time = i * 3.0;
+			Event event;
+			if (i % 3 == 0) {
+				event = new LinkEnterEvent(time, Id.createVehicleId(i % 17), Id.createLinkId(i % 5));
+			} else {
+				event = new PersonDepartureEvent(time, Id.createPersonId(i), Id.createLinkId(3), "car");
+			}
+			writer.handleEvent(event);
+			events.add(event);
+		}
+		writer.closeFile();
+		return events;
+	}
+
+	private static class EventCollector implements BasicEventHandler {
+		final List<String> events = new ArrayList<>();
+
+		@Override
+		public void handleEvent(Event event) {
+			this.events.add(event.toString());
+		}
+
+		@Override
+		public void reset(int iteration) {
+		}
+	}
+
+}
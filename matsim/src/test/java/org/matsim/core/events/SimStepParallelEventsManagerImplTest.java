@@ -1,7 +1,11 @@
 package org.matsim.core.events;
 
+import java.util.ArrayList;
+import java.util.List;
+
 import org.junit.Test;
 import org.matsim.api.core.v01.Id;
+import org.matsim.api.core.v01.events.Event;
 import org.matsim.api.core.v01.events.LinkEnterEvent;
 import org.matsim.api.core.v01.events.LinkLeaveEvent;
 import org.matsim.api.core.v01.events.PersonStuckEvent;
@@ -51,4 +55,33 @@ public class SimStepParallelEventsManagerImplTest {
 					new PersonStuckEvent(1.0, Id.createPersonId(0), Id.createLinkId(0), "car")));
 	}
 
+	@Test
+	public void testProcessEventsInBatches() {
+		final SimStepParallelEventsManagerImpl events = new SimStepParallelEventsManagerImpl(4);
+		EventsCollector collector = new EventsCollector();
+		events.addHandler(collector);
+		events.initProcessing();
+		List<Event> batch = new ArrayList<>();
+		batch.add(new LinkEnterEvent(0.0, Id.createVehicleId(0), Id.createLinkId(0)));
+		batch.add(new LinkLeaveEvent(0.0, Id.createVehicleId(0), Id.createLinkId(0)));
+		events.processEvents(batch);
+		// the batch may be reused right away
+		batch.clear();
+		batch.add(new LinkEnterEvent(0.0, Id.createVehicleId(0), Id.createLinkId(1)));
+		events.processEvents(batch);
+		events.afterSimStep(0.0);
+		batch.clear();
+		batch.add(new LinkLeaveEvent(1.0, Id.createVehicleId(0), Id.createLinkId(1)));
+		events.processEvents(batch);
+		events.afterSimStep(1.0);
+		events.finishProcessing();
+
+		assertThat(collector.getEvents(),
+			contains(
+					new LinkEnterEvent(0.0, Id.createVehicleId(0), Id.createLinkId(0)),
+					new LinkLeaveEvent(0.0, Id.createVehicleId(0), Id.createLinkId(0)),
+					new LinkEnterEvent(0.0, Id.createVehicleId(0), Id.createLinkId(1)),
+					new LinkLeaveEvent(1.0, Id.createVehicleId(0), Id.createLinkId(1))));
+	}
+
 }
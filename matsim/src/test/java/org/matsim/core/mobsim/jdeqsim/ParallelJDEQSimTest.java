@@ -0,0 +1,169 @@
+/* *********************************************************************** *
+ * project: org.matsim.*
+ *                                                                         *
+ * *********************************************************************** *
+ *                                                                         *
+ * copyright       : (C) 2019 by the members listed in the COPYING,        *
+ *                   LICENSE and WARRANTY file.                            *
+ * email           : info at matsim dot org                                *
+ *                                                                         *
+ * *********************************************************************** *
+ *                                                                         *
+ *   This program is free software; you can redistribute it and/or modify  *
+ *   it under the terms of the GNU General Public License as published by  *
+ *   the Free Software Foundation; either version 2 of the License, or     *
+ *   (at your option) any later version.                                   *
+ *   See also COPYING, LICENSE and WARRANTY file                           *
+ *                                                                         *
+ * *********************************************************************** */
+
+package org.matsim.core.mobsim.jdeqsim;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.LinkedList;
+import java.util.List;
+
+import org.junit.Assert;
+import org.junit.Test;
+import org.matsim.api.core.v01.Scenario;
+import org.matsim.api.core.v01.TransportMode;
+import org.matsim.api.core.v01.events.Event;
+import org.matsim.api.core.v01.population.Activity;
+import org.matsim.api.core.v01.population.Leg;
+import org.matsim.api.core.v01.population.Person;
+import org.matsim.api.core.v01.population.PlanElement;
+import org.matsim.api.core.v01.population.Route;
+import org.matsim.core.config.Config;
+import org.matsim.core.config.ConfigUtils;
+import org.matsim.core.gbl.MatsimRandom;
+import org.matsim.core.population.routes.RouteUtils;
+import org.matsim.core.scenario.ScenarioUtils;
+
+public class ParallelJDEQSimTest extends AbstractJDEQSimTest {
+
+	@Test
+	public void test_equilPlans100_parallel() {
+		Scenario scenario = loadScenario(4);
+
+		this.runJDEQSim(scenario);
+
+		int boundaryRoads = 0;
+		for (Road road : Road.getAllRoads().values()) {
+			if (road instanceof BoundaryRoad) {
+				boundaryRoads++;
+			}
+		}
+		Assert.assertTrue("the network should be cut into partitions", boundaryRoads > 0);
+
+		Assert.assertEquals(scenario.getPopulation().getPersons().size(), super.eventsByPerson.size());
+		super.checkAscendingTimeStamps();
+		super.checkEventsCorrespondToPlans(scenario.getPopulation());
+	}
+
+	@Test
+	public void test_equilPlans100_parallel_deterministic() {
+		Scenario scenario = loadScenario(4);
+
+		this.runJDEQSim(scenario);
+		List<String> firstRun = toStrings(super.allEvents);
+
+		super.eventsByPerson = new HashMap<>();
+		super.vehicleToDriver = new HashMap<>();
+		super.allEvents = new LinkedList<>();
+		this.runJDEQSim(scenario);
+		List<String> secondRun = toStrings(super.allEvents);
+
+		Assert.assertFalse(firstRun.isEmpty());
+		Assert.assertEquals(firstRun, secondRun);
+	}
+
+	/**
+	 * The parallel simulation has to produce exactly the same events as the sequential one.
+	 */
+	@Test
+	public void test_equilPlans100_parallel_sameAsSequential() {
+		Assert.assertEquals(runAndGetEvents(loadScenario(1)), runAndGetEvents(loadScenario(4)));
+	}
+
+	/**
+	 * Teleported legs between two partitions are shorter in the future than the lookahead of the roads, and must
+	 * arrive in time nevertheless.
+	 */
+	@Test
+	public void test_equilPlans100_teleportedLegs_sameAsSequential() {
+		Scenario sequential = loadScenario(1);
+		teleportEveryThirdPerson(sequential, 5);
+		Scenario parallel = loadScenario(4);
+		teleportEveryThirdPerson(parallel, 5);
+
+		List<String> sequentialEvents = runAndGetEvents(sequential);
+		List<String> parallelEvents = runAndGetEvents(parallel);
+
+		Assert.assertTrue(Road.getAllRoads().values().stream().anyMatch(road -> road instanceof BoundaryRoad));
+		Assert.assertEquals(sequentialEvents, parallelEvents);
+	}
+
+	/**
+	 * With a teleported leg without travel time between two partitions, the network cannot be simulated in parallel.
+	 */
+	@Test
+	public void test_equilPlans100_teleportedLegsWithoutTravelTime_sequential() {
+		Scenario sequential = loadScenario(1);
+		teleportEveryThirdPerson(sequential, 0);
+		Scenario parallel = loadScenario(4);
+		teleportEveryThirdPerson(parallel, 0);
+
+		List<String> sequentialEvents = runAndGetEvents(sequential);
+		List<String> parallelEvents = runAndGetEvents(parallel);
+
+		Assert.assertTrue(Road.getAllRoads().values().stream().noneMatch(road -> road instanceof BoundaryRoad));
+		Assert.assertEquals(sequentialEvents, parallelEvents);
+	}
+
+	private List<String> runAndGetEvents(Scenario scenario) {
+		super.eventsByPerson = new HashMap<>();
+		super.vehicleToDriver = new HashMap<>();
+		super.allEvents = new LinkedList<>();
+		this.runJDEQSim(scenario);
+		Assert.assertFalse(super.allEvents.isEmpty());
+		return toStrings(super.allEvents);
+	}
+
+	private static void teleportEveryThirdPerson(Scenario scenario, double travelTime) {
+		int i = 0;
+		for (Person person : scenario.getPopulation().getPersons().values()) {
+			if (i++ % 3 != 0) {
+				continue;
+			}
+			List<PlanElement> planElements = person.getSelectedPlan().getPlanElements();
+			for (int j = 1; j < planElements.size() - 1; j += 2) {
+				Leg leg = (Leg) planElements.get(j);
+				Route route = RouteUtils.createGenericRouteImpl(((Activity) planElements.get(j - 1)).getLinkId(),
+						((Activity) planElements.get(j + 1)).getLinkId());
+				route.setTravelTime(travelTime);
+				leg.setMode(TransportMode.walk);
+				leg.setRoute(route);
+				leg.setTravelTime(travelTime);
+			}
+		}
+	}
+
+	private static Scenario loadScenario(int numberOfThreads) {
+		Config config = ConfigUtils.loadConfig("test/scenarios/equil/config.xml");
+		MatsimRandom.reset(config.global().getRandomSeed());
+		ConfigUtils.addOrGetModule(config, JDEQSimConfigGroup.NAME, JDEQSimConfigGroup.class).setNumberOfThreads(numberOfThreads);
+		Scenario scenario = ScenarioUtils.createScenario(config);
+		ScenarioUtils.loadScenario(scenario);
+		return scenario;
+	}
+
+	private static List<String> toStrings(List<Event> events) {
+		List<String> strings = new ArrayList<>();
+		for (Event event : events) {
+			strings.add(event.toString());
+		}
+		return strings;
+	}
+
+}
@@ -128,6 +128,32 @@ public class TestMessageQueue extends MatsimTestCase {
 		assertEquals(true, mq.isEmpty());
 	}
 	
+	// only messages until the given time are handed out, dead messages are skipped
+	public void testGetNextMessageUntilTime(){
+		MessageQueue mq=new MessageQueue();
+		Message m1=new DummyMessage();
+		m1.setMessageArrivalTime(1);
+		
+		Message m2=new DummyMessage();
+		m2.setMessageArrivalTime(2.5);
+		
+		Message m3=new DummyMessage();
+		m3.setMessageArrivalTime(2);
+		
+		mq.putMessage(m1);
+		mq.putMessage(m2);
+		mq.putMessage(m3);
+		mq.removeMessage(m3);
+		
+		assertEquals(true, mq.getNextMessage(0.5)==null);
+		assertEquals(true, mq.getNextMessage(2)==m1);
+		assertEquals(true, mq.getNextMessage(2)==null);
+		assertEquals(1, mq.getQueueSize());
+		assertEquals(true, mq.getNextMessage(3)==m2);
+		assertEquals(0, mq.getQueueSize());
+		assertEquals(true, mq.isEmpty());
+	}
+	
 	
 	
 }
@@ -0,0 +1,180 @@
+/* *********************************************************************** *
+ * project: org.matsim.*
+ *                                                                         *
+ * *********************************************************************** *
+ *                                                                         *
+ * copyright       : (C) 2019 by the members listed in the COPYING,        *
+ *                   LICENSE and WARRANTY file.                            *
+ * email           : info at matsim dot org                                *
+ *                                                                         *
+ * *********************************************************************** *
+ *                                                                         *
+ *   This program is free software; you can redistribute it and/or modify  *
+ *   it under the terms of the GNU General Public License as published by  *
+ *   the Free Software Foundation; either version 2 of the License, or     *
+ *   (at your option) any later version.                                   *
+ *   See also COPYING, LICENSE and WARRANTY file                           *
+ *                                                                         *
+ * *********************************************************************** */
+
+package org.matsim.core.mobsim.psim;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+
+import org.junit.Assert;
+import org.junit.Test;
+import org.matsim.api.core.v01.Coord;
+import org.matsim.api.core.v01.Id;
+import org.matsim.api.core.v01.Scenario;
+import org.matsim.api.core.v01.TransportMode;
+import org.matsim.api.core.v01.events.Event;
+import org.matsim.api.core.v01.network.Network;
+import org.matsim.api.core.v01.network.Node;
+import org.matsim.api.core.v01.population.Activity;
+import org.matsim.api.core.v01.population.Leg;
+import org.matsim.api.core.v01.population.Person;
+import org.matsim.api.core.v01.population.Plan;
+import org.matsim.api.core.v01.population.Population;
+import org.matsim.core.config.Config;
+import org.matsim.core.config.ConfigUtils;
+import org.matsim.core.config.groups.ControlerConfigGroup;
+import org.matsim.core.network.NetworkUtils;
+import org.matsim.core.population.PopulationUtils;
+import org.matsim.core.population.routes.GenericRouteImpl;
+import org.matsim.core.population.routes.RouteUtils;
+import org.matsim.core.router.StageActivityTypesImpl;
+import org.matsim.core.router.TripStructureUtils;
+import org.matsim.core.router.util.TravelTime;
+import org.matsim.core.scenario.ScenarioUtils;
+import org.matsim.core.scoring.ScoringFunction;
+import org.matsim.core.scoring.ScoringFunctionFactory;
+
+public class PSimTest {
+
+	@Test
+	public void testIsPseudoIteration() {
+		ControlerConfigGroup config = new ControlerConfigGroup();
+		config.setFirstIteration(0);
+		config.setLastIteration(10);
+		for (int i = 0; i <= 10; i++) {
+			Assert.assertFalse(PSim.isPseudoIteration(config, i));
+		}
+
+		config.setPseudoIterationsPerMobsimIteration(2);
+		boolean[] expected = {false, true, true, false, true, true, false, true, true, false, false};
+		for (int i = 0; i <= 10; i++) {
+			Assert.assertEquals("iteration " + i, expected[i], PSim.isPseudoIteration(config, i));
+		}
+	}
+
+	@Test
+	public void testScoresOnlyPlansWithoutScore() {
+		Config config = ConfigUtils.createConfig();
+		config.global().setNumberOfThreads(1);
+		Scenario scenario = ScenarioUtils.createScenario(config);
+		Network network = scenario.getNetwork();
+		Node n1 = NetworkUtils.createAndAddNode(network, Id.createNodeId(1), new Coord(0, 0));
+		Node n2 = NetworkUtils.createAndAddNode(network, Id.createNodeId(2), new Coord(1000, 0));
+		Node n3 = NetworkUtils.createAndAddNode(network, Id.createNodeId(3), new Coord(2000, 0));
+		Node n4 = NetworkUtils.createAndAddNode(network, Id.createNodeId(4), new Coord(3000, 0));
+		NetworkUtils.createAndAddLink(network, Id.createLinkId(1), n1, n2, 1000, 10, 3600, 1);
+		NetworkUtils.createAndAddLink(network, Id.createLinkId(2), n2, n3, 1000, 10, 3600, 1);
+		NetworkUtils.createAndAddLink(network, Id.createLinkId(3), n3, n4, 1000, 10, 3600, 1);
+
+		Population population = scenario.getPopulation();
+
+		Person mutated = createPerson(scenario, "mutated", null);
+		Person unchanged = createPerson(scenario, "unchanged", 5.0);
+
+		TravelTime travelTime = (link, time, person, vehicle) -> 100.0;
+		List<Double> travelTimes = new ArrayList<>();
+		List<Double> activityStartTimes = new ArrayList<>();
+		ScoringFunctionFactory factory = person -> new LegRecordingScoringFunction(travelTimes, activityStartTimes);
+		PSim psim = new PSim(config, population, network, null, factory,
+				Collections.singletonMap(TransportMode.car, travelTime), null, new StageActivityTypesImpl(), 1);
+		psim.run();
+
+		// 2 links with 100s each on the car leg, the teleported leg uses the travel time of its route
+		Assert.assertEquals(Arrays.asList(200.0, 600.0), travelTimes);
+		Assert.assertEquals(Arrays.asList(8 * 3600.0 + 200.0, 17 * 3600.0 + 600.0), activityStartTimes);
+		Assert.assertEquals(-800.0, mutated.getSelectedPlan().getScore(), 1e-10);
+		Assert.assertEquals(5.0, unchanged.getSelectedPlan().getScore(), 1e-10);
+	}
+
+	private static Person createPerson(Scenario scenario, String id, Double score) {
+		Population population = scenario.getPopulation();
+		Person person = population.getFactory().createPerson(Id.createPersonId(id));
+		Plan plan = PopulationUtils.createPlan(person);
+		Activity home = PopulationUtils.createAndAddActivityFromLinkId(plan, "home", Id.createLinkId(1));
+		home.setEndTime(8 * 3600);
+		Leg car = PopulationUtils.createAndAddLeg(plan, TransportMode.car);
+		car.setRoute(RouteUtils.createNetworkRoute(Arrays.asList(Id.createLinkId(1), Id.createLinkId(2), Id.createLinkId(3)),
+				scenario.getNetwork()));
+		Activity work = PopulationUtils.createAndAddActivityFromLinkId(plan, "work", Id.createLinkId(3));
+		work.setEndTime(17 * 3600);
+		Leg walk = PopulationUtils.createAndAddLeg(plan, TransportMode.walk);
+		GenericRouteImpl walkRoute = new GenericRouteImpl(Id.createLinkId(3), Id.createLinkId(1));
+		walkRoute.setTravelTime(600.0);
+		walk.setRoute(walkRoute);
+		PopulationUtils.createAndAddActivityFromLinkId(plan, "home", Id.createLinkId(1));
+		plan.setScore(score);
+		person.addPlan(plan);
+		person.setSelectedPlan(plan);
+		population.addPerson(person);
+		return person;
+	}
+
+	private static class LegRecordingScoringFunction implements ScoringFunction {
+
+		private final List<Double> travelTimes;
+		private final List<Double> activityStartTimes;
+		private double score = 0.0;
+
+		LegRecordingScoringFunction(List<Double> travelTimes, List<Double> activityStartTimes) {
+			this.travelTimes = travelTimes;
+			this.activityStartTimes = activityStartTimes;
+		}
+
+		@Override
+		public void handleActivity(Activity activity) {
+			if (!Double.isInfinite(activity.getStartTime())) {
+				this.activityStartTimes.add(activity.getStartTime());
+			}
+		}
+
+		@Override
+		public void handleLeg(Leg leg) {
+			this.travelTimes.add(leg.getTravelTime());
+			this.score -= leg.getTravelTime();
+		}
+
+		@Override
+		public void handleTrip(TripStructureUtils.Trip trip) {
+		}
+
+		@Override
+		public void agentStuck(double time) {
+		}
+
+		@Override
+		public void addMoney(double amount) {
+		}
+
+		@Override
+		public void finish() {
+		}
+
+		@Override
+		public double getScore() {
+			return this.score;
+		}
+
+		@Override
+		public void handleEvent(Event event) {
+		}
+	}
+
+}
@@ -0,0 +1,134 @@
+/* *********************************************************************** *
+ * project: org.matsim.*
+ *                                                                         *
+ * *********************************************************************** *
+ *                                                                         *
+ * copyright       : (C) 2019 by the members listed in the COPYING,        *
+ *                   LICENSE and WARRANTY file.                            *
+ * email           : info at matsim dot org                                *
+ *                                                                         *
+ * *********************************************************************** *
+ *                                                                         *
+ *   This program is free software; you can redistribute it and/or modify  *
+ *   it under the terms of the GNU General Public License as published by  *
+ *   the Free Software Foundation; either version 2 of the License, or     *
+ *   (at your option) any later version.                                   *
+ *   See also COPYING, LICENSE and WARRANTY file                           *
+ *                                                                         *
+ * *********************************************************************** */
+
+package org.matsim.core.mobsim.qsim;
+
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.PriorityBlockingQueue;
+
+import org.junit.Assert;
+import org.junit.Test;
+import org.matsim.api.core.v01.Id;
+import org.matsim.api.core.v01.Identifiable;
+import org.matsim.api.core.v01.population.Person;
+
+public class ActivityEndsQueueTest {
+
+	@Test
+	public void testPollDue_orderAndTies() {
+		ActivityEndsQueue<Agent> queue = new ActivityEndsQueue<>(1);
+		Agent a1 = new Agent("1");
+		Agent a2 = new Agent("2");
+		Agent a3 = new Agent("3");
+		queue.add(a1, 100.0);
+		queue.add(a3, 200.0);
+		queue.add(a2, 100.0);
+
+		Assert.assertNull(queue.pollDue(99.0));
+		Assert.assertSame("larger id first on ties", a2, queue.pollDue(100.0));
+		Assert.assertSame(a1, queue.pollDue(100.0));
+		Assert.assertNull(queue.pollDue(100.0));
+		Assert.assertSame(a3, queue.pollDue(500.0));
+		Assert.assertEquals(0, queue.size());
+	}
+
+	@Test
+	public void testRemoveAndReschedule() {
+		ActivityEndsQueue<Agent> queue = new ActivityEndsQueue<>(10);
+		Agent a1 = new Agent("1");
+		Agent a2 = new Agent("2");
+		queue.add(a1, 100.0);
+		queue.add(a2, 200.0);
+
+		Assert.assertTrue(queue.remove(a1));
+		Assert.assertFalse(queue.remove(a1));
+		queue.add(a1, 300.0);
+		queue.add(a2, 400.0); // updates the queued agent
+		Assert.assertEquals(2, queue.size());
+
+		Assert.assertSame(a1, queue.pollDue(1000.0));
+		Assert.assertSame(a2, queue.pollDue(1000.0));
+		Assert.assertNull(queue.pollDue(1000.0));
+		Assert.assertFalse(queue.remove(a2));
+	}
+
+	@Test
+	public void testSameOrderAsPriorityBlockingQueue() {
+		Comparator<Object[]> comparator = (arg0, arg1) -> {
+			int cmp = Double.compare((Double) arg0[1], (Double) arg1[1]);
+			return cmp == 0 ? ((Agent) arg1[0]).getId().compareTo(((Agent) arg0[0]).getId()) : cmp;
+		};
+		PriorityBlockingQueue<Object[]> reference = new PriorityBlockingQueue<>(500, comparator);
+		ActivityEndsQueue<Agent> queue = new ActivityEndsQueue<>(500);
+
+		Random random = new Random(4711);
+		List<Agent> agents = new ArrayList<>();
+		for (int i = 0; i < 1000; i++) {
+			Agent agent = new Agent(Integer.toString(i));
+			agents.add(agent);
+			double time = random.nextInt(100) * 60.0;
+			reference.add(new Object[] { agent, time });
+			queue.add(agent, time);
+		}
+		for (int i = 0; i < 200; i++) {
+			Agent agent = agents.get(random.nextInt(agents.size()));
+			Object[] referenceEntry = null;
+			for (Object[] entry : reference) {
+				if (entry[0] == agent) {
+					referenceEntry = entry;
+				}
+			}
+			reference.remove(referenceEntry);
+			Assert.assertTrue(queue.remove(agent));
+			double time = random.nextInt(100) * 60.0;
+			reference.add(new Object[] { agent, time });
+			queue.add(agent, time);
+		}
+
+		List<ActivityEndsQueue.Entry<Agent>> entries = queue.getQueuedEntries();
+		Object[] referenceEntries = reference.toArray();
+		Assert.assertEquals(referenceEntries.length, entries.size());
+		for (int i = 0; i < entries.size(); i++) {
+			Assert.assertSame("iteration order differs at " + i, ((Object[]) referenceEntries[i])[0], entries.get(i).agent);
+		}
+
+		while (!reference.isEmpty()) {
+			Object[] expected = reference.poll();
+			Assert.assertSame(expected[0], queue.pollDue((Double) expected[1]));
+		}
+		Assert.assertEquals(0, queue.size());
+	}
+
+	private static class Agent implements Identifiable<Person> {
+		private final Id<Person> id;
+
+		Agent(String id) {
+			this.id = Id.createPersonId(id);
+		}
+
+		@Override
+		public Id<Person> getId() {
+			return this.id;
+		}
+	}
+
+}
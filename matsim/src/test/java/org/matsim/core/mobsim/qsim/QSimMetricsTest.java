@@ -0,0 +1,166 @@
+/* *********************************************************************** *
+ * project: org.matsim.*
+ *                                                                         *
+ * *********************************************************************** *
+ *                                                                         *
+ * copyright       : (C) 2019 by the members listed in the COPYING,        *
+ *                   LICENSE and WARRANTY file.                            *
+ * email           : info at matsim dot org                                *
+ *                                                                         *
+ * *********************************************************************** *
+ *                                                                         *
+ *   This program is free software; you can redistribute it and/or modify  *
+ *   it under the terms of the GNU General Public License as published by  *
+ *   the Free Software Foundation; either version 2 of the License, or     *
+ *   (at your option) any later version.                                   *
+ *   See also COPYING, LICENSE and WARRANTY file                           *
+ *                                                                         *
+ * *********************************************************************** */
+
+package org.matsim.core.mobsim.qsim;
+
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+import org.junit.Assert;
+import org.junit.Rule;
+import org.junit.Test;
+import org.matsim.api.core.v01.Scenario;
+import org.matsim.core.api.experimental.events.EventsManager;
+import org.matsim.core.config.Config;
+import org.matsim.core.config.ConfigUtils;
+import org.matsim.core.controler.AbstractModule;
+import org.matsim.core.controler.Controler;
+import org.matsim.core.controler.PrepareForSimUtils;
+import org.matsim.core.controler.listener.IterationEndsListener;
+import org.matsim.core.events.EventsUtils;
+import org.matsim.core.scenario.ScenarioUtils;
+import org.matsim.testcases.MatsimTestUtils;
+
+public class QSimMetricsTest {
+
+	@Rule
+	public MatsimTestUtils utils = new MatsimTestUtils();
+
+	@Test
+	public void testMetricsAreReported() {
+		Config config = ConfigUtils.loadConfig("test/scenarios/equil/config.xml");
+		config.plans().setInputFile("plans100.xml");
+		config.qsim().setMetricsInterval(3600.0);
+		Scenario scenario = ScenarioUtils.loadScenario(config);
+		EventsManager events = EventsUtils.createEventsManager();
+
+		CollectingRegistry registry = new CollectingRegistry();
+		PrepareForSimUtils.createDefaultPrepareForSim(scenario).run();
+		new QSimBuilder(config) //
+			.useDefaults() //
+			.addOverridingModule(new AbstractModule() {
+				@Override
+				public void install() {
+					bind(QSimMetricsRegistry.class).toInstance(registry);
+				}
+			}) //
+			.build(scenario, events) //
+			.run();
+
+		// a bound registry is shared by all iterations and only closed at shutdown
+		Assert.assertFalse(registry.closed);
+		Assert.assertTrue(registry.samples.size() > 1);
+		for (int i = 1; i < registry.samples.size(); i++) {
+			Assert.assertTrue(registry.times.get(i) > registry.times.get(i - 1));
+		}
+		Map<String, Double> first = registry.samples.get(0);
+		Assert.assertTrue(first.containsKey(QSimMetrics.SIM_SECONDS_PER_WALL_SECOND));
+		Assert.assertTrue(first.containsKey(QSimMetrics.ACTIVE_LINKS));
+		Assert.assertTrue(first.containsKey(QSimMetrics.VEHICLES_ON_NETWORK));
+		Assert.assertTrue(first.containsKey(QSimMetrics.ENGINE_STEP_MILLIS_PREFIX + "QNetsimEngine"));
+
+		double eventsPerSecond = 0;
+		for (Map<String, Double> sample : registry.samples) {
+			eventsPerSecond += sample.get(QSimMetrics.EVENTS_PER_SECOND);
+		}
+		Assert.assertTrue(eventsPerSecond > 0);
+		Map<String, Double> last = registry.samples.get(registry.samples.size() - 1);
+		Assert.assertEquals(0.0, last.get(QSimMetrics.AGENTS_LIVING), 0.0);
+	}
+
+	@Test
+	public void testBoundRegistryIsFlushedPerIterationAndClosedAtShutdown() {
+		Config config = utils.loadConfig("test/scenarios/equil/config.xml");
+		config.plans().setInputFile("plans100.xml");
+		config.controler().setLastIteration(1);
+		config.controler().setCreateGraphs(false);
+		config.controler().setDumpDataAtEnd(false);
+		config.controler().setWriteEventsInterval(0);
+		config.controler().setWritePlansInterval(0);
+		config.qsim().setMetricsInterval(3600.0);
+
+		CollectingRegistry registry = new CollectingRegistry();
+		Controler controler = new Controler(config);
+		controler.addOverridingModule(new AbstractModule() {
+			@Override
+			public void install() {
+				bind(QSimMetricsRegistry.class).toInstance(registry);
+				addControlerListenerBinding().toInstance((IterationEndsListener) event -> {
+					Assert.assertFalse(registry.closed);
+					Assert.assertEquals(0.0, registry.samples.get(registry.samples.size() - 1).get(QSimMetrics.AGENTS_LIVING), 0.0);
+					registry.iterations++;
+				});
+			}
+		});
+		controler.run();
+
+		Assert.assertEquals(2, registry.iterations);
+		Assert.assertTrue(registry.closed);
+	}
+
+	@Test
+	public void testNoMetricsByDefault() {
+		Config config = ConfigUtils.loadConfig("test/scenarios/equil/config.xml");
+		config.plans().setInputFile("plans1.xml");
+		Scenario scenario = ScenarioUtils.loadScenario(config);
+		CollectingRegistry registry = new CollectingRegistry();
+		PrepareForSimUtils.createDefaultPrepareForSim(scenario).run();
+		new QSimBuilder(config) //
+			.useDefaults() //
+			.addOverridingModule(new AbstractModule() {
+				@Override
+				public void install() {
+					bind(QSimMetricsRegistry.class).toInstance(registry);
+				}
+			}) //
+			.build(scenario, EventsUtils.createEventsManager()) //
+			.run();
+
+		Assert.assertTrue(registry.samples.isEmpty());
+		Assert.assertFalse(registry.closed);
+	}
+
+	private static class CollectingRegistry implements QSimMetricsRegistry {
+		final List<Map<String, Double>> samples = new ArrayList<>();
+		final List<Double> times = new ArrayList<>();
+		private Map<String, Double> current = new LinkedHashMap<>();
+		boolean closed = false;
+		int iterations = 0;
+
+		@Override
+		public void record(String name, double value) {
+			this.current.put(name, value);
+		}
+
+		@Override
+		public void flush(double simTime) {
+			this.samples.add(this.current);
+			this.times.add(simTime);
+			this.current = new LinkedHashMap<>();
+		}
+
+		@Override
+		public void close() {
+			this.closed = true;
+		}
+	}
+
+}
@@ -0,0 +1,164 @@
+/* *********************************************************************** *
+ * project: org.matsim.*
+ * CompactPersonDriverAgentTest.java
+ *                                                                         *
+ * *********************************************************************** *
+ *                                                                         *
+ * copyright       : (C) 2019 by the members listed in the COPYING,        *
+ *                   LICENSE and WARRANTY file.                            *
+ * email           : info at matsim dot org                                *
+ *                                                                         *
+ * *********************************************************************** *
+ *                                                                         *
+ *   This program is free software; you can redistribute it and/or modify  *
+ *   it under the terms of the GNU General Public License as published by  *
+ *   the Free Software Foundation; either version 2 of the License, or     *
+ *   (at your option) any later version.                                   *
+ *   See also COPYING, LICENSE and WARRANTY file                           *
+ *                                                                         *
+ * *********************************************************************** */
+
+package org.matsim.core.mobsim.qsim.agents;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+
+import org.junit.Assert;
+import org.junit.Test;
+import org.matsim.api.core.v01.Coord;
+import org.matsim.api.core.v01.Id;
+import org.matsim.api.core.v01.Scenario;
+import org.matsim.api.core.v01.TransportMode;
+import org.matsim.api.core.v01.events.Event;
+import org.matsim.api.core.v01.events.LinkEnterEvent;
+import org.matsim.api.core.v01.events.PersonArrivalEvent;
+import org.matsim.api.core.v01.network.Link;
+import org.matsim.api.core.v01.network.Network;
+import org.matsim.api.core.v01.network.Node;
+import org.matsim.api.core.v01.population.Activity;
+import org.matsim.api.core.v01.population.Leg;
+import org.matsim.api.core.v01.population.Person;
+import org.matsim.api.core.v01.population.Plan;
+import org.matsim.api.core.v01.population.Population;
+import org.matsim.api.core.v01.population.Route;
+import org.matsim.core.api.experimental.events.EventsManager;
+import org.matsim.core.config.Config;
+import org.matsim.core.config.ConfigUtils;
+import org.matsim.core.controler.PrepareForSimUtils;
+import org.matsim.core.events.EventsUtils;
+import org.matsim.core.events.handler.BasicEventHandler;
+import org.matsim.core.mobsim.framework.MobsimAgent;
+import org.matsim.core.mobsim.qsim.QSim;
+import org.matsim.core.mobsim.qsim.QSimBuilder;
+import org.matsim.core.network.NetworkUtils;
+import org.matsim.core.population.PopulationUtils;
+import org.matsim.core.population.routes.RouteUtils;
+import org.matsim.core.scenario.ScenarioUtils;
+
+public class CompactPersonDriverAgentTest {
+
+	private static final Id<Link> LINK_1 = Id.createLinkId("1");
+	private static final Id<Link> LOOP_LINK = Id.createLinkId("loop");
+	private static final Id<Link> LINK_2 = Id.createLinkId("2");
+
+	/**
+	 * A plan with a car leg over a loop link, a teleported walk leg and a car leg that starts and ends on the same
+	 * link: the compact agent has to produce the same events as the default agent.
+	 */
+	@Test
+	public void testLoopLinkAndTeleportedLegs() {
+		List<Event> eventsDefault = runQSim(false);
+		List<Event> eventsCompact = runQSim(true);
+
+		Assert.assertEquals(eventsDefault, eventsCompact);
+
+		int loopLinkEnters = 0;
+		List<Id<Link>> arrivalLinks = new ArrayList<>();
+		for (Event event : eventsCompact) {
+			if (event instanceof LinkEnterEvent && ((LinkEnterEvent) event).getLinkId().equals(LOOP_LINK)) {
+				loopLinkEnters++;
+			} else if (event instanceof PersonArrivalEvent) {
+				arrivalLinks.add(((PersonArrivalEvent) event).getLinkId());
+			}
+		}
+		Assert.assertEquals(1, loopLinkEnters);
+		Assert.assertEquals(Arrays.asList(LINK_2, LINK_1, LINK_1), arrivalLinks);
+	}
+
+	private static List<Event> runQSim(boolean usingCompactAgents) {
+		Config config = ConfigUtils.createConfig();
+		config.qsim().setUsingCompactAgents(usingCompactAgents);
+		Scenario scenario = ScenarioUtils.createScenario(config);
+		createNetwork(scenario.getNetwork());
+		createPerson(scenario.getPopulation());
+
+		List<Event> collected = new ArrayList<>();
+		EventsManager events = EventsUtils.createEventsManager();
+		events.addHandler(new BasicEventHandler() {
+			@Override
+			public void handleEvent(Event event) {
+				collected.add(event);
+			}
+
+			@Override
+			public void reset(int iteration) {
+			}
+		});
+
+		PrepareForSimUtils.createDefaultPrepareForSim(scenario).run();
+		QSim qsim = new QSimBuilder(config) //
+			.useDefaults() //
+			.build(scenario, events);
+		qsim.run();
+
+		Assert.assertEquals(1, qsim.getAgents().size());
+		for (MobsimAgent agent : qsim.getAgents().values()) {
+			Assert.assertEquals(usingCompactAgents, agent instanceof CompactPersonDriverAgent);
+		}
+		return collected;
+	}
+
+	/*
+	 * (1)--1-->(2)--2-->(3)--3-->(1), with a loop link at node 2
+	 */
+	private static void createNetwork(Network network) {
+		Node node1 = NetworkUtils.createAndAddNode(network, Id.createNodeId("1"), new Coord(0, 0));
+		Node node2 = NetworkUtils.createAndAddNode(network, Id.createNodeId("2"), new Coord(1000, 0));
+		Node node3 = NetworkUtils.createAndAddNode(network, Id.createNodeId("3"), new Coord(2000, 0));
+		NetworkUtils.createAndAddLink(network, LINK_1, node1, node2, 1000, 10, 3600, 1);
+		NetworkUtils.createAndAddLink(network, LOOP_LINK, node2, node2, 500, 10, 3600, 1);
+		NetworkUtils.createAndAddLink(network, LINK_2, node2, node3, 1000, 10, 3600, 1);
+		NetworkUtils.createAndAddLink(network, Id.createLinkId("3"), node3, node1, 2000, 10, 3600, 1);
+	}
+
+	private static void createPerson(Population population) {
+		Person person = population.getFactory().createPerson(Id.createPersonId("1"));
+		Plan plan = PopulationUtils.createPlan(person);
+		person.addPlan(plan);
+
+		Activity home = PopulationUtils.createAndAddActivityFromLinkId(plan, "h", LINK_1);
+		home.setEndTime(6 * 3600);
+		Leg car = PopulationUtils.createAndAddLeg(plan, TransportMode.car);
+		car.setRoute(RouteUtils.createLinkNetworkRouteImpl(LINK_1, Collections.singletonList(LOOP_LINK), LINK_2));
+
+		Activity work = PopulationUtils.createAndAddActivityFromLinkId(plan, "w", LINK_2);
+		work.setMaximumDuration(3600);
+		Leg walk = PopulationUtils.createAndAddLeg(plan, TransportMode.walk);
+		Route walkRoute = RouteUtils.createGenericRouteImpl(LINK_2, LINK_1);
+		walkRoute.setTravelTime(1200);
+		walkRoute.setDistance(1000);
+		walk.setRoute(walkRoute);
+		walk.setTravelTime(1200);
+
+		Activity shop = PopulationUtils.createAndAddActivityFromLinkId(plan, "s", LINK_1);
+		shop.setMaximumDuration(1800);
+		Leg carOnSameLink = PopulationUtils.createAndAddLeg(plan, TransportMode.car);
+		carOnSameLink.setRoute(RouteUtils.createLinkNetworkRouteImpl(LINK_1, LINK_1));
+
+		PopulationUtils.createAndAddActivityFromLinkId(plan, "h", LINK_1);
+		population.addPerson(person);
+	}
+
+}
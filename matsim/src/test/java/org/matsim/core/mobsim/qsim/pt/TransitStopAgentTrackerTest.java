@@ -20,6 +20,10 @@
 
 package org.matsim.core.mobsim.qsim.pt;
 
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
 import junit.framework.TestCase;
 
 import org.apache.log4j.Logger;
@@ -28,7 +32,9 @@ import org.matsim.api.core.v01.Id;
 import org.matsim.core.api.experimental.events.EventsManager;
 import org.matsim.core.events.EventsUtils;
 import org.matsim.pt.fakes.FakeAgent;
+import org.matsim.pt.fakes.FakePassengerAgent;
 import org.matsim.pt.transitSchedule.TransitScheduleFactoryImpl;
+import org.matsim.pt.transitSchedule.api.TransitLine;
 import org.matsim.pt.transitSchedule.api.TransitScheduleFactory;
 import org.matsim.pt.transitSchedule.api.TransitStopFacility;
 
@@ -90,6 +96,90 @@ public class TransitStopAgentTrackerTest extends TestCase {
 		assertEquals(1, tracker.getAgentsAtFacility(stop1.getId()).size()); // should stay the same
 	}
 
+	public void testGetAgentsAtFacilityForLine() {
+		EventsManager events = EventsUtils.createEventsManager();
+		TransitStopAgentTracker tracker = new TransitStopAgentTracker(events);
+		TransitScheduleFactory builder = new TransitScheduleFactoryImpl();
+		Id<TransitLine> line1 = Id.create(1, TransitLine.class);
+		Id<TransitLine> line2 = Id.create(2, TransitLine.class);
+		PTPassengerAgent agent1 = new LinePassengerAgent(line1);
+		PTPassengerAgent agent2 = new LinePassengerAgent(null);
+		PTPassengerAgent agent3 = new LinePassengerAgent(line2);
+		PTPassengerAgent agent4 = new LinePassengerAgent(line1);
+		TransitStopFacility stop1 = builder.createTransitStopFacility(Id.create(1, TransitStopFacility.class), new Coord((double) 2, (double) 3), false);
+
+		tracker.addAgentToStop(10, agent1, stop1.getId());
+		tracker.addAgentToStop(11, agent2, stop1.getId());
+		tracker.addAgentToStop(12, agent3, stop1.getId());
+		tracker.addAgentToStop(13, agent4, stop1.getId());
+
+		assertEquals(Arrays.asList(agent1, agent2, agent3, agent4), tracker.getAgentsAtFacility(stop1.getId()));
+		assertEquals(Arrays.asList(agent1, agent2, agent4), tracker.getAgentsAtFacility(stop1.getId(), line1));
+		assertEquals(Arrays.asList(agent2, agent3), tracker.getAgentsAtFacility(stop1.getId(), line2));
+		assertEquals(Arrays.asList(agent2), tracker.getAgentsAtFacility(stop1.getId(), Id.create(3, TransitLine.class)));
+
+		tracker.removeAgentFromStop(agent2, stop1.getId());
+		tracker.removeAgentFromStop(agent1, stop1.getId());
+		assertEquals(Arrays.asList(agent4), tracker.getAgentsAtFacility(stop1.getId(), line1));
+		assertEquals(Arrays.asList(agent3), tracker.getAgentsAtFacility(stop1.getId(), line2));
+		assertEquals(Arrays.asList(agent3, agent4), tracker.getAgentsAtFacility(stop1.getId()));
+	}
+
+	public void testVisitAgentsAtFacility() {
+		EventsManager events = EventsUtils.createEventsManager();
+		TransitStopAgentTracker tracker = new TransitStopAgentTracker(events);
+		Id<TransitLine> line1 = Id.create(1, TransitLine.class);
+		PTPassengerAgent agent1 = new LinePassengerAgent(line1);
+		PTPassengerAgent agent2 = new LinePassengerAgent(null);
+		PTPassengerAgent agent3 = new LinePassengerAgent(line1);
+		Id<TransitStopFacility> stop1 = Id.create(1, TransitStopFacility.class);
+
+		List<PTPassengerAgent> visited = new ArrayList<>();
+		tracker.visitAgentsAtFacility(stop1, line1, visited::add);
+		assertTrue(visited.isEmpty());
+
+		tracker.addAgentToStop(10, agent1, stop1);
+		tracker.addAgentToStop(11, agent2, stop1);
+		tracker.addAgentToStop(12, agent3, stop1);
+		tracker.visitAgentsAtFacility(stop1, line1, visited::add);
+		assertEquals(Arrays.asList(agent1, agent2, agent3), visited);
+
+		// the visitor stops the visit
+		visited.clear();
+		tracker.visitAgentsAtFacility(stop1, line1, agent -> visited.add(agent) && visited.size() < 2);
+		assertEquals(Arrays.asList(agent1, agent2), visited);
+	}
+
+	public void testUpdateDesiredLine() {
+		EventsManager events = EventsUtils.createEventsManager();
+		TransitStopAgentTracker tracker = new TransitStopAgentTracker(events);
+		Id<TransitLine> line1 = Id.create(1, TransitLine.class);
+		Id<TransitLine> line2 = Id.create(2, TransitLine.class);
+		LinePassengerAgent agent1 = new LinePassengerAgent(line1);
+		LinePassengerAgent agent2 = new LinePassengerAgent(line2);
+		LinePassengerAgent agent3 = new LinePassengerAgent(line2);
+		Id<TransitStopFacility> stop1 = Id.create(1, TransitStopFacility.class);
+
+		tracker.addAgentToStop(10, agent1, stop1);
+		tracker.addAgentToStop(11, agent2, stop1);
+		tracker.addAgentToStop(12, agent3, stop1);
+
+		// the agent arrived first, so it is still the first one waiting for its new line
+		agent1.lineId = line2;
+		tracker.updateDesiredLine(agent1, stop1);
+		assertTrue(tracker.getAgentsAtFacility(stop1, line1).isEmpty());
+		assertEquals(Arrays.asList(agent1, agent2, agent3), tracker.getAgentsAtFacility(stop1, line2));
+
+		agent2.lineId = null;
+		tracker.updateDesiredLine(agent2, stop1);
+		assertEquals(Arrays.asList(agent2), tracker.getAgentsAtFacility(stop1, line1));
+		assertEquals(Arrays.asList(agent1, agent2, agent3), tracker.getAgentsAtFacility(stop1, line2));
+		assertEquals(Arrays.asList(agent1, agent2, agent3), tracker.getAgentsAtFacility(stop1));
+
+		tracker.removeAgentFromStop(agent2, stop1);
+		assertEquals(Arrays.asList(agent1, agent3), tracker.getAgentsAtFacility(stop1, line2));
+	}
+
 	public void testGetAgentsAtStopImmutable() {
 		EventsManager events = EventsUtils.createEventsManager();
 		TransitStopAgentTracker tracker = new TransitStopAgentTracker(events);
@@ -114,4 +204,18 @@ public class TransitStopAgentTrackerTest extends TestCase {
 			log.info("catched expected exception.", e);
 		}
 	}
+
+	private static class LinePassengerAgent extends FakePassengerAgent {
+		private Id<TransitLine> lineId;
+
+		LinePassengerAgent(final Id<TransitLine> lineId) {
+			super(null);
+			this.lineId = lineId;
+		}
+
+		@Override
+		public Id<TransitLine> getDesiredLineId() {
+			return this.lineId;
+		}
+	}
 }
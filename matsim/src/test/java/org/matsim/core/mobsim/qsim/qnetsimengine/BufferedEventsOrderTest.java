@@ -0,0 +1,221 @@
+/* *********************************************************************** *
+ * project: org.matsim.*
+ *                                                                         *
+ * *********************************************************************** *
+ *                                                                         *
+ * copyright       : (C) 2019 by the members listed in the COPYING,        *
+ *                   LICENSE and WARRANTY file.                            *
+ * email           : info at matsim dot org                                *
+ *                                                                         *
+ * *********************************************************************** *
+ *                                                                         *
+ *   This program is free software; you can redistribute it and/or modify  *
+ *   it under the terms of the GNU General Public License as published by  *
+ *   the Free Software Foundation; either version 2 of the License, or     *
+ *   (at your option) any later version.                                   *
+ *   See also COPYING, LICENSE and WARRANTY file                           *
+ *                                                                         *
+ * *********************************************************************** */
+
+package org.matsim.core.mobsim.qsim.qnetsimengine;
+
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Map;
+import java.util.Set;
+
+import org.junit.Assert;
+import org.junit.Test;
+import org.matsim.api.core.v01.Id;
+import org.matsim.api.core.v01.Scenario;
+import org.matsim.api.core.v01.TransportMode;
+import org.matsim.api.core.v01.events.Event;
+import org.matsim.api.core.v01.events.LinkEnterEvent;
+import org.matsim.api.core.v01.events.LinkLeaveEvent;
+import org.matsim.api.core.v01.events.PersonArrivalEvent;
+import org.matsim.api.core.v01.events.PersonDepartureEvent;
+import org.matsim.api.core.v01.events.PersonEntersVehicleEvent;
+import org.matsim.api.core.v01.events.PersonLeavesVehicleEvent;
+import org.matsim.api.core.v01.events.PersonStuckEvent;
+import org.matsim.api.core.v01.events.VehicleAbortsEvent;
+import org.matsim.api.core.v01.events.VehicleEntersTrafficEvent;
+import org.matsim.api.core.v01.events.VehicleLeavesTrafficEvent;
+import org.matsim.api.core.v01.network.Link;
+import org.matsim.api.core.v01.population.Person;
+import org.matsim.core.api.experimental.events.EventsManager;
+import org.matsim.core.api.experimental.events.VehicleArrivesAtFacilityEvent;
+import org.matsim.core.api.experimental.events.VehicleDepartsAtFacilityEvent;
+import org.matsim.core.config.Config;
+import org.matsim.core.config.ConfigUtils;
+import org.matsim.core.controler.PrepareForSimUtils;
+import org.matsim.core.events.EventsUtils;
+import org.matsim.core.events.handler.BasicEventHandler;
+import org.matsim.core.gbl.MatsimRandom;
+import org.matsim.core.mobsim.qsim.QSimBuilder;
+import org.matsim.core.scenario.ScenarioUtils;
+import org.matsim.core.utils.io.IOUtils;
+import org.matsim.examples.ExamplesUtils;
+import org.matsim.pt.transitSchedule.api.TransitStopFacility;
+import org.matsim.vehicles.Vehicle;
+
+/**
+ * Checks that the events, which the runners of the {@link QNetsimEngine} buffer when running with several threads, are
+ * passed on in an order that is consistent for every vehicle and every agent, also without deterministic parallelism
+ * and also for the events of transit drivers and their passengers at stops.
+ */
+public class BufferedEventsOrderTest {
+
+	@Test
+	public void testEventsOrderedPerVehicleWithFourThreads() {
+		Config config = ConfigUtils.loadConfig(IOUtils.newUrl(ExamplesUtils.getTestScenarioURL("equil"), "config.xml"));
+		config.qsim().setNumberOfThreads(4);
+		config.qsim().setBufferingEvents(true);
+		config.qsim().setDeterministicParallelism(false);
+		// congested, so that many vehicles move over the nodes in the same time step
+		config.qsim().setFlowCapFactor(0.05);
+		config.qsim().setStorageCapFactor(0.05);
+
+		EventsOrderChecker checker = run(config);
+
+		Assert.assertTrue(checker.linkEnterCount > 0);
+		Assert.assertTrue(checker.vehiclesInTraffic.isEmpty());
+		Assert.assertTrue(checker.departedPersons.isEmpty());
+	}
+
+	@Test
+	public void testTransitEventsOrderedPerVehicleWithFourThreads() {
+		Config config = ConfigUtils.loadConfig(IOUtils.newUrl(ExamplesUtils.getTestScenarioURL("pt-tutorial"), "0.config.xml"));
+		config.qsim().setNumberOfThreads(4);
+		config.qsim().setBufferingEvents(true);
+		config.qsim().setDeterministicParallelism(false);
+
+		EventsOrderChecker checker = run(config);
+
+		Assert.assertTrue(checker.linkEnterCount > 0);
+		Assert.assertTrue(checker.stopArrivalCount > 0);
+		Assert.assertTrue(checker.boardingCount > 0);
+		Assert.assertTrue(checker.vehiclesInTraffic.isEmpty());
+		Assert.assertTrue(checker.vehiclesAtFacility.isEmpty());
+		Assert.assertTrue(checker.departedPersons.isEmpty());
+	}
+
+	private static EventsOrderChecker run(Config config) {
+		MatsimRandom.reset(config.global().getRandomSeed());
+		Scenario scenario = ScenarioUtils.loadScenario(config);
+
+		EventsManager events = EventsUtils.createEventsManager();
+		EventsOrderChecker checker = new EventsOrderChecker(scenario);
+		events.addHandler(checker);
+
+		PrepareForSimUtils.createDefaultPrepareForSim(scenario).run();
+		new QSimBuilder(config) //
+			.useDefaults() //
+			.build(scenario, events) //
+			.run();
+		return checker;
+	}
+
+	private static class EventsOrderChecker implements BasicEventHandler {
+
+		private final Scenario scenario;
+		private final Map<Id<Vehicle>, Id<Link>> vehiclesInTraffic = new HashMap<>();
+		private final Set<Id<Vehicle>> vehiclesBetweenLinks = new HashSet<>();
+		private final Map<Id<Vehicle>, Id<TransitStopFacility>> vehiclesAtFacility = new HashMap<>();
+		private final Set<Id<Person>> departedPersons = new HashSet<>();
+		private final Set<Id<Person>> driversOutOfTraffic = new HashSet<>();
+		private double lastTime = Double.NEGATIVE_INFINITY;
+		private int linkEnterCount = 0;
+		private int stopArrivalCount = 0;
+		private int boardingCount = 0;
+
+		EventsOrderChecker(Scenario scenario) {
+			this.scenario = scenario;
+		}
+
+		@Override
+		public void handleEvent(Event event) {
+			Assert.assertTrue("events not ordered by time: " + event, event.getTime() >= this.lastTime);
+			this.lastTime = event.getTime();
+
+			if (event instanceof PersonDepartureEvent) {
+				this.departedPersons.add(((PersonDepartureEvent) event).getPersonId());
+			} else if (event instanceof VehicleEntersTrafficEvent) {
+				VehicleEntersTrafficEvent enters = (VehicleEntersTrafficEvent) event;
+				Assert.assertTrue("departing driver has not departed: " + event, this.departedPersons.contains(enters.getPersonId()));
+				Assert.assertNull("vehicle is already in traffic: " + event,
+						this.vehiclesInTraffic.put(enters.getVehicleId(), enters.getLinkId()));
+			} else if (event instanceof LinkLeaveEvent) {
+				LinkLeaveEvent leave = (LinkLeaveEvent) event;
+				Assert.assertEquals("vehicle leaves a link it is not on: " + event, leave.getLinkId(),
+						this.vehiclesInTraffic.get(leave.getVehicleId()));
+				Assert.assertTrue(this.vehiclesBetweenLinks.add(leave.getVehicleId()));
+			} else if (event instanceof LinkEnterEvent) {
+				LinkEnterEvent enter = (LinkEnterEvent) event;
+				Assert.assertTrue("vehicle enters a link without leaving the previous one: " + event,
+						this.vehiclesBetweenLinks.remove(enter.getVehicleId()));
+				this.vehiclesInTraffic.put(enter.getVehicleId(), enter.getLinkId());
+				this.linkEnterCount++;
+			} else if (event instanceof VehicleLeavesTrafficEvent) {
+				VehicleLeavesTrafficEvent leaves = (VehicleLeavesTrafficEvent) event;
+				Assert.assertFalse(this.vehiclesBetweenLinks.contains(leaves.getVehicleId()));
+				Assert.assertEquals("vehicle leaves traffic on a link it is not on: " + event, leaves.getLinkId(),
+						this.vehiclesInTraffic.remove(leaves.getVehicleId()));
+				this.driversOutOfTraffic.add(leaves.getPersonId());
+			} else if (event instanceof PersonArrivalEvent) {
+				PersonArrivalEvent arrival = (PersonArrivalEvent) event;
+				boolean outOfTraffic = this.driversOutOfTraffic.remove(arrival.getPersonId());
+				if (arrival.getLegMode().equals(TransportMode.car)) {
+					Assert.assertTrue("driver arrives before the vehicle left traffic: " + event, outOfTraffic);
+				}
+				this.departedPersons.remove(arrival.getPersonId());
+			} else if (event instanceof VehicleArrivesAtFacilityEvent) {
+				// a vehicle that is already in traffic has to be on the link of the stop
+				VehicleArrivesAtFacilityEvent arrives = (VehicleArrivesAtFacilityEvent) event;
+				Id<Link> linkId = this.vehiclesInTraffic.get(arrives.getVehicleId());
+				if (linkId != null) {
+					TransitStopFacility facility = this.scenario.getTransitSchedule().getFacilities().get(arrives.getFacilityId());
+					Assert.assertEquals("vehicle arrives at a stop on another link: " + event, facility.getLinkId(), linkId);
+					Assert.assertFalse(this.vehiclesBetweenLinks.contains(arrives.getVehicleId()));
+				}
+				Assert.assertNull("vehicle is already at a stop: " + event,
+						this.vehiclesAtFacility.put(arrives.getVehicleId(), arrives.getFacilityId()));
+				this.stopArrivalCount++;
+			} else if (event instanceof VehicleDepartsAtFacilityEvent) {
+				VehicleDepartsAtFacilityEvent departs = (VehicleDepartsAtFacilityEvent) event;
+				Assert.assertEquals("vehicle departs from a stop it has not arrived at: " + event, departs.getFacilityId(),
+						this.vehiclesAtFacility.remove(departs.getVehicleId()));
+			} else if (event instanceof PersonEntersVehicleEvent) {
+				PersonEntersVehicleEvent entersVehicle = (PersonEntersVehicleEvent) event;
+				if (isPassenger(entersVehicle.getPersonId(), entersVehicle.getVehicleId())) {
+					Assert.assertTrue("passenger boards outside of a stop: " + event,
+							this.vehiclesAtFacility.containsKey(entersVehicle.getVehicleId()));
+					this.boardingCount++;
+				}
+			} else if (event instanceof PersonLeavesVehicleEvent) {
+				PersonLeavesVehicleEvent leavesVehicle = (PersonLeavesVehicleEvent) event;
+				if (isPassenger(leavesVehicle.getPersonId(), leavesVehicle.getVehicleId())) {
+					Assert.assertTrue("passenger alights outside of a stop: " + event,
+							this.vehiclesAtFacility.containsKey(leavesVehicle.getVehicleId()));
+				}
+			} else if (event instanceof VehicleAbortsEvent) {
+				// stuck vehicles are removed from the network
+				VehicleAbortsEvent aborts = (VehicleAbortsEvent) event;
+				this.vehiclesInTraffic.remove(aborts.getVehicleId());
+				this.vehiclesBetweenLinks.remove(aborts.getVehicleId());
+			} else if (event instanceof PersonStuckEvent) {
+				this.departedPersons.remove(((PersonStuckEvent) event).getPersonId());
+			}
+		}
+
+		private boolean isPassenger(Id<Person> personId, Id<Vehicle> vehicleId) {
+			return this.scenario.getPopulation().getPersons().containsKey(personId)
+					&& this.scenario.getTransitVehicles().getVehicles().containsKey(vehicleId);
+		}
+
+		@Override
+		public void reset(int iteration) {
+		}
+
+	}
+
+}
@@ -0,0 +1,90 @@
+/* *********************************************************************** *
+ * project: org.matsim.*
+ *                                                                         *
+ * *********************************************************************** *
+ *                                                                         *
+ * copyright       : (C) 2019 by the members listed in the COPYING,        *
+ *                   LICENSE and WARRANTY file.                            *
+ * email           : info at matsim dot org                                *
+ *                                                                         *
+ * *********************************************************************** *
+ *                                                                         *
+ *   This program is free software; you can redistribute it and/or modify  *
+ *   it under the terms of the GNU General Public License as published by  *
+ *   the Free Software Foundation; either version 2 of the License, or     *
+ *   (at your option) any later version.                                   *
+ *   See also COPYING, LICENSE and WARRANTY file                           *
+ *                                                                         *
+ * *********************************************************************** */
+
+package org.matsim.core.mobsim.qsim.qnetsimengine;
+
+import java.io.File;
+
+import org.junit.Assert;
+import org.junit.Rule;
+import org.junit.Test;
+import org.matsim.api.core.v01.Scenario;
+import org.matsim.core.api.experimental.events.EventsManager;
+import org.matsim.core.config.Config;
+import org.matsim.core.config.ConfigUtils;
+import org.matsim.core.controler.PrepareForSimUtils;
+import org.matsim.core.events.EventsUtils;
+import org.matsim.core.events.algorithms.EventWriterXML;
+import org.matsim.core.gbl.MatsimRandom;
+import org.matsim.core.mobsim.qsim.QSimBuilder;
+import org.matsim.core.scenario.ScenarioUtils;
+import org.matsim.core.utils.io.IOUtils;
+import org.matsim.examples.ExamplesUtils;
+import org.matsim.testcases.MatsimTestUtils;
+
+public class DeterministicParallelismTest {
+
+	@Rule
+	public MatsimTestUtils utils = new MatsimTestUtils();
+
+	@Test
+	public void testSameEventsWithOneAndEightThreads() {
+		String events1 = runQSim(1, true, "events1.xml");
+		String events8 = runQSim(8, true, "events8.xml");
+
+		Assert.assertTrue(new File(events1).length() > 0);
+		MatsimTestUtils.compareFilesBasedOnCRC(events1, events8);
+	}
+
+	@Test
+	public void testSameEventsWithThreadpoolAndBarriers() {
+		String events = runQSim(4, true, "eventsThreadpool.xml");
+		String eventsBarriers = runQSim(4, false, "eventsBarriers.xml");
+
+		MatsimTestUtils.compareFilesBasedOnCRC(events, eventsBarriers);
+	}
+
+	private String runQSim(int numberOfThreads, boolean usingThreadpool, String eventsFileName) {
+		Config config = ConfigUtils.loadConfig(IOUtils.newUrl(ExamplesUtils.getTestScenarioURL("equil"), "config.xml"));
+		config.qsim().setNumberOfThreads(numberOfThreads);
+		config.qsim().setUsingThreadpool(usingThreadpool);
+		config.qsim().setDeterministicParallelism(true);
+		// congested, so that the nodes have to choose between their in-links
+		config.qsim().setFlowCapFactor(0.05);
+		config.qsim().setStorageCapFactor(0.05);
+
+		MatsimRandom.reset(config.global().getRandomSeed());
+		Scenario scenario = ScenarioUtils.loadScenario(config);
+
+		String filename = this.utils.getOutputDirectory() + eventsFileName;
+		EventsManager events = EventsUtils.createEventsManager();
+		EventWriterXML writer = new EventWriterXML(filename);
+		events.addHandler(writer);
+
+		PrepareForSimUtils.createDefaultPrepareForSim(scenario).run();
+		new QSimBuilder(config) //
+			.useDefaults() //
+			.build(scenario, events) //
+			.run();
+
+		writer.closeFile();
+		return filename;
+	}
+
+}
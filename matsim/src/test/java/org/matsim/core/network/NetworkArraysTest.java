@@ -0,0 +1,149 @@
+/* *********************************************************************** *
+ * project: org.matsim.*
+ *                                                                         *
+ * *********************************************************************** *
+ *                                                                         *
+ * copyright       : (C) 2019 by the members listed in the COPYING,        *
+ *                   LICENSE and WARRANTY file.                            *
+ * email           : info at matsim dot org                                *
+ *                                                                         *
+ * *********************************************************************** *
+ *                                                                         *
+ *   This program is free software; you can redistribute it and/or modify  *
+ *   it under the terms of the GNU General Public License as published by  *
+ *   the Free Software Foundation; either version 2 of the License, or     *
+ *   (at your option) any later version.                                   *
+ *   See also COPYING, LICENSE and WARRANTY file                           *
+ *                                                                         *
+ * *********************************************************************** */
+
+package org.matsim.core.network;
+
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashSet;
+
+import org.junit.Assert;
+import org.junit.Test;
+import org.matsim.api.core.v01.Coord;
+import org.matsim.api.core.v01.Id;
+import org.matsim.api.core.v01.TransportMode;
+import org.matsim.api.core.v01.network.Link;
+import org.matsim.api.core.v01.network.Network;
+import org.matsim.api.core.v01.network.NetworkFactory;
+import org.matsim.api.core.v01.network.Node;
+import org.matsim.core.network.NetworkChangeEvent.ChangeType;
+import org.matsim.core.network.NetworkChangeEvent.ChangeValue;
+import org.matsim.core.router.util.ArrayRoutingNetwork;
+import org.matsim.core.router.util.ArrayRoutingNetworkFactory;
+
+public class NetworkArraysTest {
+
+	private static final double EPSILON = 1e-10;
+
+	@Test
+	public void testValues() {
+		Network network = createNetwork();
+		NetworkArrays arrays = NetworkUtils.getNetworkArrays(network);
+		Assert.assertSame("the view should be cached", arrays, NetworkUtils.getNetworkArrays(network));
+
+		Assert.assertEquals(3, arrays.getNodeCount());
+		Assert.assertEquals(2, arrays.getLinkCount());
+		int l2 = arrays.getLinkIndex(Id.createLinkId("2"));
+		Assert.assertEquals(1, l2);
+		Assert.assertEquals(-1, arrays.getLinkIndex(Id.createLinkId("3")));
+		Assert.assertSame(network.getLinks().get(Id.createLinkId("2")), arrays.getLink(l2));
+		Assert.assertEquals(arrays.getNodeIndex(Id.createNodeId("2")), arrays.getFromNodeIndex(l2));
+		Assert.assertEquals(arrays.getNodeIndex(Id.createNodeId("3")), arrays.getToNodeIndex(l2));
+		Assert.assertEquals(200.0, arrays.getLength(l2), EPSILON);
+		Assert.assertEquals(20.0, arrays.getFreespeed(l2, 0.0), EPSILON);
+		Assert.assertEquals(1800.0, arrays.getCapacity(l2, 0.0), EPSILON);
+		Assert.assertEquals(0.5, arrays.getFlowCapacityPerSec(l2, 0.0), EPSILON);
+		Assert.assertEquals(2.0, arrays.getNumberOfLanes(l2, 0.0), EPSILON);
+
+		Assert.assertTrue(arrays.isAllowed(0, TransportMode.car));
+		Assert.assertFalse(arrays.isAllowed(0, TransportMode.bike));
+		Assert.assertTrue(arrays.isAllowed(l2, TransportMode.bike));
+		Assert.assertFalse(arrays.isAllowed(l2, "ship"));
+		Assert.assertEquals(arrays.getModeMask(TransportMode.car) | arrays.getModeMask(TransportMode.bike), arrays.getAllowedModesMask(l2));
+	}
+
+	@Test
+	public void testLinkChanges() {
+		Network network = createNetwork();
+		NetworkArrays arrays = NetworkUtils.getNetworkArrays(network);
+		Link link = network.getLinks().get(Id.createLinkId("1"));
+		link.setFreespeed(15.0);
+		link.setLength(150.0);
+		link.setAllowedModes(Collections.singleton(TransportMode.walk));
+		Assert.assertEquals(15.0, arrays.getFreespeed(0, 0.0), EPSILON);
+		Assert.assertEquals(150.0, arrays.getLength(0), EPSILON);
+		Assert.assertTrue(arrays.isAllowed(0, TransportMode.walk));
+		Assert.assertFalse(arrays.isAllowed(0, TransportMode.car));
+
+		Node node4 = NetworkUtils.createAndAddNode(network, Id.createNodeId("4"), new Coord(300, 0));
+		NetworkUtils.createAndAddLink(network, Id.createLinkId("3"), network.getNodes().get(Id.createNodeId("3")), node4, 100, 10, 3600, 1);
+		NetworkArrays arrays2 = NetworkUtils.getNetworkArrays(network);
+		Assert.assertNotSame("adding links must create a new view", arrays, arrays2);
+		Assert.assertEquals(3, arrays2.getLinkCount());
+	}
+
+	@Test
+	public void testNetworkChangeEvents() {
+		Network network = createNetwork();
+		NetworkArrays arrays = NetworkUtils.getNetworkArrays(network);
+		Link link = network.getLinks().get(Id.createLinkId("1"));
+
+		NetworkChangeEvent change = new NetworkChangeEvent(7 * 3600.0);
+		change.addLink(link);
+		change.setFreespeedChange(new ChangeValue(ChangeType.ABSOLUTE_IN_SI_UNITS, 5.0));
+		change.setFlowCapacityChange(new ChangeValue(ChangeType.FACTOR, 0.5));
+		NetworkUtils.addNetworkChangeEvent(network, change);
+
+		Assert.assertEquals(10.0, arrays.getFreespeed(0, 7 * 3600.0 - 1), EPSILON);
+		Assert.assertEquals(5.0, arrays.getFreespeed(0, 7 * 3600.0), EPSILON);
+		Assert.assertEquals(1.0, arrays.getFlowCapacityPerSec(0, 0.0), EPSILON);
+		Assert.assertEquals(0.5, arrays.getFlowCapacityPerSec(0, 8 * 3600.0), EPSILON);
+		Assert.assertEquals(1800.0, arrays.getCapacity(0, 8 * 3600.0), EPSILON);
+
+		// a new view sees the existing change events
+		NetworkArrays fresh = new NetworkArrays(network);
+		Assert.assertEquals(5.0, fresh.getFreespeed(0, 7 * 3600.0), EPSILON);
+
+		((TimeDependentNetwork) network).setNetworkChangeEvents(Collections.emptyList());
+		Assert.assertEquals(10.0, arrays.getFreespeed(0, 7 * 3600.0), EPSILON);
+	}
+
+	@Test
+	public void testArrayRoutingNetwork() {
+		Network network = createNetwork();
+		ArrayRoutingNetwork routingNetwork = new ArrayRoutingNetworkFactory().createRoutingNetwork(network);
+		Link routingLink = routingNetwork.getLinks().get(Id.createLinkId("2"));
+		Assert.assertEquals(200.0, routingLink.getLength(), EPSILON);
+		Assert.assertEquals(20.0, routingLink.getFreespeed(0.0), EPSILON);
+
+		Link link = network.getLinks().get(Id.createLinkId("2"));
+		NetworkChangeEvent change = new NetworkChangeEvent(3600.0);
+		change.addLink(link);
+		change.setFreespeedChange(new ChangeValue(ChangeType.FACTOR, 0.5));
+		NetworkUtils.addNetworkChangeEvent(network, change);
+		Assert.assertEquals(20.0, routingLink.getFreespeed(0.0), EPSILON);
+		Assert.assertEquals(10.0, routingLink.getFreespeed(3600.0), EPSILON);
+	}
+
+	private static Network createNetwork() {
+		Network network = NetworkUtils.createNetwork();
+		NetworkFactory nf = network.getFactory();
+		nf.setLinkFactory(new VariableIntervalTimeVariantLinkFactory());
+		((NetworkImpl) network).setFactory(nf);
+
+		Node node1 = NetworkUtils.createAndAddNode(network, Id.createNodeId("1"), new Coord(0, 0));
+		Node node2 = NetworkUtils.createAndAddNode(network, Id.createNodeId("2"), new Coord(100, 0));
+		Node node3 = NetworkUtils.createAndAddNode(network, Id.createNodeId("3"), new Coord(200, 0));
+		NetworkUtils.createAndAddLink(network, Id.createLinkId("1"), node1, node2, 100, 10, 3600, 1);
+		Link link2 = NetworkUtils.createAndAddLink(network, Id.createLinkId("2"), node2, node3, 200, 20, 1800, 2);
+		link2.setAllowedModes(new HashSet<>(Arrays.asList(TransportMode.car, TransportMode.bike)));
+		return network;
+	}
+
+}
@@ -24,6 +24,10 @@ import static org.junit.Assert.assertEquals;
 import static org.junit.Assert.assertTrue;
 import static org.junit.Assert.fail;
 
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+
 import org.apache.log4j.Logger;
 import org.junit.Assert;
 import org.junit.Test;
@@ -244,6 +248,44 @@ public class PlanImplTest {
 		assertEquals(98.76, route2.getTravelTime(), 1e-8);
 	}
 
+	@Test
+	public void testCopyPlan_routesShareLinkIdsUntilSet() {
+		Plan plan = PopulationUtils.createPlan(PopulationUtils.getFactory().createPerson(Id.create(1, Person.class)));
+		PopulationUtils.createAndAddActivityFromCoord(plan, "h", new Coord(0, 0));
+		Leg leg = PopulationUtils.createAndAddLeg( plan, TransportMode.car );
+		PopulationUtils.createAndAddActivityFromCoord(plan, "w", new Coord(100, 200));
+		List<Id<Link>> linkIds = Arrays.asList(Id.create(3, Link.class), Id.create(4, Link.class));
+		NetworkRoute route = RouteUtils.createLinkNetworkRouteImpl(Id.create(1, Link.class), linkIds, Id.create(2, Link.class));
+		route.setTravelTime(98.76);
+		leg.setRoute(route);
+
+		Plan plan2 = PopulationUtils.createPlan(PopulationUtils.getFactory().createPerson(Id.create(2, Person.class)));
+		PopulationUtils.copyFromTo(plan, plan2);
+		Leg leg2 = (Leg) plan2.getPlanElements().get(1);
+
+		Assert.assertSame("the original keeps its route", route, leg.getRoute());
+		NetworkRoute route2 = (NetworkRoute) leg2.getRoute();
+		Assert.assertNotSame(route, route2);
+		Assert.assertSame("reading the route must not change it", route2, leg2.getRoute());
+		Assert.assertEquals(linkIds, route2.getLinkIds());
+
+		route2.setTravelTime(12.34);
+		route2.setLinkIds(Id.create(1, Link.class), Collections.singletonList(Id.create(5, Link.class)), Id.create(2, Link.class));
+		assertEquals(98.76, route.getTravelTime(), 1e-8);
+		Assert.assertEquals(linkIds, route.getLinkIds());
+		Assert.assertEquals(Collections.singletonList(Id.create(5, Link.class)), route2.getLinkIds());
+
+		// the other way round: setting the link ids of the original must not change the copy
+		Plan plan3 = PopulationUtils.createPlan(PopulationUtils.getFactory().createPerson(Id.create(3, Person.class)));
+		PopulationUtils.copyFromTo(plan, plan3);
+		route.setLinkIds(Id.create(1, Link.class), route.getLinkIds().subList(0, 1), Id.create(2, Link.class));
+		Assert.assertEquals(linkIds, ((NetworkRoute) ((Leg) plan3.getPlanElements().get(1)).getRoute()).getLinkIds());
+		Assert.assertEquals(Collections.singletonList(Id.create(3, Link.class)), route.getLinkIds());
+
+		Assert.assertSame("coords are shared", ((Activity) plan.getPlanElements().get(2)).getCoord(),
+				((Activity) plan2.getPlanElements().get(2)).getCoord());
+	}
+
 	@Test
 	public void testCopyPlan_GenericRoute() {
 		Network network = NetworkUtils.createNetwork();
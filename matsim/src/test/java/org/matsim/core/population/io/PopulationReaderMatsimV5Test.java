@@ -421,6 +421,35 @@ public class PopulationReaderMatsimV5Test {
 		Assert.assertTrue(plan.getPlanElements().get(2) instanceof Activity);
 	}
 
+	/**
+	 * The fast parser does not fill in the default values of the dtd, so the reader has to apply them.
+	 */
+	@Test
+	public void testFastParser_missingSelectedIsNo() {
+		final MutableScenario scenario = (MutableScenario) ScenarioUtils.createScenario(ConfigUtils.createConfig());
+		PopulationReaderMatsimV5 reader = new PopulationReaderMatsimV5(scenario);
+		reader.setUsingFastParser(true);
+		final Population population = scenario.getPopulation();
+
+		String str = "<?xml version=\"1.0\" ?>"+
+		"<!DOCTYPE population SYSTEM \"http://www.matsim.org/files/dtd/population_v5.dtd\">"+
+		"<population>"+
+		"<person id=\"1\">"+
+		"	<plan>"+
+		"		<act type=\"h\" x=\"-25000\" y=\"0\" end_time=\"06:00\" />"+
+		"	</plan>"+
+		"	<plan selected=\"yes\">"+
+		"		<act type=\"w\" x=\"10000\" y=\"0\" />"+
+		"	</plan>"+
+		"</person>"+
+		"</population>";
+		reader.parse(new ByteArrayInputStream(str.getBytes()));
+
+		Person person = population.getPersons().get(Id.create(1, Person.class));
+		Assert.assertEquals(2, person.getPlans().size());
+		Assert.assertSame(person.getPlans().get(1), person.getSelectedPlan());
+	}
+
 	private static class XmlParserTestHelper {
 		private final MatsimXmlParser parser;
 		private final Stack<String> context = new Stack<String>();
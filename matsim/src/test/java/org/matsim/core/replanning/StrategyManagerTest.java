@@ -373,6 +373,44 @@ public class StrategyManagerTest {
 		Assert.assertEquals(1.0, weights.get(2), 1e-8);
 	}
 	
+	@Test
+	public void testParallelStrategySelection_independentOfNumberOfThreads() {
+		String result1 = runParallelStrategySelection(1);
+		String result4 = runParallelStrategySelection(4);
+		Assert.assertEquals(result1, result4);
+		Assert.assertEquals(result1, runParallelStrategySelection(1));
+	}
+
+	private static String runParallelStrategySelection(int numberOfThreads) {
+		MatsimRandom.reset(4711);
+		Population population = ScenarioUtils.createScenario(ConfigUtils.createConfig()).getPopulation();
+		for (int i = 0; i < 1000; i++) {
+			Person p = PopulationUtils.getFactory().createPerson(Id.create(i, Person.class));
+			for (int j = 0; j < 5; j++) {
+				Plan plan = PersonUtils.createAndAddPlan(p, j == 0);
+				plan.setScore((double) ((i * 7 + j * 13) % 11));
+			}
+			population.addPerson(p);
+		}
+
+		StrategyManager manager = new StrategyManager();
+		StrategyCounter strategy1 = new StrategyCounter(new RandomPlanSelector<Plan, Person>());
+		StrategyCounter strategy2 = new StrategyCounter(new RandomPlanSelector<Plan, Person>());
+		manager.addStrategyForDefaultSubpopulation(strategy1, 0.3);
+		manager.addStrategyForDefaultSubpopulation(strategy2, 0.7);
+		manager.setMaxPlansPerAgent(3);
+		manager.setParallelStrategySelection(numberOfThreads, 1234);
+		manager.run(population, 1, null);
+
+		StringBuilder result = new StringBuilder();
+		result.append(strategy1.getCounter()).append(' ').append(strategy2.getCounter());
+		for (Person p : population.getPersons().values()) {
+			assertEquals(3, p.getPlans().size());
+			result.append(' ').append(p.getSelectedPlan().getScore());
+		}
+		return result.toString();
+	}
+
 	/**
 	 * A simple extension to the PlanStrategy which counts how often it was
 	 * called.
@@ -21,6 +21,7 @@
 package org.matsim.core.replanning.selectors;
 
 import java.util.ArrayList;
+import java.util.Map;
 
 import org.apache.log4j.Logger;
 import org.matsim.api.core.v01.Coord;
@@ -308,6 +309,64 @@ public class PathSizeLogitSelectorTest extends AbstractPlanSelectorTest {
 		assertEquals(2132, cnt3);
 	}
 
+	public void testCalcWeights() {
+		this.network = createNetwork();
+		PathSizeLogitSelector selector = new PathSizeLogitSelector(config.planCalcScore(), this.network);
+
+		Person person = PopulationUtils.getFactory().createPerson(Id.create(1, Person.class));
+		Plan p1 = createPlan(person, 0.0, "1");
+		Plan p2 = createPlan(person, 0.0, "2", "3");
+		Plan p3 = createPlan(person, 0.0, "2", "4", "5");
+
+		// link 2 is shared by plans 2 and 3: (4 + 2)/10 resp. (4 + 1 + 1)/10, to the power of 2
+		Map<Plan, Double> weights = selector.calcWeights(person.getPlans());
+		assertEquals(1.0, weights.get(p1), 1e-10);
+		assertEquals(0.36, weights.get(p2), 1e-10);
+		assertEquals(0.36, weights.get(p3), 1e-10);
+
+		// more than an hour apart, so the links are not shared
+		((Leg) p3.getPlanElements().get(1)).setDepartureTime(7200.0);
+		weights = selector.calcWeights(person.getPlans());
+		assertEquals(1.0, weights.get(p2), 1e-10);
+		assertEquals(1.0, weights.get(p3), 1e-10);
+
+		// a plan using its own link twice
+		Plan p4 = createPlan(person, 0.0, "4", "5");
+		Leg leg = PopulationUtils.createLeg(TransportMode.car);
+		leg.setDepartureTime(100.0);
+		leg.setRoute(createRoute("4", "5"));
+		p4.addLeg(leg);
+		p4.addActivity(PopulationUtils.createActivityFromLinkId("w", Id.create(7, Link.class)));
+		weights = selector.calcWeights(person.getPlans());
+		// (each of its links is used by both of its legs, but not by plan 3, which departs much later)
+		assertEquals(1.0, weights.get(p2), 1e-10);
+		assertEquals(1.0, weights.get(p3), 1e-10);
+		assertEquals(0.25, weights.get(p4), 1e-10);
+	}
+
+	private Plan createPlan(Person person, double score, String... linkIds) {
+		Plan plan = PopulationUtils.createPlan(person);
+		plan.addActivity(PopulationUtils.createActivityFromLinkId("h", Id.create(6, Link.class)));
+		Leg leg = PopulationUtils.createLeg(TransportMode.car);
+		leg.setDepartureTime(0.0);
+		leg.setRoute(createRoute(linkIds));
+		plan.addLeg(leg);
+		plan.addActivity(PopulationUtils.createActivityFromLinkId("w", Id.create(7, Link.class)));
+		plan.setScore(score);
+		person.addPlan(plan);
+		return plan;
+	}
+
+	private static NetworkRoute createRoute(String... linkIds) {
+		NetworkRoute route = RouteUtils.createLinkNetworkRouteImpl(Id.create(6, Link.class), Id.create(7, Link.class));
+		ArrayList<Id<Link>> links = new ArrayList<>();
+		for (String linkId : linkIds) {
+			links.add(Id.create(linkId, Link.class));
+		}
+		route.setLinkIds(Id.create(6, Link.class), links, Id.create(7, Link.class));
+		return route;
+	}
+
 	private Network createNetwork() {
 		//we use a simple "red bus / blue bus paradox" network
 		// Sketch of the network
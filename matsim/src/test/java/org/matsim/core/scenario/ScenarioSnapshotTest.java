@@ -0,0 +1,149 @@
+/* *********************************************************************** *
+ * project: org.matsim.*
+ *                                                                         *
+ * *********************************************************************** *
+ *                                                                         *
+ * copyright       : (C) 2019 by the members listed in the COPYING,        *
+ *                   LICENSE and WARRANTY file.                            *
+ * email           : info at matsim dot org                                *
+ *                                                                         *
+ * *********************************************************************** *
+ *                                                                         *
+ *   This program is free software; you can redistribute it and/or modify  *
+ *   it under the terms of the GNU General Public License as published by  *
+ *   the Free Software Foundation; either version 2 of the License, or     *
+ *   (at your option) any later version.                                   *
+ *   See also COPYING, LICENSE and WARRANTY file                           *
+ *                                                                         *
+ * *********************************************************************** */
+
+package org.matsim.core.scenario;
+
+import java.io.File;
+import java.util.Iterator;
+
+import org.junit.Assert;
+import org.junit.Rule;
+import org.junit.Test;
+import org.matsim.api.core.v01.Id;
+import org.matsim.api.core.v01.Scenario;
+import org.matsim.api.core.v01.network.Link;
+import org.matsim.api.core.v01.network.Node;
+import org.matsim.api.core.v01.population.Activity;
+import org.matsim.api.core.v01.population.Leg;
+import org.matsim.api.core.v01.population.Person;
+import org.matsim.api.core.v01.population.Plan;
+import org.matsim.api.core.v01.population.PlanElement;
+import org.matsim.core.config.Config;
+import org.matsim.core.config.ConfigUtils;
+import org.matsim.core.network.NetworkUtils;
+import org.matsim.core.population.routes.NetworkRoute;
+import org.matsim.core.utils.io.IOUtils;
+import org.matsim.examples.ExamplesUtils;
+import org.matsim.testcases.MatsimTestUtils;
+
+/**
+ * Writes the equil scenario into a snapshot, reads it again and compares it to the original.
+ */
+public class ScenarioSnapshotTest {
+
+	@Rule public MatsimTestUtils utils = new MatsimTestUtils();
+
+	@Test
+	public void testWriteRead_equil() {
+		Config config = ConfigUtils.loadConfig(IOUtils.newUrl(ExamplesUtils.getTestScenarioURL("equil"), "config.xml"));
+		Scenario original = ScenarioUtils.loadScenario(config);
+		Person somePerson = original.getPopulation().getPersons().values().iterator().next();
+		somePerson.getAttributes().putAttribute("income", 4200.0);
+		original.getPopulation().getPersonAttributes().putAttribute(somePerson.getId().toString(), "age", 42);
+		original.getNetwork().getLinks().get(Id.createLinkId("1")).getAttributes().putAttribute("toll", true);
+		Node someNode = original.getNetwork().getNodes().get(Id.createNodeId("1"));
+		NetworkUtils.setType(someNode, "junction");
+		NetworkUtils.setOrigId(someNode, "n1");
+
+		String filename = this.utils.getOutputDirectory() + "snapshot.bin";
+		ScenarioUtils.writeScenarioSnapshot(original, filename);
+
+		Config config2 = ConfigUtils.loadConfig(IOUtils.newUrl(ExamplesUtils.getTestScenarioURL("equil"), "config.xml"));
+		config2.controler().setInputScenarioSnapshotFile(new File(filename).getAbsolutePath());
+		config2.network().setInputFile("does-not-exist.xml");
+		config2.plans().setInputFile("does-not-exist.xml");
+		config2.global().setNumberOfThreads(2);
+		Scenario copy = ScenarioUtils.loadScenario(config2);
+
+		Assert.assertEquals(original.getNetwork().getNodes().size(), copy.getNetwork().getNodes().size());
+		Assert.assertEquals(original.getNetwork().getLinks().size(), copy.getNetwork().getLinks().size());
+		for (Link link : original.getNetwork().getLinks().values()) {
+			Link link2 = copy.getNetwork().getLinks().get(link.getId());
+			Assert.assertEquals(link.getFromNode().getId(), link2.getFromNode().getId());
+			Assert.assertEquals(link.getToNode().getId(), link2.getToNode().getId());
+			Assert.assertEquals(link.getLength(), link2.getLength(), 1e-10);
+			Assert.assertEquals(link.getFreespeed(), link2.getFreespeed(), 1e-10);
+			Assert.assertEquals(link.getCapacity(), link2.getCapacity(), 1e-10);
+			Assert.assertEquals(link.getNumberOfLanes(), link2.getNumberOfLanes(), 1e-10);
+			Assert.assertEquals(link.getAllowedModes(), link2.getAllowedModes());
+		}
+		Assert.assertEquals(true, copy.getNetwork().getLinks().get(Id.createLinkId("1")).getAttributes().getAttribute("toll"));
+		Node someNode2 = copy.getNetwork().getNodes().get(someNode.getId());
+		Assert.assertEquals("junction", NetworkUtils.getType(someNode2));
+		Assert.assertEquals("n1", NetworkUtils.getOrigId(someNode2));
+
+		Assert.assertEquals(original.getPopulation().getPersons().size(), copy.getPopulation().getPersons().size());
+		Iterator<? extends Person> iter2 = copy.getPopulation().getPersons().values().iterator();
+		for (Person person : original.getPopulation().getPersons().values()) {
+			Person person2 = iter2.next();
+			Assert.assertEquals("order of persons must be kept", person.getId(), person2.getId());
+			Assert.assertEquals(person.getPlans().size(), person2.getPlans().size());
+			Assert.assertEquals(person.getPlans().indexOf(person.getSelectedPlan()), person2.getPlans().indexOf(person2.getSelectedPlan()));
+			for (int p = 0; p < person.getPlans().size(); p++) {
+				assertPlansEqual(person.getPlans().get(p), person2.getPlans().get(p));
+			}
+		}
+		Person somePerson2 = copy.getPopulation().getPersons().get(somePerson.getId());
+		Assert.assertEquals(4200.0, somePerson2.getAttributes().getAttribute("income"));
+		Assert.assertEquals(42, copy.getPopulation().getPersonAttributes().getAttribute(somePerson.getId().toString(), "age"));
+	}
+
+	@Test
+	public void testWrite_failsForAttributeWithoutConverter() {
+		Config config = ConfigUtils.loadConfig(IOUtils.newUrl(ExamplesUtils.getTestScenarioURL("equil"), "config.xml"));
+		Scenario scenario = ScenarioUtils.loadScenario(config);
+		Person somePerson = scenario.getPopulation().getPersons().values().iterator().next();
+		somePerson.getAttributes().putAttribute("unknown", new Object());
+		String filename = this.utils.getOutputDirectory() + "snapshot.bin";
+		try {
+			ScenarioUtils.writeScenarioSnapshot(scenario, filename);
+			Assert.fail("expected an exception, the attribute cannot be converted");
+		} catch (RuntimeException expected) {
+		}
+		Assert.assertFalse("no incomplete snapshot must be left behind", new File(filename).exists());
+	}
+
+	private static void assertPlansEqual(Plan plan, Plan plan2) {
+		Assert.assertEquals(plan.getScore(), plan2.getScore());
+		Assert.assertEquals(plan.getPlanElements().size(), plan2.getPlanElements().size());
+		for (int i = 0; i < plan.getPlanElements().size(); i++) {
+			PlanElement pe = plan.getPlanElements().get(i);
+			PlanElement pe2 = plan2.getPlanElements().get(i);
+			if (pe instanceof Activity) {
+				Activity act = (Activity) pe;
+				Activity act2 = (Activity) pe2;
+				Assert.assertEquals(act.getType(), act2.getType());
+				Assert.assertEquals(act.getCoord(), act2.getCoord());
+				Assert.assertEquals(act.getLinkId(), act2.getLinkId());
+				Assert.assertEquals(act.getEndTime(), act2.getEndTime(), 1e-10);
+			} else {
+				Leg leg = (Leg) pe;
+				Leg leg2 = (Leg) pe2;
+				Assert.assertEquals(leg.getMode(), leg2.getMode());
+				Assert.assertEquals(leg.getDepartureTime(), leg2.getDepartureTime(), 1e-10);
+				if (leg.getRoute() instanceof NetworkRoute) {
+					Assert.assertEquals(((NetworkRoute) leg.getRoute()).getLinkIds(), ((NetworkRoute) leg2.getRoute()).getLinkIds());
+					Assert.assertEquals(leg.getRoute().getStartLinkId(), leg2.getRoute().getStartLinkId());
+					Assert.assertEquals(leg.getRoute().getEndLinkId(), leg2.getRoute().getEndLinkId());
+				}
+			}
+		}
+	}
+
+}
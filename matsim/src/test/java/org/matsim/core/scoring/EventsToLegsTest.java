@@ -38,6 +38,7 @@ import org.matsim.api.core.v01.population.Person;
 import org.matsim.core.api.experimental.events.TeleportationArrivalEvent;
 import org.matsim.core.config.ConfigUtils;
 import org.matsim.core.network.NetworkUtils;
+import org.matsim.core.population.routes.NetworkRoute;
 import org.matsim.core.scenario.MutableScenario;
 import org.matsim.core.scenario.ScenarioUtils;
 import org.matsim.core.scoring.EventsToLegs.LegHandler;
@@ -84,6 +85,45 @@ public class EventsToLegsTest {
 		Assert.assertEquals(550.0,lh.handledLeg.getLeg().getRoute().getDistance(), 1e-9);
 	}
 	
+	@Test
+	public void testCreatesLegWithRoute_discardingExperiencedRoutes() {
+		Scenario scenario = createTriangularNetwork();
+		EventsToLegs eventsToLegs = new EventsToLegs(scenario);
+		eventsToLegs.setDiscardingExperiencedRoutes(true);
+		RememberingLegHandler lh = new RememberingLegHandler();
+		eventsToLegs.addLegHandler(lh);
+		Id<Person> agentId = Id.create("1", Person.class);
+		Id<Vehicle> vehId = Id.create("veh1", Vehicle.class);
+		eventsToLegs.handleEvent(new PersonDepartureEvent(10.0, agentId, Id.createLinkId("l1"), "car"));
+		eventsToLegs.handleEvent(new PersonEntersVehicleEvent(10.0, agentId, vehId));
+		eventsToLegs.handleEvent(new VehicleEntersTrafficEvent(10.0, agentId, Id.createLinkId("l1"), vehId, "car", 1.0));
+		eventsToLegs.handleEvent(new LinkLeaveEvent(10.0, vehId, Id.createLinkId("l1")));
+		eventsToLegs.handleEvent(new LinkEnterEvent(11.0, vehId, Id.createLinkId("l2")));
+		eventsToLegs.handleEvent(new LinkLeaveEvent(15.0, vehId, Id.createLinkId("l2")));
+		eventsToLegs.handleEvent(new LinkEnterEvent(16.0, vehId, Id.createLinkId("l3")));
+		eventsToLegs.handleEvent(new VehicleLeavesTrafficEvent(30.0, agentId, Id.createLinkId("l3"), vehId, "car", 1.0));
+		eventsToLegs.handleEvent(new PersonArrivalEvent(30.0, agentId, Id.createLinkId("l3"), "car"));
+		Assert.assertNotNull(lh.handledLeg);
+		NetworkRoute route = (NetworkRoute) lh.handledLeg.getLeg().getRoute();
+		Assert.assertEquals(Id.createLinkId("l1"), route.getStartLinkId());
+		Assert.assertEquals(Id.createLinkId("l3"), route.getEndLinkId());
+		Assert.assertTrue(route.getLinkIds().isEmpty());
+		Assert.assertEquals(20.0, route.getTravelTime(), 1e-9);
+		Assert.assertEquals(550.0, route.getDistance(), 1e-9);
+
+		// a consumer asking for the links gets them again
+		eventsToLegs.requestExperiencedRoutes();
+		eventsToLegs.handleEvent(new PersonDepartureEvent(40.0, agentId, Id.createLinkId("l1"), "car"));
+		eventsToLegs.handleEvent(new VehicleEntersTrafficEvent(40.0, agentId, Id.createLinkId("l1"), vehId, "car", 1.0));
+		eventsToLegs.handleEvent(new LinkEnterEvent(41.0, vehId, Id.createLinkId("l2")));
+		eventsToLegs.handleEvent(new LinkEnterEvent(46.0, vehId, Id.createLinkId("l3")));
+		eventsToLegs.handleEvent(new VehicleLeavesTrafficEvent(60.0, agentId, Id.createLinkId("l3"), vehId, "car", 1.0));
+		eventsToLegs.handleEvent(new PersonArrivalEvent(60.0, agentId, Id.createLinkId("l3"), "car"));
+		route = (NetworkRoute) lh.handledLeg.getLeg().getRoute();
+		Assert.assertEquals(1, route.getLinkIds().size());
+		Assert.assertEquals(550.0, route.getDistance(), 1e-9);
+	}
+
 	private static Scenario createTriangularNetwork() {
 		MutableScenario scenario = (MutableScenario) ScenarioUtils.createScenario(ConfigUtils.createConfig());
 
@@ -0,0 +1,60 @@
+/* *********************************************************************** *
+ * project: org.matsim.*
+ * ExperiencedPlansServiceImplTest.java
+ *                                                                         *
+ * *********************************************************************** *
+ *                                                                         *
+ * copyright       : (C) 2019 by the members listed in the COPYING,        *
+ *                   LICENSE and WARRANTY file.                            *
+ * email           : info at matsim dot org                                *
+ *                                                                         *
+ * *********************************************************************** *
+ *                                                                         *
+ *   This program is free software; you can redistribute it and/or modify  *
+ *   it under the terms of the GNU General Public License as published by  *
+ *   the Free Software Foundation; either version 2 of the License, or     *
+ *   (at your option) any later version.                                   *
+ *   See also COPYING, LICENSE and WARRANTY file                           *
+ *                                                                         *
+ * *********************************************************************** */
+
+package org.matsim.core.scoring;
+
+import org.junit.Assert;
+import org.junit.Test;
+import org.matsim.core.config.Config;
+import org.matsim.core.config.ConfigUtils;
+import org.matsim.core.controler.ControlerListenerManagerImpl;
+import org.matsim.core.scenario.ScenarioUtils;
+
+public class ExperiencedPlansServiceImplTest {
+
+	@Test
+	public void testExperiencedPlansAvailableWithoutStreamingScoring() {
+		Config config = ConfigUtils.createConfig();
+		Assert.assertTrue(createService(config).getExperiencedPlans().isEmpty());
+	}
+
+	@Test
+	public void testExperiencedPlansAvailableWithStreamingScoringIfWritten() {
+		Config config = ConfigUtils.createConfig();
+		config.planCalcScore().setStreamingScoring(true);
+		config.planCalcScore().setWriteExperiencedPlans(true);
+		Assert.assertTrue(createService(config).getExperiencedPlans().isEmpty());
+	}
+
+	@Test(expected = IllegalStateException.class)
+	public void testExperiencedPlansNotRecordedWithStreamingScoring() {
+		Config config = ConfigUtils.createConfig();
+		config.planCalcScore().setStreamingScoring(true);
+		config.planCalcScore().setWriteExperiencedPlans(false);
+		config.planCalcScore().setMemorizingExperiencedPlans(false);
+		createService(config).getExperiencedPlans();
+	}
+
+	private static ExperiencedPlansServiceImpl createService(Config config) {
+		return new ExperiencedPlansServiceImpl(config, new ControlerListenerManagerImpl(), new EventsToActivities(),
+				new EventsToLegs(ScenarioUtils.createScenario(config)));
+	}
+
+}
@@ -6,6 +6,11 @@ import org.matsim.api.core.v01.Coord;
 import org.matsim.api.core.v01.Id;
 import org.matsim.api.core.v01.Scenario;
 import org.matsim.api.core.v01.events.Event;
+import org.matsim.api.core.v01.events.LinkEnterEvent;
+import org.matsim.api.core.v01.events.PersonMoneyEvent;
+import org.matsim.api.core.v01.events.VehicleEntersTrafficEvent;
+import org.matsim.api.core.v01.events.VehicleLeavesTrafficEvent;
+import org.matsim.api.core.v01.network.Link;
 import org.matsim.api.core.v01.population.Activity;
 import org.matsim.api.core.v01.population.Leg;
 import org.matsim.api.core.v01.population.Person;
@@ -17,6 +22,7 @@ import org.matsim.core.controler.ControlerListenerManagerImpl;
 import org.matsim.core.events.EventsUtils;
 import org.matsim.core.router.TripStructureUtils;
 import org.matsim.core.scenario.ScenarioUtils;
+import org.matsim.vehicles.Vehicle;
 
 /**
  * @author mrieser / Simunto GmbH
@@ -69,10 +75,48 @@ public class ScoringFunctionsForPopulationTest {
 		Assert.assertEquals("transit_walk", ((Leg) rs.lastTrip.getTripElements().get(4)).getMode());
 	}
 
+	@Test
+	public void testShardedEventHandling() {
+		Scenario scenario = ScenarioUtils.createScenario(ConfigUtils.createConfig());
+		Population population = scenario.getPopulation();
+		PopulationFactory pf = population.getFactory();
+		for (int i = 0; i < 20; i++) {
+			population.addPerson(pf.createPerson(Id.create(i, Person.class)));
+		}
+
+		ControlerListenerManagerImpl controlerListenerManager = new ControlerListenerManagerImpl();
+		EventsManager eventsManager = EventsUtils.createEventsManager();
+		ScoringFunctionFactory scoringFunctionFactory = agentId -> new RecordingScoringFunction();
+		ScoringFunctionsForPopulation sf = new ScoringFunctionsForPopulation(controlerListenerManager, eventsManager,
+				new EventsToActivities(), new EventsToLegs(scenario), population, scoringFunctionFactory, 4);
+		controlerListenerManager.fireControlerIterationStartsEvent(0);
+
+		Id<Link> linkId = Id.create("1", Link.class);
+		for (int i = 0; i < 20; i++) {
+			Id<Person> personId = Id.create(i, Person.class);
+			Id<Vehicle> vehicleId = Id.create("v" + i, Vehicle.class);
+			eventsManager.processEvent(new VehicleEntersTrafficEvent(i, personId, linkId, vehicleId, "car", 1.0));
+			for (int j = 0; j < i; j++) {
+				eventsManager.processEvent(new LinkEnterEvent(i, vehicleId, linkId));
+			}
+			eventsManager.processEvent(new VehicleLeavesTrafficEvent(i, personId, linkId, vehicleId, "car", 1.0));
+			eventsManager.processEvent(new PersonMoneyEvent(i, personId, i));
+		}
+
+		for (int i = 0; i < 20; i++) {
+			RecordingScoringFunction rs = (RecordingScoringFunction) sf.getScoringFunctionForAgent(Id.create(i, Person.class));
+			// enters traffic, i link enters, leaves traffic, money
+			Assert.assertEquals(3 + i, rs.eventCounter);
+			Assert.assertEquals(i, rs.money, 1e-10);
+		}
+	}
+
 	private static class RecordingScoringFunction implements ScoringFunction {
 
 		int tripCounter = 0;
 		TripStructureUtils.Trip lastTrip = null;
+		int eventCounter = 0;
+		double money = 0;
 
 		@Override
 		public void handleActivity(Activity activity) {
@@ -94,6 +138,7 @@ public class ScoringFunctionsForPopulationTest {
 
 		@Override
 		public void addMoney(double amount) {
+			this.money += amount;
 		}
 
 		@Override
@@ -107,6 +152,7 @@ public class ScoringFunctionsForPopulationTest {
 
 		@Override
 		public void handleEvent(Event event) {
+			this.eventCounter++;
 		}
 	}
 
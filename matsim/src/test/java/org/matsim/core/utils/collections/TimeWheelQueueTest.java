@@ -0,0 +1,116 @@
+/* *********************************************************************** *
+ * project: org.matsim.*
+ *                                                                         *
+ * *********************************************************************** *
+ *                                                                         *
+ * copyright       : (C) 2019 by the members listed in the COPYING,        *
+ *                   LICENSE and WARRANTY file.                            *
+ * email           : info at matsim dot org                                *
+ *                                                                         *
+ * *********************************************************************** *
+ *                                                                         *
+ *   This program is free software; you can redistribute it and/or modify  *
+ *   it under the terms of the GNU General Public License as published by  *
+ *   the Free Software Foundation; either version 2 of the License, or     *
+ *   (at your option) any later version.                                   *
+ *   See also COPYING, LICENSE and WARRANTY file                           *
+ *                                                                         *
+ * *********************************************************************** */
+
+package org.matsim.core.utils.collections;
+
+import java.util.Comparator;
+import java.util.PriorityQueue;
+import java.util.Random;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+public class TimeWheelQueueTest {
+
+	@Test
+	public void testOrder() {
+		TimeWheelQueue<String> queue = new TimeWheelQueue<>();
+		queue.add(10.5, "c");
+		queue.add(10.0, "b");
+		queue.add(1e7, "e");
+		queue.add(5000.0, "d");
+		queue.add(10.0, "b2");
+		queue.add(-3.0, "a");
+
+		Assert.assertEquals(6, queue.size());
+		Assert.assertEquals(-3.0, queue.peekTime(), 0.0);
+		Assert.assertEquals("a", queue.poll());
+		Assert.assertEquals("b", queue.poll());
+		Assert.assertEquals("same time: in order of adding", "b2", queue.poll());
+		Assert.assertNull(queue.poll(10.4));
+		Assert.assertEquals("c", queue.poll(10.5));
+		Assert.assertEquals("d", queue.peek());
+		Assert.assertEquals("d", queue.poll());
+		queue.add(6000.0, "d2");
+		Assert.assertEquals("d2", queue.poll());
+		Assert.assertEquals("e", queue.poll());
+		Assert.assertNull(queue.poll());
+		Assert.assertTrue(queue.isEmpty());
+		Assert.assertEquals(Double.POSITIVE_INFINITY, queue.peekTime(), 0.0);
+	}
+
+	@Test
+	public void testComparator() {
+		TimeWheelQueue<Integer> queue = new TimeWheelQueue<>(1.0, Comparator.reverseOrder());
+		queue.add(3.0, 1);
+		queue.add(3.0, 7);
+		queue.add(3.0, 4);
+		Assert.assertEquals(7, queue.poll().intValue());
+		Assert.assertEquals(4, queue.poll().intValue());
+		Assert.assertEquals(1, queue.poll().intValue());
+	}
+
+	@Test
+	public void testSameOrderAsPriorityQueue() {
+		Comparator<double[]> comparator = (o1, o2) -> {
+			int cmp = Double.compare(o1[0], o2[0]);
+			return cmp == 0 ? Double.compare(o1[1], o2[1]) : cmp;
+		};
+		PriorityQueue<double[]> reference = new PriorityQueue<>(comparator);
+		TimeWheelQueue<double[]> queue = new TimeWheelQueue<>(1.0, (o1, o2) -> Double.compare(o1[1], o2[1]));
+
+		Random random = new Random(4711);
+		double now = 0.0;
+		int id = 0;
+		for (int i = 0; i < 200000; i++) {
+			if (random.nextBoolean() || reference.isEmpty()) {
+				// mostly near future, sometimes far beyond both wheels, sometimes in the current second
+				double delay = random.nextInt(10) == 0 ? random.nextDouble() * 500000.0 : random.nextInt(3) == 0 ? random.nextDouble() : random.nextInt(600);
+				double[] entry = new double[] { now + delay, id++ };
+				reference.add(entry);
+				queue.add(entry[0], entry);
+			} else {
+				double[] expected = reference.poll();
+				Assert.assertSame(expected, queue.poll());
+				now = expected[0];
+			}
+			Assert.assertEquals(reference.size(), queue.size());
+		}
+		while (!reference.isEmpty()) {
+			Assert.assertSame(reference.poll(), queue.poll());
+		}
+		Assert.assertNull(queue.poll());
+	}
+
+	@Test
+	public void testClear() {
+		TimeWheelQueue<String> queue = new TimeWheelQueue<>();
+		queue.add(80000.0, "a");
+		queue.add(90000.0, "b");
+		Assert.assertEquals("a", queue.poll());
+		queue.clear();
+		Assert.assertEquals(0, queue.size());
+		queue.add(20.0, "c");
+		queue.add(10.0, "d");
+		Assert.assertEquals("d", queue.poll());
+		Assert.assertEquals("c", queue.poll());
+		Assert.assertNull(queue.poll());
+	}
+
+}
@@ -20,6 +20,8 @@
 package org.matsim.core.utils.io;
 
 import java.io.ByteArrayInputStream;
+import java.util.ArrayList;
+import java.util.List;
 import java.util.Stack;
 
 import org.junit.Assert;
@@ -131,4 +133,88 @@ public class MatsimXmlParserTest {
 		Assert.assertEquals("value+value", parser.lastAttributes.getValue("someAttribute"));
 	}
 
+	@Test
+	public void testFastParser_ContentAndAttributes() {
+		String str = "<?xml version='1.0' encoding='UTF-8'?>\n" +
+				"<!DOCTYPE root SYSTEM \"http://www.matsim.org/files/dtd/dummy_v1.dtd\">\n" +
+				"<root>\n" +
+				"\t<dummy someAttribute=\"value&quot;&amp;&lt;&gt;value\">content&quot;&amp;&lt;&gt;content</dummy>\n" +
+				"</root>";
+
+		RecordingParser parser = new RecordingParser();
+		parser.setUsingFastParser(true);
+
+		parser.parse(new ByteArrayInputStream(str.getBytes()));
+		Assert.assertEquals("dummy_v1.dtd", parser.getDoctype());
+		Assert.assertEquals("[start root, start dummy someAttribute=value\"&<>value, end dummy content\"&<>content, end root ]",
+				parser.record.toString());
+	}
+
+	@Test
+	public void testFastParser_DoctypeFromSchemaLocation() {
+		String str = "<?xml version='1.0' encoding='UTF-8'?>\n" +
+				"<root xmlns=\"http://www.matsim.org/files/dtd\" xmlns:xsi=\"http://www.w3.org/2001/XMLSchema-instance\" " +
+				"xsi:schemaLocation=\"http://www.matsim.org/files/dtd http://www.matsim.org/files/dtd/dummy_v2.xsd\">" +
+				"<dummy someAttribute=\"value\"/>" +
+				"</root>";
+
+		RecordingParser parser = new RecordingParser();
+		parser.setUsingFastParser(true);
+
+		parser.parse(new ByteArrayInputStream(str.getBytes()));
+		Assert.assertEquals("dummy_v2.xsd", parser.getDoctype());
+		Assert.assertEquals("[start root, start dummy someAttribute=value, end dummy , end root ]", parser.record.toString());
+	}
+
+	/**
+	 * The fast parser does not know the default values of the dtd, so it must not be used for doctypes whose readers
+	 * depend on them.
+	 */
+	@Test
+	public void testFastParser_UncheckedDoctypeIsReadWithDtd() {
+		String str = "<?xml version='1.0' encoding='UTF-8'?>\n" +
+				"<!DOCTYPE population SYSTEM \"http://www.matsim.org/files/dtd/population_v6.dtd\">\n" +
+				"<population><person id=\"1\"><plan/></person></population>";
+
+		RecordingParser parser = new RecordingParser();
+		parser.readableWithoutDtd = false;
+		parser.setUsingFastParser(true);
+		parser.setValidating(false);
+
+		parser.parse(new ByteArrayInputStream(str.getBytes()));
+		Assert.assertEquals("population_v6.dtd", parser.getDoctype());
+		Assert.assertEquals("the default of the dtd", "no", parser.selected);
+	}
+
+	private static class RecordingParser extends MatsimXmlParser {
+
+		public final List<String> record = new ArrayList<>();
+		public boolean readableWithoutDtd = true;
+		public String selected = null;
+
+		@Override
+		protected boolean isReadableWithoutDtd(String doctype) {
+			return this.readableWithoutDtd;
+		}
+
+		@Override
+		public void startTag(String name, Attributes atts, Stack<String> context) {
+			StringBuilder str = new StringBuilder("start ").append(name);
+			String value = atts.getValue("someAttribute");
+			if (value != null) {
+				str.append(" someAttribute=").append(value);
+			}
+			if (name.equals("plan")) {
+				this.selected = atts.getValue("selected");
+			}
+			this.record.add(str.toString());
+		}
+
+		@Override
+		public void endTag(String name, String content, Stack<String> context) {
+			this.record.add("end " + name + " " + content);
+		}
+
+	}
+
 }
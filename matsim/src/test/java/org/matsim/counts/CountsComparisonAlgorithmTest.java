@@ -44,6 +44,28 @@ public class CountsComparisonAlgorithmTest extends MatsimTestCase {
 		}//while
 	}
 
+	public void testCompareInParallel() {
+		CountsFixture fixture = new CountsFixture();
+		fixture.setUp();
+
+		CountsComparisonAlgorithm cca = fixture.getCCA();
+		cca.run();
+		List<CountSimComparison> expected = cca.getComparison();
+
+		CountsComparisonAlgorithm parallelCca = fixture.getCCA();
+		parallelCca.setNumberOfThreads(4);
+		parallelCca.run();
+		List<CountSimComparison> actual = parallelCca.getComparison();
+
+		assertEquals(expected.size(), actual.size());
+		for (int i = 0; i < expected.size(); i++) {
+			assertEquals(expected.get(i).getId(), actual.get(i).getId());
+			assertEquals(expected.get(i).getHour(), actual.get(i).getHour());
+			assertEquals(expected.get(i).getCountValue(), actual.get(i).getCountValue(), 0.0);
+			assertEquals(expected.get(i).getSimulationValue(), actual.get(i).getSimulationValue(), 0.0);
+		}
+	}
+
 	public void testDistanceFilter() {
 		CountsFixture fixture = new CountsFixture();
 		fixture.setUp();
@@ -20,9 +20,16 @@
 
 package org.matsim.counts;
 
+import java.io.BufferedReader;
 import java.io.File;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.nio.charset.StandardCharsets;
+import java.util.zip.ZipEntry;
+import java.util.zip.ZipFile;
 
 import org.matsim.core.utils.geometry.transformations.IdentityTransformation;
+import org.matsim.counts.algorithms.CountSimComparisonKMLStreamWriter;
 import org.matsim.counts.algorithms.CountSimComparisonKMLWriter;
 import org.matsim.counts.algorithms.CountsComparisonAlgorithm;
 import org.matsim.testcases.MatsimTestCase;
@@ -48,4 +55,34 @@ public class CountsKMLWriterTest extends MatsimTestCase {
 
 		assertTrue(new File(filename).length() > 0);
 	}
+
+	public void testStreamedKMLCreation() throws IOException {
+		CountsFixture fixture = new CountsFixture();
+		fixture.setUp();
+
+		CountsComparisonAlgorithm cca=fixture.getCCA();
+		cca.run();
+
+		String filename = this.getOutputDirectory() + "countscompare.kmz";
+		CountSimComparisonKMLStreamWriter kmlWriter = new CountSimComparisonKMLStreamWriter(
+				cca.getComparison(), fixture.getNetwork(), new IdentityTransformation());
+		kmlWriter.setIterationNumber(0);
+		kmlWriter.writeFile(filename);
+
+		try (ZipFile zip = new ZipFile(filename)) {
+			ZipEntry entry = zip.getEntry("main.kml");
+			assertNotNull(entry);
+			int placemarks = 0;
+			try (BufferedReader reader = new BufferedReader(new InputStreamReader(zip.getInputStream(entry), StandardCharsets.UTF_8))) {
+				String line;
+				while ((line = reader.readLine()) != null) {
+					if (line.startsWith("<Placemark>")) {
+						placemarks++;
+					}
+				}
+			}
+			// one placemark each for the relative, normalized relative and GEH values
+			assertEquals(3 * cca.getComparison().size(), placemarks);
+		}
+	}
 }
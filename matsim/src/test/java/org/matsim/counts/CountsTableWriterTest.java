@@ -20,9 +20,16 @@
 
 package org.matsim.counts;
 
+import java.io.BufferedReader;
 import java.io.File;
+import java.io.IOException;
+import java.util.HashSet;
+import java.util.List;
 import java.util.Locale;
+import java.util.Set;
 
+import org.matsim.core.utils.io.IOUtils;
+import org.matsim.counts.algorithms.CountSimComparisonCsvStreamWriter;
 import org.matsim.counts.algorithms.CountSimComparisonTableWriter;
 import org.matsim.counts.algorithms.CountsComparisonAlgorithm;
 import org.matsim.testcases.MatsimTestCase;
@@ -43,4 +50,32 @@ public class CountsTableWriterTest extends MatsimTestCase {
 		File f = new File(this.getOutputDirectory() + "/countTable.txt");
 		assertTrue(f.length() > 0.0);
 	}
+
+	public void testCsvStreamCreation() throws IOException {
+		CountsFixture fixture = new CountsFixture();
+		fixture.setUp();
+
+		CountsComparisonAlgorithm cca = fixture.getCCA();
+		cca.run();
+		List<CountSimComparison> comparisons = cca.getComparison();
+
+		new CountSimComparisonCsvStreamWriter(comparisons).writeFile(this.getOutputDirectory() + "/countTable.csv.gz");
+
+		assertEquals(comparisons.size() + 1, countLines(this.getOutputDirectory() + "/countTable.csv.gz"));
+		Set<Object> countStations = new HashSet<>();
+		for (CountSimComparison csc : comparisons) {
+			countStations.add(csc.getId());
+		}
+		assertEquals(countStations.size() + 1, countLines(this.getOutputDirectory() + "/countTableAWTV.csv.gz"));
+	}
+
+	private static int countLines(String filename) throws IOException {
+		int lines = 0;
+		try (BufferedReader reader = IOUtils.getBufferedReader(filename)) {
+			while (reader.readLine() != null) {
+				lines++;
+			}
+		}
+		return lines;
+	}
 }
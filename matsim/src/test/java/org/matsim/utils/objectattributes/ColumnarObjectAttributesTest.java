@@ -0,0 +1,147 @@
+/* *********************************************************************** *
+ * project: org.matsim.*
+ *                                                                         *
+ * *********************************************************************** *
+ *                                                                         *
+ * copyright       : (C) 2019 by the members listed in the COPYING,        *
+ *                   LICENSE and WARRANTY file.                            *
+ * email           : info at matsim dot org                                *
+ *                                                                         *
+ * *********************************************************************** *
+ *                                                                         *
+ *   This program is free software; you can redistribute it and/or modify  *
+ *   it under the terms of the GNU General Public License as published by  *
+ *   the Free Software Foundation; either version 2 of the License, or     *
+ *   (at your option) any later version.                                   *
+ *   See also COPYING, LICENSE and WARRANTY file                           *
+ *                                                                         *
+ * *********************************************************************** */
+
+package org.matsim.utils.objectattributes;
+
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.HashSet;
+
+import org.junit.Assert;
+import org.junit.Rule;
+import org.junit.Test;
+import org.matsim.testcases.MatsimTestUtils;
+
+public class ColumnarObjectAttributesTest {
+
+	@Rule public MatsimTestUtils utils = new MatsimTestUtils();
+
+	@Test
+	public void testPutGetRemove() {
+		ColumnarObjectAttributes oa = new ColumnarObjectAttributes();
+		Assert.assertNull(oa.getAttribute("1", "subpopulation"));
+		Assert.assertNull(oa.putAttribute("1", "subpopulation", "freight"));
+		Assert.assertNull(oa.putAttribute("2", "subpopulation", "commuter"));
+		Assert.assertNull(oa.putAttribute("3", "subpopulation", "freight"));
+		Assert.assertNull(oa.putAttribute("2", "income", 3500.0));
+		Assert.assertNull(oa.putAttribute("3", "age", 42));
+
+		Assert.assertEquals("freight", oa.getAttribute("1", "subpopulation"));
+		Assert.assertEquals("commuter", oa.getAttribute("2", "subpopulation"));
+		Assert.assertEquals("freight", oa.getStringAttribute("3", "subpopulation"));
+		Assert.assertEquals(3500.0, oa.getAttribute("2", "income"));
+		Assert.assertEquals(42, oa.getAttribute("3", "age"));
+		Assert.assertNull(oa.getAttribute("1", "income"));
+		Assert.assertNull(oa.getAttribute("4", "income"));
+
+		Assert.assertEquals(3500.0, oa.getDoubleAttribute(oa.getObjectIndex("2"), "income", -1), 0.0);
+		Assert.assertEquals(-1.0, oa.getDoubleAttribute(oa.getObjectIndex("1"), "income", -1), 0.0);
+		Assert.assertEquals(42.0, oa.getDoubleAttribute(oa.getObjectIndex("3"), "age", -1), 0.0);
+		Assert.assertEquals(-1, oa.getObjectIndex("4"));
+
+		int subpopulation = oa.getAttributeIndex("subpopulation");
+		int income = oa.getAttributeIndex("income");
+		Assert.assertEquals("commuter", oa.getStringAttribute(oa.getObjectIndex("2"), subpopulation));
+		Assert.assertEquals(3500.0, oa.getDoubleAttribute(oa.getObjectIndex("2"), income, -1), 0.0);
+		Assert.assertEquals(-1.0, oa.getDoubleAttribute(oa.getObjectIndex("1"), income, -1), 0.0);
+		Assert.assertEquals(-1, oa.getAttributeIndex("height"));
+		Assert.assertNull(oa.getStringAttribute(oa.getObjectIndex("1"), -1));
+
+		Assert.assertEquals("freight", oa.putAttribute("1", "subpopulation", "commuter"));
+		Assert.assertEquals("commuter", oa.getAttribute("1", "subpopulation"));
+
+		Assert.assertEquals(3500.0, oa.removeAttribute("2", "income"));
+		Assert.assertNull(oa.getAttribute("2", "income"));
+		Assert.assertEquals("commuter", oa.getAttribute("2", "subpopulation"));
+
+		oa.removeAllAttributes("3");
+		Assert.assertNull(oa.getAttribute("3", "subpopulation"));
+		Assert.assertNull(oa.getAttribute("3", "age"));
+		Assert.assertEquals(Arrays.asList("1", "2"), oa.getObjectIds());
+
+		oa.clear();
+		Assert.assertNull(oa.getAttribute("1", "subpopulation"));
+		Assert.assertTrue(oa.getObjectIds().isEmpty());
+	}
+
+	@Test
+	public void testMixedTypes() {
+		ColumnarObjectAttributes oa = new ColumnarObjectAttributes();
+		oa.putAttribute("1", "a", 1.5);
+		oa.putAttribute("2", "a", 7);
+		oa.putAttribute("3", "a", "seven");
+		oa.putAttribute("4", "a", Boolean.TRUE);
+		Assert.assertEquals(1.5, oa.getAttribute("1", "a"));
+		Assert.assertEquals(7, oa.getAttribute("2", "a"));
+		Assert.assertEquals("seven", oa.getAttribute("3", "a"));
+		Assert.assertEquals(Boolean.TRUE, oa.getAttribute("4", "a"));
+		Assert.assertEquals(7.0, oa.getDoubleAttribute(oa.getObjectIndex("2"), "a", -1), 0.0);
+		// the index stays the same when the column is converted
+		Assert.assertEquals(0, oa.getAttributeIndex("a"));
+		Assert.assertEquals(1.5, oa.getDoubleAttribute(oa.getObjectIndex("1"), 0, -1), 0.0);
+
+		Assert.assertEquals(7, oa.putAttribute("2", "a", null));
+		Assert.assertNull(oa.getAttribute("2", "a"));
+	}
+
+	@Test
+	public void testUtils() {
+		ColumnarObjectAttributes source = new ColumnarObjectAttributes();
+		source.putAttribute("1", "a", "A");
+		source.putAttribute("1", "b", 2);
+		source.putAttribute("2", "c", 3.0);
+
+		Collection<String> names = ObjectAttributesUtils.getAllAttributeNames(source, "1");
+		Assert.assertEquals(new HashSet<>(Arrays.asList("a", "b")), new HashSet<>(names));
+		Assert.assertTrue(ObjectAttributesUtils.getAllAttributeNames(source, "3").isEmpty());
+
+		ObjectAttributes destination = new ObjectAttributes();
+		ObjectAttributesUtils.copyAllAttributes(source, destination, "1");
+		Assert.assertEquals("A", destination.getAttribute("1", "a"));
+		Assert.assertEquals(2, destination.getAttribute("1", "b"));
+		Assert.assertNull(destination.getAttribute("2", "c"));
+	}
+
+	@Test
+	public void testReadWrite() {
+		ColumnarObjectAttributes oa1 = new ColumnarObjectAttributes();
+		oa1.putAttribute("one", "a", "A");
+		oa1.putAttribute("one", "b", Integer.valueOf(1));
+		oa1.putAttribute("two", "c", Double.valueOf(1.5));
+		oa1.putAttribute("two", "d", Boolean.TRUE);
+		oa1.putAttribute("three", "a", "B");
+		new ObjectAttributesXmlWriter(oa1).writeFile(this.utils.getOutputDirectory() + "oa.xml");
+
+		ObjectAttributes oa2 = new ObjectAttributes();
+		new ObjectAttributesXmlReader(oa2).readFile(this.utils.getOutputDirectory() + "oa.xml");
+		ColumnarObjectAttributes oa3 = new ColumnarObjectAttributes();
+		new ObjectAttributesXmlReader(oa3).readFile(this.utils.getOutputDirectory() + "oa.xml");
+
+		for (ObjectAttributes oa : new ObjectAttributes[] {oa2, oa3}) {
+			Assert.assertEquals("A", oa.getAttribute("one", "a"));
+			Assert.assertEquals(Integer.valueOf(1), oa.getAttribute("one", "b"));
+			Assert.assertEquals(Double.valueOf(1.5), oa.getAttribute("two", "c"));
+			Assert.assertEquals(Boolean.TRUE, oa.getAttribute("two", "d"));
+			Assert.assertEquals("B", oa.getAttribute("three", "a"));
+			Assert.assertNull(oa.getAttribute("three", "b"));
+		}
+		Assert.assertEquals(Arrays.asList("one", "two", "three"), oa3.getObjectIds());
+	}
+
+}
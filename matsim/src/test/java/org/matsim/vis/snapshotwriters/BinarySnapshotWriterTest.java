@@ -0,0 +1,94 @@
+/* *********************************************************************** *
+ * project: org.matsim.*
+ *                                                                         *
+ * *********************************************************************** *
+ *                                                                         *
+ * copyright       : (C) 2019 by the members listed in the COPYING,        *
+ *                   LICENSE and WARRANTY file.                            *
+ * email           : info at matsim dot org                                *
+ *                                                                         *
+ * *********************************************************************** *
+ *                                                                         *
+ *   This program is free software; you can redistribute it and/or modify  *
+ *   it under the terms of the GNU General Public License as published by  *
+ *   the Free Software Foundation; either version 2 of the License, or     *
+ *   (at your option) any later version.                                   *
+ *   See also COPYING, LICENSE and WARRANTY file                           *
+ *                                                                         *
+ * *********************************************************************** */
+
+package org.matsim.vis.snapshotwriters;
+
+import org.junit.Assert;
+import org.junit.Rule;
+import org.junit.Test;
+import org.matsim.api.core.v01.Id;
+import org.matsim.api.core.v01.population.Person;
+import org.matsim.testcases.MatsimTestUtils;
+import org.matsim.vis.snapshotwriters.AgentSnapshotInfo.AgentState;
+
+public class BinarySnapshotWriterTest {
+
+	@Rule
+	public MatsimTestUtils utils = new MatsimTestUtils();
+
+	@Test
+	public void testWriteAndRead() {
+		String filename = this.utils.getOutputDirectory() + "snapshots.bin.gz";
+
+		BinarySnapshotWriter writer = new BinarySnapshotWriter(filename);
+		AgentPositionBuffer positions = new AgentPositionBuffer(1);
+		positions.add(Id.createPersonId("a"), 4_500_000.25, 5_400_000.5, 1.0, AgentState.PERSON_DRIVING_CAR);
+		positions.add(Id.createPersonId("b"), 10.0, 20.0, 0.0, AgentState.TRANSIT_DRIVER);
+		writer.writeSnapshot(3600.0, positions);
+
+		// the SnapshotWriter methods, with one agent seen before and one new agent
+		AgentSnapshotInfoFactory factory = new AgentSnapshotInfoFactory(new SnapshotLinkWidthCalculator());
+		AgentSnapshotInfo info = factory.createAgentSnapshotInfo(Id.createPersonId("c"), 30.0, 40.0, 0.0, 0.0);
+		info.setAgentState(AgentState.PERSON_OTHER_MODE);
+		info.setColorValueBetweenZeroAndOne(0.5);
+		AgentSnapshotInfo info2 = factory.createAgentSnapshotInfo(Id.createPersonId("b"), 11.0, 21.0, 0.0, 0.0);
+		info2.setAgentState(AgentState.TRANSIT_DRIVER);
+		writer.beginSnapshot(3660.0);
+		writer.addAgent(info);
+		writer.addAgent(info2);
+		writer.endSnapshot();
+
+		writer.beginSnapshot(3720.0);
+		writer.endSnapshot();
+		writer.finish();
+
+		BinarySnapshotReader reader = new BinarySnapshotReader(filename);
+		AgentPositionBuffer read = new AgentPositionBuffer();
+
+		Assert.assertTrue(reader.readSnapshot(read));
+		Assert.assertEquals(3600.0, reader.getTime(), 0.0);
+		Assert.assertEquals(2, read.size());
+		Assert.assertEquals(Id.createPersonId("a"), read.getId(0));
+		Assert.assertEquals("coordinates are stored as floats", 4_500_000.25, read.getEasting(0), 0.5);
+		Assert.assertEquals(5_400_000.5, read.getNorthing(0), 0.5);
+		Assert.assertEquals(1.0, read.getColorValueBetweenZeroAndOne(0), 0.0);
+		Assert.assertEquals(AgentState.PERSON_DRIVING_CAR, read.getAgentState(0));
+		Assert.assertEquals(Id.createPersonId("b"), read.getId(1));
+		Assert.assertEquals(AgentState.TRANSIT_DRIVER, read.getAgentState(1));
+
+		Assert.assertTrue(reader.readSnapshot(read));
+		Assert.assertEquals(3660.0, reader.getTime(), 0.0);
+		Assert.assertEquals(2, read.size());
+		Assert.assertEquals(Id.createPersonId("c"), read.getId(0));
+		Assert.assertEquals(30.0, read.getEasting(0), 0.0);
+		Assert.assertEquals(40.0, read.getNorthing(0), 0.0);
+		Assert.assertEquals(0.5, read.getColorValueBetweenZeroAndOne(0), 1.0 / 255);
+		Assert.assertEquals(AgentState.PERSON_OTHER_MODE, read.getAgentState(0));
+		Assert.assertEquals(Id.createPersonId("b"), read.getId(1));
+		Assert.assertEquals(11.0, read.getEasting(1), 0.0);
+
+		Assert.assertTrue(reader.readSnapshot(read));
+		Assert.assertEquals(3720.0, reader.getTime(), 0.0);
+		Assert.assertEquals(0, read.size());
+
+		Assert.assertFalse(reader.readSnapshot(read));
+		reader.close();
+	}
+
+}
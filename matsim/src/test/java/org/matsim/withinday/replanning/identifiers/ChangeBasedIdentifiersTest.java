@@ -0,0 +1,122 @@
+/* *********************************************************************** *
+ * project: org.matsim.*
+ * ChangeBasedIdentifiersTest.java
+ *                                                                         *
+ * *********************************************************************** *
+ *                                                                         *
+ * copyright       : (C) 2019 by the members listed in the COPYING,        *
+ *                   LICENSE and WARRANTY file.                            *
+ * email           : info at matsim dot org                                *
+ *                                                                         *
+ * *********************************************************************** *
+ *                                                                         *
+ *   This program is free software; you can redistribute it and/or modify  *
+ *   it under the terms of the GNU General Public License as published by  *
+ *   the Free Software Foundation; either version 2 of the License, or     *
+ *   (at your option) any later version.                                   *
+ *   See also COPYING, LICENSE and WARRANTY file                           *
+ *                                                                         *
+ * *********************************************************************** */
+
+package org.matsim.withinday.replanning.identifiers;
+
+import java.util.Map;
+
+import javax.inject.Inject;
+
+import org.junit.Assert;
+import org.junit.Rule;
+import org.junit.Test;
+import org.matsim.api.core.v01.Id;
+import org.matsim.api.core.v01.network.Link;
+import org.matsim.api.core.v01.population.Activity;
+import org.matsim.api.core.v01.population.Person;
+import org.matsim.core.config.Config;
+import org.matsim.core.controler.AbstractModule;
+import org.matsim.core.controler.Controler;
+import org.matsim.core.mobsim.framework.MobsimAgent;
+import org.matsim.core.mobsim.framework.events.MobsimBeforeSimStepEvent;
+import org.matsim.core.mobsim.framework.listeners.MobsimBeforeSimStepListener;
+import org.matsim.core.mobsim.qsim.agents.WithinDayAgentUtils;
+import org.matsim.testcases.MatsimTestUtils;
+import org.matsim.withinday.controller.WithinDayModule;
+import org.matsim.withinday.mobsim.MobsimDataProvider;
+import org.matsim.withinday.replanning.identifiers.interfaces.DuringActivityAgentSelector;
+import org.matsim.withinday.replanning.identifiers.interfaces.DuringLegAgentSelector;
+import org.matsim.withinday.replanning.identifiers.tools.ActivityReplanningMap;
+import org.matsim.withinday.trafficmonitoring.LinkEnteredProvider;
+
+/**
+ * Checks that the {@link LinkEnteredIdentifier} and the {@link ActivityStartedIdentifier} only identify agents
+ * which have entered a link or started an activity in the last time step.
+ */
+public class ChangeBasedIdentifiersTest {
+
+	@Rule
+	public MatsimTestUtils utils = new MatsimTestUtils();
+
+	@Test
+	public void testIdentifiedAgents() {
+		Config config = utils.loadConfig("test/scenarios/equil/config.xml");
+		config.controler().setLastIteration(0);
+		config.controler().setCreateGraphs(false);
+		config.controler().setDumpDataAtEnd(false);
+		config.controler().setWriteEventsInterval(0);
+		config.controler().setWritePlansInterval(0);
+
+		Controler controler = new Controler(config);
+		controler.addOverridingModule(new WithinDayModule());
+		controler.addOverridingModule(new AbstractModule() {
+			@Override
+			public void install() {
+				bind(IdentifiersChecker.class).asEagerSingleton();
+				addMobsimListenerBinding().to(IdentifiersChecker.class);
+			}
+		});
+		controler.run();
+
+		IdentifiersChecker checker = controler.getInjector().getInstance(IdentifiersChecker.class);
+		Assert.assertTrue(checker.linkEnteredAgents > 0);
+		Assert.assertTrue(checker.activityStartedAgents > 0);
+	}
+
+	private static class IdentifiersChecker implements MobsimBeforeSimStepListener {
+
+		private final LinkEnteredProvider linkEnteredProvider;
+		private final DuringLegAgentSelector linkEnteredIdentifier;
+		private final DuringActivityAgentSelector activityStartedIdentifier;
+		private int linkEnteredAgents = 0;
+		private int activityStartedAgents = 0;
+
+		@Inject
+		IdentifiersChecker(LinkEnteredProvider linkEnteredProvider, MobsimDataProvider mobsimDataProvider,
+				ActivityReplanningMap activityReplanningMap) {
+			this.linkEnteredProvider = linkEnteredProvider;
+			this.linkEnteredIdentifier = new LinkEnteredIdentifierFactory(linkEnteredProvider, mobsimDataProvider).createIdentifier();
+			this.activityStartedIdentifier = new ActivityStartedIdentifierFactory(activityReplanningMap).createIdentifier();
+		}
+
+		/*
+		 * Within-day replanning identifies the agents before the time step, i.e. the agents have entered the link or
+		 * started the activity in the previous time step and have not moved on since.
+		 */
+		@Override
+		public void notifyMobsimBeforeSimStep(MobsimBeforeSimStepEvent e) {
+			double time = e.getSimulationTime();
+
+			Map<Id<Person>, Id<Link>> enteredLinks = this.linkEnteredProvider.getLinkEnteredAgentsInLastTimeStep();
+			for (MobsimAgent agent : this.linkEnteredIdentifier.getAgentsToReplan(time)) {
+				Assert.assertEquals(MobsimAgent.State.LEG, agent.getState());
+				Assert.assertEquals(enteredLinks.get(agent.getId()), agent.getCurrentLinkId());
+				this.linkEnteredAgents++;
+			}
+
+			for (MobsimAgent agent : this.activityStartedIdentifier.getAgentsToReplan(time)) {
+				Assert.assertEquals(MobsimAgent.State.ACTIVITY, agent.getState());
+				Assert.assertTrue(WithinDayAgentUtils.getCurrentPlanElement(agent) instanceof Activity);
+				this.activityStartedAgents++;
+			}
+		}
+	}
+
+}
@@ -21,8 +21,11 @@
 package org.matsim.withinday.replanning.identifiers.tools;
 
 import org.matsim.api.core.v01.Id;
+import org.matsim.api.core.v01.events.ActivityStartEvent;
+import org.matsim.api.core.v01.events.handler.ActivityStartEventHandler;
 import org.matsim.api.core.v01.population.Activity;
 import org.matsim.api.core.v01.population.Person;
+import org.matsim.core.api.experimental.events.EventsManager;
 import org.matsim.core.config.Config;
 import org.matsim.core.config.groups.ControlerConfigGroup;
 import org.matsim.core.config.groups.QSimConfigGroup;
@@ -31,6 +34,7 @@ import org.matsim.core.controler.Controler;
 import org.matsim.core.events.EventsUtils;
 import org.matsim.core.mobsim.framework.MobsimAgent;
 import org.matsim.core.mobsim.framework.events.MobsimAfterSimStepEvent;
+import org.matsim.core.mobsim.framework.events.MobsimBeforeCleanupEvent;
 import org.matsim.core.mobsim.framework.events.MobsimBeforeSimStepEvent;
 import org.matsim.core.mobsim.framework.events.MobsimInitializedEvent;
 import org.matsim.core.mobsim.framework.listeners.*;
@@ -42,8 +46,10 @@ import org.matsim.withinday.events.ReplanningEvent;
 import org.matsim.withinday.mobsim.WithinDayEngine;
 
 import javax.inject.Inject;
+import java.util.HashSet;
 import java.util.LinkedHashMap;
 import java.util.Map;
+import java.util.Set;
 
 public class ActivityReplanningMapTest extends MatsimTestCase {
 
@@ -119,11 +125,13 @@ public class ActivityReplanningMapTest extends MatsimTestCase {
 	 * @author cdobler
 	 */
 	private static class MobsimListenerForTests implements MobsimInitializedListener, MobsimBeforeSimStepListener,
-		MobsimAfterSimStepListener {
+		MobsimAfterSimStepListener, MobsimBeforeCleanupListener, ActivityStartEventHandler {
 
 		private final ActivityReplanningMap arp;
 		private final WithinDayEngine withinDayEngine;
 		private final Map<Id<Person>, MobsimAgent> agents;
+		private final Set<Id<Person>> activityStartsInTimeStep = new HashSet<>();
+		private int activityStarts = 0;
 		private static final int t1 = 5*3600 + 58*60 + 30;
 		private static final int t2 = 5*3600 + 59*60;
 		private static final int t3 = 5*3600 + 59*60 + 30;
@@ -132,10 +140,26 @@ public class ActivityReplanningMapTest extends MatsimTestCase {
 		private static final int t6 = 6*3600 + 120;
 		
 		@Inject
-		MobsimListenerForTests(final ActivityReplanningMap arp, WithinDayEngine withinDayEngine) {
+		MobsimListenerForTests(final ActivityReplanningMap arp, WithinDayEngine withinDayEngine, EventsManager eventsManager) {
 			this.arp = arp;
 			this.withinDayEngine = withinDayEngine;
 			this.agents = new LinkedHashMap<>();
+			eventsManager.addHandler(this);
+		}
+
+		@Override
+		public void handleEvent(ActivityStartEvent event) {
+			this.activityStartsInTimeStep.add(event.getPersonId());
+		}
+
+		@Override
+		public void reset(int iteration) {
+			this.activityStartsInTimeStep.clear();
+		}
+
+		@Override
+		public void notifyMobsimBeforeCleanup(final MobsimBeforeCleanupEvent e) {
+			assertTrue(this.activityStarts > 0);	// the agents have arrived at work and at home
 		}
 
 		@Override
@@ -197,6 +221,13 @@ public class ActivityReplanningMapTest extends MatsimTestCase {
 
 		@Override
 		public void notifyMobsimAfterSimStep(final MobsimAfterSimStepEvent e) {
+			// only the agents which have started an activity in this time step
+			Set<Id<Person>> startedAgents = new HashSet<>();
+			for (MobsimAgent agent : this.arp.getActivityStartedAgents()) startedAgents.add(agent.getId());
+			assertEquals(this.activityStartsInTimeStep, startedAgents);
+			this.activityStarts += startedAgents.size();
+			this.activityStartsInTimeStep.clear();
+
 			if (e.getSimulationTime() == t1) {
 				assertEquals(99, this.arp.getActivityPerformingAgents().size());	// 99 agents perform an activity after the time step
 				assertEquals(0, this.arp.getActivityEndingAgents(e.getSimulationTime()).size());		// no agent ends an activity
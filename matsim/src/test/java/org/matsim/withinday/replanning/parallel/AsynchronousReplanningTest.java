@@ -0,0 +1,256 @@
+/* *********************************************************************** *
+ * project: org.matsim.*
+ *                                                                         *
+ * *********************************************************************** *
+ *                                                                         *
+ * copyright       : (C) 2019 by the members listed in the COPYING,        *
+ *                   LICENSE and WARRANTY file.                            *
+ * email           : info at matsim dot org                                *
+ *                                                                         *
+ * *********************************************************************** *
+ *                                                                         *
+ *   This program is free software; you can redistribute it and/or modify  *
+ *   it under the terms of the GNU General Public License as published by  *
+ *   the Free Software Foundation; either version 2 of the License, or     *
+ *   (at your option) any later version.                                   *
+ *   See also COPYING, LICENSE and WARRANTY file                           *
+ *                                                                         *
+ * *********************************************************************** */
+
+package org.matsim.withinday.replanning.parallel;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.Set;
+
+import org.junit.Assert;
+import org.junit.Test;
+import org.matsim.api.core.v01.Coord;
+import org.matsim.api.core.v01.Id;
+import org.matsim.api.core.v01.Scenario;
+import org.matsim.api.core.v01.TransportMode;
+import org.matsim.api.core.v01.network.Link;
+import org.matsim.api.core.v01.network.Network;
+import org.matsim.api.core.v01.network.Node;
+import org.matsim.api.core.v01.population.Activity;
+import org.matsim.api.core.v01.population.Leg;
+import org.matsim.api.core.v01.population.Person;
+import org.matsim.api.core.v01.population.Plan;
+import org.matsim.api.core.v01.population.PopulationFactory;
+import org.matsim.core.api.experimental.events.EventsManager;
+import org.matsim.core.config.Config;
+import org.matsim.core.config.ConfigUtils;
+import org.matsim.core.events.EventsUtils;
+import org.matsim.core.mobsim.framework.MobsimAgent;
+import org.matsim.core.mobsim.qsim.QSim;
+import org.matsim.core.mobsim.qsim.QSimBuilder;
+import org.matsim.core.mobsim.qsim.agents.PersonDriverAgentImpl;
+import org.matsim.core.mobsim.qsim.agents.WithinDayAgentUtils;
+import org.matsim.core.network.NetworkUtils;
+import org.matsim.core.population.routes.NetworkRoute;
+import org.matsim.core.population.routes.RouteUtils;
+import org.matsim.core.scenario.ScenarioUtils;
+import org.matsim.withinday.controller.WithinDayConfigGroup;
+import org.matsim.withinday.events.ReplanningEvent;
+import org.matsim.withinday.events.handler.ReplanningEventHandler;
+import org.matsim.withinday.mobsim.WithinDayEngine;
+import org.matsim.withinday.replanning.identifiers.interfaces.DuringLegAgentSelector;
+import org.matsim.withinday.replanning.replanners.interfaces.WithinDayDuringLegReplanner;
+import org.matsim.withinday.replanning.replanners.interfaces.WithinDayDuringLegReplannerFactory;
+import org.matsim.withinday.replanning.replanners.interfaces.WithinDayReplanner;
+
+public class AsynchronousReplanningTest {
+
+	private static final double DEPARTURE_TIME = 8 * 3600.0;
+
+	/*
+	 * The agent goes from l1 over l2 and l3 to l4.  The alternative routes are l5-l6 and, from l2, l7-l6.
+	 */
+	private final Id<Link> l1 = Id.createLinkId("l1");
+	private final Id<Link> l2 = Id.createLinkId("l2");
+	private final Id<Link> l3 = Id.createLinkId("l3");
+	private final Id<Link> l4 = Id.createLinkId("l4");
+	private final Id<Link> l5 = Id.createLinkId("l5");
+	private final Id<Link> l6 = Id.createLinkId("l6");
+	private final Id<Link> l7 = Id.createLinkId("l7");
+
+	@Test
+	public void testCopyIsOnlyAppliedWhenAsked() {
+		PersonDriverAgentImpl agent = createAgent(createScenario(ConfigUtils.createConfig()));
+		agent.endActivityAndComputeNextState(DEPARTURE_TIME);
+		Assert.assertEquals(l2, agent.chooseNextLinkId());
+
+		ReplanningAgentCopy copy = new ReplanningAgentCopy(agent, null);
+		setRoute(copy, Arrays.asList(l5, l6));
+
+		Assert.assertEquals(Arrays.asList(l2, l3), getRouteLinkIds(agent));
+		Assert.assertEquals(l2, agent.chooseNextLinkId());
+
+		Assert.assertTrue(copy.applyToAgent());
+		Assert.assertEquals(Arrays.asList(l5, l6), getRouteLinkIds(agent));
+		Assert.assertEquals("the caches of the agent have not been reset", l5, agent.chooseNextLinkId());
+	}
+
+	@Test
+	public void testCopyIsDroppedWhenAgentHasStartedAnotherPlanElement() {
+		PersonDriverAgentImpl agent = createAgent(createScenario(ConfigUtils.createConfig()));
+
+		ReplanningAgentCopy copy = new ReplanningAgentCopy(agent, null);
+		Leg copiedLeg = (Leg) copy.getNextPlanElement();
+		((NetworkRoute) copiedLeg.getRoute()).setLinkIds(l1, Arrays.asList(l5, l6), l4);
+
+		agent.endActivityAndComputeNextState(DEPARTURE_TIME);
+
+		Assert.assertFalse(copy.applyToAgent());
+		Assert.assertEquals(Arrays.asList(l2, l3), getRouteLinkIds(agent));
+	}
+
+	@Test
+	public void testCopyIsAppliedWhenAgentHasOnlyPassedUnchangedLinks() {
+		PersonDriverAgentImpl agent = createAgent(createScenario(ConfigUtils.createConfig()));
+		agent.endActivityAndComputeNextState(DEPARTURE_TIME);
+
+		ReplanningAgentCopy copy = new ReplanningAgentCopy(agent, null);
+		setRoute(copy, Arrays.asList(l2, l7, l6));
+
+		agent.notifyMoveOverNode(l2);
+
+		Assert.assertTrue(copy.applyToAgent());
+		Assert.assertEquals(Arrays.asList(l2, l7, l6), getRouteLinkIds(agent));
+		Assert.assertEquals(l7, agent.chooseNextLinkId());
+	}
+
+	@Test
+	public void testCopyIsDroppedWhenAgentHasPassedChangedLinks() {
+		PersonDriverAgentImpl agent = createAgent(createScenario(ConfigUtils.createConfig()));
+		agent.endActivityAndComputeNextState(DEPARTURE_TIME);
+
+		ReplanningAgentCopy copy = new ReplanningAgentCopy(agent, null);
+		setRoute(copy, Arrays.asList(l5, l6));
+
+		agent.notifyMoveOverNode(l2);
+
+		Assert.assertFalse(copy.applyToAgent());
+		Assert.assertEquals(Arrays.asList(l2, l3), getRouteLinkIds(agent));
+		Assert.assertEquals(l3, agent.chooseNextLinkId());
+	}
+
+	/**
+	 * Runs a during-leg replanner through the {@link WithinDayEngine}, with the maximum replanning delay set in the
+	 * config.  The agent must not be changed before the results are collected, and the ReplanningEvent must carry
+	 * the time when they are applied.
+	 */
+	@Test
+	public void testResultsAreAppliedWithinTheDelay() {
+		Config config = ConfigUtils.createConfig();
+		config.global().setNumberOfThreads(2);
+		ConfigUtils.addOrGetModule(config, WithinDayConfigGroup.class).setMaxReplanningDelay(10.0);
+		Scenario scenario = createScenario(config);
+		PersonDriverAgentImpl agent = createAgent(scenario);
+		agent.endActivityAndComputeNextState(DEPARTURE_TIME);
+
+		EventsManager events = EventsUtils.createEventsManager();
+		List<ReplanningEvent> replanningEvents = new ArrayList<>();
+		events.addHandler((ReplanningEventHandler) event -> replanningEvents.add(event));
+
+		WithinDayEngine engine = new WithinDayEngine(events, scenario);
+		Assert.assertEquals(10.0, engine.getMaxReplanningDelay(), 0.0);
+		engine.doInitialReplanning(false);
+		engine.doDuringActivityReplanning(false);
+
+		WithinDayDuringLegReplannerFactory factory = new WithinDayDuringLegReplannerFactory(engine) {
+			@Override
+			public WithinDayDuringLegReplanner createReplanner() {
+				return new WithinDayDuringLegReplanner(getId(), scenario, null) {
+					@Override
+					public boolean doReplanning(MobsimAgent withinDayAgent) {
+						Assert.assertTrue(withinDayAgent instanceof ReplanningAgentCopy);
+						setRoute(withinDayAgent, Arrays.asList(l5, l6));
+						return true;
+					}
+				};
+			}
+		};
+		factory.addIdentifier(new DuringLegAgentSelector() {
+			@Override
+			public Set<MobsimAgent> getAgentsToReplan(double time) {
+				if (time == DEPARTURE_TIME) return Collections.singleton(agent);
+				return Collections.emptySet();
+			}
+		});
+		engine.addDuringLegReplannerFactory(factory);
+
+		engine.onPrepareSim();
+		engine.doSimStep(DEPARTURE_TIME);
+		Assert.assertEquals(Arrays.asList(l2, l3), getRouteLinkIds(agent));
+		Assert.assertTrue(replanningEvents.isEmpty());
+
+		for (double time = DEPARTURE_TIME + 1; time <= DEPARTURE_TIME + 10; time++) {
+			engine.doSimStep(time);
+		}
+		engine.afterSim();
+
+		Assert.assertEquals(Arrays.asList(l5, l6), getRouteLinkIds(agent));
+		Assert.assertEquals(1, replanningEvents.size());
+		Assert.assertTrue(replanningEvents.get(0).getTime() > DEPARTURE_TIME);
+	}
+
+	private void setRoute(MobsimAgent agent, List<Id<Link>> linkIds) {
+		Leg leg = WithinDayAgentUtils.getModifiableCurrentLeg(agent);
+		((NetworkRoute) leg.getRoute()).setLinkIds(l1, linkIds, l4);
+		WithinDayAgentUtils.resetCaches(agent);
+	}
+
+	private static List<Id<Link>> getRouteLinkIds(MobsimAgent agent) {
+		return ((NetworkRoute) WithinDayAgentUtils.getModifiableCurrentLeg(agent).getRoute()).getLinkIds();
+	}
+
+	private static PersonDriverAgentImpl createAgent(Scenario scenario) {
+		QSim qsim = new QSimBuilder(scenario.getConfig()) //
+				.useDefaults() //
+				.build(scenario, EventsUtils.createEventsManager());
+		Person person = scenario.getPopulation().getPersons().values().iterator().next();
+		return new PersonDriverAgentImpl(person.getSelectedPlan(), qsim);
+	}
+
+	private Scenario createScenario(Config config) {
+		Scenario scenario = ScenarioUtils.createScenario(config);
+
+		Network network = scenario.getNetwork();
+		Node n1 = NetworkUtils.createAndAddNode(network, Id.createNodeId("n1"), new Coord(0.0, 0.0));
+		Node n2 = NetworkUtils.createAndAddNode(network, Id.createNodeId("n2"), new Coord(1000.0, 0.0));
+		Node n3 = NetworkUtils.createAndAddNode(network, Id.createNodeId("n3"), new Coord(2000.0, 0.0));
+		Node n4 = NetworkUtils.createAndAddNode(network, Id.createNodeId("n4"), new Coord(3000.0, 0.0));
+		Node n5 = NetworkUtils.createAndAddNode(network, Id.createNodeId("n5"), new Coord(4000.0, 0.0));
+		Node n6 = NetworkUtils.createAndAddNode(network, Id.createNodeId("n6"), new Coord(2000.0, 1000.0));
+		addLink(network, l1, n1, n2);
+		addLink(network, l2, n2, n3);
+		addLink(network, l3, n3, n4);
+		addLink(network, l4, n4, n5);
+		addLink(network, l5, n2, n6);
+		addLink(network, l6, n6, n4);
+		addLink(network, l7, n3, n6);
+
+		PopulationFactory factory = scenario.getPopulation().getFactory();
+		Person person = factory.createPerson(Id.createPersonId("p1"));
+		Plan plan = factory.createPlan();
+		Activity home = factory.createActivityFromLinkId("home", l1);
+		home.setEndTime(DEPARTURE_TIME);
+		plan.addActivity(home);
+		Leg leg = factory.createLeg(TransportMode.car);
+		leg.setRoute(RouteUtils.createLinkNetworkRouteImpl(l1, Arrays.asList(l2, l3), l4));
+		plan.addLeg(leg);
+		plan.addActivity(factory.createActivityFromLinkId("work", l4));
+		person.addPlan(plan);
+		scenario.getPopulation().addPerson(person);
+
+		return scenario;
+	}
+
+	private static void addLink(Network network, Id<Link> id, Node fromNode, Node toNode) {
+		NetworkUtils.createAndAddLink(network, id, fromNode, toNode, 1000.0, 10.0, 1800.0, 1.0);
+	}
+
+}